@@ -16,10 +16,10 @@ repositories {
 }
 
 dependencies {
-    implementation("com.intellectualsites.http:HTTP4J:1.8")
     implementation("org.jetbrains:annotations:26.1.0")
     testImplementation("org.junit.jupiter:junit-jupiter-engine:6.1.2")
-    compileOnly("com.google.code.gson:gson:2.14.0")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    implementation("com.google.code.gson:gson:2.14.0")
     compileOnly("com.sk89q.worldedit:worldedit-bukkit:7.2.16")
 }
 
@@ -31,6 +31,42 @@ tasks.compileJava.configure {
     options.release.set(8)
 }
 
+// Classes in src/main/java11 replace their Java 8 counterparts on Java 11+ through the multi-release jar
+val java11: SourceSet by sourceSets.creating {
+    java.setSrcDirs(listOf("src/main/java11"))
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+}
+
+tasks.named<JavaCompile>(java11.compileJavaTaskName) {
+    options.release.set(11)
+}
+
+// The mock server in src/testFixtures is shared by the tests and benchmarks, but not published
+val testFixtures: SourceSet by sourceSets.creating {
+    java.setSrcDirs(listOf("src/testFixtures/java"))
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+    runtimeClasspath += java11.output + sourceSets.main.get().output + compileClasspath
+}
+
+// Tests run on the runtime classpath of the fixtures, so that everything the mock server needs is available
+sourceSets.test {
+    compileClasspath += testFixtures.output
+    runtimeClasspath = testFixtures.runtimeClasspath + runtimeClasspath
+}
+
+// JMH benchmarks, run with ./gradlew jmh (-Pjmh.includes=<regex> to select benchmarks)
+val jmh: SourceSet by sourceSets.creating {
+    java.setSrcDirs(listOf("src/jmh/java"))
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath +
+        testFixtures.output
+    runtimeClasspath += java11.output + sourceSets.main.get().output + compileClasspath
+}
+
+dependencies {
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
 configurations.all {
     attributes.attribute(TargetJvmVersion.TARGET_JVM_VERSION_ATTRIBUTE, 17)
 }
@@ -53,6 +89,39 @@ tasks {
         opt.noTimestamp()
     }
 
+    test {
+        useJUnitPlatform()
+    }
+
+    // Load generator, run with ./gradlew loadTest --args="--help" to list its options
+    register<JavaExec>("loadTest") {
+        group = "benchmark"
+        description = "Drives the client with a mix of operations and reports throughput and latency percentiles"
+        classpath = testFixtures.runtimeClasspath
+        mainClass.set("com.intellectualsites.arkitektonika.loadtest.LoadTest")
+    }
+
+    register<JavaExec>("jmh") {
+        group = "benchmark"
+        description = "Runs the JMH benchmarks, including the allocation rate reported by the GC profiler"
+        classpath = jmh.runtimeClasspath
+        mainClass.set("org.openjdk.jmh.Main")
+        args(project.findProperty("jmh.includes")?.toString() ?: ".*", "-prof", "gc", "-rf", "json",
+            "-rff", layout.buildDirectory.file("reports/jmh/results.json").get().asFile.path)
+        doFirst {
+            layout.buildDirectory.dir("reports/jmh").get().asFile.mkdirs()
+        }
+    }
+
+    jar {
+        into("META-INF/versions/11") {
+            from(java11.output)
+        }
+        manifest {
+            attributes("Multi-Release" to "true")
+        }
+    }
+
     withType<AbstractArchiveTask>().configureEach {
         isPreserveFileTimestamps = false
         isReproducibleFileOrder = true
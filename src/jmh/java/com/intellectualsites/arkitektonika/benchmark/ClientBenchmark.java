@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.benchmark;
+
+import com.intellectualsites.arkitektonika.Arkitektonika;
+import com.intellectualsites.arkitektonika.ResourceStatus;
+import com.intellectualsites.arkitektonika.SchematicKeys;
+import com.intellectualsites.arkitektonika.server.MockArkitektonikaServer;
+import com.intellectualsites.arkitektonika.transport.TransportType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * End-to-end throughput of uploads, downloads and status checks against an
+ * in-process server, for every built-in transport
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ClientBenchmark {
+
+    @Param({"BLOCKING", "POOLED", "ASYNC"})
+    private TransportType transport;
+
+    @Param({"16384"})
+    private int size;
+
+    private MockArkitektonikaServer server;
+    private Arkitektonika arkitektonika;
+    private byte[] schematic;
+    private String key;
+
+    @Setup public void setup() throws Exception {
+        this.server = MockArkitektonikaServer.builder().build();
+        this.arkitektonika = Arkitektonika.builder().withUrl(this.server.getUrl()).withTransport(this.transport)
+            .build();
+        // The server only accepts gzip compressed NBT data, so the random payload follows a root compound tag
+        final byte[] data = new byte[this.size];
+        ThreadLocalRandom.current().nextBytes(data);
+        data[0] = 10;
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(data);
+        }
+        this.schematic = outputStream.toByteArray();
+        this.key = this.server.store(this.schematic).getAccessKey();
+    }
+
+    @TearDown public void tearDown() throws IOException {
+        this.arkitektonika.close();
+        this.server.close();
+    }
+
+    @Benchmark public SchematicKeys upload() {
+        return this.arkitektonika.upload(this.schematic).join();
+    }
+
+    @Benchmark public byte[] download() {
+        return this.arkitektonika.download(this.key).join().getContent();
+    }
+
+    @Benchmark public ResourceStatus checkStatus() {
+        return this.arkitektonika.checkStatus(this.key).join();
+    }
+
+}
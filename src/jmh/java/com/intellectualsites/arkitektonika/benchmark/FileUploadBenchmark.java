@@ -0,0 +1,286 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.benchmark;
+
+import com.intellectualsites.arkitektonika.Arkitektonika;
+import com.intellectualsites.arkitektonika.SchematicKeys;
+import com.intellectualsites.arkitektonika.transport.TransportType;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads of a large schematic file over a plain HTTP connection, once sent with
+ * {@link FileChannel#transferTo} and once streamed through the heap. The server
+ * discards the body without buffering it, so that the client dominates the cost.
+ * The {@code cpuMicrosPerUpload} counter reports the CPU time of the process
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class FileUploadBenchmark {
+
+    @Param({"FILE", "STREAM"})
+    private Source source;
+
+    @Param({"67108864"})
+    private int size;
+
+    private DiscardServer server;
+    private Arkitektonika arkitektonika;
+    private File file;
+
+    @Setup public void setup() throws IOException {
+        this.server = new DiscardServer();
+        this.arkitektonika = Arkitektonika.builder().withUrl(this.server.getUrl())
+            .withTransport(TransportType.POOLED).build();
+        this.file = File.createTempFile("arkitektonika-benchmark", ".schem");
+        this.file.deleteOnExit();
+        // The content is never inspected, only a gzip header and a root compound tag are expected
+        final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        try (final FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.WRITE)) {
+            for (int written = 0; written < this.size; written += buffer.capacity()) {
+                ThreadLocalRandom.current().nextBytes(buffer.array());
+                if (written == 0) {
+                    buffer.put(0, (byte) 0x1F).put(1, (byte) 0x8B);
+                }
+                buffer.clear().limit(Math.min(buffer.capacity(), this.size - written));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    @TearDown public void tearDown() throws IOException {
+        this.arkitektonika.close();
+        this.server.close();
+        Files.deleteIfExists(this.file.toPath());
+    }
+
+    @Benchmark public SchematicKeys upload(@NotNull final CpuCounters counters) {
+        final long start = counters.processCpuTime();
+        final SchematicKeys keys;
+        if (this.source == Source.FILE) {
+            keys = this.arkitektonika.upload(this.file).join();
+        } else {
+            keys = this.arkitektonika.upload(() -> {
+                try {
+                    return Files.newInputStream(this.file.toPath());
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, this.file.length()).join();
+        }
+        counters.record(counters.processCpuTime() - start);
+        return keys;
+    }
+
+    /**
+     * How the file is handed to the client
+     */
+    public enum Source {
+        /**
+         * {@link Arkitektonika#upload(File)}, which is transferred by the kernel
+         */
+        FILE,
+        /**
+         * A stream of the same file, which is copied through the heap
+         */
+        STREAM
+    }
+
+
+    /**
+     * CPU time spent per upload
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class CpuCounters {
+
+        private final com.sun.management.OperatingSystemMXBean bean =
+            (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        private long cpuTime;
+        private long uploads;
+
+        @Setup(Level.Iteration) public void reset() {
+            this.cpuTime = 0;
+            this.uploads = 0;
+        }
+
+        public double cpuMicrosPerUpload() {
+            return this.uploads == 0 ? 0 : this.cpuTime / 1000.0 / this.uploads;
+        }
+
+        private long processCpuTime() {
+            return this.bean.getProcessCpuTime();
+        }
+
+        private void record(final long cpuTime) {
+            this.cpuTime += cpuTime;
+            this.uploads++;
+        }
+
+    }
+
+
+    /**
+     * Minimal HTTP server that answers every request with a fixed set of keys
+     * after reading and discarding the body
+     */
+    private static final class DiscardServer implements AutoCloseable {
+
+        private static final byte[] RESPONSE;
+
+        static {
+            final String body = "{\"download_key\":\"benchmark\",\"delete_key\":\"benchmark\"}";
+            RESPONSE = String.format(Locale.ROOT, "HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n"
+                + "Content-Length: %d\r\n\r\n%s", body.length(), body).getBytes(StandardCharsets.ISO_8859_1);
+        }
+
+        private final ServerSocket serverSocket;
+
+        private DiscardServer() throws IOException {
+            this.serverSocket = new ServerSocket();
+            this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            final Thread thread = new Thread(this::accept, "Arkitektonika-Discard-Server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @NotNull private String getUrl() {
+            return "http://127.0.0.1:" + this.serverSocket.getLocalPort();
+        }
+
+        private void accept() {
+            while (!this.serverSocket.isClosed()) {
+                try {
+                    final Socket socket = this.serverSocket.accept();
+                    final Thread thread = new Thread(() -> this.serve(socket), "Arkitektonika-Discard-Connection");
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (final IOException ignored) {
+                }
+            }
+        }
+
+        private void serve(@NotNull final Socket socket) {
+            try {
+                final InputStream inputStream = socket.getInputStream();
+                final OutputStream outputStream = socket.getOutputStream();
+                final byte[] buffer = new byte[65536];
+                long length;
+                while ((length = readHead(inputStream)) != -1) {
+                    while (length > 0) {
+                        final int read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, length));
+                        if (read == -1) {
+                            return;
+                        }
+                        length -= read;
+                    }
+                    outputStream.write(RESPONSE);
+                    outputStream.flush();
+                }
+            } catch (final IOException ignored) {
+            } finally {
+                try {
+                    socket.close();
+                } catch (final IOException ignored) {
+                }
+            }
+        }
+
+        /**
+         * Read a request head
+         *
+         * @param inputStream Connection stream
+         * @return Content length of the request, or {@code -1} if the connection has been closed before the end of the head
+         * @throws IOException If the head cannot be read
+         */
+        private static long readHead(@NotNull final InputStream inputStream) throws IOException {
+            final StringBuilder line = new StringBuilder();
+            long length = 0;
+            int read;
+            while ((read = inputStream.read()) != -1) {
+                if (read != '\n') {
+                    if (read != '\r') {
+                        line.append((char) read);
+                    }
+                    continue;
+                }
+                if (line.length() == 0) {
+                    return length;
+                }
+                final String header = line.toString().toLowerCase(Locale.ROOT);
+                if (header.startsWith("content-length:")) {
+                    length = Long.parseLong(header.substring("content-length:".length()).trim());
+                }
+                line.setLength(0);
+            }
+            return -1;
+        }
+
+        @Override public void close() throws IOException {
+            this.serverSocket.close();
+        }
+
+    }
+
+}
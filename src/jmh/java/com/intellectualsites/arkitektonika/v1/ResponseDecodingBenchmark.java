@@ -0,0 +1,71 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.v1;
+
+import com.google.gson.JsonObject;
+import com.intellectualsites.arkitektonika.transport.TransportResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of the JSON responses of the compatibility check and of uploads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseDecodingBenchmark {
+
+    private final ApiClient client = new ApiClient("http://localhost");
+    private final TransportResponse versionResponse = response("{\"version\":\"1.2.0\"}");
+    private final TransportResponse uploadResponse = response(
+        "{\"download_key\":\"6e1d82ab4d5b4b7e9a0fd1a0c83e2bf0\",\"delete_key\":\"b1a7c1d0e5f64c4c8b6b2a3f9d1e7c55\"}");
+
+    @Benchmark public JsonObject decodeVersion() {
+        return this.client.parse(this.versionResponse);
+    }
+
+    @Benchmark public String decodeUploadKeys() {
+        final JsonObject object = this.client.parse(this.uploadResponse);
+        return object.get("download_key").getAsString() + object.get("delete_key").getAsString();
+    }
+
+    private static TransportResponse response(final String body) {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        return new TransportResponse(200, "OK", bytes, bytes.length);
+    }
+
+}
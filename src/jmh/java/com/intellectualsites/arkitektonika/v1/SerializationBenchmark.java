@@ -0,0 +1,125 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.v1;
+
+import com.intellectualsites.arkitektonika.transport.RequestBody;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multipart encoding of schematics, both written to a stream (blocking and
+ * pooled transports) and read from the body stream (asynchronous transport)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"1024", "65536", "1048576", "52428800"})
+    private int size;
+
+    private final SchematicSerializer.ByteArraySerializer byteArraySerializer =
+        new SchematicSerializer.ByteArraySerializer(false);
+    private final SchematicSerializer.ByteBufferSerializer byteBufferSerializer =
+        new SchematicSerializer.ByteBufferSerializer(false);
+    private byte[] schematic;
+    private ByteBuffer directSchematic;
+
+    @Setup public void setup() {
+        this.schematic = new byte[this.size];
+        ThreadLocalRandom.current().nextBytes(this.schematic);
+        this.directSchematic = ByteBuffer.allocateDirect(this.size);
+        this.directSchematic.put(this.schematic).flip();
+    }
+
+    @Benchmark public long writeByteArray(final Blackhole blackhole) throws IOException {
+        return write(this.byteArraySerializer.toRequestBody(this.schematic), blackhole);
+    }
+
+    @Benchmark public long writeDirectBuffer(final Blackhole blackhole) throws IOException {
+        return write(this.byteBufferSerializer.toRequestBody(this.directSchematic), blackhole);
+    }
+
+    @Benchmark public long readByteArray() throws IOException {
+        final RequestBody body = this.byteArraySerializer.toRequestBody(this.schematic);
+        final byte[] buffer = new byte[SchematicSerializer.BUFFER_SIZE];
+        long total = 0;
+        try (final InputStream inputStream = body.open()) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                total += read;
+            }
+        }
+        return total;
+    }
+
+    private static long write(final RequestBody body, final Blackhole blackhole) throws IOException {
+        final CountingOutputStream outputStream = new CountingOutputStream(blackhole);
+        body.writeTo(outputStream);
+        return outputStream.count;
+    }
+
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private final Blackhole blackhole;
+        private long count;
+
+        private CountingOutputStream(final Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override public void write(final int b) {
+            this.blackhole.consume(b);
+            this.count++;
+        }
+
+        @Override public void write(final byte[] b, final int off, final int len) {
+            this.blackhole.consume(b);
+            this.count += len;
+        }
+
+    }
+
+}
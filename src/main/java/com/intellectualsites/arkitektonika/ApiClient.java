@@ -23,11 +23,27 @@
  */
 package com.intellectualsites.arkitektonika;
 
+import com.intellectualsites.arkitektonika.exceptions.ResourceRetrievalException;
+import com.intellectualsites.arkitektonika.exceptions.ResourceUploadException;
+import com.intellectualsites.arkitektonika.transport.LocalIOException;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 
 /**
  * Arkitektonika REST client
@@ -62,6 +78,65 @@ public interface ApiClient {
     @NotNull CompletableFuture<SchematicKeys> upload(@NotNull final File file,
         @NotNull final ExecutorService executorService);
 
+    /**
+     * Upload a schematic that is held in memory
+     *
+     * @param schematic       Schematic content
+     * @param executorService Executor service used to complete the request
+     * @return Future that completes with the access and deletion keys of the
+     * uploaded resource, or fails with an exception
+     */
+    @NotNull default CompletableFuture<SchematicKeys> upload(@NotNull final byte[] schematic,
+        @NotNull final ExecutorService executorService) {
+        return this.upload(() -> new ByteArrayInputStream(schematic), schematic.length, executorService);
+    }
+
+    /**
+     * Upload a schematic that is held in a buffer. The remaining bytes of the
+     * buffer are uploaded, and its position is left untouched
+     *
+     * @param schematic       Schematic content
+     * @param executorService Executor service used to complete the request
+     * @return Future that completes with the access and deletion keys of the
+     * uploaded resource, or fails with an exception
+     */
+    @NotNull default CompletableFuture<SchematicKeys> upload(@NotNull final ByteBuffer schematic,
+        @NotNull final ExecutorService executorService) {
+        final byte[] content = new byte[schematic.remaining()];
+        schematic.duplicate().get(content);
+        return this.upload(content, executorService);
+    }
+
+    /**
+     * Upload a schematic read from an input stream. The stream is opened when
+     * the request is sent, and closed once it has been read. The default
+     * implementation copies the stream to a temporary file, and uploads that
+     * file with {@link #upload(File, ExecutorService)}
+     *
+     * @param schematic       Supplier of the schematic stream
+     * @param length          Number of bytes the stream provides, or {@code -1} if unknown
+     * @param executorService Executor service used to complete the request
+     * @return Future that completes with the access and deletion keys of the
+     * uploaded resource, or fails with an exception
+     */
+    @NotNull default CompletableFuture<SchematicKeys> upload(@NotNull final Supplier<InputStream> schematic,
+        final long length, @NotNull final ExecutorService executorService) {
+        return CompletableFuture.supplyAsync(() -> {
+            Path file = null;
+            try (final InputStream inputStream = schematic.get()) {
+                file = Files.createTempFile("schematic", ".schem");
+                Files.copy(inputStream, file, StandardCopyOption.REPLACE_EXISTING);
+                return file;
+            } catch (final IOException e) {
+                if (file != null) {
+                    file.toFile().delete();
+                }
+                throw new ResourceUploadException("/upload", new LocalIOException(e));
+            }
+        }, executorService).thenCompose(file -> this.upload(file.toFile(), executorService)
+            .whenComplete((keys, throwable) -> file.toFile().delete()));
+    }
+
     /**
      * Check the status of a remote schematic
      *
@@ -92,4 +167,99 @@ public interface ApiClient {
     @NotNull CompletableFuture<Schematic> download(@NotNull final String key,
         @NotNull final ExecutorService executorService);
 
+    /**
+     * Attempt to download a schematic from the remote service and write
+     * it to a file. The file is created if it does not exist, and replaced
+     * if it does. If the download fails, the partially written file is removed
+     *
+     * @param key             Download key
+     * @param path            File to write the schematic to
+     * @param executorService Executor service used to complete the request
+     * @return Future that completes with the number of bytes written
+     */
+    @NotNull default CompletableFuture<Long> download(@NotNull final String key, @NotNull final Path path,
+        @NotNull final ExecutorService executorService) {
+        final String resource = String.format("/download/%s", key);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            } catch (final IOException e) {
+                throw new ResourceRetrievalException(resource, new LocalIOException(e));
+            }
+        }, executorService).thenCompose(channel -> this.download(key, channel, executorService)
+            .whenComplete((transferred, throwable) -> {
+                try {
+                    channel.close();
+                    if (throwable != null) {
+                        Files.deleteIfExists(path);
+                    }
+                } catch (final IOException e) {
+                    throw new ResourceRetrievalException(resource, new LocalIOException(e));
+                }
+            }));
+    }
+
+    /**
+     * Attempt to download a schematic from the remote service and write
+     * it to a stream. The stream will not be closed
+     *
+     * @param key             Download key
+     * @param outputStream    Stream to write the schematic to
+     * @param executorService Executor service used to complete the request
+     * @return Future that completes with the number of bytes written
+     */
+    @NotNull default CompletableFuture<Long> download(@NotNull final String key,
+        @NotNull final OutputStream outputStream, @NotNull final ExecutorService executorService) {
+        return this.download(key, Channels.newChannel(outputStream), executorService);
+    }
+
+    /**
+     * Attempt to download a schematic from the remote service and write
+     * it to a channel. The channel will not be closed. The default
+     * implementation downloads the schematic into memory first
+     *
+     * @param key             Download key
+     * @param channel         Channel to write the schematic to
+     * @param executorService Executor service used to complete the request
+     * @return Future that completes with the number of bytes written
+     */
+    @NotNull default CompletableFuture<Long> download(@NotNull final String key,
+        @NotNull final WritableByteChannel channel, @NotNull final ExecutorService executorService) {
+        return this.download(key, executorService).thenApplyAsync(schematic -> {
+            final ByteBuffer buffer = ByteBuffer.wrap(schematic.getContent());
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (final IOException e) {
+                throw new ResourceRetrievalException(String.format("/download/%s", key), new LocalIOException(e));
+            }
+            return (long) buffer.capacity();
+        }, executorService);
+    }
+
+    /**
+     * Attempt to download a schematic from the remote service and decode it
+     * while it is received. The reader is called on a thread of the executor
+     * service, and the schematic is never held in memory as a whole. The default
+     * implementation downloads the schematic into memory first
+     *
+     * @param key             Download key
+     * @param reader          Reader that decodes the schematic
+     * @param executorService Executor service used to complete the request
+     * @param <T>             Type of the decoded schematic
+     * @return Future that completes with the decoded schematic
+     */
+    @NotNull default <T> CompletableFuture<T> download(@NotNull final String key,
+        @NotNull final SchematicReader<T> reader, @NotNull final ExecutorService executorService) {
+        return this.download(key, executorService).thenApplyAsync(schematic -> {
+            try (final InputStream inputStream = new ByteArrayInputStream(schematic.getContent())) {
+                return reader.read(inputStream);
+            } catch (final IOException e) {
+                throw new ResourceRetrievalException(String.format("/download/%s", key), new LocalIOException(e));
+            }
+        }, executorService);
+    }
+
 }
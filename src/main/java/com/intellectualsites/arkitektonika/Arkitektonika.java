@@ -23,13 +23,47 @@
  */
 package com.intellectualsites.arkitektonika;
 
+import com.intellectualsites.arkitektonika.cache.CacheStatistics;
+import com.intellectualsites.arkitektonika.cache.DownloadCache;
+import com.intellectualsites.arkitektonika.cache.DownloadCacheSettings;
+import com.intellectualsites.arkitektonika.cache.StatusCache;
+import com.intellectualsites.arkitektonika.cache.StatusCacheSettings;
+import com.intellectualsites.arkitektonika.metrics.ClientMetricsListener;
+import com.intellectualsites.arkitektonika.transport.ConcurrencyLimitSettings;
+import com.intellectualsites.arkitektonika.transport.ConcurrencyLimiter;
+import com.intellectualsites.arkitektonika.transport.ConnectionPoolSettings;
+import com.intellectualsites.arkitektonika.transport.ConnectionPoolStatistics;
+import com.intellectualsites.arkitektonika.transport.ExchangeListener;
+import com.intellectualsites.arkitektonika.transport.HttpTransport;
+import com.intellectualsites.arkitektonika.transport.RetryPolicy;
+import com.intellectualsites.arkitektonika.transport.TransportType;
+import com.intellectualsites.arkitektonika.transport.Transports;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * Arkitektonika client class
@@ -39,7 +73,7 @@ import java.util.concurrent.Executors;
  * @since 2020-06-21
  */
 @SuppressWarnings("unused")
-public class Arkitektonika {
+public class Arkitektonika implements AutoCloseable {
 
     /**
      * Factory used to construct new {@link ApiClient} instances
@@ -47,12 +81,94 @@ public class Arkitektonika {
     private static final ClientFactory clientFactory = new ClientFactory();
 
     private final ApiClient client;
+    private final HttpTransport transport;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final DownloadCache downloadCache;
+    private final CircuitBreakingApiClient circuitBreaker;
+    private final CoalescingApiClient coalescingClient;
+    private final LoadBalancingApiClient loadBalancer;
     private final ExecutorService executorService;
+    private final boolean ownsTransport;
+    private final boolean ownsExecutorService;
+    private final int parallelism;
 
-    private Arkitektonika(@NotNull final String url, @NotNull final ApiVersion apiVersion,
-        @NotNull final ExecutorService executorService) {
-        this.client = clientFactory.getClient(apiVersion, url);
-        this.executorService = executorService;
+    private Arkitektonika(@NotNull final Builder builder) {
+        this.ownsExecutorService = builder.executorService == null;
+        if (builder.executorService != null) {
+            this.executorService = builder.executorService;
+        } else if (builder.virtualThreads) {
+            this.executorService = clientFactory.getVirtualThreadExecutorService();
+        } else {
+            this.executorService = clientFactory.getExecutorService(
+                builder.connectionPoolSettings.getMaxConnections());
+        }
+        this.ownsTransport = builder.transport == null;
+        HttpTransport transport = builder.transport != null ? builder.transport :
+            clientFactory.getTransport(builder.transportType, builder.connectionPoolSettings);
+        // Listeners are registered once the clients that use the transport have been created
+        final List<ExchangeListener> exchangeListeners = new CopyOnWriteArrayList<>();
+        if (builder.circuitBreakerSettings != null || builder.urls.size() > 1) {
+            // Observe every attempt on its own, without the time waiting for a permit or between retries
+            transport = Transports.observing(transport, (request, response, latency) -> {
+                for (final ExchangeListener listener : exchangeListeners) {
+                    listener.onResponse(request, response, latency);
+                }
+            });
+        }
+        if (builder.concurrencyLimitSettings != null) {
+            this.concurrencyLimiter = new ConcurrencyLimiter(builder.concurrencyLimitSettings);
+            transport = Transports.limiting(transport, this.concurrencyLimiter);
+        } else {
+            this.concurrencyLimiter = null;
+        }
+        if (builder.retryPolicy != null) {
+            // Every attempt acquires its own permit from the limiter
+            transport = Transports.retrying(transport, builder.retryPolicy);
+        }
+        this.transport = transport;
+        this.downloadCache = builder.downloadCacheSettings != null ?
+            new DownloadCache(builder.downloadCacheSettings) : null;
+        ApiClient client;
+        if (builder.urls.size() == 1) {
+            client = clientFactory.getClient(builder.version, builder.urls.get(0), this.transport,
+                builder.schematicValidation);
+            this.loadBalancer = null;
+        } else {
+            final Map<String, ApiClient> clients = new LinkedHashMap<>();
+            for (final String url : builder.urls) {
+                clients.put(url, clientFactory.getClient(builder.version, url, this.transport,
+                    builder.schematicValidation));
+            }
+            client = this.loadBalancer = new LoadBalancingApiClient(clients, builder.loadBalancerSettings);
+            exchangeListeners.add(this.loadBalancer);
+        }
+        if (builder.circuitBreakerSettings != null) {
+            client = this.circuitBreaker = new CircuitBreakingApiClient(client, builder.circuitBreakerSettings);
+            exchangeListeners.add(this.circuitBreaker);
+        } else {
+            this.circuitBreaker = null;
+        }
+        if (builder.requestCoalescing) {
+            client = this.coalescingClient = new CoalescingApiClient(client, builder.metricsListener);
+        } else {
+            this.coalescingClient = null;
+        }
+        if (this.downloadCache != null) {
+            client = new CachingApiClient(client, this.downloadCache);
+        }
+        if (builder.deduplicationCapacity > 0) {
+            client = new DeduplicatingApiClient(client, builder.deduplicationCapacity);
+        }
+        if (builder.statusCacheSettings != null) {
+            // Added last, so that uploads are only de-duplicated after a fresh status check
+            client = new StatusCachingApiClient(client, new StatusCache(builder.statusCacheSettings));
+        }
+        if (builder.metricsListener != null) {
+            // Added last, so that the listener observes the latency seen by callers
+            client = new MetricsApiClient(client, builder.metricsListener);
+        }
+        this.client = client;
+        this.parallelism = builder.connectionPoolSettings.getMaxConnections();
     }
 
     /**
@@ -74,6 +190,65 @@ public class Arkitektonika {
         return this.client;
     }
 
+    /**
+     * Get a snapshot of the statistics of the connection pool, which can
+     * be used to confirm how often connections are reused
+     *
+     * @return Pool statistics, or {@code null} if the transport does not track them
+     */
+    @Nullable public ConnectionPoolStatistics getConnectionPoolStatistics() {
+        return this.transport.getPoolStatistics();
+    }
+
+    /**
+     * Get a snapshot of the statistics of the download cache
+     *
+     * @return Cache statistics, or {@code null} if no download cache has been configured
+     */
+    @Nullable public CacheStatistics getDownloadCacheStatistics() {
+        return this.downloadCache == null ? null : this.downloadCache.getStatistics();
+    }
+
+    /**
+     * Get the concurrency limiter, which exposes the current limit and the
+     * number of queued requests
+     *
+     * @return Concurrency limiter, or {@code null} if no concurrency limit has been configured
+     */
+    @Nullable public ConcurrencyLimiter getConcurrencyLimiter() {
+        return this.concurrencyLimiter;
+    }
+
+    /**
+     * Get the state of the circuit breaker
+     *
+     * @return Breaker state, which is always {@link CircuitState#CLOSED} if no
+     * circuit breaker has been configured
+     */
+    @NotNull public CircuitState getCircuitState() {
+        return this.circuitBreaker == null ? CircuitState.CLOSED : this.circuitBreaker.getState();
+    }
+
+    /**
+     * Get a snapshot of the state of every endpoint, which can be used to
+     * monitor how requests are spread over the endpoints
+     *
+     * @return Endpoint statistics, or an empty list if the client has a single endpoint
+     */
+    @NotNull public List<EndpointStatistics> getEndpointStatistics() {
+        return this.loadBalancer == null ? Collections.emptyList() : this.loadBalancer.getStatistics();
+    }
+
+    /**
+     * Get the number of downloads and status checks that shared the request
+     * of a concurrent call with the same key, instead of sending their own
+     *
+     * @return Number of coalesced calls, or {@code 0} if request coalescing is disabled
+     */
+    public long getCoalescedRequestCount() {
+        return this.coalescingClient == null ? 0 : this.coalescingClient.getCoalescedRequests();
+    }
+
     /**
      * Check if the specified address is compatible with the
      * Arkitektonika client
@@ -95,6 +270,91 @@ public class Arkitektonika {
         return this.client.upload(file, this.executorService);
     }
 
+    /**
+     * Upload a schematic that is held in memory
+     * and return the generated access keys
+     *
+     * @param schematic Schematic content
+     * @return Future that completes with the generated keys
+     */
+    @NotNull public CompletableFuture<SchematicKeys> upload(@NotNull final byte[] schematic) {
+        return this.client.upload(schematic, this.executorService);
+    }
+
+    /**
+     * Upload the remaining content of a buffer as a schematic
+     * and return the generated access keys. The position of
+     * the buffer is left untouched
+     *
+     * @param schematic Schematic content
+     * @return Future that completes with the generated keys
+     */
+    @NotNull public CompletableFuture<SchematicKeys> upload(@NotNull final ByteBuffer schematic) {
+        return this.client.upload(schematic, this.executorService);
+    }
+
+    /**
+     * Upload a schematic of unknown length read from a stream
+     * and return the generated access keys. The body is sent
+     * using chunked transfer encoding
+     *
+     * @param schematic Supplier of the schematic stream
+     * @return Future that completes with the generated keys
+     */
+    @NotNull public CompletableFuture<SchematicKeys> upload(@NotNull final Supplier<InputStream> schematic) {
+        return this.upload(schematic, -1);
+    }
+
+    /**
+     * Upload a schematic read from a stream
+     * and return the generated access keys
+     *
+     * @param schematic Supplier of the schematic stream
+     * @param length    Number of bytes the stream provides, or {@code -1} if unknown
+     * @return Future that completes with the generated keys
+     */
+    @NotNull public CompletableFuture<SchematicKeys> upload(@NotNull final Supplier<InputStream> schematic,
+        final long length) {
+        return this.client.upload(schematic, length, this.executorService);
+    }
+
+    /**
+     * Upload a batch of schematic files, with at most {@code parallelism} uploads in
+     * flight at any time. Files are only pulled from the iterable once an earlier
+     * upload has completed. A failed upload does not abort the batch, but is reported
+     * to the callback like any other result
+     *
+     * @param files       Schematic files
+     * @param parallelism Maximum number of concurrent uploads
+     * @param callback    Callback that receives the result of every upload as soon as
+     *                    it completes. It may be called concurrently from multiple threads
+     * @return Future that completes once every file has been handled. It fails if the
+     * iterable or the callback throws an exception, after the uploads in flight have completed
+     */
+    @NotNull public CompletableFuture<Void> uploadAll(@NotNull final Iterable<File> files, final int parallelism,
+        @NotNull final Consumer<UploadResult<File>> callback) {
+        return new FanOut<File, SchematicKeys>(files.iterator(), this::upload,
+            (file, keys, failure) -> callback.accept(new UploadResult<>(file, keys, failure)), parallelism).start();
+    }
+
+    /**
+     * Upload a batch of schematic files, with at most {@code parallelism} uploads in
+     * flight at any time. The stream is consumed lazily, and is not closed. A failed
+     * upload does not abort the batch, but is reported to the callback like any other result
+     *
+     * @param paths       Schematic files
+     * @param parallelism Maximum number of concurrent uploads
+     * @param callback    Callback that receives the result of every upload as soon as
+     *                    it completes. It may be called concurrently from multiple threads
+     * @return Future that completes once every file has been handled. It fails if the
+     * stream or the callback throws an exception, after the uploads in flight have completed
+     */
+    @NotNull public CompletableFuture<Void> uploadAll(@NotNull final Stream<Path> paths, final int parallelism,
+        @NotNull final Consumer<UploadResult<Path>> callback) {
+        return new FanOut<Path, SchematicKeys>(paths.iterator(), path -> this.upload(path.toFile()),
+            (path, keys, failure) -> callback.accept(new UploadResult<>(path, keys, failure)), parallelism).start();
+    }
+
     /**
      * Check the status of a remote schematic
      *
@@ -105,6 +365,54 @@ public class Arkitektonika {
         return this.client.checkStatus(key, this.executorService);
     }
 
+    /**
+     * Check the status of many remote schematics. Duplicate keys are only checked
+     * once, and at most as many requests as the connection pool holds connections
+     * are in flight at any time
+     *
+     * @param keys Schematic access keys
+     * @return Future that completes with the status or failure of every distinct key
+     * @see #checkStatusAll(Collection, int)
+     */
+    @NotNull public CompletableFuture<StatusResults> checkStatusAll(@NotNull final Collection<String> keys) {
+        return this.checkStatusAll(keys, this.parallelism);
+    }
+
+    /**
+     * Check the status of many remote schematics. Duplicate keys are only checked
+     * once, and at most {@code parallelism} requests are in flight at any time.
+     * A failed status check does not abort the batch, but is reported in the results
+     *
+     * @param keys        Schematic access keys
+     * @param parallelism Maximum number of concurrent requests
+     * @return Future that completes with the status or failure of every distinct key
+     */
+    @NotNull public CompletableFuture<StatusResults> checkStatusAll(@NotNull final Collection<String> keys,
+        final int parallelism) {
+        final Set<String> distinct = new LinkedHashSet<>(keys);
+        final Map<String, ResourceStatus> statuses = new ConcurrentHashMap<>(distinct.size());
+        final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        return new FanOut<String, ResourceStatus>(distinct.iterator(), this::checkStatus, (key, status, failure) -> {
+            if (failure != null) {
+                failures.put(key, failure);
+            } else {
+                statuses.put(key, status);
+            }
+        }, parallelism).start().thenApply(ignored -> {
+            final Map<String, ResourceStatus> orderedStatuses = new LinkedHashMap<>(statuses.size());
+            final Map<String, Throwable> orderedFailures = new LinkedHashMap<>(failures.size());
+            for (final String key : distinct) {
+                final ResourceStatus status = statuses.get(key);
+                if (status != null) {
+                    orderedStatuses.put(key, status);
+                } else {
+                    orderedFailures.put(key, failures.get(key));
+                }
+            }
+            return new StatusResults(orderedStatuses, orderedFailures);
+        });
+    }
+
     /**
      * Attempt to delete a schematic from the remote service
      *
@@ -125,6 +433,77 @@ public class Arkitektonika {
         return this.client.download(key, this.executorService);
     }
 
+    /**
+     * Attempt to download a schematic from the remote service and write it
+     * to a file. The schematic is copied in fixed-size chunks, and is never
+     * held in memory as a whole
+     *
+     * @param key  Download key
+     * @param path File to write the schematic to
+     * @return Future that completes with the number of bytes written
+     */
+    @NotNull public CompletableFuture<Long> download(@NotNull final String key, @NotNull final Path path) {
+        return this.client.download(key, path, this.executorService);
+    }
+
+    /**
+     * Attempt to download a schematic from the remote service and write it
+     * to a stream. The schematic is copied in fixed-size chunks, and is never
+     * held in memory as a whole. The stream will not be closed
+     *
+     * @param key          Download key
+     * @param outputStream Stream to write the schematic to
+     * @return Future that completes with the number of bytes written
+     */
+    @NotNull public CompletableFuture<Long> download(@NotNull final String key,
+        @NotNull final OutputStream outputStream) {
+        return this.client.download(key, outputStream, this.executorService);
+    }
+
+    /**
+     * Attempt to download a schematic from the remote service and write it
+     * to a channel. The schematic is copied in fixed-size chunks, and is never
+     * held in memory as a whole. The channel will not be closed
+     *
+     * @param key     Download key
+     * @param channel Channel to write the schematic to
+     * @return Future that completes with the number of bytes written
+     */
+    @NotNull public CompletableFuture<Long> download(@NotNull final String key,
+        @NotNull final WritableByteChannel channel) {
+        return this.client.download(key, channel, this.executorService);
+    }
+
+    /**
+     * Attempt to download a schematic from the remote service and decode it while
+     * it is received. The reader runs on a thread of the executor service, and the
+     * schematic is never held in memory as a whole
+     *
+     * @param key    Download key
+     * @param reader Reader that decodes the schematic
+     * @param <T>    Type of the decoded schematic
+     * @return Future that completes with the decoded schematic
+     */
+    @NotNull public <T> CompletableFuture<T> download(@NotNull final String key,
+        @NotNull final SchematicReader<T> reader) {
+        return this.client.download(key, reader, this.executorService);
+    }
+
+    /**
+     * Release the resources held by the client. The executor service and transport are
+     * only shut down if they have been created by the client, and not provided through
+     * the builder. Requests that are in flight are completed, but the client must not
+     * be used to send new requests
+     */
+    @Override public void close() {
+        if (this.ownsExecutorService) {
+            this.executorService.shutdown();
+        }
+        if (this.ownsTransport) {
+            this.transport.close();
+        }
+    }
+
 
     /**
      * Builder class for {@link Arkitektonika} instances.
@@ -133,9 +512,23 @@ public class Arkitektonika {
      */
     public static final class Builder {
 
-        private String url;
+        private List<String> urls;
+        private LoadBalancerSettings loadBalancerSettings = LoadBalancerSettings.defaults();
         private ApiVersion version = ApiVersion.V1_0_0;
-        private ExecutorService executorService = Executors.newCachedThreadPool();
+        private ExecutorService executorService;
+        private boolean virtualThreads;
+        private TransportType transportType = TransportType.BLOCKING;
+        private HttpTransport transport;
+        private ConnectionPoolSettings connectionPoolSettings = ConnectionPoolSettings.defaults();
+        private DownloadCacheSettings downloadCacheSettings;
+        private int deduplicationCapacity;
+        private boolean requestCoalescing;
+        private boolean schematicValidation;
+        private StatusCacheSettings statusCacheSettings;
+        private RetryPolicy retryPolicy;
+        private CircuitBreakerSettings circuitBreakerSettings;
+        private ConcurrencyLimitSettings concurrencyLimitSettings;
+        private ClientMetricsListener metricsListener;
 
         private Builder() {
         }
@@ -147,7 +540,37 @@ public class Arkitektonika {
          * @return The builder instance
          */
         @NotNull public Builder withUrl(@NotNull final String url) {
-            this.url = Objects.requireNonNull(url);
+            this.urls = Collections.singletonList(Objects.requireNonNull(url));
+            return this;
+        }
+
+        /**
+         * Specify the base URLs of multiple Arkitektonika instances that share
+         * their storage. Requests are spread over the instances, and instances
+         * that fail repeatedly are avoided until they have recovered
+         *
+         * @param urls Arkitektonika URLs
+         * @return The builder instance
+         * @see #withLoadBalancing(LoadBalancerSettings) to configure how the instance of a request is chosen
+         */
+        @NotNull public Builder withUrls(@NotNull final String... urls) {
+            final List<String> list = new ArrayList<>(new LinkedHashSet<>(Arrays.asList(urls)));
+            if (list.isEmpty() || list.contains(null)) {
+                throw new IllegalArgumentException("At least one URL must be provided, and none may be null");
+            }
+            this.urls = list;
+            return this;
+        }
+
+        /**
+         * Specify how requests are spread over the instances that have been configured
+         * with {@link #withUrls(String...)}. Defaults to {@link LoadBalancerSettings#defaults()}
+         *
+         * @param loadBalancerSettings Load balancer settings
+         * @return The builder instance
+         */
+        @NotNull public Builder withLoadBalancing(@NotNull final LoadBalancerSettings loadBalancerSettings) {
+            this.loadBalancerSettings = Objects.requireNonNull(loadBalancerSettings);
             return this;
         }
 
@@ -164,7 +587,10 @@ public class Arkitektonika {
         }
 
         /**
-         * Specify the executor service that should be used by the client
+         * Specify the executor service that should be used by the client. By default,
+         * the client uses its own executor with one thread per pooled connection, which
+         * is shut down when the client is {@link Arkitektonika#close() closed}. A provided
+         * executor service is not shut down by the client
          *
          * @param executorService Executor service
          * @return The builder instance
@@ -172,6 +598,187 @@ public class Arkitektonika {
         @NotNull public Builder withExecutorService(
             @NotNull final ExecutorService executorService) {
             this.executorService = Objects.requireNonNull(executorService);
+            this.virtualThreads = false;
+            return this;
+        }
+
+        /**
+         * Run every request on its own virtual thread, so that blocking transports do
+         * not occupy a platform thread while they wait for the service. The executor is
+         * shut down when the client is {@link Arkitektonika#close() closed}. Requires
+         * Java 21 or newer
+         *
+         * @return The builder instance
+         */
+        @NotNull public Builder withVirtualThreads() {
+            this.virtualThreads = true;
+            this.executorService = null;
+            return this;
+        }
+
+        /**
+         * Specify the built-in transport that should be used to perform
+         * the HTTP exchanges. Defaults to {@link TransportType#BLOCKING}
+         *
+         * @param transportType Transport type
+         * @return The builder instance
+         */
+        @NotNull public Builder withTransport(@NotNull final TransportType transportType) {
+            this.transportType = Objects.requireNonNull(transportType);
+            this.transport = null;
+            return this;
+        }
+
+        /**
+         * Specify how connections are reused by the built-in transports. Use
+         * {@link TransportType#POOLED} to configure the pool size and idle
+         * timeout, or {@link TransportType#ASYNC} to multiplex requests over HTTP/2
+         *
+         * @param connectionPoolSettings Connection pool settings
+         * @return The builder instance
+         */
+        @NotNull public Builder withConnectionPool(@NotNull final ConnectionPoolSettings connectionPoolSettings) {
+            this.connectionPoolSettings = Objects.requireNonNull(connectionPoolSettings);
+            return this;
+        }
+
+        /**
+         * Specify a custom transport that should be used to perform
+         * the HTTP exchanges
+         *
+         * @param transport Transport
+         * @return The builder instance
+         */
+        @NotNull public Builder withTransport(@NotNull final HttpTransport transport) {
+            this.transport = Objects.requireNonNull(transport);
+            return this;
+        }
+
+        /**
+         * Retry requests that failed because of a transient error, such as a reset
+         * connection or a 503 response. Uploads are only retried if the connection
+         * could not be established, so that they never create duplicate schematics.
+         * Requests are not retried by default
+         *
+         * @param retryPolicy Retry policy
+         * @return The builder instance
+         */
+        @NotNull public Builder withRetryPolicy(@NotNull final RetryPolicy retryPolicy) {
+            this.retryPolicy = Objects.requireNonNull(retryPolicy);
+            return this;
+        }
+
+        /**
+         * Report every operation of the client to a listener, including operations
+         * that are served from a cache
+         *
+         * @param metricsListener Metrics listener
+         * @return The builder instance
+         * @see com.intellectualsites.arkitektonika.metrics.HistogramMetricsListener for a listener
+         * that records latency histograms
+         */
+        @NotNull public Builder withMetricsListener(@NotNull final ClientMetricsListener metricsListener) {
+            this.metricsListener = Objects.requireNonNull(metricsListener);
+            return this;
+        }
+
+        /**
+         * Limit the number of requests in flight. The limit adapts to the latency and
+         * errors of the server, and requests beyond the limit wait in a bounded queue.
+         * Requests are not limited by default
+         *
+         * @param concurrencyLimitSettings Concurrency limit settings
+         * @return The builder instance
+         */
+        @NotNull public Builder withConcurrencyLimit(@NotNull final ConcurrencyLimitSettings concurrencyLimitSettings) {
+            this.concurrencyLimitSettings = Objects.requireNonNull(concurrencyLimitSettings);
+            return this;
+        }
+
+        /**
+         * Stop sending requests once a large share of the recent calls has failed or
+         * been slow. While the breaker is open, calls fail immediately with a
+         * {@link com.intellectualsites.arkitektonika.exceptions.CircuitBreakerOpenException}.
+         * Cached schematics and statuses are still served
+         *
+         * @param circuitBreakerSettings Circuit breaker settings
+         * @return The builder instance
+         */
+        @NotNull public Builder withCircuitBreaker(@NotNull final CircuitBreakerSettings circuitBreakerSettings) {
+            this.circuitBreakerSettings = Objects.requireNonNull(circuitBreakerSettings);
+            return this;
+        }
+
+        /**
+         * Cache downloaded schematics locally. Schematics behind an access key never
+         * change, so repeated downloads of the same key are served from the cache.
+         * Cached schematics are removed once the service reports them as deleted,
+         * or once they are deleted through this client. Schematics served from memory
+         * share their content, which must therefore not be modified
+         *
+         * @param downloadCacheSettings Cache settings
+         * @return The builder instance
+         */
+        @NotNull public Builder withDownloadCache(@NotNull final DownloadCacheSettings downloadCacheSettings) {
+            this.downloadCacheSettings = Objects.requireNonNull(downloadCacheSettings);
+            return this;
+        }
+
+        /**
+         * Cache the results of status checks. Every status is cached for its own
+         * time to live, and is removed once the schematic is deleted through this client
+         *
+         * @param statusCacheSettings Cache settings
+         * @return The builder instance
+         * @see StatusCacheSettings#defaults() for the default time to live of every status
+         */
+        @NotNull public Builder withStatusCache(@NotNull final StatusCacheSettings statusCacheSettings) {
+            this.statusCacheSettings = Objects.requireNonNull(statusCacheSettings);
+            return this;
+        }
+
+        /**
+         * Let concurrent downloads and status checks of the same key share a
+         * single request, instead of each sending their own. Downloaded schematics
+         * are then shared between the callers, and must not be modified. Callers that
+         * join a request are reported to {@link ClientMetricsListener#onCoalesced(
+         * com.intellectualsites.arkitektonika.metrics.Operation) the metrics listener}
+         *
+         * @return The builder instance
+         */
+        @NotNull public Builder withRequestCoalescing() {
+            this.requestCoalescing = true;
+            return this;
+        }
+
+        /**
+         * Do not upload the same schematic twice. Schematics are hashed before they
+         * are uploaded, and uploads of a known schematic return the keys of the earlier
+         * upload, once a status check has confirmed that it is still available.
+         * Schematics read from a stream are always uploaded
+         *
+         * @param capacity Maximum number of uploads that are remembered
+         * @return The builder instance
+         */
+        @NotNull public Builder withUploadDeduplication(final int capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("The capacity must be positive");
+            }
+            this.deduplicationCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * Validate schematics while they are uploaded. The gzip header, the NBT
+         * structure and the dimensions of Sponge and MCEdit schematics are checked as
+         * the schematic is streamed, so invalid schematics fail with an
+         * {@link com.intellectualsites.arkitektonika.exceptions.InvalidFormatException}
+         * without being sent in full, and without reading the schematic twice
+         *
+         * @return The builder instance
+         */
+        @NotNull public Builder withSchematicValidation() {
+            this.schematicValidation = true;
             return this;
         }
 
@@ -180,12 +787,14 @@ public class Arkitektonika {
          * has been specified
          *
          * @return Created Arkitektonika instance
+         * @throws UnsupportedOperationException If virtual threads have been requested,
+         *                                       but are not supported by the runtime
          */
         @NotNull public Arkitektonika build() {
-            if (this.url == null) {
+            if (this.urls == null) {
                 throw new NullPointerException("No URL was provided");
             }
-            return new Arkitektonika(this.url, this.version, this.executorService);
+            return new Arkitektonika(this);
         }
 
     }
@@ -0,0 +1,315 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import com.intellectualsites.arkitektonika.cache.DownloadCache;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * {@link ApiClient} that serves downloads from a {@link DownloadCache}. Schematics
+ * are added to the cache while they are downloaded, and are removed once the
+ * service reports them as deleted, or once they are deleted through this client
+ */
+final class CachingApiClient extends InvalidatingApiClient {
+
+    private final DownloadCache cache;
+
+    CachingApiClient(@NotNull final ApiClient delegate, @NotNull final DownloadCache cache) {
+        super(delegate);
+        this.cache = cache;
+    }
+
+    @Override protected void invalidate(@NotNull final String accessKey) {
+        this.cache.invalidate(accessKey);
+    }
+
+    @NotNull @Override public CompletableFuture<ResourceStatus> checkStatus(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return super.checkStatus(key, executorService).thenApply(status -> {
+            if (status != ResourceStatus.OK) {
+                this.cache.invalidate(key);
+            }
+            return status;
+        });
+    }
+
+    @NotNull @Override public CompletableFuture<Schematic> download(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        final byte[] content = this.cache.getFromMemory(key);
+        if (content != null) {
+            return CompletableFuture.completedFuture(new Schematic(key, content));
+        }
+        return CompletableFuture.supplyAsync(() -> this.cache.get(key), executorService).thenCompose(cached -> {
+            if (cached != null) {
+                return CompletableFuture.completedFuture(new Schematic(key, cached));
+            }
+            final long stamp = this.cache.stamp();
+            return super.download(key, executorService).thenApply(schematic -> {
+                this.cache.put(key, schematic.getContent(), stamp);
+                return schematic;
+            });
+        });
+    }
+
+    @NotNull @Override public CompletableFuture<Long> download(@NotNull final String key, @NotNull final Path path,
+        @NotNull final ExecutorService executorService) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                return this.cache.transferTo(key, channel);
+            } catch (final IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executorService).thenCompose(transferred -> {
+            if (transferred >= 0) {
+                return CompletableFuture.completedFuture(transferred);
+            }
+            final long stamp = this.cache.stamp();
+            return super.download(key, path, executorService).thenApply(length -> {
+                try {
+                    this.cache.store(key, path, stamp);
+                } catch (final IOException ignored) {
+                    // The cache is best effort
+                }
+                return length;
+            });
+        });
+    }
+
+    @NotNull @Override public CompletableFuture<Long> download(@NotNull final String key,
+        @NotNull final OutputStream outputStream, @NotNull final ExecutorService executorService) {
+        return this.download(key, Channels.newChannel(outputStream), executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Long> download(@NotNull final String key,
+        @NotNull final WritableByteChannel channel, @NotNull final ExecutorService executorService) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.cache.transferTo(key, channel);
+            } catch (final IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executorService).thenCompose(transferred -> {
+            if (transferred >= 0) {
+                return CompletableFuture.completedFuture(transferred);
+            }
+            final TeeChannel tee = new TeeChannel(channel, this.newWriter(key));
+            return super.download(key, tee, executorService).whenComplete((length, failure) -> {
+                if (failure == null) {
+                    tee.commit();
+                } else {
+                    tee.abort();
+                }
+            });
+        });
+    }
+
+    @NotNull @Override public <T> CompletableFuture<T> download(@NotNull final String key,
+        @NotNull final SchematicReader<T> reader, @NotNull final ExecutorService executorService) {
+        return CompletableFuture.supplyAsync(() -> this.cache.get(key), executorService).thenCompose(cached -> {
+            if (cached != null) {
+                final CompletableFuture<T> future = new CompletableFuture<>();
+                try {
+                    future.complete(reader.read(new ByteArrayInputStream(cached)));
+                } catch (final IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+                return future;
+            }
+            final DownloadCache.Writer writer = this.newWriter(key);
+            final TeeInputStream[] tee = new TeeInputStream[1];
+            return super.download(key, inputStream -> {
+                tee[0] = new TeeInputStream(inputStream, writer);
+                final T schematic = reader.read(tee[0]);
+                // Read the part of the schematic that the reader skipped, so that it is cached as a whole
+                tee[0].drain();
+                return schematic;
+            }, executorService).whenComplete((schematic, failure) -> {
+                if (failure == null && tee[0] != null) {
+                    tee[0].commit();
+                } else if (writer != null) {
+                    writer.close();
+                }
+            });
+        });
+    }
+
+    private DownloadCache.Writer newWriter(@NotNull final String key) {
+        try {
+            return this.cache.newWriter(key);
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Channel that writes to the target channel and to the cache. Failures of
+     * the cache are ignored, and only cause the schematic to not be cached
+     */
+    private static final class TeeChannel implements WritableByteChannel {
+
+        private final WritableByteChannel target;
+        private DownloadCache.Writer writer;
+
+        private TeeChannel(@NotNull final WritableByteChannel target, final DownloadCache.Writer writer) {
+            this.target = target;
+            this.writer = writer;
+        }
+
+        @Override public int write(@NotNull final ByteBuffer source) throws IOException {
+            final ByteBuffer copy = source.duplicate();
+            final int written = this.target.write(source);
+            if (this.writer != null && written > 0) {
+                copy.limit(copy.position() + written);
+                try {
+                    this.writer.write(copy);
+                } catch (final IOException e) {
+                    this.abort();
+                }
+            }
+            return written;
+        }
+
+        private void commit() {
+            if (this.writer != null) {
+                try {
+                    this.writer.commit();
+                } catch (final IOException ignored) {
+                    // The cache is best effort
+                }
+                this.abort();
+            }
+        }
+
+        private void abort() {
+            if (this.writer != null) {
+                this.writer.close();
+                this.writer = null;
+            }
+        }
+
+        @Override public boolean isOpen() {
+            return this.target.isOpen();
+        }
+
+        @Override public void close() throws IOException {
+            this.target.close();
+        }
+
+    }
+
+
+    /**
+     * Stream that writes everything that is read from it to the cache. Failures
+     * of the cache are ignored, and only cause the schematic to not be cached
+     */
+    private static final class TeeInputStream extends FilterInputStream {
+
+        private DownloadCache.Writer writer;
+
+        private TeeInputStream(@NotNull final InputStream inputStream, final DownloadCache.Writer writer) {
+            super(inputStream);
+            this.writer = writer;
+        }
+
+        @Override public int read() throws IOException {
+            final int read = super.read();
+            if (read != -1) {
+                this.copy(new byte[] {(byte) read}, 0, 1);
+            }
+            return read;
+        }
+
+        @Override public int read(@NotNull final byte[] bytes, final int offset, final int length)
+            throws IOException {
+            final int read = super.read(bytes, offset, length);
+            if (read > 0) {
+                this.copy(bytes, offset, read);
+            }
+            return read;
+        }
+
+        @Override public long skip(final long length) throws IOException {
+            final byte[] buffer = new byte[(int) Math.min(length, 8192)];
+            final int read = length <= 0 ? 0 : this.read(buffer, 0, buffer.length);
+            return Math.max(0, read);
+        }
+
+        @Override public boolean markSupported() {
+            return false;
+        }
+
+        private void copy(@NotNull final byte[] bytes, final int offset, final int length) {
+            if (this.writer != null) {
+                try {
+                    this.writer.write(ByteBuffer.wrap(bytes, offset, length));
+                } catch (final IOException e) {
+                    this.abort();
+                }
+            }
+        }
+
+        private void drain() throws IOException {
+            final byte[] buffer = new byte[8192];
+            while (this.writer != null && this.read(buffer) != -1) {
+                // Only read the rest of the schematic if it can still be cached
+            }
+        }
+
+        private void commit() {
+            if (this.writer != null) {
+                try {
+                    this.writer.commit();
+                } catch (final IOException ignored) {
+                    // The cache is best effort
+                }
+                this.abort();
+            }
+        }
+
+        private void abort() {
+            if (this.writer != null) {
+                this.writer.close();
+                this.writer = null;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Settings of the circuit breaker of a client
+ *
+ * @see CircuitBreakerSettings#builder() to create new settings
+ */
+public final class CircuitBreakerSettings {
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final Duration slowCallThreshold;
+    private final Duration openDuration;
+
+    private CircuitBreakerSettings(final int windowSize, final int minimumCalls, final double failureRateThreshold,
+        @NotNull final Duration slowCallThreshold, @NotNull final Duration openDuration) {
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallThreshold = slowCallThreshold;
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * Create a new {@link CircuitBreakerSettings} {@link Builder builder}
+     *
+     * @return New builder
+     */
+    @NotNull public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the default settings
+     *
+     * @return Default settings
+     */
+    @NotNull public static CircuitBreakerSettings defaults() {
+        return builder().build();
+    }
+
+    /**
+     * Get the number of recent calls that the failure rate is computed from
+     *
+     * @return Window size
+     */
+    public int getWindowSize() {
+        return this.windowSize;
+    }
+
+    /**
+     * Get the number of calls that have to be recorded before the breaker can open
+     *
+     * @return Minimum number of calls
+     */
+    public int getMinimumCalls() {
+        return this.minimumCalls;
+    }
+
+    /**
+     * Get the failure rate at which the breaker opens
+     *
+     * @return Failure rate between 0 and 1
+     */
+    public double getFailureRateThreshold() {
+        return this.failureRateThreshold;
+    }
+
+    /**
+     * Get the latency above which a response counts as slow
+     *
+     * @return Slow call threshold
+     */
+    @NotNull public Duration getSlowCallThreshold() {
+        return this.slowCallThreshold;
+    }
+
+    /**
+     * Get the time that the breaker stays open before the server is probed
+     *
+     * @return Open duration
+     */
+    @NotNull public Duration getOpenDuration() {
+        return this.openDuration;
+    }
+
+
+    /**
+     * Builder class for {@link CircuitBreakerSettings} instances.
+     *
+     * @see CircuitBreakerSettings#builder() to get a new builder instance
+     */
+    public static final class Builder {
+
+        private int windowSize = 20;
+        private int minimumCalls = 10;
+        private double failureRateThreshold = 0.5;
+        private Duration slowCallThreshold = Duration.ofSeconds(10);
+        private Duration openDuration = Duration.ofSeconds(30);
+
+        private Builder() {
+        }
+
+        /**
+         * Specify how many recent calls the failure rate is computed from, and
+         * how many calls have to be recorded before the breaker can open.
+         * Defaults to 20 and 10
+         *
+         * @param windowSize   Window size
+         * @param minimumCalls Minimum number of calls
+         * @return The builder instance
+         */
+        @NotNull public Builder withWindow(final int windowSize, final int minimumCalls) {
+            if (minimumCalls < 1 || windowSize < minimumCalls) {
+                throw new IllegalArgumentException("Invalid window: " + minimumCalls + " of " + windowSize);
+            }
+            this.windowSize = windowSize;
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * Specify the failure rate at which the breaker opens. Failed requests and
+         * server errors count as failures, while responses that indicate a client
+         * error, such as a missing schematic, do not. The breaker also opens once
+         * this share of the recent responses is slower than the slow call threshold.
+         * Defaults to 0.5
+         *
+         * @param failureRateThreshold Failure rate between 0 and 1
+         * @return The builder instance
+         */
+        @NotNull public Builder withFailureRateThreshold(final double failureRateThreshold) {
+            if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+                throw new IllegalArgumentException("The failure rate must be between 0 and 1");
+            }
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * Specify the latency above which a response counts as slow. The latency of a response
+         * ends with its head, and does not include the time a request waits for a thread or
+         * between retries. Defaults to 10 seconds
+         *
+         * @param slowCallThreshold Slow call threshold
+         * @return The builder instance
+         */
+        @NotNull public Builder withSlowCallThreshold(@NotNull final Duration slowCallThreshold) {
+            this.slowCallThreshold = Objects.requireNonNull(slowCallThreshold);
+            return this;
+        }
+
+        /**
+         * Specify the time that the breaker stays open. Afterwards, the server is
+         * probed with a compatibility check, and the breaker closes once the probe
+         * succeeds. Defaults to 30 seconds
+         *
+         * @param openDuration Open duration
+         * @return The builder instance
+         */
+        @NotNull public Builder withOpenDuration(@NotNull final Duration openDuration) {
+            this.openDuration = Objects.requireNonNull(openDuration);
+            return this;
+        }
+
+        /**
+         * Create the settings
+         *
+         * @return Created settings
+         */
+        @NotNull public CircuitBreakerSettings build() {
+            return new CircuitBreakerSettings(this.windowSize, this.minimumCalls, this.failureRateThreshold,
+                this.slowCallThreshold, this.openDuration);
+        }
+
+    }
+
+}
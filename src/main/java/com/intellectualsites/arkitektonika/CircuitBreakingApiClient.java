@@ -0,0 +1,290 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import com.intellectualsites.arkitektonika.exceptions.CircuitBreakerOpenException;
+import com.intellectualsites.arkitektonika.exceptions.InvalidFormatException;
+import com.intellectualsites.arkitektonika.exceptions.ResourceRetrievalException;
+import com.intellectualsites.arkitektonika.exceptions.ResourceUploadException;
+import com.intellectualsites.arkitektonika.transport.ExchangeListener;
+import com.intellectualsites.arkitektonika.transport.TransportRequest;
+import com.intellectualsites.arkitektonika.transport.TransportResponse;
+import com.intellectualsites.arkitektonika.transport.Transports;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * {@link ApiClient} that stops sending requests once a large share of the recent
+ * calls has failed, so that callers fail immediately instead of waiting for an
+ * unhealthy server. Once the breaker has been open for a while, a compatibility
+ * check probes whether the server has recovered
+ * <p>
+ * Slow calls are judged by the latency of their exchanges until the response head, which
+ * the breaker receives as the {@link ExchangeListener} of the transport. Time spent waiting
+ * for a thread or a permit, between retries, or transferring and decoding the body does not
+ * make a call slow
+ */
+final class CircuitBreakingApiClient extends ForwardingApiClient implements ExchangeListener {
+
+    private final CircuitBreakerSettings settings;
+
+    /**
+     * Outcomes of the most recent calls, where {@code true} is a failure
+     */
+    private final Window failures;
+    /**
+     * Outcomes of the most recent exchanges, where {@code true} is a slow response
+     */
+    private final Window slowResponses;
+
+    private CircuitState state = CircuitState.CLOSED;
+    private long openedAt;
+
+    CircuitBreakingApiClient(@NotNull final ApiClient delegate, @NotNull final CircuitBreakerSettings settings) {
+        super(delegate);
+        this.settings = settings;
+        this.failures = new Window(settings.getWindowSize());
+        this.slowResponses = new Window(settings.getWindowSize());
+    }
+
+    /**
+     * Get the current state of the breaker
+     *
+     * @return Breaker state
+     */
+    @NotNull synchronized CircuitState getState() {
+        return this.state;
+    }
+
+    @NotNull @Override public CompletableFuture<Boolean> checkCompatibility(
+        @NotNull final ExecutorService executorService) {
+        return this.call(() -> super.checkCompatibility(executorService), executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final File file,
+        @NotNull final ExecutorService executorService) {
+        return this.call(() -> super.upload(file, executorService), executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final byte[] schematic,
+        @NotNull final ExecutorService executorService) {
+        return this.call(() -> super.upload(schematic, executorService), executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final ByteBuffer schematic,
+        @NotNull final ExecutorService executorService) {
+        return this.call(() -> super.upload(schematic, executorService), executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final Supplier<InputStream> schematic,
+        final long length, @NotNull final ExecutorService executorService) {
+        return this.call(() -> super.upload(schematic, length, executorService), executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<ResourceStatus> checkStatus(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return this.call(() -> super.checkStatus(key, executorService), executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Boolean> delete(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return this.call(() -> super.delete(key, executorService), executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Schematic> download(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return this.call(() -> super.download(key, executorService), executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Long> download(@NotNull final String key, @NotNull final Path path,
+        @NotNull final ExecutorService executorService) {
+        return this.call(() -> super.download(key, path, executorService), executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Long> download(@NotNull final String key,
+        @NotNull final OutputStream outputStream, @NotNull final ExecutorService executorService) {
+        return this.call(() -> super.download(key, outputStream, executorService), executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Long> download(@NotNull final String key,
+        @NotNull final WritableByteChannel channel, @NotNull final ExecutorService executorService) {
+        return this.call(() -> super.download(key, channel, executorService), executorService);
+    }
+
+    @NotNull @Override public <T> CompletableFuture<T> download(@NotNull final String key,
+        @NotNull final SchematicReader<T> reader, @NotNull final ExecutorService executorService) {
+        return this.call(() -> super.download(key, reader, executorService), executorService);
+    }
+
+    @NotNull private <T> CompletableFuture<T> call(@NotNull final Supplier<CompletableFuture<T>> request,
+        @NotNull final ExecutorService executorService) {
+        if (!this.tryAcquire(executorService)) {
+            final CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(new CircuitBreakerOpenException());
+            return future;
+        }
+        return request.get().whenComplete((result, failure) -> this.record(this.failures, isFailure(failure)));
+    }
+
+    @Override public void onResponse(@NotNull final TransportRequest request,
+        @NotNull final TransportResponse response, final long latency) {
+        this.record(this.slowResponses, latency > this.settings.getSlowCallThreshold().toNanos());
+    }
+
+    /**
+     * Check whether a call may be sent. If the breaker has been open for long
+     * enough, this starts the probe
+     *
+     * @param executorService Executor service used for the probe
+     * @return {@code true} if the call may be sent
+     */
+    private boolean tryAcquire(@NotNull final ExecutorService executorService) {
+        synchronized (this) {
+            if (this.state == CircuitState.CLOSED) {
+                return true;
+            }
+            if (this.state == CircuitState.HALF_OPEN ||
+                System.nanoTime() - this.openedAt < this.settings.getOpenDuration().toNanos()) {
+                return false;
+            }
+            this.state = CircuitState.HALF_OPEN;
+        }
+        CompletableFuture<Boolean> probe;
+        try {
+            probe = super.checkCompatibility(executorService);
+        } catch (final RuntimeException e) {
+            probe = new CompletableFuture<>();
+            probe.completeExceptionally(e);
+        }
+        probe.whenComplete((compatible, failure) -> {
+            synchronized (this) {
+                if (failure == null && compatible) {
+                    this.state = CircuitState.CLOSED;
+                    this.failures.clear();
+                    this.slowResponses.clear();
+                } else {
+                    this.open();
+                }
+            }
+        });
+        return false;
+    }
+
+    private synchronized void record(@NotNull final Window window, final boolean failure) {
+        if (this.state != CircuitState.CLOSED) {
+            // Calls that were sent before the breaker opened
+            return;
+        }
+        window.add(failure);
+        if (window.calls >= this.settings.getMinimumCalls() &&
+            window.failures >= this.settings.getFailureRateThreshold() * window.calls) {
+            this.open();
+        }
+    }
+
+    private void open() {
+        this.state = CircuitState.OPEN;
+        this.openedAt = System.nanoTime();
+    }
+
+    /**
+     * Check whether the outcome of a call indicates that the server is unhealthy. Only
+     * server errors (5xx) and I/O failures of the exchange count. Failures on the client
+     * side, such as a sink that cannot be written to, a cancelled call or a schematic
+     * rejected by local validation, say nothing about the server
+     *
+     * @param throwable Failure of the call, or {@code null} if it succeeded
+     * @return {@code true} if the call failed in a way that the server is responsible for
+     */
+    static boolean isFailure(@Nullable final Throwable throwable) {
+        if (throwable == null) {
+            return false;
+        }
+        final Throwable failure = throwable instanceof CompletionException && throwable.getCause() != null ?
+            throwable.getCause() : throwable;
+        final int statusCode;
+        if (failure instanceof ResourceRetrievalException) {
+            statusCode = ((ResourceRetrievalException) failure).getStatusCode();
+        } else if (failure instanceof ResourceUploadException && !(failure instanceof InvalidFormatException)) {
+            statusCode = ((ResourceUploadException) failure).getStatusCode();
+        } else {
+            return false;
+        }
+        if (statusCode != -1) {
+            // Client errors are answered by a healthy server
+            return statusCode >= 500;
+        }
+        return Transports.isNetworkFailure(failure.getCause());
+    }
+
+
+    /**
+     * Ring of the most recent outcomes, guarded by the breaker
+     */
+    private static final class Window {
+
+        private final boolean[] outcomes;
+        private int position;
+        private int calls;
+        private int failures;
+
+        private Window(final int size) {
+            this.outcomes = new boolean[size];
+        }
+
+        private void add(final boolean failure) {
+            if (this.calls == this.outcomes.length) {
+                if (this.outcomes[this.position]) {
+                    this.failures--;
+                }
+            } else {
+                this.calls++;
+            }
+            this.outcomes[this.position] = failure;
+            if (failure) {
+                this.failures++;
+            }
+            this.position = (this.position + 1) % this.outcomes.length;
+        }
+
+        private void clear() {
+            this.position = 0;
+            this.calls = 0;
+            this.failures = 0;
+        }
+
+    }
+
+}
@@ -23,17 +23,78 @@
  */
 package com.intellectualsites.arkitektonika;
 
+import com.intellectualsites.arkitektonika.transport.ConnectionPoolSettings;
+import com.intellectualsites.arkitektonika.transport.HttpTransport;
+import com.intellectualsites.arkitektonika.transport.TransportType;
+import com.intellectualsites.arkitektonika.transport.Transports;
 import org.jetbrains.annotations.NotNull;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 class ClientFactory {
 
-    ApiClient getClient(@NotNull final ApiVersion version, @NotNull final String url) {
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    ApiClient getClient(@NotNull final ApiVersion version, @NotNull final String url,
+        @NotNull final HttpTransport transport, final boolean validateSchematics) {
         switch (version) {
             case V1_0_0:
-                return new com.intellectualsites.arkitektonika.v1.ApiClient(url);
+                return new com.intellectualsites.arkitektonika.v1.ApiClient(url, transport, validateSchematics);
             default:
                 throw new IllegalArgumentException("Unknown API Version: " + version);
         }
     }
 
+    HttpTransport getTransport(@NotNull final TransportType type, @NotNull final ConnectionPoolSettings settings) {
+        return Transports.create(type, settings);
+    }
+
+    /**
+     * Create the executor that is owned by a client. Its threads are daemon
+     * threads, and are stopped when they have been idle for a minute
+     *
+     * @param threads Maximum number of threads
+     * @return Created executor
+     */
+    ExecutorService getExecutorService(final int threads) {
+        final ThreadFactory threadFactory = runnable -> {
+            final Thread thread = new Thread(runnable, "Arkitektonika-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Create an executor that starts a new virtual thread for every task. The
+     * executor is looked up reflectively, as the client targets Java 8
+     *
+     * @return Created executor
+     * @throws UnsupportedOperationException If the runtime does not support virtual threads
+     */
+    ExecutorService getVirtualThreadExecutorService() {
+        final Method method;
+        try {
+            method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (final NoSuchMethodException e) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or newer");
+        }
+        try {
+            return (ExecutorService) method.invoke(null);
+        } catch (final IllegalAccessException | InvocationTargetException e) {
+            throw new UnsupportedOperationException("Failed to create a virtual thread executor", e);
+        }
+    }
+
 }
@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import com.intellectualsites.arkitektonika.metrics.ClientMetricsListener;
+import com.intellectualsites.arkitektonika.metrics.Operation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * {@link ApiClient} that lets concurrent downloads and status checks of the same
+ * key share a single request. Callers that arrive while a request is in flight
+ * receive its result, and only callers that arrive after it has completed send
+ * a new request. Every caller receives its own future, so that cancelling one
+ * does not affect the others. Callers that join a request are reported to the
+ * {@link ClientMetricsListener#onCoalesced(Operation) metrics listener}
+ */
+final class CoalescingApiClient extends ForwardingApiClient {
+
+    private final ConcurrentMap<String, CompletableFuture<Schematic>> downloads = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<ResourceStatus>> statuses = new ConcurrentHashMap<>();
+    private final LongAdder waiters = new LongAdder();
+    @Nullable private final ClientMetricsListener listener;
+
+    CoalescingApiClient(@NotNull final ApiClient delegate) {
+        this(delegate, null);
+    }
+
+    CoalescingApiClient(@NotNull final ApiClient delegate, @Nullable final ClientMetricsListener listener) {
+        super(delegate);
+        this.listener = listener;
+    }
+
+    /**
+     * Get the number of calls that joined an in-flight request
+     *
+     * @return Number of coalesced calls
+     */
+    long getCoalescedRequests() {
+        return this.waiters.sum();
+    }
+
+    @NotNull @Override public CompletableFuture<ResourceStatus> checkStatus(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return this.coalesce(Operation.CHECK_STATUS, this.statuses, key, () -> super.checkStatus(key, executorService));
+    }
+
+    @NotNull @Override public CompletableFuture<Schematic> download(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return this.coalesce(Operation.DOWNLOAD, this.downloads, key, () -> super.download(key, executorService));
+    }
+
+    @NotNull private <T> CompletableFuture<T> coalesce(@NotNull final Operation operation,
+        @NotNull final ConcurrentMap<String, CompletableFuture<T>> inFlight, @NotNull final String key,
+        @NotNull final Supplier<CompletableFuture<T>> request) {
+        final CompletableFuture<T> created = new CompletableFuture<>();
+        final CompletableFuture<T> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            this.waiters.increment();
+            if (this.listener != null) {
+                try {
+                    this.listener.onCoalesced(operation);
+                } catch (final RuntimeException ignored) {
+                }
+            }
+            return existing.thenApply(Function.identity());
+        }
+        try {
+            request.get().whenComplete((result, failure) -> {
+                // Remove the request first, so that later callers do not receive a stale result
+                inFlight.remove(key, created);
+                if (failure != null) {
+                    created.completeExceptionally(failure);
+                } else {
+                    created.complete(result);
+                }
+            });
+        } catch (final RuntimeException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created.thenApply(Function.identity());
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * {@link ApiClient} that does not upload the same schematic twice. Uploaded
+ * schematics are identified by their SHA-256 hash, and repeated uploads return
+ * the keys of the earlier upload, as long as the service still reports the schematic
+ * as available. Schematics read from a stream are always uploaded
+ */
+final class DeduplicatingApiClient extends ForwardingApiClient {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Map<String, SchematicKeys> uploads;
+
+    DeduplicatingApiClient(@NotNull final ApiClient delegate, final int capacity) {
+        super(delegate);
+        this.uploads = Collections.synchronizedMap(new LinkedHashMap<String, SchematicKeys>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(final Map.Entry<String, SchematicKeys> eldest) {
+                return this.size() > capacity;
+            }
+        });
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final File file,
+        @NotNull final ExecutorService executorService) {
+        return CompletableFuture.supplyAsync(() -> hash(file), executorService)
+            .thenCompose(hash -> this.upload(hash, () -> super.upload(file, executorService), executorService));
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final byte[] schematic,
+        @NotNull final ExecutorService executorService) {
+        return this.upload(hash(ByteBuffer.wrap(schematic)), () -> super.upload(schematic, executorService),
+            executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final ByteBuffer schematic,
+        @NotNull final ExecutorService executorService) {
+        return this.upload(hash(schematic.duplicate()), () -> super.upload(schematic, executorService),
+            executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final Supplier<InputStream> schematic,
+        final long length, @NotNull final ExecutorService executorService) {
+        // Hashing the stream before the upload would require it to be read twice
+        return super.upload(schematic, length, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Boolean> delete(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return super.delete(key, executorService).thenApply(deleted -> {
+            if (deleted) {
+                synchronized (this.uploads) {
+                    this.uploads.values().removeIf(keys -> keys.getDeletionKey().equals(key));
+                }
+            }
+            return deleted;
+        });
+    }
+
+    /**
+     * Return the keys of an earlier upload of the same schematic if it is
+     * still available, or upload the schematic otherwise
+     *
+     * @param hash            Schematic hash
+     * @param upload          Function that uploads the schematic
+     * @param executorService Executor service
+     * @return Future that completes with the schematic keys
+     */
+    @NotNull private CompletableFuture<SchematicKeys> upload(@NotNull final String hash,
+        @NotNull final Supplier<CompletableFuture<SchematicKeys>> upload,
+        @NotNull final ExecutorService executorService) {
+        final SchematicKeys known = this.uploads.get(hash);
+        if (known == null) {
+            return this.remember(hash, upload.get());
+        }
+        return super.checkStatus(known.getAccessKey(), executorService).handle((status, failure) -> {
+            if (failure == null && status == ResourceStatus.OK) {
+                return CompletableFuture.completedFuture(known);
+            }
+            this.uploads.remove(hash, known);
+            return this.remember(hash, upload.get());
+        }).thenCompose(future -> future);
+    }
+
+    @NotNull private CompletableFuture<SchematicKeys> remember(@NotNull final String hash,
+        @NotNull final CompletableFuture<SchematicKeys> future) {
+        return future.thenApply(keys -> {
+            this.uploads.put(hash, keys);
+            return keys;
+        });
+    }
+
+    @NotNull private static String hash(@NotNull final File file) {
+        final MessageDigest digest = newDigest();
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } catch (final IOException e) {
+            throw new CompletionException(e);
+        }
+        return toHex(digest.digest());
+    }
+
+    @NotNull private static String hash(@NotNull final ByteBuffer buffer) {
+        final MessageDigest digest = newDigest();
+        digest.update(buffer);
+        return toHex(digest.digest());
+    }
+
+    @NotNull private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @NotNull private static String toHex(@NotNull final byte[] bytes) {
+        final StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+/**
+ * Snapshot of the state of an endpoint of a client with multiple endpoints
+ */
+public final class EndpointStatistics {
+
+    private final String url;
+    private final int outstanding;
+    private final Duration latency;
+    private final boolean ejected;
+    private final long requests;
+    private final long failures;
+
+    public EndpointStatistics(@NotNull final String url, final int outstanding, @NotNull final Duration latency,
+        final boolean ejected, final long requests, final long failures) {
+        this.url = url;
+        this.outstanding = outstanding;
+        this.latency = latency;
+        this.ejected = ejected;
+        this.requests = requests;
+        this.failures = failures;
+    }
+
+    /**
+     * Get the base URL of the endpoint
+     *
+     * @return Endpoint URL
+     */
+    @NotNull public String getUrl() {
+        return this.url;
+    }
+
+    /**
+     * Get the number of requests that are currently in flight
+     *
+     * @return Number of outstanding requests
+     */
+    public int getOutstanding() {
+        return this.outstanding;
+    }
+
+    /**
+     * Get the moving average of the latency of the endpoint until the response head
+     *
+     * @return Latency, or zero if no request has completed yet
+     */
+    @NotNull public Duration getLatency() {
+        return this.latency;
+    }
+
+    /**
+     * Check whether the endpoint is currently ejected, and receives no requests
+     *
+     * @return {@code true} if the endpoint is ejected
+     */
+    public boolean isEjected() {
+        return this.ejected;
+    }
+
+    /**
+     * Get the number of requests that have been sent to the endpoint
+     *
+     * @return Number of requests
+     */
+    public long getRequests() {
+        return this.requests;
+    }
+
+    /**
+     * Get the number of requests to the endpoint that have failed
+     *
+     * @return Number of failures
+     */
+    public long getFailures() {
+        return this.failures;
+    }
+
+    @Override public String toString() {
+        return String.format("EndpointStatistics{url=%s, outstanding=%d, latency=%dms, ejected=%s, requests=%d, " +
+            "failures=%d}", this.url, this.outstanding, this.latency.toMillis(), this.ejected, this.requests,
+            this.failures);
+    }
+
+}
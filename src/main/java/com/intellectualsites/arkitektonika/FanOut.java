@@ -0,0 +1,155 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Runs an asynchronous operation for every element of an iterator, with a bounded
+ * number of operations in flight. Elements are only pulled from the iterator once
+ * an earlier operation has completed, so that large batches do not pile up in memory
+ *
+ * @param <T> Element type
+ * @param <R> Result type
+ */
+final class FanOut<T, R> {
+
+    private final Iterator<? extends T> iterator;
+    private final Function<T, CompletableFuture<R>> operation;
+    private final Handler<T, R> handler;
+    private final int parallelism;
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger work = new AtomicInteger();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private boolean exhausted;
+
+    FanOut(@NotNull final Iterator<? extends T> iterator, @NotNull final Function<T, CompletableFuture<R>> operation,
+        @NotNull final Handler<T, R> handler, final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism must be positive");
+        }
+        this.iterator = iterator;
+        this.operation = operation;
+        this.handler = handler;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Start running the operations
+     *
+     * @return Future that completes once every element has been handled, or fails
+     * if the iterator or the handler threw an exception
+     */
+    @NotNull CompletableFuture<Void> start() {
+        this.drain();
+        return this.future;
+    }
+
+    private void drain() {
+        // Only one thread at a time pulls from the iterator. Operations that complete
+        // synchronously loop here instead of recursing, so that the stack stays flat
+        if (this.work.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            while (!this.exhausted && this.failure.get() == null && this.inFlight.get() < this.parallelism) {
+                final T element;
+                try {
+                    if (!this.iterator.hasNext()) {
+                        this.exhausted = true;
+                        break;
+                    }
+                    element = this.iterator.next();
+                } catch (final RuntimeException e) {
+                    this.failure.compareAndSet(null, e);
+                    break;
+                }
+                this.inFlight.incrementAndGet();
+                CompletableFuture<R> result;
+                try {
+                    result = this.operation.apply(element);
+                } catch (final RuntimeException e) {
+                    result = new CompletableFuture<>();
+                    result.completeExceptionally(e);
+                }
+                result.whenComplete((value, throwable) -> {
+                    try {
+                        this.handler.handle(element, value, unwrap(throwable));
+                    } catch (final Throwable e) {
+                        this.failure.compareAndSet(null, e);
+                    }
+                    this.inFlight.decrementAndGet();
+                    this.drain();
+                });
+            }
+            if ((this.exhausted || this.failure.get() != null) && this.inFlight.get() == 0) {
+                final Throwable throwable = this.failure.get();
+                if (throwable == null) {
+                    this.future.complete(null);
+                } else {
+                    this.future.completeExceptionally(throwable);
+                }
+            }
+        } while (this.work.decrementAndGet() != 0);
+    }
+
+    @Nullable private static Throwable unwrap(@Nullable final Throwable throwable) {
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            return throwable.getCause();
+        }
+        return throwable;
+    }
+
+
+    /**
+     * Handles the outcome of a single operation. Handlers may be called
+     * concurrently from the threads that complete the operations
+     *
+     * @param <T> Element type
+     * @param <R> Result type
+     */
+    @FunctionalInterface
+    interface Handler<T, R> {
+
+        /**
+         * Handle the outcome of an operation
+         *
+         * @param element Element the operation ran for
+         * @param result  Result, or {@code null} if the operation failed
+         * @param failure Failure, or {@code null} if the operation succeeded
+         */
+        void handle(@NotNull T element, @Nullable R result, @Nullable Throwable failure);
+
+    }
+
+}
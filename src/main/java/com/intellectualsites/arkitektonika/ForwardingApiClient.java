@@ -0,0 +1,115 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * {@link ApiClient} that forwards every call to another client. Client
+ * features are implemented as forwarding clients that override the
+ * operations they are concerned with
+ */
+abstract class ForwardingApiClient implements ApiClient {
+
+    protected final ApiClient delegate;
+
+    ForwardingApiClient(@NotNull final ApiClient delegate) {
+        this.delegate = delegate;
+    }
+
+    @NotNull @Override public ApiVersion getApiVersion() {
+        return this.delegate.getApiVersion();
+    }
+
+    @NotNull @Override public CompletableFuture<Boolean> checkCompatibility(
+        @NotNull final ExecutorService executorService) {
+        return this.delegate.checkCompatibility(executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final File file,
+        @NotNull final ExecutorService executorService) {
+        return this.delegate.upload(file, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final byte[] schematic,
+        @NotNull final ExecutorService executorService) {
+        return this.delegate.upload(schematic, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final ByteBuffer schematic,
+        @NotNull final ExecutorService executorService) {
+        return this.delegate.upload(schematic, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final Supplier<InputStream> schematic,
+        final long length, @NotNull final ExecutorService executorService) {
+        return this.delegate.upload(schematic, length, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<ResourceStatus> checkStatus(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return this.delegate.checkStatus(key, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Boolean> delete(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return this.delegate.delete(key, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Schematic> download(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return this.delegate.download(key, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Long> download(@NotNull final String key, @NotNull final Path path,
+        @NotNull final ExecutorService executorService) {
+        return this.delegate.download(key, path, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Long> download(@NotNull final String key,
+        @NotNull final OutputStream outputStream, @NotNull final ExecutorService executorService) {
+        return this.delegate.download(key, outputStream, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Long> download(@NotNull final String key,
+        @NotNull final WritableByteChannel channel, @NotNull final ExecutorService executorService) {
+        return this.delegate.download(key, channel, executorService);
+    }
+
+    @NotNull @Override public <T> CompletableFuture<T> download(@NotNull final String key,
+        @NotNull final SchematicReader<T> reader, @NotNull final ExecutorService executorService) {
+        return this.delegate.download(key, reader, executorService);
+    }
+
+}
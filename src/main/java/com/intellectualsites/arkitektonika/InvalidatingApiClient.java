@@ -0,0 +1,106 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * {@link ApiClient} that holds local state about schematics, which has to be
+ * discarded once a schematic is deleted. Deletions are requested by deletion key,
+ * so the access keys of the schematics uploaded through this client are remembered
+ */
+abstract class InvalidatingApiClient extends ForwardingApiClient {
+
+    /**
+     * Maximum number of deletion keys that are remembered
+     */
+    private static final int MAX_UPLOADS = 10_000;
+
+    private final Map<String, String> uploads = Collections.synchronizedMap(
+        new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+                return this.size() > MAX_UPLOADS;
+            }
+        });
+
+    InvalidatingApiClient(@NotNull final ApiClient delegate) {
+        super(delegate);
+    }
+
+    /**
+     * Discard the local state about a schematic
+     *
+     * @param accessKey Access key of the deleted schematic
+     */
+    protected abstract void invalidate(@NotNull String accessKey);
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final File file,
+        @NotNull final ExecutorService executorService) {
+        return this.remember(super.upload(file, executorService));
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final byte[] schematic,
+        @NotNull final ExecutorService executorService) {
+        return this.remember(super.upload(schematic, executorService));
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final ByteBuffer schematic,
+        @NotNull final ExecutorService executorService) {
+        return this.remember(super.upload(schematic, executorService));
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final Supplier<InputStream> schematic,
+        final long length, @NotNull final ExecutorService executorService) {
+        return this.remember(super.upload(schematic, length, executorService));
+    }
+
+    @NotNull @Override public CompletableFuture<Boolean> delete(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return super.delete(key, executorService).thenApply(deleted -> {
+            final String accessKey = this.uploads.remove(key);
+            if (deleted && accessKey != null) {
+                this.invalidate(accessKey);
+            }
+            return deleted;
+        });
+    }
+
+    @NotNull private CompletableFuture<SchematicKeys> remember(@NotNull final CompletableFuture<SchematicKeys> future) {
+        return future.thenApply(keys -> {
+            this.uploads.put(keys.getDeletionKey(), keys.getAccessKey());
+            return keys;
+        });
+    }
+
+}
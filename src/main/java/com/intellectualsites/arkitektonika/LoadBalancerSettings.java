@@ -0,0 +1,210 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Settings of the load balancer of a client with multiple endpoints
+ *
+ * @see LoadBalancerSettings#builder() to create new settings
+ */
+public final class LoadBalancerSettings {
+
+    private final LoadBalancingPolicy policy;
+    private final Duration latencyDecay;
+    private final int failureThreshold;
+    private final Duration ejectionTime;
+    private final Duration maxEjectionTime;
+
+    private LoadBalancerSettings(@NotNull final LoadBalancingPolicy policy, @NotNull final Duration latencyDecay,
+        final int failureThreshold, @NotNull final Duration ejectionTime, @NotNull final Duration maxEjectionTime) {
+        this.policy = policy;
+        this.latencyDecay = latencyDecay;
+        this.failureThreshold = failureThreshold;
+        this.ejectionTime = ejectionTime;
+        this.maxEjectionTime = maxEjectionTime;
+    }
+
+    /**
+     * Create a new {@link LoadBalancerSettings} {@link Builder builder}
+     *
+     * @return New builder
+     */
+    @NotNull public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the default settings
+     *
+     * @return Default settings
+     */
+    @NotNull public static LoadBalancerSettings defaults() {
+        return builder().build();
+    }
+
+    /**
+     * Get the policy used to choose the endpoint of a request
+     *
+     * @return Load balancing policy
+     */
+    @NotNull public LoadBalancingPolicy getPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * Get the time after which a latency sample has lost most of its weight
+     *
+     * @return Latency decay time
+     */
+    @NotNull public Duration getLatencyDecay() {
+        return this.latencyDecay;
+    }
+
+    /**
+     * Get the number of consecutive failures after which an endpoint is ejected
+     *
+     * @return Failure threshold
+     */
+    public int getFailureThreshold() {
+        return this.failureThreshold;
+    }
+
+    /**
+     * Get the time that an endpoint is ejected for, before it is probed for the first time
+     *
+     * @return Ejection time
+     */
+    @NotNull public Duration getEjectionTime() {
+        return this.ejectionTime;
+    }
+
+    /**
+     * Get the maximum time that an endpoint is ejected for, once probes have failed repeatedly
+     *
+     * @return Maximum ejection time
+     */
+    @NotNull public Duration getMaxEjectionTime() {
+        return this.maxEjectionTime;
+    }
+
+
+    /**
+     * Builder class for {@link LoadBalancerSettings} instances.
+     *
+     * @see LoadBalancerSettings#builder() to get a new builder instance
+     */
+    public static final class Builder {
+
+        private LoadBalancingPolicy policy = LoadBalancingPolicy.EWMA_LATENCY;
+        private Duration latencyDecay = Duration.ofSeconds(10);
+        private int failureThreshold = 3;
+        private Duration ejectionTime = Duration.ofSeconds(10);
+        private Duration maxEjectionTime = Duration.ofMinutes(5);
+
+        private Builder() {
+        }
+
+        /**
+         * Specify the policy used to choose the endpoint of a request.
+         * Defaults to {@link LoadBalancingPolicy#EWMA_LATENCY}
+         *
+         * @param policy Load balancing policy
+         * @return The builder instance
+         */
+        @NotNull public Builder withPolicy(@NotNull final LoadBalancingPolicy policy) {
+            this.policy = Objects.requireNonNull(policy);
+            return this;
+        }
+
+        /**
+         * Specify how quickly old latency samples lose their weight in the moving
+         * average of {@link LoadBalancingPolicy#EWMA_LATENCY}. Failed requests are
+         * recorded as if they had taken at least this long. Defaults to 10 seconds
+         *
+         * @param latencyDecay Latency decay time
+         * @return The builder instance
+         */
+        @NotNull public Builder withLatencyDecay(@NotNull final Duration latencyDecay) {
+            if (latencyDecay.isNegative() || latencyDecay.isZero()) {
+                throw new IllegalArgumentException("The latency decay time must be positive");
+            }
+            this.latencyDecay = latencyDecay;
+            return this;
+        }
+
+        /**
+         * Specify after how many consecutive failures an endpoint is ejected. Failed
+         * requests and server errors count as failures. Responses that indicate a
+         * client error, such as a missing schematic, do not. Defaults to 3
+         *
+         * @param failureThreshold Failure threshold
+         * @return The builder instance
+         */
+        @NotNull public Builder withFailureThreshold(final int failureThreshold) {
+            if (failureThreshold < 1) {
+                throw new IllegalArgumentException("The failure threshold must be positive");
+            }
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+
+        /**
+         * Specify how long an ejected endpoint receives no requests. Once this time has
+         * passed, a compatibility check probes the endpoint. If the probe fails, the
+         * endpoint is ejected for twice as long, up to the maximum ejection time.
+         * Defaults to 10 seconds and 5 minutes
+         *
+         * @param ejectionTime    Ejection time
+         * @param maxEjectionTime Maximum ejection time
+         * @return The builder instance
+         */
+        @NotNull public Builder withEjectionTime(@NotNull final Duration ejectionTime,
+            @NotNull final Duration maxEjectionTime) {
+            if (ejectionTime.isNegative() || ejectionTime.isZero() || maxEjectionTime.compareTo(ejectionTime) < 0) {
+                throw new IllegalArgumentException("Invalid ejection time: " + ejectionTime + " up to " +
+                    maxEjectionTime);
+            }
+            this.ejectionTime = ejectionTime;
+            this.maxEjectionTime = maxEjectionTime;
+            return this;
+        }
+
+        /**
+         * Create the settings
+         *
+         * @return Created settings
+         */
+        @NotNull public LoadBalancerSettings build() {
+            return new LoadBalancerSettings(this.policy, this.latencyDecay, this.failureThreshold,
+                this.ejectionTime, this.maxEjectionTime);
+        }
+
+    }
+
+}
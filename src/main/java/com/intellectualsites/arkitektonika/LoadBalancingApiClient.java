@@ -0,0 +1,391 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import com.intellectualsites.arkitektonika.transport.ExchangeListener;
+import com.intellectualsites.arkitektonika.transport.TransportRequest;
+import com.intellectualsites.arkitektonika.transport.TransportResponse;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * {@link ApiClient} that spreads requests over multiple endpoints that share their storage.
+ * Every request is sent to the better of two randomly chosen endpoints, according to the
+ * {@link LoadBalancingPolicy}. Endpoints that fail repeatedly are ejected, and are probed
+ * with a compatibility check before they receive requests again
+ * <p>
+ * Reads that buffer their result are sent to a second endpoint if the first one fails.
+ * Uploads, deletions and downloads to a stream are not, as they may already have had an
+ * effect, or have written part of the schematic
+ * <p>
+ * The latency of an endpoint is sampled from the exchanges that the load balancer receives
+ * as the {@link ExchangeListener} of the transport, and ends with the response head. Large
+ * bodies and slow readers do not make an endpoint look slow
+ */
+final class LoadBalancingApiClient implements ApiClient, ExchangeListener {
+
+    private final Endpoint[] endpoints;
+    private final LoadBalancerSettings settings;
+
+    LoadBalancingApiClient(@NotNull final Map<String, ApiClient> clients,
+        @NotNull final LoadBalancerSettings settings) {
+        if (clients.isEmpty()) {
+            throw new IllegalArgumentException("No endpoints were provided");
+        }
+        this.settings = settings;
+        this.endpoints = clients.entrySet().stream().map(entry -> new Endpoint(entry.getKey(), entry.getValue()))
+            .toArray(Endpoint[]::new);
+    }
+
+    /**
+     * Get a snapshot of the state of every endpoint
+     *
+     * @return Endpoint statistics, in the order the endpoints were configured in
+     */
+    @NotNull List<EndpointStatistics> getStatistics() {
+        final List<EndpointStatistics> statistics = new ArrayList<>(this.endpoints.length);
+        for (final Endpoint endpoint : this.endpoints) {
+            statistics.add(endpoint.getStatistics());
+        }
+        return statistics;
+    }
+
+    @Override public void onResponse(@NotNull final TransportRequest request,
+        @NotNull final TransportResponse response, final long latency) {
+        final String uri = request.getUri().toString();
+        Endpoint match = null;
+        for (final Endpoint endpoint : this.endpoints) {
+            // The URLs of the endpoints may be prefixes of each other
+            if (uri.startsWith(endpoint.url) && (uri.length() == endpoint.url.length() ||
+                uri.charAt(endpoint.url.length()) == '/' || uri.charAt(endpoint.url.length()) == '?') &&
+                (match == null || endpoint.url.length() > match.url.length())) {
+                match = endpoint;
+            }
+        }
+        if (match != null) {
+            match.sample(latency);
+        }
+    }
+
+    @NotNull @Override public ApiVersion getApiVersion() {
+        return this.endpoints[0].client.getApiVersion();
+    }
+
+    @NotNull @Override public CompletableFuture<Boolean> checkCompatibility(
+        @NotNull final ExecutorService executorService) {
+        return this.call(client -> client.checkCompatibility(executorService), true, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final File file,
+        @NotNull final ExecutorService executorService) {
+        return this.call(client -> client.upload(file, executorService), false, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final byte[] schematic,
+        @NotNull final ExecutorService executorService) {
+        return this.call(client -> client.upload(schematic, executorService), false, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final ByteBuffer schematic,
+        @NotNull final ExecutorService executorService) {
+        return this.call(client -> client.upload(schematic, executorService), false, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final Supplier<InputStream> schematic,
+        final long length, @NotNull final ExecutorService executorService) {
+        return this.call(client -> client.upload(schematic, length, executorService), false, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<ResourceStatus> checkStatus(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return this.call(client -> client.checkStatus(key, executorService), true, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Boolean> delete(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return this.call(client -> client.delete(key, executorService), false, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Schematic> download(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return this.call(client -> client.download(key, executorService), true, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Long> download(@NotNull final String key, @NotNull final Path path,
+        @NotNull final ExecutorService executorService) {
+        // The file is truncated by every attempt
+        return this.call(client -> client.download(key, path, executorService), true, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Long> download(@NotNull final String key,
+        @NotNull final OutputStream outputStream, @NotNull final ExecutorService executorService) {
+        return this.call(client -> client.download(key, outputStream, executorService), false, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Long> download(@NotNull final String key,
+        @NotNull final WritableByteChannel channel, @NotNull final ExecutorService executorService) {
+        return this.call(client -> client.download(key, channel, executorService), false, executorService);
+    }
+
+    @NotNull @Override public <T> CompletableFuture<T> download(@NotNull final String key,
+        @NotNull final SchematicReader<T> reader, @NotNull final ExecutorService executorService) {
+        return this.call(client -> client.download(key, reader, executorService), false, executorService);
+    }
+
+    @NotNull private <T> CompletableFuture<T> call(@NotNull final Function<ApiClient, CompletableFuture<T>> request,
+        final boolean failover, @NotNull final ExecutorService executorService) {
+        final Endpoint first = this.select(null, executorService);
+        final CompletableFuture<T> future = first.call(request);
+        if (!failover || this.endpoints.length == 1) {
+            return future;
+        }
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                result.complete(value);
+                return;
+            }
+            final Endpoint second = CircuitBreakingApiClient.isFailure(throwable) ?
+                this.select(first, executorService) : null;
+            if (second == null) {
+                result.completeExceptionally(unwrap(throwable));
+                return;
+            }
+            second.call(request).whenComplete((retried, failure) -> {
+                if (failure == null) {
+                    result.complete(retried);
+                } else {
+                    result.completeExceptionally(unwrap(failure));
+                }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Choose the endpoint of a request. Ejected endpoints whose ejection time has
+     * passed are probed, but do not receive requests until the probe succeeds
+     *
+     * @param excluded        Endpoint that must not be chosen, or {@code null}
+     * @param executorService Executor service used for probes
+     * @return Chosen endpoint. If every endpoint is ejected, the endpoint whose
+     * ejection ends first is chosen, unless it is excluded, in which case {@code null}
+     * is returned
+     */
+    @Nullable private Endpoint select(@Nullable final Endpoint excluded,
+        @NotNull final ExecutorService executorService) {
+        final long now = System.nanoTime();
+        final Endpoint[] available = new Endpoint[this.endpoints.length];
+        int count = 0;
+        Endpoint fallback = null;
+        long fallbackEjectedUntil = 0;
+        for (final Endpoint endpoint : this.endpoints) {
+            if (endpoint == excluded) {
+                continue;
+            }
+            final long ejectedUntil = endpoint.checkEjection(now, executorService);
+            if (ejectedUntil == 0) {
+                available[count++] = endpoint;
+            } else if (fallback == null || ejectedUntil - fallbackEjectedUntil < 0) {
+                fallback = endpoint;
+                fallbackEjectedUntil = ejectedUntil;
+            }
+        }
+        if (count == 0) {
+            return excluded == null ? fallback : null;
+        }
+        if (count == 1) {
+            return available[0];
+        }
+        // Power of two choices
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int firstIndex = random.nextInt(count);
+        final int secondIndex = (firstIndex + 1 + random.nextInt(count - 1)) % count;
+        final Endpoint first = available[firstIndex];
+        final Endpoint second = available[secondIndex];
+        return first.getCost(now) <= second.getCost(now) ? first : second;
+    }
+
+    @NotNull private static Throwable unwrap(@NotNull final Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ?
+            throwable.getCause() : throwable;
+    }
+
+
+    /**
+     * Endpoint and its health
+     */
+    private final class Endpoint {
+
+        private final String url;
+        private final ApiClient client;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        // Guarded by this
+        private double latency;
+        private long latencyUpdatedAt = System.nanoTime();
+        private int consecutiveFailures;
+        private long ejectedUntil;
+        private long ejectionNanos;
+        private boolean probing;
+
+        private Endpoint(@NotNull final String url, @NotNull final ApiClient client) {
+            this.url = url;
+            this.client = client;
+        }
+
+        @NotNull private <T> CompletableFuture<T> call(
+            @NotNull final Function<ApiClient, CompletableFuture<T>> request) {
+            this.outstanding.incrementAndGet();
+            this.requests.increment();
+            CompletableFuture<T> future;
+            try {
+                future = request.apply(this.client);
+            } catch (final RuntimeException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            return future.whenComplete((result, failure) -> {
+                this.outstanding.decrementAndGet();
+                this.record(CircuitBreakingApiClient.isFailure(failure));
+            });
+        }
+
+        private synchronized void record(final boolean failure) {
+            if (!failure) {
+                this.consecutiveFailures = 0;
+                return;
+            }
+            this.failures.increment();
+            if (++this.consecutiveFailures >= settings.getFailureThreshold() && this.ejectedUntil == 0) {
+                this.ejectionNanos = settings.getEjectionTime().toNanos();
+                this.eject(System.nanoTime());
+            }
+            // Endpoints that fail quickly must not look fast
+            this.sample(settings.getLatencyDecay().toNanos());
+        }
+
+        private synchronized void sample(final long sample) {
+            final long decay = settings.getLatencyDecay().toNanos();
+            final long now = System.nanoTime();
+            final double weight = Math.exp(-(now - this.latencyUpdatedAt) / (double) decay);
+            // Follow latency spikes immediately, and recover from them gradually
+            this.latency = sample > this.latency ? sample : this.latency * weight + sample * (1 - weight);
+            this.latencyUpdatedAt = now;
+        }
+
+        private void eject(final long now) {
+            // Zero means that the endpoint is not ejected
+            this.ejectedUntil = (now + this.ejectionNanos) | 1;
+        }
+
+        /**
+         * Check whether the endpoint is ejected, and start a probe if its ejection time has passed
+         *
+         * @param now             Current {@link System#nanoTime() time}
+         * @param executorService Executor service used for the probe
+         * @return Time at which the ejection ends, or {@code 0} if the endpoint is not ejected
+         */
+        private long checkEjection(final long now, @NotNull final ExecutorService executorService) {
+            synchronized (this) {
+                if (this.ejectedUntil == 0 || this.probing || now - this.ejectedUntil < 0) {
+                    return this.ejectedUntil;
+                }
+                this.probing = true;
+            }
+            CompletableFuture<Boolean> probe;
+            try {
+                probe = this.client.checkCompatibility(executorService);
+            } catch (final RuntimeException e) {
+                probe = new CompletableFuture<>();
+                probe.completeExceptionally(e);
+            }
+            probe.whenComplete((compatible, failure) -> {
+                synchronized (this) {
+                    this.probing = false;
+                    if (failure == null && compatible) {
+                        this.ejectedUntil = 0;
+                        this.consecutiveFailures = 0;
+                        // Forget the penalty of the failures, so that the endpoint receives requests again
+                        this.latency = 0;
+                    } else {
+                        this.ejectionNanos = Math.min(this.ejectionNanos * 2,
+                            settings.getMaxEjectionTime().toNanos());
+                        this.eject(System.nanoTime());
+                    }
+                }
+            });
+            synchronized (this) {
+                return this.ejectedUntil;
+            }
+        }
+
+        /**
+         * Get the cost of sending a request to the endpoint, where lower is better
+         *
+         * @param now Current {@link System#nanoTime() time}
+         * @return Cost
+         */
+        private double getCost(final long now) {
+            final int outstanding = this.outstanding.get();
+            if (settings.getPolicy() == LoadBalancingPolicy.LEAST_OUTSTANDING) {
+                return outstanding;
+            }
+            final double latency;
+            synchronized (this) {
+                // The latency of an endpoint that receives no requests decays, so that it is tried again
+                latency = this.latency * Math.exp(-(now - this.latencyUpdatedAt) /
+                    (double) settings.getLatencyDecay().toNanos());
+            }
+            return (latency + 1) * (outstanding + 1);
+        }
+
+        @NotNull private synchronized EndpointStatistics getStatistics() {
+            return new EndpointStatistics(this.url, this.outstanding.get(), Duration.ofNanos((long) this.latency),
+                this.ejectedUntil != 0, this.requests.sum(), this.failures.sum());
+        }
+
+    }
+
+}
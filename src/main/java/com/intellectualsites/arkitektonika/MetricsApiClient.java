@@ -0,0 +1,208 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import com.intellectualsites.arkitektonika.exceptions.ResourceRetrievalException;
+import com.intellectualsites.arkitektonika.exceptions.ResourceUploadException;
+import com.intellectualsites.arkitektonika.metrics.ClientMetricsListener;
+import com.intellectualsites.arkitektonika.metrics.Operation;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * {@link ApiClient} that reports every operation to a {@link ClientMetricsListener}
+ */
+final class MetricsApiClient extends ForwardingApiClient {
+
+    private final ClientMetricsListener listener;
+
+    MetricsApiClient(@NotNull final ApiClient delegate, @NotNull final ClientMetricsListener listener) {
+        super(delegate);
+        this.listener = listener;
+    }
+
+    @NotNull @Override public CompletableFuture<Boolean> checkCompatibility(
+        @NotNull final ExecutorService executorService) {
+        return this.measure(Operation.CHECK_COMPATIBILITY, () -> super.checkCompatibility(executorService),
+            result -> 0);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final File file,
+        @NotNull final ExecutorService executorService) {
+        return this.measure(Operation.UPLOAD, () -> super.upload(file, executorService), keys -> file.length());
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final byte[] schematic,
+        @NotNull final ExecutorService executorService) {
+        return this.measure(Operation.UPLOAD, () -> super.upload(schematic, executorService),
+            keys -> schematic.length);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final ByteBuffer schematic,
+        @NotNull final ExecutorService executorService) {
+        final int length = schematic.remaining();
+        return this.measure(Operation.UPLOAD, () -> super.upload(schematic, executorService), keys -> length);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final Supplier<InputStream> schematic,
+        final long length, @NotNull final ExecutorService executorService) {
+        return this.measure(Operation.UPLOAD, () -> super.upload(schematic, length, executorService),
+            keys -> Math.max(0, length));
+    }
+
+    @NotNull @Override public CompletableFuture<ResourceStatus> checkStatus(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return this.measure(Operation.CHECK_STATUS, () -> super.checkStatus(key, executorService), status -> 0);
+    }
+
+    @NotNull @Override public CompletableFuture<Boolean> delete(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return this.measure(Operation.DELETE, () -> super.delete(key, executorService), deleted -> 0);
+    }
+
+    @NotNull @Override public CompletableFuture<Schematic> download(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return this.measure(Operation.DOWNLOAD, () -> super.download(key, executorService),
+            schematic -> schematic.getContent().length);
+    }
+
+    @NotNull @Override public CompletableFuture<Long> download(@NotNull final String key, @NotNull final Path path,
+        @NotNull final ExecutorService executorService) {
+        return this.measure(Operation.DOWNLOAD, () -> super.download(key, path, executorService), Long::longValue);
+    }
+
+    @NotNull @Override public CompletableFuture<Long> download(@NotNull final String key,
+        @NotNull final OutputStream outputStream, @NotNull final ExecutorService executorService) {
+        return this.measure(Operation.DOWNLOAD, () -> super.download(key, outputStream, executorService),
+            Long::longValue);
+    }
+
+    @NotNull @Override public CompletableFuture<Long> download(@NotNull final String key,
+        @NotNull final WritableByteChannel channel, @NotNull final ExecutorService executorService) {
+        return this.measure(Operation.DOWNLOAD, () -> super.download(key, channel, executorService),
+            Long::longValue);
+    }
+
+    @NotNull @Override public <T> CompletableFuture<T> download(@NotNull final String key,
+        @NotNull final SchematicReader<T> reader, @NotNull final ExecutorService executorService) {
+        final LongAdder received = new LongAdder();
+        return this.measure(Operation.DOWNLOAD, () -> super.download(key,
+            inputStream -> reader.read(new CountingInputStream(inputStream, received)), executorService),
+            schematic -> received.sum());
+    }
+
+    @NotNull private <T> CompletableFuture<T> measure(@NotNull final Operation operation,
+        @NotNull final Supplier<CompletableFuture<T>> request, @NotNull final ToLongFunction<T> bytes) {
+        final long start = System.nanoTime();
+        try {
+            this.listener.onStart(operation);
+        } catch (final RuntimeException ignored) {
+            // Metrics must not affect the operation
+        }
+        CompletableFuture<T> future;
+        try {
+            future = request.get();
+        } catch (final RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        return future.whenComplete((result, throwable) -> {
+            final long latency = System.nanoTime() - start;
+            try {
+                if (throwable == null) {
+                    this.listener.onSuccess(operation, latency, bytes.applyAsLong(result));
+                } else {
+                    final Throwable failure = throwable instanceof CompletionException &&
+                        throwable.getCause() != null ? throwable.getCause() : throwable;
+                    this.listener.onFailure(operation, latency, statusCode(failure), failure);
+                }
+            } catch (final RuntimeException ignored) {
+                // Metrics must not affect the operation
+            }
+        });
+    }
+
+    private static int statusCode(@NotNull final Throwable failure) {
+        if (failure instanceof ResourceRetrievalException) {
+            return ((ResourceRetrievalException) failure).getStatusCode();
+        }
+        if (failure instanceof ResourceUploadException) {
+            return ((ResourceUploadException) failure).getStatusCode();
+        }
+        return -1;
+    }
+
+
+    /**
+     * Stream that counts the bytes read from it
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final LongAdder count;
+
+        private CountingInputStream(@NotNull final InputStream inputStream, @NotNull final LongAdder count) {
+            super(inputStream);
+            this.count = count;
+        }
+
+        @Override public int read() throws IOException {
+            final int read = super.read();
+            if (read != -1) {
+                this.count.increment();
+            }
+            return read;
+        }
+
+        @Override public int read(@NotNull final byte[] bytes, final int offset, final int length)
+            throws IOException {
+            final int read = super.read(bytes, offset, length);
+            if (read > 0) {
+                this.count.add(read);
+            }
+            return read;
+        }
+
+        @Override public long skip(final long length) throws IOException {
+            final long skipped = super.skip(length);
+            this.count.add(skipped);
+            return skipped;
+        }
+
+    }
+
+}
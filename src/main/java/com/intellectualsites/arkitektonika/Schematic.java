@@ -25,13 +25,18 @@ package com.intellectualsites.arkitektonika;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.io.UncheckedIOException;
+import java.util.Map;
+
 /**
- * Object that represents a downloaded schematic
+ * Object that represents a downloaded schematic. Its metadata is read lazily,
+ * and the content is only inflated as far as the requested metadata requires
  */
 public final class Schematic {
 
     private final String key;
     private final byte[] content;
+    private SchematicIndex index;
 
     public Schematic(@NotNull final String key, @NotNull final byte[] content) {
         this.key = key;
@@ -56,4 +61,93 @@ public final class Schematic {
         return this.content;
     }
 
+    /**
+     * Get the width of the schematic, along the X axis
+     *
+     * @return Width, or {@code -1} if the schematic does not specify it
+     * @throws UncheckedIOException If the schematic is not a valid gzip compressed NBT document
+     */
+    public int getWidth() {
+        return this.index(SchematicIndex.DIMENSIONS).getWidth();
+    }
+
+    /**
+     * Get the height of the schematic, along the Y axis
+     *
+     * @return Height, or {@code -1} if the schematic does not specify it
+     * @throws UncheckedIOException If the schematic is not a valid gzip compressed NBT document
+     */
+    public int getHeight() {
+        return this.index(SchematicIndex.DIMENSIONS).getHeight();
+    }
+
+    /**
+     * Get the length of the schematic, along the Z axis
+     *
+     * @return Length, or {@code -1} if the schematic does not specify it
+     * @throws UncheckedIOException If the schematic is not a valid gzip compressed NBT document
+     */
+    public int getLength() {
+        return this.index(SchematicIndex.DIMENSIONS).getLength();
+    }
+
+    /**
+     * Get the number of blocks in the bounding box of the schematic
+     *
+     * @return Volume, or {@code -1} if the schematic does not specify its dimensions
+     * @throws UncheckedIOException If the schematic is not a valid gzip compressed NBT document
+     */
+    public long getVolume() {
+        final SchematicIndex index = this.index(SchematicIndex.DIMENSIONS);
+        if (index.getWidth() == -1 || index.getHeight() == -1 || index.getLength() == -1) {
+            return -1;
+        }
+        return (long) index.getWidth() * index.getHeight() * index.getLength();
+    }
+
+    /**
+     * Get the version of the Sponge schematic format
+     *
+     * @return Format version, or {@code -1} if the schematic does not specify it
+     * @throws UncheckedIOException If the schematic is not a valid gzip compressed NBT document
+     */
+    public int getVersion() {
+        return this.index(SchematicIndex.VERSION).getVersion();
+    }
+
+    /**
+     * Get the Minecraft data version the schematic was created with
+     *
+     * @return Data version, or {@code -1} if the schematic does not specify it
+     * @throws UncheckedIOException If the schematic is not a valid gzip compressed NBT document
+     */
+    public int getDataVersion() {
+        return this.index(SchematicIndex.DATA_VERSION).getDataVersion();
+    }
+
+    /**
+     * Get the block palette, which maps block states to the IDs used in the block data
+     *
+     * @return Unmodifiable palette in the order of the schematic, which is empty if the
+     *     schematic does not have one
+     * @throws UncheckedIOException If the schematic is not a valid gzip compressed NBT document
+     */
+    @NotNull public Map<String, Integer> getPalette() {
+        return this.index(SchematicIndex.PALETTE).getPalette();
+    }
+
+    /**
+     * Get the index of the schematic metadata, scanning as far as the fields require
+     *
+     * @param fields Fields that are requested
+     * @return Index
+     */
+    @NotNull private synchronized SchematicIndex index(final int fields) {
+        if (this.index == null) {
+            this.index = new SchematicIndex(this.content);
+        }
+        this.index.resolve(fields);
+        return this.index;
+    }
+
 }
@@ -0,0 +1,202 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import com.intellectualsites.arkitektonika.nbt.NbtScanner;
+import com.intellectualsites.arkitektonika.nbt.NbtType;
+import com.intellectualsites.arkitektonika.nbt.NbtVisitor;
+import com.intellectualsites.arkitektonika.nbt.SchematicFormatException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Index of the metadata of a {@link Schematic}, which is built on demand. The
+ * schematic is only inflated as far as the requested fields require, and block
+ * data is skipped without being buffered. Scanning resumes where it stopped when
+ * fields that come later in the schematic are requested
+ */
+final class SchematicIndex implements NbtVisitor {
+
+    static final int DIMENSIONS = 1;
+    static final int VERSION = 2;
+    static final int DATA_VERSION = 4;
+    static final int PALETTE = 8;
+    private static final int ALL = DIMENSIONS | VERSION | DATA_VERSION | PALETTE;
+
+    private final byte[] content;
+    private final NbtScanner scanner = new NbtScanner(this);
+    private final Map<String, Integer> palette = new LinkedHashMap<>();
+    private int position;
+    private int resolved;
+    private int requested;
+    private UncheckedIOException failure;
+
+    private int width = -1;
+    private int height = -1;
+    private int length = -1;
+    private int version = -1;
+    private int dataVersion = -1;
+
+    // Sponge schematics version 3 nest their fields in a Schematic compound
+    private boolean nested;
+    private boolean blocks;
+    private int paletteDepth = -1;
+
+    SchematicIndex(@NotNull final byte[] content) {
+        this.content = content;
+    }
+
+    /**
+     * Scan the schematic until the given fields are known
+     *
+     * @param fields Fields to resolve
+     * @throws UncheckedIOException If the schematic is not a valid gzip compressed NBT document
+     */
+    void resolve(final int fields) {
+        if (this.failure != null) {
+            throw this.failure;
+        }
+        if ((this.resolved & fields) == fields) {
+            return;
+        }
+        this.requested = fields;
+        try {
+            this.position += this.scanner.update(this.content, this.position, this.content.length - this.position);
+            if (!this.isSatisfied()) {
+                this.scanner.finish();
+            }
+        } catch (final SchematicFormatException e) {
+            this.failure = new UncheckedIOException("The schematic could not be read", e);
+            this.scanner.close();
+            throw this.failure;
+        }
+    }
+
+    int getWidth() {
+        return this.width;
+    }
+
+    int getHeight() {
+        return this.height;
+    }
+
+    int getLength() {
+        return this.length;
+    }
+
+    int getVersion() {
+        return this.version;
+    }
+
+    int getDataVersion() {
+        return this.dataVersion;
+    }
+
+    @NotNull Map<String, Integer> getPalette() {
+        return Collections.unmodifiableMap(this.palette);
+    }
+
+    @Override public boolean isSatisfied() {
+        return (this.resolved & this.requested) == this.requested;
+    }
+
+    @Override public void visitCompound(final int depth, @Nullable final String name) {
+        if (depth == 1 && "Schematic".equals(name)) {
+            this.nested = true;
+        }
+        final int level = this.level(depth);
+        if (level == 1 && "Blocks".equals(name)) {
+            this.blocks = true;
+        } else if ((level == 1 || level == 2 && this.blocks) && "Palette".equals(name)) {
+            this.paletteDepth = depth;
+        }
+    }
+
+    @Override public void visitCompoundEnd(final int depth) {
+        if (depth == this.paletteDepth) {
+            this.paletteDepth = -1;
+            this.resolved |= PALETTE;
+        } else if (this.level(depth) == 1) {
+            this.blocks = false;
+        } else if (depth == 1) {
+            this.nested = false;
+        }
+    }
+
+    @Override public void visitNumber(final int depth, @Nullable final String name, final int type, final long value) {
+        if (this.paletteDepth != -1 && depth == this.paletteDepth + 1 && type == NbtType.INT) {
+            this.palette.put(name, (int) value);
+            return;
+        }
+        if (this.level(depth) != 1 || name == null) {
+            return;
+        }
+        if (type == NbtType.SHORT) {
+            switch (name) {
+                case "Width":
+                    this.width = (int) value & 0xFFFF;
+                    break;
+                case "Height":
+                    this.height = (int) value & 0xFFFF;
+                    break;
+                case "Length":
+                    this.length = (int) value & 0xFFFF;
+                    break;
+                default:
+                    return;
+            }
+            if (this.width != -1 && this.height != -1 && this.length != -1) {
+                this.resolved |= DIMENSIONS;
+            }
+        } else if (type == NbtType.INT && "Version".equals(name)) {
+            this.version = (int) value;
+            this.resolved |= VERSION;
+        } else if (type == NbtType.INT && "DataVersion".equals(name)) {
+            this.dataVersion = (int) value;
+            this.resolved |= DATA_VERSION;
+        }
+    }
+
+    @Override public void visitEnd() {
+        // Fields that have not been found by now are not part of the schematic
+        this.resolved = ALL;
+        this.scanner.close();
+    }
+
+    /**
+     * Get the depth of a tag relative to the compound that holds the schematic fields
+     *
+     * @param depth Absolute depth
+     * @return Relative depth
+     */
+    private int level(final int depth) {
+        return this.nested ? depth - 1 : depth;
+    }
+
+}
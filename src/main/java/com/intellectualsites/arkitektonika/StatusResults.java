@@ -0,0 +1,85 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Outcome of a batch of status checks. A failed check does not abort the batch,
+ * so the statuses of the other keys are available alongside the failures
+ *
+ * @see Arkitektonika#checkStatusAll(java.util.Collection, int)
+ */
+public final class StatusResults {
+
+    private final Map<String, ResourceStatus> statuses;
+    private final Map<String, Throwable> failures;
+
+    StatusResults(@NotNull final Map<String, ResourceStatus> statuses, @NotNull final Map<String, Throwable> failures) {
+        this.statuses = Collections.unmodifiableMap(statuses);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Check whether every status check succeeded
+     *
+     * @return {@code true} if no status check failed
+     */
+    public boolean isSuccessful() {
+        return this.failures.isEmpty();
+    }
+
+    /**
+     * Get the status of every key that was checked successfully
+     *
+     * @return Statuses by access key, in iteration order
+     */
+    @NotNull public Map<String, ResourceStatus> getStatuses() {
+        return this.statuses;
+    }
+
+    /**
+     * Get the status of a key
+     *
+     * @param key Schematic access key
+     * @return Status, or {@code null} if the key was not checked or its check failed
+     */
+    @Nullable public ResourceStatus getStatus(@NotNull final String key) {
+        return this.statuses.get(key);
+    }
+
+    /**
+     * Get the reason the status check of every failed key failed
+     *
+     * @return Failures by access key, in iteration order
+     */
+    @NotNull public Map<String, Throwable> getFailures() {
+        return this.failures;
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Outcome of a single upload in a batch
+ *
+ * @param <T> Schematic source type
+ * @see Arkitektonika#uploadAll(Iterable, int, java.util.function.Consumer)
+ */
+public final class UploadResult<T> {
+
+    private final T source;
+    private final SchematicKeys keys;
+    private final Throwable failure;
+
+    UploadResult(@NotNull final T source, @Nullable final SchematicKeys keys, @Nullable final Throwable failure) {
+        this.source = source;
+        this.keys = keys;
+        this.failure = failure;
+    }
+
+    /**
+     * Get the uploaded schematic source
+     *
+     * @return Schematic source
+     */
+    @NotNull public T getSource() {
+        return this.source;
+    }
+
+    /**
+     * Check whether the upload succeeded
+     *
+     * @return {@code true} if the schematic was uploaded
+     */
+    public boolean isSuccessful() {
+        return this.failure == null;
+    }
+
+    /**
+     * Get the generated keys
+     *
+     * @return Generated keys, or {@code null} if the upload failed
+     */
+    @Nullable public SchematicKeys getKeys() {
+        return this.keys;
+    }
+
+    /**
+     * Get the reason the upload failed
+     *
+     * @return Failure, or {@code null} if the upload succeeded
+     */
+    @Nullable public Throwable getFailure() {
+        return this.failure;
+    }
+
+}
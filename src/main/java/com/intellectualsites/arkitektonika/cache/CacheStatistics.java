@@ -0,0 +1,119 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.cache;
+
+/**
+ * Snapshot of the statistics of a cache
+ */
+public final class CacheStatistics {
+
+    private final long memoryHits;
+    private final long diskHits;
+    private final long misses;
+    private final long evictions;
+    private final long memorySize;
+    private final long diskSize;
+
+    public CacheStatistics(final long memoryHits, final long diskHits, final long misses, final long evictions,
+        final long memorySize, final long diskSize) {
+        this.memoryHits = memoryHits;
+        this.diskHits = diskHits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.memorySize = memorySize;
+        this.diskSize = diskSize;
+    }
+
+    /**
+     * Get the number of lookups that were served from memory
+     *
+     * @return Number of memory hits
+     */
+    public long getMemoryHits() {
+        return this.memoryHits;
+    }
+
+    /**
+     * Get the number of lookups that were served from disk
+     *
+     * @return Number of disk hits
+     */
+    public long getDiskHits() {
+        return this.diskHits;
+    }
+
+    /**
+     * Get the number of lookups that could not be served from the cache
+     *
+     * @return Number of misses
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Get the number of entries that were removed to stay within the capacity
+     *
+     * @return Number of evictions
+     */
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Get the number of bytes currently held in memory
+     *
+     * @return Memory size in bytes
+     */
+    public long getMemorySize() {
+        return this.memorySize;
+    }
+
+    /**
+     * Get the number of bytes currently stored on disk
+     *
+     * @return Disk size in bytes
+     */
+    public long getDiskSize() {
+        return this.diskSize;
+    }
+
+    /**
+     * Get the fraction of lookups that were served from the cache
+     *
+     * @return Hit rate, between 0 and 1
+     */
+    public double getHitRate() {
+        final long hits = this.memoryHits + this.diskHits;
+        final long total = hits + this.misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override public String toString() {
+        return String.format("CacheStatistics{memoryHits=%d, diskHits=%d, misses=%d, evictions=%d, memorySize=%d, "
+            + "diskSize=%d}", this.memoryHits, this.diskHits, this.misses, this.evictions, this.memorySize,
+            this.diskSize);
+    }
+
+}
@@ -0,0 +1,601 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Two-tier cache of downloaded schematics, keyed by access key. The memory tier
+ * is a least recently used map bounded by the total content size. The optional
+ * disk tier stores every schematic in its own file, and is bounded by a byte budget.
+ * <p>
+ * Schematics behind an access key never change, so entries never expire. They are
+ * only removed to stay within the capacity, or when they are {@link #invalidate(String)
+ * invalidated} because the schematic has been deleted. Content served from the memory
+ * tier is shared between callers, and must not be modified
+ * <p>
+ * Downloads that are still running when their schematic is invalidated must not add it
+ * back afterwards. Every invalidation therefore advances a {@link #stamp() stamp}, and
+ * content is only added if its key has not been invalidated since the stamp was taken
+ */
+public final class DownloadCache {
+
+    private static final String EXTENSION = ".schem";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    /**
+     * Number of recent invalidations that are remembered. Content stamped before the
+     * oldest remembered invalidation is rejected, as its key may have been invalidated
+     */
+    private static final int INVALIDATIONS = 1024;
+
+    private final long memoryCapacity;
+    private final Path directory;
+    private final long diskCapacity;
+
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long memorySize;
+    private long diskSize;
+
+    private final LinkedHashMap<String, Long> invalidations = new LinkedHashMap<>();
+    private long generation;
+    private long oldestStamp;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create a new cache. If the disk tier is enabled, the schematics that are
+     * already stored in its directory are added to the cache
+     *
+     * @param settings Cache settings
+     * @throws UncheckedIOException If the cache directory cannot be read
+     */
+    public DownloadCache(@NotNull final DownloadCacheSettings settings) {
+        this.memoryCapacity = settings.getMemoryCapacity();
+        this.directory = settings.getDirectory();
+        this.diskCapacity = settings.getDiskCapacity();
+        if (this.directory != null) {
+            try {
+                this.loadDirectory();
+            } catch (final IOException e) {
+                throw new UncheckedIOException("Failed to load the download cache", e);
+            }
+        }
+    }
+
+    private void loadDirectory() throws IOException {
+        Files.createDirectories(this.directory);
+        final List<Path> files = new ArrayList<>();
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+            for (final Path file : stream) {
+                final String name = file.getFileName().toString();
+                if (name.endsWith(TEMPORARY_EXTENSION)) {
+                    // Left behind by an interrupted download
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(EXTENSION)) {
+                    files.add(file);
+                }
+            }
+        }
+        // Add the least recently written files first, so that they are evicted first
+        final Map<Path, Long> modified = new LinkedHashMap<>();
+        for (final Path file : files) {
+            modified.put(file, Files.getLastModifiedTime(file).toMillis());
+        }
+        files.sort((first, second) -> Long.compare(modified.get(first), modified.get(second)));
+        synchronized (this.disk) {
+            for (final Path file : files) {
+                final String key = this.decode(file);
+                if (key != null) {
+                    final long size = Files.size(file);
+                    this.disk.put(key, size);
+                    this.diskSize += size;
+                }
+            }
+            this.trimDisk();
+        }
+    }
+
+    /**
+     * Get a schematic from memory
+     *
+     * @param key Access key
+     * @return Schematic content, or {@code null} if it is not held in memory
+     */
+    @Nullable public byte[] getFromMemory(@NotNull final String key) {
+        final byte[] content;
+        synchronized (this.memory) {
+            content = this.memory.get(key);
+        }
+        if (content != null) {
+            this.memoryHits.increment();
+        }
+        return content;
+    }
+
+    /**
+     * Get a schematic from memory, or read it from disk. Schematics read
+     * from disk are added to the memory tier
+     *
+     * @param key Access key
+     * @return Schematic content, or {@code null} if the schematic is not cached
+     */
+    @Nullable public byte[] get(@NotNull final String key) {
+        final byte[] cached = this.getFromMemory(key);
+        if (cached != null) {
+            return cached;
+        }
+        final long stamp = this.stamp();
+        final Path file = this.lookupFile(key);
+        if (file != null) {
+            try {
+                final byte[] content = Files.readAllBytes(file);
+                this.diskHits.increment();
+                this.putMemory(key, content, stamp);
+                return content;
+            } catch (final IOException e) {
+                this.removeFile(key);
+            }
+        }
+        this.misses.increment();
+        return null;
+    }
+
+    /**
+     * Write a cached schematic to a channel. Schematics stored on disk are
+     * transferred from their file, without loading them into memory
+     *
+     * @param key     Access key
+     * @param channel Channel to write to
+     * @return Number of bytes written, or {@code -1} if the schematic is not cached
+     * @throws IOException If the schematic could not be written to the channel
+     */
+    public long transferTo(@NotNull final String key, @NotNull final WritableByteChannel channel)
+        throws IOException {
+        final byte[] content = this.getFromMemory(key);
+        if (content != null) {
+            final ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return content.length;
+        }
+        final Path file = this.lookupFile(key);
+        if (file != null) {
+            final FileChannel fileChannel;
+            try {
+                fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+            } catch (final NoSuchFileException e) {
+                this.removeFile(key);
+                this.misses.increment();
+                return -1;
+            }
+            try (final FileChannel source = fileChannel) {
+                final long size = source.size();
+                long position = 0;
+                while (position < size) {
+                    position += source.transferTo(position, size - position, channel);
+                }
+                this.diskHits.increment();
+                return size;
+            }
+        }
+        this.misses.increment();
+        return -1;
+    }
+
+    /**
+     * Get the current invalidation stamp. Content that is added with this stamp is
+     * discarded if its key is invalidated after the stamp has been taken. Take the
+     * stamp before a download starts, and pass it along once the download is complete
+     *
+     * @return Invalidation stamp
+     */
+    public long stamp() {
+        synchronized (this.invalidations) {
+            return this.generation;
+        }
+    }
+
+    /**
+     * Check whether a key has not been invalidated since a stamp was taken
+     *
+     * @param key   Access key
+     * @param stamp Invalidation stamp
+     * @return {@code true} if content with the stamp may be added
+     */
+    private boolean isCurrent(@NotNull final String key, final long stamp) {
+        synchronized (this.invalidations) {
+            final Long invalidated = this.invalidations.get(key);
+            return stamp >= this.oldestStamp && (invalidated == null || invalidated <= stamp);
+        }
+    }
+
+    /**
+     * Add a schematic to the cache
+     *
+     * @param key     Access key
+     * @param content Schematic content. It must not be modified afterwards
+     */
+    public void put(@NotNull final String key, @NotNull final byte[] content) {
+        this.put(key, content, this.stamp());
+    }
+
+    /**
+     * Add a schematic to the cache, unless its key has been invalidated since the stamp was taken
+     *
+     * @param key     Access key
+     * @param content Schematic content. It must not be modified afterwards
+     * @param stamp   {@link #stamp() Stamp} taken before the schematic was downloaded
+     */
+    public void put(@NotNull final String key, @NotNull final byte[] content, final long stamp) {
+        this.putMemory(key, content, stamp);
+        if (this.directory == null || content.length > this.diskCapacity) {
+            return;
+        }
+        try (final Writer writer = new Writer(key, false, stamp)) {
+            writer.write(ByteBuffer.wrap(content));
+            writer.commit();
+        } catch (final IOException ignored) {
+            // The cache is best effort
+        }
+    }
+
+    /**
+     * Add a schematic that is stored in a file to the cache. The file is copied,
+     * and is not modified
+     *
+     * @param key  Access key
+     * @param file Schematic file
+     * @throws IOException If the file cannot be read
+     */
+    public void store(@NotNull final String key, @NotNull final Path file) throws IOException {
+        this.store(key, file, this.stamp());
+    }
+
+    /**
+     * Add a schematic that is stored in a file to the cache, unless its key has been
+     * invalidated since the stamp was taken. The file is copied, and is not modified
+     *
+     * @param key   Access key
+     * @param file  Schematic file
+     * @param stamp {@link #stamp() Stamp} taken before the schematic was downloaded
+     * @throws IOException If the file cannot be read
+     */
+    public void store(@NotNull final String key, @NotNull final Path file, final long stamp) throws IOException {
+        try (final Writer writer = new Writer(key, this.memoryCapacity > 0, stamp);
+             final FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = source.size();
+            long position = 0;
+            while (position < size) {
+                position += source.transferTo(position, size - position, writer);
+            }
+            writer.commit();
+        }
+    }
+
+    /**
+     * Create a writer that adds a schematic to the cache while it is being
+     * downloaded. The schematic is only added once the writer is {@link Writer#commit()
+     * committed}, and only if it has not been invalidated since the writer was created.
+     * Closing the writer without committing it discards the schematic
+     *
+     * @param key Access key
+     * @return Created writer
+     * @throws IOException If the temporary file cannot be created
+     */
+    @NotNull public Writer newWriter(@NotNull final String key) throws IOException {
+        return new Writer(key, this.memoryCapacity > 0, this.stamp());
+    }
+
+    /**
+     * Remove a schematic from both tiers
+     *
+     * @param key Access key
+     */
+    public void invalidate(@NotNull final String key) {
+        // The invalidation is recorded first, so that content that is added concurrently is
+        // either rejected, or added before it is removed below
+        synchronized (this.invalidations) {
+            this.generation++;
+            this.invalidations.remove(key);
+            this.invalidations.put(key, this.generation);
+            if (this.invalidations.size() > INVALIDATIONS) {
+                final Iterator<Long> iterator = this.invalidations.values().iterator();
+                this.oldestStamp = iterator.next();
+                iterator.remove();
+            }
+        }
+        synchronized (this.memory) {
+            final byte[] content = this.memory.remove(key);
+            if (content != null) {
+                this.memorySize -= content.length;
+            }
+        }
+        this.removeFile(key);
+    }
+
+    /**
+     * Get a snapshot of the cache statistics
+     *
+     * @return Cache statistics
+     */
+    @NotNull public CacheStatistics getStatistics() {
+        final long memorySize;
+        synchronized (this.memory) {
+            memorySize = this.memorySize;
+        }
+        final long diskSize;
+        synchronized (this.disk) {
+            diskSize = this.diskSize;
+        }
+        return new CacheStatistics(this.memoryHits.sum(), this.diskHits.sum(), this.misses.sum(),
+            this.evictions.sum(), memorySize, diskSize);
+    }
+
+    private void putMemory(@NotNull final String key, @NotNull final byte[] content, final long stamp) {
+        if (content.length > this.memoryCapacity) {
+            return;
+        }
+        synchronized (this.memory) {
+            if (!this.isCurrent(key, stamp)) {
+                return;
+            }
+            final byte[] previous = this.memory.put(key, content);
+            if (previous != null) {
+                this.memorySize -= previous.length;
+            }
+            this.memorySize += content.length;
+            final Iterator<byte[]> iterator = this.memory.values().iterator();
+            while (this.memorySize > this.memoryCapacity && iterator.hasNext()) {
+                this.memorySize -= iterator.next().length;
+                iterator.remove();
+                this.evictions.increment();
+            }
+        }
+    }
+
+    @Nullable private Path lookupFile(@NotNull final String key) {
+        if (this.directory == null) {
+            return null;
+        }
+        synchronized (this.disk) {
+            // Accessing the entry marks it as recently used
+            return this.disk.get(key) == null ? null : this.file(key);
+        }
+    }
+
+    private void removeFile(@NotNull final String key) {
+        if (this.directory == null) {
+            return;
+        }
+        synchronized (this.disk) {
+            final Long size = this.disk.remove(key);
+            if (size != null) {
+                this.diskSize -= size;
+            }
+            this.deleteQuietly(this.file(key));
+        }
+    }
+
+    /**
+     * Remove the least recently used files until the disk tier is within its
+     * capacity. Must be called while holding the lock of the disk index
+     */
+    private void trimDisk() {
+        final Iterator<Map.Entry<String, Long>> iterator = this.disk.entrySet().iterator();
+        while (this.diskSize > this.diskCapacity && iterator.hasNext()) {
+            final Map.Entry<String, Long> entry = iterator.next();
+            this.diskSize -= entry.getValue();
+            iterator.remove();
+            this.deleteQuietly(this.file(entry.getKey()));
+            this.evictions.increment();
+        }
+    }
+
+    @NotNull private Path file(@NotNull final String key) {
+        // Access keys are encoded, so that they are always valid file names
+        return this.directory.resolve(Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(key.getBytes(StandardCharsets.UTF_8)) + EXTENSION);
+    }
+
+    @Nullable private String decode(@NotNull final Path file) {
+        final String name = file.getFileName().toString();
+        try {
+            return new String(Base64.getUrlDecoder().decode(name.substring(0, name.length() - EXTENSION.length())),
+                StandardCharsets.UTF_8);
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void deleteQuietly(@NotNull final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (final IOException ignored) {
+        }
+    }
+
+
+    /**
+     * Channel that adds a schematic to the cache while it is being downloaded
+     */
+    public final class Writer implements WritableByteChannel {
+
+        private final String key;
+        private final long stamp;
+        private final Path temporaryFile;
+        private FileChannel fileChannel;
+        private ByteArrayOutputStream buffer;
+        private long written;
+        private boolean open = true;
+
+        private Writer(@NotNull final String key, final boolean buffered, final long stamp) throws IOException {
+            this.key = key;
+            this.stamp = stamp;
+            if (directory != null) {
+                this.temporaryFile = Files.createTempFile(directory, "download", TEMPORARY_EXTENSION);
+                this.fileChannel = FileChannel.open(this.temporaryFile, StandardOpenOption.WRITE);
+            } else {
+                this.temporaryFile = null;
+                this.fileChannel = null;
+            }
+            if (buffered) {
+                this.buffer = new ByteArrayOutputStream();
+            }
+        }
+
+        @Override public int write(@NotNull final ByteBuffer source) throws IOException {
+            final int length = source.remaining();
+            if (this.buffer != null) {
+                if (this.written + length > memoryCapacity) {
+                    // Too large for the memory tier
+                    this.buffer = null;
+                } else if (source.hasArray()) {
+                    this.buffer.write(source.array(), source.arrayOffset() + source.position(), length);
+                } else {
+                    final byte[] bytes = new byte[length];
+                    source.duplicate().get(bytes);
+                    this.buffer.write(bytes, 0, length);
+                }
+            }
+            this.writeToDisk(source);
+            source.position(source.limit());
+            this.written += length;
+            return length;
+        }
+
+        private void writeToDisk(@NotNull final ByteBuffer source) throws IOException {
+            if (this.fileChannel == null) {
+                return;
+            }
+            if (this.written + source.remaining() > diskCapacity) {
+                // Too large for the disk tier
+                this.discardFile();
+                return;
+            }
+            final ByteBuffer duplicate = source.duplicate();
+            while (duplicate.hasRemaining()) {
+                this.fileChannel.write(duplicate);
+            }
+        }
+
+        /**
+         * Add the written schematic to the cache
+         *
+         * @throws IOException If the schematic cannot be moved into the cache directory
+         */
+        public void commit() throws IOException {
+            if (!this.open) {
+                throw new IOException("The writer has been closed");
+            }
+            this.open = false;
+            if (this.buffer != null) {
+                putMemory(this.key, this.buffer.toByteArray(), this.stamp);
+                this.buffer = null;
+            }
+            if (this.fileChannel == null) {
+                return;
+            }
+            this.fileChannel.close();
+            synchronized (disk) {
+                if (!isCurrent(this.key, this.stamp)) {
+                    deleteQuietly(this.temporaryFile);
+                    return;
+                }
+                final Path file = file(this.key);
+                try {
+                    try {
+                        Files.move(this.temporaryFile, file, StandardCopyOption.ATOMIC_MOVE,
+                            StandardCopyOption.REPLACE_EXISTING);
+                    } catch (final AtomicMoveNotSupportedException e) {
+                        Files.move(this.temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } catch (final IOException e) {
+                    deleteQuietly(this.temporaryFile);
+                    throw e;
+                }
+                final Long previous = disk.put(this.key, this.written);
+                if (previous != null) {
+                    diskSize -= previous;
+                }
+                diskSize += this.written;
+                trimDisk();
+            }
+        }
+
+        private void discardFile() {
+            try {
+                this.fileChannel.close();
+            } catch (final IOException ignored) {
+            }
+            this.fileChannel = null;
+            deleteQuietly(this.temporaryFile);
+        }
+
+        @Override public boolean isOpen() {
+            return this.open;
+        }
+
+        @Override public void close() {
+            if (!this.open) {
+                return;
+            }
+            this.open = false;
+            this.buffer = null;
+            if (this.fileChannel != null) {
+                this.discardFile();
+            }
+        }
+
+    }
+
+}
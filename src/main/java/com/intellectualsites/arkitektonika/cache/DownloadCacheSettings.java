@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Settings of a {@link DownloadCache}
+ *
+ * @see DownloadCacheSettings#builder() to create new settings
+ */
+public final class DownloadCacheSettings {
+
+    private final long memoryCapacity;
+    private final Path directory;
+    private final long diskCapacity;
+
+    private DownloadCacheSettings(final long memoryCapacity, @Nullable final Path directory, final long diskCapacity) {
+        this.memoryCapacity = memoryCapacity;
+        this.directory = directory;
+        this.diskCapacity = diskCapacity;
+    }
+
+    /**
+     * Create a new {@link DownloadCacheSettings} {@link Builder builder}
+     *
+     * @return New builder
+     */
+    @NotNull public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the maximum number of bytes held in memory
+     *
+     * @return Memory capacity in bytes
+     */
+    public long getMemoryCapacity() {
+        return this.memoryCapacity;
+    }
+
+    /**
+     * Get the directory of the disk tier
+     *
+     * @return Cache directory, or {@code null} if the disk tier is disabled
+     */
+    @Nullable public Path getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Get the maximum number of bytes stored on disk
+     *
+     * @return Disk capacity in bytes
+     */
+    public long getDiskCapacity() {
+        return this.diskCapacity;
+    }
+
+
+    /**
+     * Builder class for {@link DownloadCacheSettings} instances.
+     *
+     * @see DownloadCacheSettings#builder() to get a new builder instance
+     */
+    public static final class Builder {
+
+        private long memoryCapacity = 32L * 1024 * 1024;
+        private Path directory;
+        private long diskCapacity;
+
+        private Builder() {
+        }
+
+        /**
+         * Specify the maximum number of bytes held in memory. Schematics that are
+         * larger than the capacity are only stored on disk. Defaults to 32 MiB
+         *
+         * @param memoryCapacity Memory capacity in bytes, or {@code 0} to disable the memory tier
+         * @return The builder instance
+         */
+        @NotNull public Builder withMemoryCapacity(final long memoryCapacity) {
+            if (memoryCapacity < 0) {
+                throw new IllegalArgumentException("The memory capacity must not be negative");
+            }
+            this.memoryCapacity = memoryCapacity;
+            return this;
+        }
+
+        /**
+         * Enable the disk tier. The least recently used schematics are removed once
+         * the stored schematics exceed the capacity. Schematics that are already in
+         * the directory are picked up when the cache is created
+         *
+         * @param directory Cache directory. It is created if it does not exist
+         * @param capacity  Disk capacity in bytes
+         * @return The builder instance
+         */
+        @NotNull public Builder withDiskCache(@NotNull final Path directory, final long capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("The disk capacity must be positive");
+            }
+            this.directory = Objects.requireNonNull(directory);
+            this.diskCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * Create the settings
+         *
+         * @return Created settings
+         */
+        @NotNull public DownloadCacheSettings build() {
+            return new DownloadCacheSettings(this.memoryCapacity, this.directory, this.diskCapacity);
+        }
+
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.cache;
+
+import com.intellectualsites.arkitektonika.ResourceStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of resource statuses, where every status expires after its own time
+ * to live. The cache is split into segments with their own locks, so that
+ * concurrent lookups of different keys rarely contend. Every segment evicts
+ * its least recently used entries once it exceeds its share of the maximum size
+ * <p>
+ * Status checks that are still running when their key is invalidated must not add
+ * their status back afterwards. Every invalidation therefore advances a {@link #stamp()
+ * stamp}, and a status is only added if its key has not been invalidated since the
+ * stamp was taken
+ */
+public final class StatusCache {
+
+    private static final int SEGMENTS = 16;
+
+    /**
+     * Number of recent invalidations that are remembered. Statuses stamped before the
+     * oldest remembered invalidation are rejected, as their key may have been invalidated
+     */
+    private static final int INVALIDATIONS = 1024;
+
+    private final Map<ResourceStatus, Long> timeToLive = new EnumMap<>(ResourceStatus.class);
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    private final LinkedHashMap<String, Long> invalidations = new LinkedHashMap<>();
+    private long generation;
+    private long oldestStamp;
+
+    /**
+     * Create a new cache
+     *
+     * @param settings Cache settings
+     */
+    public StatusCache(@NotNull final StatusCacheSettings settings) {
+        for (final ResourceStatus status : ResourceStatus.values()) {
+            this.timeToLive.put(status, settings.getTimeToLive(status).toNanos());
+        }
+        final int capacity = Math.max(1, (settings.getMaximumSize() + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            this.segments[i] = new Segment(capacity);
+        }
+    }
+
+    /**
+     * Get the cached status of a schematic
+     *
+     * @param key Access key
+     * @return Cached status, or {@code null} if the status is not cached or has expired
+     */
+    @Nullable public ResourceStatus get(@NotNull final String key) {
+        final Segment segment = this.segment(key);
+        synchronized (segment) {
+            final CachedStatus entry = segment.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.expiresAt >= 0) {
+                segment.remove(key);
+                return null;
+            }
+            return entry.status;
+        }
+    }
+
+    /**
+     * Get the current invalidation stamp. A status that is added with this stamp is
+     * discarded if its key is invalidated after the stamp has been taken. Take the
+     * stamp before a status check starts, and pass it along once it is complete
+     *
+     * @return Invalidation stamp
+     */
+    public long stamp() {
+        synchronized (this.invalidations) {
+            return this.generation;
+        }
+    }
+
+    /**
+     * Check whether a key has not been invalidated since a stamp was taken
+     *
+     * @param key   Access key
+     * @param stamp Invalidation stamp
+     * @return {@code true} if a status with the stamp may be added
+     */
+    private boolean isCurrent(@NotNull final String key, final long stamp) {
+        synchronized (this.invalidations) {
+            final Long invalidated = this.invalidations.get(key);
+            return stamp >= this.oldestStamp && (invalidated == null || invalidated <= stamp);
+        }
+    }
+
+    /**
+     * Cache the status of a schematic
+     *
+     * @param key    Access key
+     * @param status Resource status
+     */
+    public void put(@NotNull final String key, @NotNull final ResourceStatus status) {
+        this.put(key, status, this.stamp());
+    }
+
+    /**
+     * Cache the status of a schematic, unless its key has been invalidated since the stamp was taken
+     *
+     * @param key    Access key
+     * @param status Resource status
+     * @param stamp  {@link #stamp() Stamp} taken before the status was checked
+     */
+    public void put(@NotNull final String key, @NotNull final ResourceStatus status, final long stamp) {
+        final long timeToLive = this.timeToLive.get(status);
+        if (timeToLive <= 0) {
+            return;
+        }
+        final Segment segment = this.segment(key);
+        synchronized (segment) {
+            if (!this.isCurrent(key, stamp)) {
+                return;
+            }
+            segment.put(key, new CachedStatus(status, System.nanoTime() + timeToLive));
+        }
+    }
+
+    /**
+     * Remove the status of a schematic from the cache
+     *
+     * @param key Access key
+     */
+    public void invalidate(@NotNull final String key) {
+        // The invalidation is recorded first, so that a status that is added concurrently is
+        // either rejected, or added before it is removed below
+        synchronized (this.invalidations) {
+            this.generation++;
+            this.invalidations.remove(key);
+            this.invalidations.put(key, this.generation);
+            if (this.invalidations.size() > INVALIDATIONS) {
+                final Iterator<Long> iterator = this.invalidations.values().iterator();
+                this.oldestStamp = iterator.next();
+                iterator.remove();
+            }
+        }
+        final Segment segment = this.segment(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    @NotNull private Segment segment(@NotNull final String key) {
+        final int hash = key.hashCode();
+        return this.segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+
+    private static final class CachedStatus {
+
+        private final ResourceStatus status;
+        private final long expiresAt;
+
+        private CachedStatus(@NotNull final ResourceStatus status, final long expiresAt) {
+            this.status = status;
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
+
+    private static final class Segment extends LinkedHashMap<String, CachedStatus> {
+
+        private final int capacity;
+
+        private Segment(final int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override protected boolean removeEldestEntry(final Map.Entry<String, CachedStatus> eldest) {
+            return this.size() > this.capacity;
+        }
+
+    }
+
+}
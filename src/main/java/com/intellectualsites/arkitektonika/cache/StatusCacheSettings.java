@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.cache;
+
+import com.intellectualsites.arkitektonika.ResourceStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Settings of a {@link StatusCache}
+ *
+ * @see StatusCacheSettings#builder() to create new settings
+ */
+public final class StatusCacheSettings {
+
+    private final Map<ResourceStatus, Duration> timeToLive;
+    private final int maximumSize;
+
+    private StatusCacheSettings(@NotNull final Map<ResourceStatus, Duration> timeToLive, final int maximumSize) {
+        this.timeToLive = new EnumMap<>(timeToLive);
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Create a new {@link StatusCacheSettings} {@link Builder builder}
+     *
+     * @return New builder
+     */
+    @NotNull public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the default settings
+     *
+     * @return Default settings
+     */
+    @NotNull public static StatusCacheSettings defaults() {
+        return builder().build();
+    }
+
+    /**
+     * Get how long a status is cached
+     *
+     * @param status Resource status
+     * @return Time to live, which is zero if the status is not cached
+     */
+    @NotNull public Duration getTimeToLive(@NotNull final ResourceStatus status) {
+        return this.timeToLive.get(status);
+    }
+
+    /**
+     * Get the maximum number of cached statuses
+     *
+     * @return Maximum size
+     */
+    public int getMaximumSize() {
+        return this.maximumSize;
+    }
+
+
+    /**
+     * Builder class for {@link StatusCacheSettings} instances.
+     *
+     * @see StatusCacheSettings#builder() to get a new builder instance
+     */
+    public static final class Builder {
+
+        private final Map<ResourceStatus, Duration> timeToLive = new EnumMap<>(ResourceStatus.class);
+        private int maximumSize = 10_000;
+
+        private Builder() {
+            this.timeToLive.put(ResourceStatus.OK, Duration.ofSeconds(5));
+            this.timeToLive.put(ResourceStatus.NON_EXISTENT, Duration.ofMinutes(10));
+            this.timeToLive.put(ResourceStatus.DELETED, Duration.ofHours(24));
+        }
+
+        /**
+         * Specify how long a status is cached. Schematics that have been deleted or
+         * never existed will not become available again, so these statuses are cached
+         * much longer than {@link ResourceStatus#OK}. Defaults to 5 seconds for
+         * {@link ResourceStatus#OK}, 10 minutes for {@link ResourceStatus#NON_EXISTENT}
+         * and 24 hours for {@link ResourceStatus#DELETED}
+         *
+         * @param status     Resource status
+         * @param timeToLive Time to live, or {@link Duration#ZERO} to not cache the status
+         * @return The builder instance
+         */
+        @NotNull public Builder withTimeToLive(@NotNull final ResourceStatus status,
+            @NotNull final Duration timeToLive) {
+            if (timeToLive.isNegative()) {
+                throw new IllegalArgumentException("The time to live must not be negative");
+            }
+            this.timeToLive.put(Objects.requireNonNull(status), timeToLive);
+            return this;
+        }
+
+        /**
+         * Specify the maximum number of cached statuses. Defaults to 10000
+         *
+         * @param maximumSize Maximum size
+         * @return The builder instance
+         */
+        @NotNull public Builder withMaximumSize(final int maximumSize) {
+            if (maximumSize <= 0) {
+                throw new IllegalArgumentException("The maximum size must be positive");
+            }
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Create the settings
+         *
+         * @return Created settings
+         */
+        @NotNull public StatusCacheSettings build() {
+            return new StatusCacheSettings(this.timeToLive, this.maximumSize);
+        }
+
+    }
+
+}
@@ -26,7 +26,8 @@ package com.intellectualsites.arkitektonika.exceptions;
 import org.jetbrains.annotations.NotNull;
 
 /**
- * Thrown when an uploaded entity is not a valid NBT object
+ * Thrown when an uploaded entity is not a valid NBT object, either by the server or
+ * by local validation before the upload completed
  */
 public class InvalidFormatException extends ResourceUploadException {
 
@@ -34,4 +35,8 @@ public class InvalidFormatException extends ResourceUploadException {
         super(resource, code, message, "Uploaded file is not of valid NBT format");
     }
 
+    public InvalidFormatException(@NotNull final String resource, @NotNull final Throwable cause) {
+        super(resource, cause);
+    }
+
 }
@@ -31,15 +31,18 @@ import org.jetbrains.annotations.NotNull;
 public class ResourceRetrievalException extends RuntimeException {
 
     private final String resource;
+    private final int statusCode;
 
     public ResourceRetrievalException(@NotNull final String resource, final int code, @NotNull final String message) {
         super(String.format("Failed to retrieve '%s'. Code: %d (%s)", resource, code, message));
         this.resource = resource;
+        this.statusCode = code;
     }
 
     public ResourceRetrievalException(@NotNull final String resource, @NotNull final Throwable cause) {
         super(String.format("Failed to retrieve '%s': %s", resource, cause.getMessage()), cause);
         this.resource = resource;
+        this.statusCode = -1;
     }
 
     /**
@@ -51,4 +54,13 @@ public class ResourceRetrievalException extends RuntimeException {
         return this.resource;
     }
 
+    /**
+     * Get the status code of the response
+     *
+     * @return HTTP status code, or {@code -1} if no response was received
+     */
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
 }
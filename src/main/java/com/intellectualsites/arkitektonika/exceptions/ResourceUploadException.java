@@ -31,15 +31,18 @@ import org.jetbrains.annotations.NotNull;
 public class ResourceUploadException extends RuntimeException {
 
     private final String resource;
+    private final int statusCode;
 
     public ResourceUploadException(@NotNull final String resource, final int code, @NotNull final String message, @NotNull final String error) {
         super(String.format("Failed to upload '%s'. Code: %d (%s). Reason: %s", resource, code, message, error));
         this.resource = resource;
+        this.statusCode = code;
     }
 
     public ResourceUploadException(@NotNull final String resource, @NotNull final Throwable cause) {
         super(String.format("Failed to upload '%s': %s", resource, cause.getMessage()), cause);
         this.resource = resource;
+        this.statusCode = -1;
     }
 
     /**
@@ -51,4 +54,13 @@ public class ResourceUploadException extends RuntimeException {
         return this.resource;
     }
 
+    /**
+     * Get the status code of the response
+     *
+     * @return HTTP status code, or {@code -1} if no response was received
+     */
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
 }
@@ -0,0 +1,78 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Listener that is notified around every operation of a client. Listeners are
+ * called from the threads that complete the operations, and must therefore be
+ * thread safe and must not block. Exceptions thrown by a listener are ignored
+ *
+ * @see HistogramMetricsListener for an implementation that records latency histograms
+ */
+public interface ClientMetricsListener {
+
+    /**
+     * Called when an operation is started
+     *
+     * @param operation Started operation
+     */
+    default void onStart(@NotNull final Operation operation) {
+    }
+
+    /**
+     * Called when an operation joins an identical request that is already in flight,
+     * rather than sending its own, if request coalescing is enabled. The operation is
+     * still reported through {@link #onStart(Operation)} and its completion callback
+     *
+     * @param operation Coalesced operation
+     */
+    default void onCoalesced(@NotNull final Operation operation) {
+    }
+
+    /**
+     * Called when an operation has completed successfully
+     *
+     * @param operation Completed operation
+     * @param latency   Latency in nanoseconds
+     * @param bytes     Number of schematic bytes uploaded or downloaded, or {@code 0}
+     *                  if the operation does not transfer a schematic or the length is unknown
+     */
+    default void onSuccess(@NotNull final Operation operation, final long latency, final long bytes) {
+    }
+
+    /**
+     * Called when an operation has failed
+     *
+     * @param operation  Failed operation
+     * @param latency    Latency in nanoseconds
+     * @param statusCode Status code of the response, or {@code -1} if no response was received
+     * @param failure    Cause of the failure
+     */
+    default void onFailure(@NotNull final Operation operation, final long latency, final int statusCode,
+        @NotNull final Throwable failure) {
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ClientMetricsListener} that keeps counters and a {@link LatencyHistogram}
+ * for every operation. Recording never blocks
+ */
+public final class HistogramMetricsListener implements ClientMetricsListener {
+
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+
+    public HistogramMetricsListener() {
+        for (final Operation operation : Operation.values()) {
+            this.recorders.put(operation, new Recorder());
+        }
+    }
+
+    @Override public void onStart(@NotNull final Operation operation) {
+        this.recorders.get(operation).inFlight.increment();
+    }
+
+    @Override public void onCoalesced(@NotNull final Operation operation) {
+        this.recorders.get(operation).coalesced.increment();
+    }
+
+    @Override public void onSuccess(@NotNull final Operation operation, final long latency, final long bytes) {
+        final Recorder recorder = this.recorders.get(operation);
+        recorder.inFlight.decrement();
+        recorder.successes.increment();
+        recorder.bytes.add(bytes);
+        recorder.latencies.record(latency);
+    }
+
+    @Override public void onFailure(@NotNull final Operation operation, final long latency, final int statusCode,
+        @NotNull final Throwable failure) {
+        final Recorder recorder = this.recorders.get(operation);
+        recorder.inFlight.decrement();
+        recorder.failures.computeIfAbsent(statusCode, code -> new LongAdder()).increment();
+        recorder.latencies.record(latency);
+    }
+
+    /**
+     * Get a snapshot of the metrics of an operation
+     *
+     * @param operation Operation
+     * @return Operation metrics
+     */
+    @NotNull public OperationMetrics getMetrics(@NotNull final Operation operation) {
+        final Recorder recorder = this.recorders.get(operation);
+        final Map<Integer, Long> failures = new TreeMap<>();
+        long failureCount = 0;
+        for (final Map.Entry<Integer, LongAdder> entry : recorder.failures.entrySet()) {
+            final long count = entry.getValue().sum();
+            failures.put(entry.getKey(), count);
+            failureCount += count;
+        }
+        return new OperationMetrics(recorder.successes.sum(), failureCount, recorder.inFlight.sum(),
+            recorder.coalesced.sum(), recorder.bytes.sum(), Duration.ofNanos(recorder.latencies.getPercentile(0.5)),
+            Duration.ofNanos(recorder.latencies.getPercentile(0.99)),
+            Duration.ofNanos(recorder.latencies.getPercentile(0.999)), failures);
+    }
+
+    /**
+     * Get the latency histogram of an operation, which includes both
+     * successful and failed operations
+     *
+     * @param operation Operation
+     * @return Latency histogram in nanoseconds
+     */
+    @NotNull public LatencyHistogram getLatencies(@NotNull final Operation operation) {
+        return this.recorders.get(operation).latencies;
+    }
+
+    @NotNull @Override public String toString() {
+        final StringBuilder builder = new StringBuilder("HistogramMetricsListener{");
+        for (final Operation operation : Operation.values()) {
+            if (operation.ordinal() > 0) {
+                builder.append(", ");
+            }
+            builder.append(operation).append('=').append(this.getMetrics(operation));
+        }
+        return builder.append('}').toString();
+    }
+
+
+    private static final class Recorder {
+
+        private final LongAdder inFlight = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final ConcurrentMap<Integer, LongAdder> failures = new ConcurrentHashMap<>();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Snapshot of the metrics of an {@link Operation}
+ */
+public final class OperationMetrics {
+
+    private final long successes;
+    private final long failures;
+    private final long inFlight;
+    private final long coalesced;
+    private final long bytes;
+    private final Duration p50;
+    private final Duration p99;
+    private final Duration p999;
+    private final Map<Integer, Long> failuresByStatusCode;
+
+    public OperationMetrics(final long successes, final long failures, final long inFlight, final long coalesced,
+        final long bytes, @NotNull final Duration p50, @NotNull final Duration p99, @NotNull final Duration p999,
+        @NotNull final Map<Integer, Long> failuresByStatusCode) {
+        this.successes = successes;
+        this.failures = failures;
+        this.inFlight = inFlight;
+        this.coalesced = coalesced;
+        this.bytes = bytes;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.failuresByStatusCode = Collections.unmodifiableMap(failuresByStatusCode);
+    }
+
+    /**
+     * Get the number of operations that completed successfully
+     *
+     * @return Number of successful operations
+     */
+    public long getSuccesses() {
+        return this.successes;
+    }
+
+    /**
+     * Get the number of operations that failed
+     *
+     * @return Number of failed operations
+     */
+    public long getFailures() {
+        return this.failures;
+    }
+
+    /**
+     * Get the number of operations that have been started, but have not completed yet
+     *
+     * @return Number of operations in flight
+     */
+    public long getInFlight() {
+        return this.inFlight;
+    }
+
+    /**
+     * Get the number of operations that joined an identical request in flight,
+     * rather than sending their own
+     *
+     * @return Number of coalesced operations
+     */
+    public long getCoalesced() {
+        return this.coalesced;
+    }
+
+    /**
+     * Get the number of schematic bytes that have been uploaded or downloaded
+     *
+     * @return Number of bytes
+     */
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Get the median latency of completed operations
+     *
+     * @return Median latency
+     */
+    @NotNull public Duration getP50() {
+        return this.p50;
+    }
+
+    /**
+     * Get the 99th percentile of the latency of completed operations
+     *
+     * @return 99th percentile latency
+     */
+    @NotNull public Duration getP99() {
+        return this.p99;
+    }
+
+    /**
+     * Get the 99.9th percentile of the latency of completed operations
+     *
+     * @return 99.9th percentile latency
+     */
+    @NotNull public Duration getP999() {
+        return this.p999;
+    }
+
+    /**
+     * Get the number of failed operations, grouped by the status code of the response.
+     * Failures without a response are counted under {@code -1}
+     *
+     * @return Failures by status code
+     */
+    @NotNull public Map<Integer, Long> getFailuresByStatusCode() {
+        return this.failuresByStatusCode;
+    }
+
+    @NotNull @Override public String toString() {
+        return "OperationMetrics{successes=" + this.successes + ", failures=" + this.failures + ", inFlight="
+            + this.inFlight + ", coalesced=" + this.coalesced + ", bytes=" + this.bytes + ", p50=" + this.p50 + ", p99=" + this.p99 + ", p999="
+            + this.p999 + ", failuresByStatusCode=" + this.failuresByStatusCode + '}';
+    }
+
+}
@@ -0,0 +1,480 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.nbt;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Incremental scanner for gzip compressed NBT data. Compressed data is pushed
+ * into the scanner in chunks of any size, and the structure of the document is
+ * reported to a {@link NbtVisitor} as soon as it has been inflated. The content
+ * of strings and arrays is skipped without being buffered, so the memory used by
+ * the scanner does not depend on the size of the document. The scan pauses once
+ * the visitor is satisfied, and resumes when the remaining data is pushed again
+ */
+public final class NbtScanner implements AutoCloseable {
+
+    private static final int MAX_DEPTH = 512;
+    private static final int COMPOUND_FRAME = -1;
+
+    private static final int FLAG_HEADER_CRC = 2;
+    private static final int FLAG_EXTRA = 4;
+    private static final int FLAG_NAME = 8;
+    private static final int FLAG_COMMENT = 16;
+
+    private static final int GZIP_HEADER = 0;
+    private static final int GZIP_EXTRA_LENGTH = 1;
+    private static final int GZIP_EXTRA = 2;
+    private static final int GZIP_NAME = 3;
+    private static final int GZIP_COMMENT = 4;
+    private static final int GZIP_HEADER_CRC = 5;
+    private static final int GZIP_DEFLATE = 6;
+    private static final int GZIP_TRAILER = 7;
+    private static final int GZIP_END = 8;
+
+    private static final int TAG_TYPE = 0;
+    private static final int NAME_LENGTH = 1;
+    private static final int NAME = 2;
+    private static final int NUMBER = 3;
+    private static final int STRING_LENGTH = 4;
+    private static final int ARRAY_LENGTH = 5;
+    private static final int LIST_HEADER = 6;
+    private static final int SKIP = 7;
+    private static final int DONE = 8;
+
+    private final NbtVisitor visitor;
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 checksum = new CRC32();
+    private final byte[] inflated = new byte[8192];
+    private final byte[] gzipBuffer = new byte[10];
+    private final int[] frameTypes = new int[MAX_DEPTH];
+    private final int[] frameRemaining = new int[MAX_DEPTH];
+
+    private int gzipState = GZIP_HEADER;
+    private int gzipNeeded = 10;
+    private int gzipFilled;
+    private long gzipSkip;
+    private int flags;
+    private long inflatedSize;
+    private boolean paused;
+
+    private int state = TAG_TYPE;
+    private byte[] buffer = new byte[64];
+    private int needed = 1;
+    private int filled;
+    private long skip;
+    private int depth;
+    private int type;
+    private String name;
+
+    public NbtScanner(@NotNull final NbtVisitor visitor) {
+        this.visitor = visitor;
+    }
+
+    /**
+     * Push the next chunk of compressed data into the scanner. Data that follows
+     * the gzip member is ignored
+     *
+     * @param bytes  Compressed data
+     * @param offset Offset of the chunk
+     * @param length Length of the chunk
+     * @return Number of bytes consumed, which is less than the length if the visitor
+     *     became satisfied. The remaining bytes must be pushed again to resume the scan
+     * @throws SchematicFormatException If the data is not gzip compressed NBT
+     */
+    public int update(@NotNull final byte[] bytes, final int offset, final int length)
+        throws SchematicFormatException {
+        int position = offset;
+        final int end = offset + length;
+        // A paused scan is resumed even without new data, as the inflater may hold pending output
+        while ((position < end || this.paused) && this.gzipState != GZIP_END) {
+            switch (this.gzipState) {
+                case GZIP_DEFLATE:
+                    position = end - this.inflate(bytes, position, end - position);
+                    if (this.visitor.isSatisfied()) {
+                        return position - offset;
+                    }
+                    break;
+                case GZIP_NAME:
+                case GZIP_COMMENT:
+                    if (bytes[position++] == 0) {
+                        this.advanceHeader(this.gzipState + 1);
+                    }
+                    break;
+                case GZIP_EXTRA:
+                    final int skipped = (int) Math.min(this.gzipSkip, end - position);
+                    position += skipped;
+                    this.gzipSkip -= skipped;
+                    if (this.gzipSkip == 0) {
+                        this.advanceHeader(GZIP_NAME);
+                    }
+                    break;
+                default:
+                    final int copied = Math.min(this.gzipNeeded - this.gzipFilled, end - position);
+                    System.arraycopy(bytes, position, this.gzipBuffer, this.gzipFilled, copied);
+                    position += copied;
+                    this.gzipFilled += copied;
+                    if (this.gzipFilled == this.gzipNeeded) {
+                        this.completeGzipField();
+                    }
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Signal the end of the compressed data
+     *
+     * @throws SchematicFormatException If the data ended before the gzip member was complete
+     */
+    public void finish() throws SchematicFormatException {
+        if (this.gzipState != GZIP_END) {
+            throw new SchematicFormatException("The data ends unexpectedly");
+        }
+    }
+
+    /**
+     * Get whether the whole document has been scanned
+     *
+     * @return {@code true} if the gzip member has ended
+     */
+    public boolean isComplete() {
+        return this.gzipState == GZIP_END;
+    }
+
+    /**
+     * Get the number of bytes that have been inflated so far
+     *
+     * @return Inflated size
+     */
+    public long getInflatedSize() {
+        return this.inflatedSize;
+    }
+
+    private void completeGzipField() throws SchematicFormatException {
+        switch (this.gzipState) {
+            case GZIP_HEADER:
+                if ((this.gzipBuffer[0] & 0xFF) != 0x1F || (this.gzipBuffer[1] & 0xFF) != 0x8B) {
+                    throw new SchematicFormatException("The data is not gzip compressed");
+                }
+                if (this.gzipBuffer[2] != 8) {
+                    throw new SchematicFormatException("Unsupported gzip compression method " + this.gzipBuffer[2]);
+                }
+                this.flags = this.gzipBuffer[3];
+                this.advanceHeader(GZIP_EXTRA_LENGTH);
+                break;
+            case GZIP_EXTRA_LENGTH:
+                this.gzipSkip = (this.gzipBuffer[0] & 0xFF) | (this.gzipBuffer[1] & 0xFF) << 8;
+                this.advanceHeader(this.gzipSkip == 0 ? GZIP_NAME : GZIP_EXTRA);
+                break;
+            case GZIP_HEADER_CRC:
+                this.advanceHeader(GZIP_DEFLATE);
+                break;
+            case GZIP_TRAILER:
+                final long crc = readLittleEndian(this.gzipBuffer, 0);
+                final long size = readLittleEndian(this.gzipBuffer, 4);
+                if (crc != this.checksum.getValue()) {
+                    throw new SchematicFormatException("The gzip checksum does not match");
+                }
+                if (size != (this.inflatedSize & 0xFFFFFFFFL)) {
+                    throw new SchematicFormatException("The gzip size does not match");
+                }
+                if (this.state != DONE) {
+                    throw new SchematicFormatException("The data ends before the root compound");
+                }
+                this.gzipState = GZIP_END;
+                this.visitor.visitEnd();
+                break;
+            default:
+                throw new IllegalStateException("Unexpected gzip state " + this.gzipState);
+        }
+    }
+
+    /**
+     * Move to the next gzip header field that is present according to the flags
+     *
+     * @param next First field to consider
+     */
+    private void advanceHeader(final int next) {
+        int field = next;
+        if (field == GZIP_EXTRA_LENGTH && (this.flags & FLAG_EXTRA) == 0) {
+            field = GZIP_NAME;
+        }
+        if (field == GZIP_NAME && (this.flags & FLAG_NAME) == 0) {
+            field = GZIP_COMMENT;
+        }
+        if (field == GZIP_COMMENT && (this.flags & FLAG_COMMENT) == 0) {
+            field = GZIP_HEADER_CRC;
+        }
+        if (field == GZIP_HEADER_CRC && (this.flags & FLAG_HEADER_CRC) == 0) {
+            field = GZIP_DEFLATE;
+        }
+        this.gzipState = field;
+        this.gzipFilled = 0;
+        this.gzipNeeded = field == GZIP_EXTRA_LENGTH || field == GZIP_HEADER_CRC ? 2 : 0;
+    }
+
+    /**
+     * Inflate compressed data and scan the result, until the input is exhausted,
+     * the deflate stream ends or the visitor is satisfied
+     *
+     * @return Number of bytes that have not been consumed
+     */
+    private int inflate(@NotNull final byte[] bytes, final int offset, final int length)
+        throws SchematicFormatException {
+        this.inflater.setInput(bytes, offset, length);
+        this.paused = false;
+        try {
+            while (true) {
+                final int inflated = this.inflater.inflate(this.inflated);
+                if (inflated > 0) {
+                    this.checksum.update(this.inflated, 0, inflated);
+                    this.inflatedSize += inflated;
+                    this.scan(this.inflated, inflated);
+                }
+                if (this.inflater.finished()) {
+                    this.gzipState = GZIP_TRAILER;
+                    this.gzipNeeded = 8;
+                    this.gzipFilled = 0;
+                    return this.inflater.getRemaining();
+                }
+                if (this.visitor.isSatisfied()) {
+                    this.paused = true;
+                    return this.inflater.getRemaining();
+                }
+                if (inflated == 0) {
+                    if (this.inflater.needsInput()) {
+                        return 0;
+                    }
+                    throw new SchematicFormatException("The deflate data requires a preset dictionary");
+                }
+            }
+        } catch (final DataFormatException e) {
+            throw new SchematicFormatException("The deflate data is invalid", e);
+        }
+    }
+
+    private void scan(@NotNull final byte[] bytes, final int length) throws SchematicFormatException {
+        int position = 0;
+        while (position < length) {
+            if (this.state == DONE) {
+                throw new SchematicFormatException("Unexpected data after the root compound");
+            }
+            if (this.state == SKIP) {
+                final int skipped = (int) Math.min(this.skip, length - position);
+                position += skipped;
+                this.skip -= skipped;
+                if (this.skip == 0) {
+                    this.next();
+                }
+                continue;
+            }
+            final int copied = Math.min(this.needed - this.filled, length - position);
+            System.arraycopy(bytes, position, this.buffer, this.filled, copied);
+            position += copied;
+            this.filled += copied;
+            if (this.filled == this.needed) {
+                this.complete();
+            }
+        }
+    }
+
+    private void complete() throws SchematicFormatException {
+        switch (this.state) {
+            case TAG_TYPE:
+                final int tagType = this.buffer[0] & 0xFF;
+                if (this.depth == 0 && tagType != NbtType.COMPOUND) {
+                    throw new SchematicFormatException("The root tag is not a compound");
+                }
+                if (tagType == NbtType.END) {
+                    this.depth--;
+                    this.visitor.visitCompoundEnd(this.depth);
+                    this.next();
+                } else if (tagType > NbtType.LONG_ARRAY) {
+                    throw new SchematicFormatException("Unknown tag type " + tagType);
+                } else {
+                    this.type = tagType;
+                    this.expect(NAME_LENGTH, 2);
+                }
+                break;
+            case NAME_LENGTH:
+                final int nameLength = (int) this.readBigEndian(2) & 0xFFFF;
+                if (nameLength == 0) {
+                    this.name = "";
+                    this.begin();
+                } else {
+                    this.expect(NAME, nameLength);
+                }
+                break;
+            case NAME:
+                this.name = new String(this.buffer, 0, this.needed, StandardCharsets.UTF_8);
+                this.begin();
+                break;
+            case NUMBER:
+                this.visitor.visitNumber(this.depth, this.name, this.type, this.readBigEndian(this.needed));
+                this.next();
+                break;
+            case STRING_LENGTH:
+                final int stringLength = (int) this.readBigEndian(2) & 0xFFFF;
+                this.visitor.visitString(this.depth, this.name, stringLength);
+                this.skip(stringLength);
+                break;
+            case ARRAY_LENGTH:
+                final int arrayLength = (int) this.readBigEndian(4);
+                if (arrayLength < 0) {
+                    throw new SchematicFormatException("Negative array length " + arrayLength);
+                }
+                this.visitor.visitArray(this.depth, this.name, this.type, arrayLength);
+                this.skip((long) arrayLength * (this.type == NbtType.BYTE_ARRAY ? 1 : this.type == NbtType.INT_ARRAY ?
+                    4 : 8));
+                break;
+            case LIST_HEADER:
+                final int elementType = this.buffer[0] & 0xFF;
+                final int listLength = (int) (((this.buffer[1] & 0xFFL) << 24) | ((this.buffer[2] & 0xFF) << 16)
+                    | ((this.buffer[3] & 0xFF) << 8) | (this.buffer[4] & 0xFF));
+                if (listLength < 0 || elementType > NbtType.LONG_ARRAY
+                    || (elementType == NbtType.END && listLength > 0)) {
+                    throw new SchematicFormatException("Invalid list of " + listLength + " tags of type " + elementType);
+                }
+                this.visitor.visitList(this.depth, this.name, elementType, listLength);
+                this.push(elementType, listLength);
+                this.next();
+                break;
+            default:
+                throw new IllegalStateException("Unexpected state " + this.state);
+        }
+    }
+
+    /**
+     * Start reading the payload of the current tag
+     */
+    private void begin() throws SchematicFormatException {
+        switch (this.type) {
+            case NbtType.BYTE:
+                this.expect(NUMBER, 1);
+                break;
+            case NbtType.SHORT:
+                this.expect(NUMBER, 2);
+                break;
+            case NbtType.INT:
+            case NbtType.FLOAT:
+                this.expect(NUMBER, 4);
+                break;
+            case NbtType.LONG:
+            case NbtType.DOUBLE:
+                this.expect(NUMBER, 8);
+                break;
+            case NbtType.BYTE_ARRAY:
+            case NbtType.INT_ARRAY:
+            case NbtType.LONG_ARRAY:
+                this.expect(ARRAY_LENGTH, 4);
+                break;
+            case NbtType.STRING:
+                this.expect(STRING_LENGTH, 2);
+                break;
+            case NbtType.LIST:
+                this.expect(LIST_HEADER, 5);
+                break;
+            case NbtType.COMPOUND:
+                this.visitor.visitCompound(this.depth, this.name);
+                this.push(COMPOUND_FRAME, 0);
+                this.expect(TAG_TYPE, 1);
+                break;
+            default:
+                throw new IllegalStateException("Unexpected tag type " + this.type);
+        }
+    }
+
+    /**
+     * Move to the next tag of the enclosing compound or list
+     */
+    private void next() throws SchematicFormatException {
+        while (this.depth > 0) {
+            final int frame = this.depth - 1;
+            if (this.frameTypes[frame] == COMPOUND_FRAME) {
+                this.expect(TAG_TYPE, 1);
+                return;
+            }
+            if (this.frameRemaining[frame] > 0) {
+                this.frameRemaining[frame]--;
+                this.type = this.frameTypes[frame];
+                this.name = null;
+                this.begin();
+                return;
+            }
+            this.depth--;
+        }
+        this.state = DONE;
+    }
+
+    private void push(final int frameType, final int length) throws SchematicFormatException {
+        if (this.depth == MAX_DEPTH) {
+            throw new SchematicFormatException("The data is nested more than " + MAX_DEPTH + " levels deep");
+        }
+        this.frameTypes[this.depth] = frameType;
+        this.frameRemaining[this.depth] = length;
+        this.depth++;
+    }
+
+    private void expect(final int state, final int length) {
+        if (this.buffer.length < length) {
+            this.buffer = new byte[Math.max(length, this.buffer.length * 2)];
+        }
+        this.state = state;
+        this.needed = length;
+        this.filled = 0;
+    }
+
+    private void skip(final long length) throws SchematicFormatException {
+        if (length == 0) {
+            this.next();
+        } else {
+            this.state = SKIP;
+            this.skip = length;
+        }
+    }
+
+    private long readBigEndian(final int length) {
+        long value = this.buffer[0];
+        for (int i = 1; i < length; i++) {
+            value = (value << 8) | (this.buffer[i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static long readLittleEndian(@NotNull final byte[] bytes, final int offset) {
+        return (bytes[offset] & 0xFFL) | (bytes[offset + 1] & 0xFFL) << 8 | (bytes[offset + 2] & 0xFFL) << 16
+            | (bytes[offset + 3] & 0xFFL) << 24;
+    }
+
+    @Override public void close() {
+        this.inflater.end();
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.nbt;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Receives the structure of an NBT document from a {@link NbtScanner}. The depth
+ * of a tag is the number of compounds and lists that enclose it, so the root
+ * compound has depth 0. Tags inside lists have no name
+ */
+public interface NbtVisitor {
+
+    /**
+     * Called when a compound starts
+     *
+     * @param depth Depth of the compound
+     * @param name  Name of the compound
+     */
+    default void visitCompound(final int depth, @Nullable final String name) {
+    }
+
+    /**
+     * Called when a compound ends
+     *
+     * @param depth Depth of the compound
+     */
+    default void visitCompoundEnd(final int depth) {
+    }
+
+    /**
+     * Called when a list starts. Its elements follow as tags of depth {@code depth + 1}
+     *
+     * @param depth       Depth of the list
+     * @param name        Name of the list
+     * @param elementType {@link NbtType} of the elements
+     * @param length      Number of elements
+     */
+    default void visitList(final int depth, @Nullable final String name, final int elementType, final int length) {
+    }
+
+    /**
+     * Called for byte, short, int, long, float and double tags
+     *
+     * @param depth Depth of the tag
+     * @param name  Name of the tag
+     * @param type  {@link NbtType} of the tag
+     * @param value Value of the tag, or the raw bits of floating point values
+     */
+    default void visitNumber(final int depth, @Nullable final String name, final int type, final long value) {
+    }
+
+    /**
+     * Called for byte, int and long array tags, whose content is skipped
+     *
+     * @param depth  Depth of the tag
+     * @param name   Name of the tag
+     * @param type   {@link NbtType} of the tag
+     * @param length Number of elements
+     */
+    default void visitArray(final int depth, @Nullable final String name, final int type, final int length) {
+    }
+
+    /**
+     * Called for string tags, whose content is skipped
+     *
+     * @param depth  Depth of the tag
+     * @param name   Name of the tag
+     * @param length Length of the encoded string in bytes
+     */
+    default void visitString(final int depth, @Nullable final String name, final int length) {
+    }
+
+    /**
+     * Called once the root compound has ended and the checksum of the data has been verified
+     *
+     * @throws SchematicFormatException If the document does not have the expected structure
+     */
+    default void visitEnd() throws SchematicFormatException {
+    }
+
+    /**
+     * Get whether the visitor has seen everything it needs
+     *
+     * @return {@code true} if scanning may stop early
+     */
+    default boolean isSatisfied() {
+        return false;
+    }
+
+}
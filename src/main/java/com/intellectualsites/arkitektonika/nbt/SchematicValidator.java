@@ -0,0 +1,83 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.nbt;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Visitor that checks that a document has the structure of a schematic. Sponge
+ * schematics version 1 and 2 as well as MCEdit schematics keep their dimensions
+ * in the root compound, while Sponge schematics version 3 nest them in a
+ * {@code Schematic} compound
+ */
+public final class SchematicValidator implements NbtVisitor {
+
+    private static final int ALL_DIMENSIONS = 0b111;
+
+    private int rootDimensions;
+    private int nestedDimensions;
+    private boolean nested;
+
+    @Override public void visitCompound(final int depth, @Nullable final String name) {
+        if (depth == 1 && "Schematic".equals(name)) {
+            this.nested = true;
+        }
+    }
+
+    @Override public void visitCompoundEnd(final int depth) {
+        if (depth == 1) {
+            this.nested = false;
+        }
+    }
+
+    @Override public void visitNumber(final int depth, @Nullable final String name, final int type, final long value) {
+        if (type != NbtType.SHORT) {
+            return;
+        }
+        final int dimension = dimension(name);
+        if (depth == 1) {
+            this.rootDimensions |= dimension;
+        } else if (depth == 2 && this.nested) {
+            this.nestedDimensions |= dimension;
+        }
+    }
+
+    @Override public void visitEnd() throws SchematicFormatException {
+        if (this.rootDimensions != ALL_DIMENSIONS && this.nestedDimensions != ALL_DIMENSIONS) {
+            throw new SchematicFormatException("The data is not a schematic, as its Width, Height or Length is missing");
+        }
+    }
+
+    private static int dimension(@Nullable final String name) {
+        if ("Width".equals(name)) {
+            return 0b001;
+        } else if ("Height".equals(name)) {
+            return 0b010;
+        } else if ("Length".equals(name)) {
+            return 0b100;
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Settings of a {@link ConcurrencyLimiter}
+ *
+ * @see ConcurrencyLimitSettings#builder() to create new settings
+ */
+public final class ConcurrencyLimitSettings {
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int queueSize;
+    private final Duration latencyThreshold;
+    private final double backoffRatio;
+
+    private ConcurrencyLimitSettings(final int initialLimit, final int minLimit, final int maxLimit,
+        final int queueSize, @NotNull final Duration latencyThreshold, final double backoffRatio) {
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.queueSize = queueSize;
+        this.latencyThreshold = latencyThreshold;
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * Create a new {@link ConcurrencyLimitSettings} {@link Builder builder}
+     *
+     * @return New builder
+     */
+    @NotNull public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the default settings
+     *
+     * @return Default settings
+     */
+    @NotNull public static ConcurrencyLimitSettings defaults() {
+        return builder().build();
+    }
+
+    /**
+     * Get the limit that the limiter starts with
+     *
+     * @return Initial limit
+     */
+    public int getInitialLimit() {
+        return this.initialLimit;
+    }
+
+    /**
+     * Get the lowest limit
+     *
+     * @return Minimum limit
+     */
+    public int getMinLimit() {
+        return this.minLimit;
+    }
+
+    /**
+     * Get the highest limit
+     *
+     * @return Maximum limit
+     */
+    public int getMaxLimit() {
+        return this.maxLimit;
+    }
+
+    /**
+     * Get the maximum number of requests that wait for a permit
+     *
+     * @return Queue size
+     */
+    public int getQueueSize() {
+        return this.queueSize;
+    }
+
+    /**
+     * Get the latency above which a request reduces the limit
+     *
+     * @return Latency threshold
+     */
+    @NotNull public Duration getLatencyThreshold() {
+        return this.latencyThreshold;
+    }
+
+    /**
+     * Get the factor that the limit is multiplied with when it is reduced
+     *
+     * @return Backoff ratio
+     */
+    public double getBackoffRatio() {
+        return this.backoffRatio;
+    }
+
+
+    /**
+     * Builder class for {@link ConcurrencyLimitSettings} instances.
+     *
+     * @see ConcurrencyLimitSettings#builder() to get a new builder instance
+     */
+    public static final class Builder {
+
+        private int initialLimit = 8;
+        private int minLimit = 1;
+        private int maxLimit = 128;
+        private int queueSize = 256;
+        private Duration latencyThreshold = Duration.ofSeconds(2);
+        private double backoffRatio = 0.9;
+
+        private Builder() {
+        }
+
+        /**
+         * Specify the limit that the limiter starts with, and the range that the
+         * limit adapts within. Defaults to 8, between 1 and 128
+         *
+         * @param initialLimit Initial limit
+         * @param minLimit     Minimum limit
+         * @param maxLimit     Maximum limit
+         * @return The builder instance
+         */
+        @NotNull public Builder withLimit(final int initialLimit, final int minLimit, final int maxLimit) {
+            if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+                throw new IllegalArgumentException(
+                    "Invalid limit: " + initialLimit + " in " + minLimit + " to " + maxLimit);
+            }
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * Specify the maximum number of requests that wait for a permit. Requests that
+         * exceed the queue fail with a {@link java.util.concurrent.RejectedExecutionException}.
+         * Defaults to 256
+         *
+         * @param queueSize Queue size, or {@code 0} to reject every request beyond the limit
+         * @return The builder instance
+         */
+        @NotNull public Builder withQueueSize(final int queueSize) {
+            if (queueSize < 0) {
+                throw new IllegalArgumentException("The queue size must not be negative");
+            }
+            this.queueSize = queueSize;
+            return this;
+        }
+
+        /**
+         * Specify the latency above which a request is treated like a failure, and
+         * reduces the limit. The latency ends once the head of the response has been
+         * received, and does not include the body transfer. Defaults to 2 seconds
+         *
+         * @param latencyThreshold Latency threshold
+         * @return The builder instance
+         */
+        @NotNull public Builder withLatencyThreshold(@NotNull final Duration latencyThreshold) {
+            this.latencyThreshold = Objects.requireNonNull(latencyThreshold);
+            return this;
+        }
+
+        /**
+         * Specify the factor that the limit is multiplied with when a request fails
+         * or exceeds the latency threshold. Defaults to 0.9
+         *
+         * @param backoffRatio Backoff ratio between 0 and 1
+         * @return The builder instance
+         */
+        @NotNull public Builder withBackoffRatio(final double backoffRatio) {
+            if (backoffRatio <= 0 || backoffRatio >= 1) {
+                throw new IllegalArgumentException("The backoff ratio must be between 0 and 1");
+            }
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * Create the settings
+         *
+         * @return Created settings
+         */
+        @NotNull public ConcurrencyLimitSettings build() {
+            return new ConcurrencyLimitSettings(this.initialLimit, this.minLimit, this.maxLimit, this.queueSize,
+                this.latencyThreshold, this.backoffRatio);
+        }
+
+    }
+
+}
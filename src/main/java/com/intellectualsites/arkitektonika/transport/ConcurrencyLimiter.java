@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Limit on the number of requests in flight that adapts to the health of the
+ * server. The limit grows by one for every limit's worth of successful requests,
+ * and shrinks by a constant factor whenever a request fails, is answered with a
+ * server error or exceeds the latency threshold (additive increase, multiplicative
+ * decrease). The latency is measured until the head of the response has been received,
+ * so that downloading a large body does not shrink the limit. Requests beyond the
+ * limit wait in a bounded queue
+ *
+ * @see Transports#limiting(HttpTransport, ConcurrencyLimiter) to apply the limiter to a transport
+ */
+public final class ConcurrencyLimiter {
+
+    private final ConcurrencyLimitSettings settings;
+    private final long latencyThreshold;
+    private final Queue<Runnable> queue = new ArrayDeque<>();
+
+    private double limit;
+    private int inFlight;
+
+    /**
+     * Create a new limiter
+     *
+     * @param settings Limiter settings
+     */
+    public ConcurrencyLimiter(@NotNull final ConcurrencyLimitSettings settings) {
+        this.settings = settings;
+        this.latencyThreshold = settings.getLatencyThreshold().toNanos();
+        this.limit = settings.getInitialLimit();
+    }
+
+    /**
+     * Get the current limit
+     *
+     * @return Maximum number of requests in flight
+     */
+    public synchronized int getLimit() {
+        return (int) this.limit;
+    }
+
+    /**
+     * Get the number of requests in flight
+     *
+     * @return Number of requests in flight
+     */
+    public synchronized int getInFlight() {
+        return this.inFlight;
+    }
+
+    /**
+     * Get the number of requests that wait for a permit
+     *
+     * @return Queue depth
+     */
+    public synchronized int getQueueDepth() {
+        return this.queue.size();
+    }
+
+    /**
+     * Run a request once a permit is available. The request must {@link #release(long, boolean)
+     * release} its permit once it has completed
+     *
+     * @param request Request to run
+     * @throws RejectedExecutionException If the queue is full
+     */
+    void acquire(@NotNull final Runnable request) {
+        synchronized (this) {
+            if (this.inFlight >= (int) this.limit) {
+                if (this.queue.size() >= this.settings.getQueueSize()) {
+                    throw new RejectedExecutionException("Too many requests are queued: " + this.queue.size());
+                }
+                this.queue.add(request);
+                return;
+            }
+            this.inFlight++;
+        }
+        request.run();
+    }
+
+    /**
+     * Release the permit of a completed request, and adapt the limit to its outcome
+     *
+     * @param latency Time in nanoseconds until the head of the response was received
+     * @param failed  Whether the request failed or was answered with a server error
+     */
+    void release(final long latency, final boolean failed) {
+        Runnable next;
+        synchronized (this) {
+            if (failed || latency > this.latencyThreshold) {
+                this.limit = Math.max(this.settings.getMinLimit(), this.limit * this.settings.getBackoffRatio());
+            } else if (this.inFlight * 2 >= this.limit) {
+                // Only grow the limit while it is actually being used
+                this.limit = Math.min(this.settings.getMaxLimit(), this.limit + 1 / this.limit);
+            }
+            this.inFlight--;
+            next = this.poll();
+        }
+        while (next != null) {
+            next.run();
+            synchronized (this) {
+                next = this.poll();
+            }
+        }
+    }
+
+    private Runnable poll() {
+        if (this.inFlight >= (int) this.limit) {
+            return null;
+        }
+        final Runnable next = this.queue.poll();
+        if (next != null) {
+            this.inFlight++;
+        }
+        return next;
+    }
+
+}
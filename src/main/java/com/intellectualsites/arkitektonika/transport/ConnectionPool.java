@@ -0,0 +1,289 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of keep-alive {@link HttpConnection connections}, bounded per route
+ */
+final class ConnectionPool implements Closeable {
+
+    private final Map<Route, RoutePool> routes = new ConcurrentHashMap<>();
+    private final int maxConnections;
+    private final long idleTimeout;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final long leaseTimeout;
+    private final LongAdder created = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private final AtomicInteger leased = new AtomicInteger();
+    private volatile boolean shutdown;
+
+    ConnectionPool(@NotNull final ConnectionPoolSettings settings) {
+        this.maxConnections = settings.getMaxConnections();
+        this.idleTimeout = settings.getIdleTimeout().toNanos();
+        this.connectTimeout = toMillis(settings.getConnectTimeout());
+        this.readTimeout = toMillis(settings.getReadTimeout());
+        this.leaseTimeout = settings.getLeaseTimeout().toNanos();
+    }
+
+    /**
+     * Convert a timeout to the milliseconds expected by {@link java.net.Socket}
+     *
+     * @param timeout Timeout
+     * @return Timeout in milliseconds, where {@code 0} means no timeout
+     */
+    private static int toMillis(@NotNull final Duration timeout) {
+        if (timeout.isZero()) {
+            return 0;
+        }
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, timeout.toMillis()));
+    }
+
+    /**
+     * Lease a connection to the given route. An idle connection is reused if
+     * possible. Otherwise, a new connection is opened, once the number of leased
+     * connections to the route is below the limit
+     *
+     * @param route Route to connect to
+     * @return Leased connection, which must be {@link #release(HttpConnection, boolean) released}
+     * @throws IOException If a new connection cannot be opened, or none is released within the lease timeout
+     */
+    @NotNull HttpConnection lease(@NotNull final Route route) throws IOException {
+        if (this.shutdown) {
+            throw new IOException("The connection pool has been closed");
+        }
+        final RoutePool pool = this.routes.computeIfAbsent(route, ignored -> new RoutePool(this.maxConnections));
+        try {
+            if (this.leaseTimeout == 0) {
+                pool.permits.acquire();
+            } else if (!pool.permits.tryAcquire(this.leaseTimeout, TimeUnit.NANOSECONDS)) {
+                throw new SocketTimeoutException("Timed out waiting for a connection to " + route.getHost());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection");
+        }
+        try {
+            final long now = System.nanoTime();
+            HttpConnection connection;
+            while ((connection = pool.idle.pollFirst()) != null) {
+                if (!connection.isExpired(now, this.idleTimeout)) {
+                    this.reused.increment();
+                    this.leased.incrementAndGet();
+                    return connection;
+                }
+                this.discard(connection);
+            }
+            connection = HttpConnection.open(route, this.connectTimeout, this.readTimeout);
+            this.created.increment();
+            this.leased.incrementAndGet();
+            return connection;
+        } catch (final IOException | RuntimeException e) {
+            pool.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Return a leased connection to the pool
+     *
+     * @param connection Leased connection
+     * @param reusable   Whether the connection can be kept alive
+     */
+    void release(@NotNull final HttpConnection connection, final boolean reusable) {
+        final RoutePool pool = this.routes.get(connection.getRoute());
+        this.leased.decrementAndGet();
+        final long now = System.nanoTime();
+        if (reusable && !this.shutdown) {
+            connection.markIdle(now);
+            pool.idle.offerFirst(connection);
+        } else {
+            this.discard(connection);
+        }
+        this.evictExpired(pool, now);
+        pool.permits.release();
+    }
+
+    /**
+     * Close the idle connections that have expired. Connections are reused
+     * in LIFO order, so the oldest connections are at the end of the queue
+     *
+     * @param pool Route pool
+     * @param now  Current {@link System#nanoTime() time}
+     */
+    private void evictExpired(@NotNull final RoutePool pool, final long now) {
+        final Iterator<HttpConnection> iterator = pool.idle.descendingIterator();
+        while (iterator.hasNext()) {
+            final HttpConnection connection = iterator.next();
+            if (!connection.isExpired(now, this.idleTimeout)) {
+                break;
+            }
+            if (pool.idle.removeLastOccurrence(connection)) {
+                this.discard(connection);
+            }
+        }
+    }
+
+    private void discard(@NotNull final HttpConnection connection) {
+        connection.close();
+        this.closed.increment();
+    }
+
+    /**
+     * Get a snapshot of the pool statistics
+     *
+     * @return Pool statistics
+     */
+    @NotNull ConnectionPoolStatistics getStatistics() {
+        int idle = 0;
+        for (final RoutePool pool : this.routes.values()) {
+            idle += pool.idle.size();
+        }
+        return new ConnectionPoolStatistics(this.created.sum(), this.reused.sum(), this.closed.sum(), idle,
+            this.leased.get());
+    }
+
+    @Override public void close() {
+        this.shutdown = true;
+        for (final RoutePool pool : this.routes.values()) {
+            HttpConnection connection;
+            while ((connection = pool.idle.pollFirst()) != null) {
+                this.discard(connection);
+            }
+        }
+    }
+
+
+    private static final class RoutePool {
+
+        private final Deque<HttpConnection> idle = new ConcurrentLinkedDeque<>();
+        private final Semaphore permits;
+
+        private RoutePool(final int maxConnections) {
+            this.permits = new Semaphore(maxConnections, true);
+        }
+
+    }
+
+
+    /**
+     * Scheme, host and port that a connection is established to
+     */
+    static final class Route {
+
+        private final boolean secure;
+        private final String host;
+        private final int port;
+
+        private Route(final boolean secure, @NotNull final String host, final int port) {
+            this.secure = secure;
+            this.host = host;
+            this.port = port;
+        }
+
+        /**
+         * Get the route of a request URI
+         *
+         * @param uri Request URI
+         * @return Route
+         * @throws IOException If the URI does not point to a HTTP server
+         */
+        @NotNull static Route of(@NotNull final URI uri) throws IOException {
+            final String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.ROOT);
+            if (!"http".equals(scheme) && !"https".equals(scheme)) {
+                throw new IOException("Unsupported scheme: " + uri.getScheme());
+            }
+            if (uri.getHost() == null) {
+                throw new IOException("Missing host: " + uri);
+            }
+            final boolean secure = "https".equals(scheme);
+            final int port = uri.getPort() == -1 ? (secure ? 443 : 80) : uri.getPort();
+            // IPv6 literals are bracketed in URIs, but not in socket addresses
+            final String host = uri.getHost();
+            if (host.startsWith("[") && host.endsWith("]")) {
+                return new Route(secure, host.substring(1, host.length() - 1), port);
+            }
+            return new Route(secure, host, port);
+        }
+
+        boolean isSecure() {
+            return this.secure;
+        }
+
+        @NotNull String getHost() {
+            return this.host;
+        }
+
+        /**
+         * Get the host as it appears in a Host header, with IPv6 literals enclosed in brackets
+         *
+         * @return Host header value, without the port
+         */
+        @NotNull String getHostHeader() {
+            return this.host.indexOf(':') == -1 ? this.host : '[' + this.host + ']';
+        }
+
+        int getPort() {
+            return this.port;
+        }
+
+        @Override public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Route route = (Route) o;
+            return this.secure == route.secure && this.port == route.port && this.host.equals(route.host);
+        }
+
+        @Override public int hashCode() {
+            return Objects.hash(this.secure, this.host, this.port);
+        }
+
+    }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Connection reuse settings of the built-in transports
+ *
+ * @see ConnectionPoolSettings#builder() to create new settings
+ */
+public final class ConnectionPoolSettings {
+
+    private static final ConnectionPoolSettings DEFAULTS = builder().build();
+
+    private final int maxConnections;
+    private final Duration idleTimeout;
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+    private final Duration leaseTimeout;
+    private final boolean http2;
+
+    private ConnectionPoolSettings(final int maxConnections, @NotNull final Duration idleTimeout,
+        @NotNull final Duration connectTimeout, @NotNull final Duration readTimeout,
+        @NotNull final Duration leaseTimeout, final boolean http2) {
+        this.maxConnections = maxConnections;
+        this.idleTimeout = idleTimeout;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.leaseTimeout = leaseTimeout;
+        this.http2 = http2;
+    }
+
+    /**
+     * Get the default settings
+     *
+     * @return Default settings
+     */
+    @NotNull public static ConnectionPoolSettings defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Create a new {@link ConnectionPoolSettings} {@link Builder builder}
+     *
+     * @return New builder
+     */
+    @NotNull public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the maximum number of connections that are kept per server
+     *
+     * @return Maximum number of connections
+     */
+    public int getMaxConnections() {
+        return this.maxConnections;
+    }
+
+    /**
+     * Get the time after which an idle connection is closed
+     *
+     * @return Idle timeout
+     */
+    @NotNull public Duration getIdleTimeout() {
+        return this.idleTimeout;
+    }
+
+    /**
+     * Get the time to wait for a new connection to be established
+     *
+     * @return Connect timeout, or {@link Duration#ZERO} to wait indefinitely
+     */
+    @NotNull public Duration getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    /**
+     * Get the time to wait for data from the server, before an exchange is aborted
+     *
+     * @return Read timeout, or {@link Duration#ZERO} to wait indefinitely
+     */
+    @NotNull public Duration getReadTimeout() {
+        return this.readTimeout;
+    }
+
+    /**
+     * Get the time to wait for a connection to be released once the limit is reached
+     *
+     * @return Lease timeout, or {@link Duration#ZERO} to wait indefinitely
+     */
+    @NotNull public Duration getLeaseTimeout() {
+        return this.leaseTimeout;
+    }
+
+    /**
+     * Check whether requests should be multiplexed over HTTP/2 connections
+     *
+     * @return {@code true} if HTTP/2 is enabled
+     */
+    public boolean isHttp2() {
+        return this.http2;
+    }
+
+
+    /**
+     * Builder class for {@link ConnectionPoolSettings} instances.
+     *
+     * @see ConnectionPoolSettings#builder() to get a new builder instance
+     */
+    public static final class Builder {
+
+        private int maxConnections = 8;
+        private Duration idleTimeout = Duration.ofSeconds(30);
+        private Duration connectTimeout = Duration.ofSeconds(10);
+        private Duration readTimeout = Duration.ofSeconds(30);
+        private Duration leaseTimeout = Duration.ofSeconds(30);
+        private boolean http2 = true;
+
+        private Builder() {
+        }
+
+        /**
+         * Specify the maximum number of connections that are kept per server.
+         * Requests wait for a connection to be released once this limit is
+         * reached. Only the {@link TransportType#POOLED pooled} transport uses
+         * this limit, the {@link TransportType#ASYNC asynchronous} transport is
+         * bound by the pool of the {@code java.net.http} client. Defaults to 8
+         *
+         * @param maxConnections Maximum number of connections
+         * @return The builder instance
+         */
+        @NotNull public Builder withMaxConnections(final int maxConnections) {
+            if (maxConnections < 1) {
+                throw new IllegalArgumentException("The connection limit must be positive");
+            }
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * Specify the time after which an idle connection is closed. A shorter
+         * timeout announced by the server through the Keep-Alive header takes
+         * precedence. Only the {@link TransportType#POOLED pooled} transport
+         * uses this timeout. Defaults to 30 seconds
+         *
+         * @param idleTimeout Idle timeout
+         * @return The builder instance
+         */
+        @NotNull public Builder withIdleTimeout(@NotNull final Duration idleTimeout) {
+            if (idleTimeout.isNegative()) {
+                throw new IllegalArgumentException("The idle timeout must not be negative");
+            }
+            this.idleTimeout = Objects.requireNonNull(idleTimeout);
+            return this;
+        }
+
+        /**
+         * Specify the time to wait for a new connection to be established. The
+         * {@link TransportType#POOLED pooled} and {@link TransportType#ASYNC asynchronous}
+         * transports use this timeout. Defaults to 10 seconds
+         *
+         * @param connectTimeout Connect timeout, or {@link Duration#ZERO} to wait indefinitely
+         * @return The builder instance
+         */
+        @NotNull public Builder withConnectTimeout(@NotNull final Duration connectTimeout) {
+            this.connectTimeout = checkTimeout(connectTimeout);
+            return this;
+        }
+
+        /**
+         * Specify the time to wait for data from the server. An exchange fails if no
+         * data arrives within this time, so that a server that accepts a connection but
+         * never answers does not block a thread forever. The {@link TransportType#POOLED
+         * pooled} transport uses this timeout. The {@link TransportType#ASYNC asynchronous}
+         * transport cannot time out single reads, it fails an exchange if the head of the
+         * response does not arrive within this time instead. Defaults to 30 seconds
+         *
+         * @param readTimeout Read timeout, or {@link Duration#ZERO} to wait indefinitely
+         * @return The builder instance
+         */
+        @NotNull public Builder withReadTimeout(@NotNull final Duration readTimeout) {
+            this.readTimeout = checkTimeout(readTimeout);
+            return this;
+        }
+
+        /**
+         * Specify the time a request waits for a connection to be released, once the
+         * {@link #withMaxConnections(int) connection limit} is reached. Only the
+         * {@link TransportType#POOLED pooled} transport uses this timeout. Defaults
+         * to 30 seconds
+         *
+         * @param leaseTimeout Lease timeout, or {@link Duration#ZERO} to wait indefinitely
+         * @return The builder instance
+         */
+        @NotNull public Builder withLeaseTimeout(@NotNull final Duration leaseTimeout) {
+            this.leaseTimeout = checkTimeout(leaseTimeout);
+            return this;
+        }
+
+        @NotNull private static Duration checkTimeout(@NotNull final Duration timeout) {
+            if (timeout.isNegative()) {
+                throw new IllegalArgumentException("The timeout must not be negative");
+            }
+            return Objects.requireNonNull(timeout);
+        }
+
+        /**
+         * Specify whether requests should be multiplexed over HTTP/2 connections,
+         * if the server supports it. Only the {@link TransportType#ASYNC asynchronous}
+         * transport supports HTTP/2. Defaults to {@code true}
+         *
+         * @param http2 Whether HTTP/2 is enabled
+         * @return The builder instance
+         */
+        @NotNull public Builder withHttp2(final boolean http2) {
+            this.http2 = http2;
+            return this;
+        }
+
+        /**
+         * Create the settings
+         *
+         * @return Created settings
+         */
+        @NotNull public ConnectionPoolSettings build() {
+            return new ConnectionPoolSettings(this.maxConnections, this.idleTimeout, this.connectTimeout,
+                this.readTimeout, this.leaseTimeout, this.http2);
+        }
+
+    }
+
+}
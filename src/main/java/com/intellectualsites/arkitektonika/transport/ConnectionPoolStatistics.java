@@ -0,0 +1,107 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+/**
+ * Snapshot of the statistics of a connection pool
+ */
+public final class ConnectionPoolStatistics {
+
+    private final long created;
+    private final long reused;
+    private final long closed;
+    private final int idle;
+    private final int leased;
+
+    public ConnectionPoolStatistics(final long created, final long reused, final long closed, final int idle,
+        final int leased) {
+        this.created = created;
+        this.reused = reused;
+        this.closed = closed;
+        this.idle = idle;
+        this.leased = leased;
+    }
+
+    /**
+     * Get the number of connections that have been opened
+     *
+     * @return Number of opened connections
+     */
+    public long getCreated() {
+        return this.created;
+    }
+
+    /**
+     * Get the number of requests that were sent over an existing connection
+     *
+     * @return Number of reused connections
+     */
+    public long getReused() {
+        return this.reused;
+    }
+
+    /**
+     * Get the number of connections that have been closed, because they
+     * expired, failed or could not be kept alive
+     *
+     * @return Number of closed connections
+     */
+    public long getClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Get the number of connections that are currently idle
+     *
+     * @return Number of idle connections
+     */
+    public int getIdle() {
+        return this.idle;
+    }
+
+    /**
+     * Get the number of connections that are currently in use
+     *
+     * @return Number of leased connections
+     */
+    public int getLeased() {
+        return this.leased;
+    }
+
+    /**
+     * Get the fraction of requests that were sent over an existing connection
+     *
+     * @return Reuse rate, between 0 and 1
+     */
+    public double getReuseRate() {
+        final long total = this.created + this.reused;
+        return total == 0 ? 0 : (double) this.reused / total;
+    }
+
+    @Override public String toString() {
+        return String.format("ConnectionPoolStatistics{created=%d, reused=%d, closed=%d, idle=%d, leased=%d}",
+            this.created, this.reused, this.closed, this.idle, this.leased);
+    }
+
+}
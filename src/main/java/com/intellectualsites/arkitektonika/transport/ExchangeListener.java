@@ -0,0 +1,47 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Listener of the exchanges performed by an
+ * {@link Transports#observing(HttpTransport, ExchangeListener) observing transport}.
+ * It is called by the threads that complete the exchanges, and must not block
+ */
+@FunctionalInterface
+public interface ExchangeListener {
+
+    /**
+     * Called when an exchange has completed with a response
+     *
+     * @param request  Sent request
+     * @param response Received response
+     * @param latency  Time in nanoseconds from the start of the exchange until the response
+     *                 head was received. Neither the time the exchange waited for an executor
+     *                 thread nor the time spent transferring the response body are included
+     */
+    void onResponse(@NotNull TransportRequest request, @NotNull TransportResponse response, long latency);
+
+}
@@ -0,0 +1,676 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * HTTP/1.1 connection that can be kept alive and reused for multiple exchanges
+ */
+final class HttpConnection implements Closeable {
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final int MAX_LINE_LENGTH = 8192;
+
+    private final ConnectionPool.Route route;
+    private final Socket socket;
+    @Nullable private final SocketChannel channel;
+    private final InputStream inputStream;
+    private final TrackingOutputStream socketOutputStream;
+    private final OutputStream outputStream;
+
+    private int exchanges;
+    private boolean reusable;
+    private boolean responseStarted;
+    private long idleSince;
+    private long keepAliveNanos = Long.MAX_VALUE;
+    @Nullable private String location;
+
+    private HttpConnection(@NotNull final ConnectionPool.Route route, @NotNull final Socket socket) throws IOException {
+        this.route = route;
+        this.socket = socket;
+        this.channel = socket.getChannel();
+        this.inputStream = new BufferedInputStream(socket.getInputStream(), Transports.BUFFER_SIZE);
+        this.socketOutputStream = new TrackingOutputStream(socket.getOutputStream());
+        this.outputStream = new BufferedOutputStream(this.socketOutputStream, Transports.BUFFER_SIZE);
+    }
+
+    /**
+     * Open a new connection to the given route
+     *
+     * @param route          Route to connect to
+     * @param connectTimeout Connect timeout in milliseconds, or {@code 0} to wait indefinitely
+     * @param readTimeout    Read timeout in milliseconds, or {@code 0} to wait indefinitely
+     * @return Opened connection
+     * @throws IOException If the connection cannot be established
+     */
+    @NotNull static HttpConnection open(@NotNull final ConnectionPool.Route route, final int connectTimeout,
+        final int readTimeout) throws IOException {
+        // Plain connections are backed by a socket channel, so that file bodies can be
+        // transferred to it by the kernel. TLS has to encrypt every byte in the JVM anyway
+        final Socket socket = route.isSecure() ? new Socket() : SocketChannel.open().socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.setSoTimeout(readTimeout);
+            socket.connect(new InetSocketAddress(route.getHost(), route.getPort()), connectTimeout);
+            if (!route.isSecure()) {
+                return new HttpConnection(route, socket);
+            }
+            final SSLSocket sslSocket = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                .createSocket(socket, route.getHost(), route.getPort(), true);
+            final SSLParameters parameters = sslSocket.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            sslSocket.setSSLParameters(parameters);
+            sslSocket.setSoTimeout(readTimeout);
+            sslSocket.startHandshake();
+            return new HttpConnection(route, sslSocket);
+        } catch (final IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Perform an exchange over this connection
+     *
+     * @param request Request to send
+     * @return Received response
+     * @throws IOException If the exchange fails. The connection must not be reused afterwards
+     */
+    @NotNull TransportResponse exchange(@NotNull final TransportRequest request) throws IOException {
+        this.exchanges++;
+        this.reusable = false;
+        this.responseStarted = false;
+        this.location = null;
+        this.socketOutputStream.written = false;
+        this.writeRequest(request);
+        return this.readResponse(request);
+    }
+
+    private void writeRequest(@NotNull final TransportRequest request) throws IOException {
+        final URI uri = request.getUri();
+        final String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        final StringBuilder head = new StringBuilder(256)
+            .append(request.getMethod()).append(' ').append(path);
+        if (uri.getRawQuery() != null) {
+            head.append('?').append(uri.getRawQuery());
+        }
+        head.append(" HTTP/1.1\r\n");
+        head.append("Host: ").append(this.route.getHostHeader());
+        if (uri.getPort() != -1) {
+            head.append(':').append(uri.getPort());
+        }
+        head.append("\r\n");
+        head.append("User-Agent: Arkitektonika-Client\r\n");
+        head.append("Accept: */*\r\n");
+        final RequestBody body = request.getBody();
+        final long length = body == null ? -1 : body.getContentLength();
+        if (body != null) {
+            head.append("Content-Type: ").append(body.getContentType()).append("\r\n");
+            if (length >= 0) {
+                head.append("Content-Length: ").append(length).append("\r\n");
+            } else {
+                head.append("Transfer-Encoding: chunked\r\n");
+            }
+        }
+        head.append("\r\n");
+        // A file is opened before the head is sent, so that a missing file fails the exchange locally
+        try (final RequestBody.Transfer transfer = length >= 0 ? this.openTransfer(body) : null) {
+            this.outputStream.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+            if (transfer != null) {
+                // The head has to reach the socket before anything is written to the channel
+                this.outputStream.flush();
+                final long transferred = transfer.transferTo(this.channel, length);
+                if (transferred != length) {
+                    throw new LocalIOException(
+                        "Request body length changed from " + length + " to " + transferred + " bytes");
+                }
+            } else if (body != null) {
+                if (length >= 0) {
+                    final FixedLengthOutputStream fixedLengthOutputStream =
+                        new FixedLengthOutputStream(this.outputStream, length);
+                    Transports.write(body, fixedLengthOutputStream);
+                    fixedLengthOutputStream.finish();
+                } else {
+                    final ChunkedOutputStream chunkedOutputStream = new ChunkedOutputStream(this.outputStream);
+                    Transports.write(body, chunkedOutputStream);
+                    chunkedOutputStream.finish();
+                }
+            }
+        }
+        this.outputStream.flush();
+    }
+
+    /**
+     * Open a transfer of a body directly to the socket channel
+     *
+     * @param body Body to send
+     * @return Opened transfer, or {@code null} if the body has to be written to the stream
+     * @throws LocalIOException If the source of the body cannot be opened
+     */
+    @Nullable private RequestBody.Transfer openTransfer(@Nullable final RequestBody body) throws LocalIOException {
+        if (body == null || this.channel == null) {
+            return null;
+        }
+        try {
+            return body.openTransfer();
+        } catch (final LocalIOException e) {
+            throw e;
+        } catch (final IOException | RuntimeException e) {
+            throw new LocalIOException(e);
+        }
+    }
+
+    @NotNull private TransportResponse readResponse(@NotNull final TransportRequest request) throws IOException {
+        String statusLine = this.readLine();
+        if (statusLine == null) {
+            throw new NoResponseException("Connection closed before a response was received");
+        }
+        this.responseStarted = true;
+        Map<String, String> headers = this.readHeaders();
+        int code = parseStatusCode(statusLine);
+        // Skip interim responses, such as 100 Continue
+        while (code >= 100 && code < 200) {
+            statusLine = this.readLine();
+            if (statusLine == null) {
+                throw new EOFException("Connection closed before a final response was received");
+            }
+            headers = this.readHeaders();
+            code = parseStatusCode(statusLine);
+        }
+        final long receivedAt = System.nanoTime();
+        final int reasonStart = statusLine.indexOf(' ', statusLine.indexOf(' ') + 1);
+        final String status = reasonStart == -1 ? "" : statusLine.substring(reasonStart + 1);
+        final String connection = headers.getOrDefault("connection", "");
+        boolean keepAlive = statusLine.startsWith("HTTP/1.1") ? !"close".equalsIgnoreCase(connection) :
+            "keep-alive".equalsIgnoreCase(connection);
+        this.keepAliveNanos = parseKeepAliveNanos(headers.get("keep-alive"));
+        this.location = headers.get("location");
+
+        final InputStream body;
+        if ("HEAD".equals(request.getMethod()) || code == 204 || code == 304) {
+            body = null;
+        } else if (headers.getOrDefault("transfer-encoding", "").toLowerCase(Locale.ROOT).contains("chunked")) {
+            body = new ChunkedInputStream(this.inputStream);
+        } else if (headers.containsKey("content-length")) {
+            final long length;
+            try {
+                length = Long.parseLong(headers.get("content-length").trim());
+            } catch (final NumberFormatException e) {
+                throw new IOException("Invalid Content-Length: " + headers.get("content-length"));
+            }
+            body = new FixedLengthInputStream(this.inputStream, length);
+        } else {
+            // The body is delimited by the end of the connection
+            body = this.inputStream;
+            keepAlive = false;
+        }
+
+        final TransportResponse response;
+        final WritableByteChannel sink = request.getSink();
+        final ResponseReader reader = request.getReader();
+        if (body == null) {
+            response = new TransportResponse(code, status, EMPTY, 0, receivedAt);
+        } else if (sink != null && code / 100 == 2) {
+            response = new TransportResponse(code, status, EMPTY, Transports.transfer(body, sink), receivedAt);
+        } else if (reader != null && code / 100 == 2) {
+            response = new TransportResponse(code, status, EMPTY, Transports.read(body, reader), receivedAt);
+        } else {
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final byte[] chunk = new byte[Transports.BUFFER_SIZE];
+            int read;
+            while ((read = body.read(chunk)) != -1) {
+                buffer.write(chunk, 0, read);
+            }
+            response = new TransportResponse(code, status, buffer.toByteArray(), buffer.size(), receivedAt);
+        }
+        this.reusable = keepAlive;
+        return response;
+    }
+
+    @NotNull private Map<String, String> readHeaders() throws IOException {
+        final Map<String, String> headers = new HashMap<>();
+        String line;
+        while ((line = this.readLine()) != null && !line.isEmpty()) {
+            final int separator = line.indexOf(':');
+            if (separator <= 0) {
+                continue;
+            }
+            final String name = line.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+            final String value = line.substring(separator + 1).trim();
+            headers.merge(name, value, (first, second) -> first + ", " + second);
+        }
+        if (line == null) {
+            throw new EOFException("Connection closed while reading the response headers");
+        }
+        return headers;
+    }
+
+    /**
+     * Read a CRLF terminated line
+     *
+     * @return Read line, or {@code null} if the stream ended before any byte was read
+     * @throws IOException If the line cannot be read
+     */
+    @Nullable private String readLine() throws IOException {
+        return readLine(this.inputStream);
+    }
+
+    @Nullable static String readLine(@NotNull final InputStream inputStream) throws IOException {
+        final StringBuilder builder = new StringBuilder();
+        int read;
+        while ((read = inputStream.read()) != -1) {
+            if (read == '\n') {
+                final int length = builder.length();
+                if (length > 0 && builder.charAt(length - 1) == '\r') {
+                    builder.setLength(length - 1);
+                }
+                return builder.toString();
+            }
+            if (builder.length() >= MAX_LINE_LENGTH) {
+                throw new IOException("Response line exceeds " + MAX_LINE_LENGTH + " characters");
+            }
+            builder.append((char) read);
+        }
+        if (builder.length() == 0) {
+            return null;
+        }
+        throw new EOFException("Connection closed in the middle of a line");
+    }
+
+    private static int parseStatusCode(@NotNull final String statusLine) throws IOException {
+        if (!statusLine.startsWith("HTTP/") || statusLine.length() < 12) {
+            throw new IOException("Malformed status line: " + statusLine);
+        }
+        try {
+            return Integer.parseInt(statusLine.substring(9, 12));
+        } catch (final NumberFormatException e) {
+            throw new IOException("Malformed status line: " + statusLine);
+        }
+    }
+
+    /**
+     * Parse the timeout of a Keep-Alive header, such as {@code timeout=5, max=100}
+     *
+     * @param header Header value
+     * @return Timeout in nanoseconds, or {@link Long#MAX_VALUE} if the server did not specify one
+     */
+    private static long parseKeepAliveNanos(@Nullable final String header) {
+        if (header == null) {
+            return Long.MAX_VALUE;
+        }
+        for (final String parameter : header.split(",")) {
+            final String[] parts = parameter.trim().split("=", 2);
+            if (parts.length == 2 && "timeout".equalsIgnoreCase(parts[0].trim())) {
+                try {
+                    // Give up the connection slightly before the server does
+                    final long seconds = Long.parseLong(parts[1].trim()) - 1;
+                    return Math.max(0, seconds) * 1_000_000_000L;
+                } catch (final NumberFormatException ignored) {
+                }
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Mark the connection as idle
+     *
+     * @param now Current {@link System#nanoTime() time}
+     */
+    void markIdle(final long now) {
+        this.idleSince = now;
+    }
+
+    /**
+     * Check whether the connection has been idle for too long
+     *
+     * @param now         Current {@link System#nanoTime() time}
+     * @param idleTimeout Configured idle timeout in nanoseconds
+     * @return {@code true} if the connection should be closed
+     */
+    boolean isExpired(final long now, final long idleTimeout) {
+        return now - this.idleSince >= Math.min(idleTimeout, this.keepAliveNanos) || this.socket.isClosed();
+    }
+
+    /**
+     * Check whether the connection can be reused after the last exchange
+     *
+     * @return {@code true} if the connection can be kept alive
+     */
+    boolean isReusable() {
+        return this.reusable;
+    }
+
+    /**
+     * Check whether any part of the response to the last exchange has been
+     * received. An exchange that fails before that usually means that the
+     * server has closed the idle connection
+     *
+     * @return {@code true} if the response has started
+     */
+    boolean isResponseStarted() {
+        return this.responseStarted;
+    }
+
+    /**
+     * Check whether any part of the last request has reached the socket. A request
+     * that fails before that cannot have been processed by the server
+     *
+     * @return {@code true} if the request has started
+     */
+    boolean isRequestStarted() {
+        return this.socketOutputStream.written;
+    }
+
+    /**
+     * Check whether the server has closed the connection while it was idle. This
+     * costs a short blocking read, so it is only done before requests that must not
+     * be replayed once they have been sent
+     *
+     * @return {@code true} if the connection must not be used anymore
+     */
+    boolean isStale() {
+        try {
+            if (this.inputStream.available() > 0) {
+                // Data on an idle connection, such as a response announcing that it is closed
+                return true;
+            }
+            final int timeout = this.socket.getSoTimeout();
+            this.socket.setSoTimeout(1);
+            try {
+                this.inputStream.read();
+                return true;
+            } catch (final SocketTimeoutException e) {
+                return false;
+            } finally {
+                this.socket.setSoTimeout(timeout);
+            }
+        } catch (final IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Get the Location header of the last response
+     *
+     * @return Location header, or {@code null} if the response did not have one
+     */
+    @Nullable String getLocation() {
+        return this.location;
+    }
+
+    /**
+     * Get the number of exchanges that have been started on this connection
+     *
+     * @return Number of exchanges
+     */
+    int getExchanges() {
+        return this.exchanges;
+    }
+
+    @NotNull ConnectionPool.Route getRoute() {
+        return this.route;
+    }
+
+    @Override public void close() {
+        try {
+            this.socket.close();
+        } catch (final IOException ignored) {
+        }
+    }
+
+
+    /**
+     * Thrown when the connection is closed before a response is received
+     */
+    static final class NoResponseException extends IOException {
+
+        NoResponseException(@NotNull final String message) {
+            super(message);
+        }
+
+    }
+
+
+    /**
+     * Stream that records whether anything has been written to the socket
+     */
+    private static final class TrackingOutputStream extends FilterOutputStream {
+
+        private boolean written;
+
+        private TrackingOutputStream(@NotNull final OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override public void write(final int b) throws IOException {
+            this.out.write(b);
+            this.written = true;
+        }
+
+        @Override public void write(@NotNull final byte[] bytes, final int offset, final int length)
+            throws IOException {
+            this.out.write(bytes, offset, length);
+            this.written |= length > 0;
+        }
+
+    }
+
+
+    /**
+     * Stream that writes a body of known length, and fails if the body does not match it
+     */
+    private static final class FixedLengthOutputStream extends FilterOutputStream {
+
+        private long remaining;
+
+        private FixedLengthOutputStream(@NotNull final OutputStream outputStream, final long length) {
+            super(outputStream);
+            this.remaining = length;
+        }
+
+        @Override public void write(final int b) throws IOException {
+            this.write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override public void write(@NotNull final byte[] bytes, final int offset, final int length)
+            throws IOException {
+            if (length > this.remaining) {
+                throw new LocalIOException("Request body exceeds its declared length");
+            }
+            this.out.write(bytes, offset, length);
+            this.remaining -= length;
+        }
+
+        @Override public void close() throws IOException {
+            this.flush();
+        }
+
+        private void finish() throws IOException {
+            if (this.remaining != 0) {
+                throw new LocalIOException("Request body is shorter than its declared length");
+            }
+        }
+
+    }
+
+
+    /**
+     * Stream that writes a body using chunked transfer encoding
+     */
+    private static final class ChunkedOutputStream extends FilterOutputStream {
+
+        private ChunkedOutputStream(@NotNull final OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override public void write(final int b) throws IOException {
+            this.write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override public void write(@NotNull final byte[] bytes, final int offset, final int length)
+            throws IOException {
+            if (length == 0) {
+                return;
+            }
+            this.out.write((Integer.toHexString(length) + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            this.out.write(bytes, offset, length);
+            this.out.write('\r');
+            this.out.write('\n');
+        }
+
+        @Override public void close() throws IOException {
+            this.flush();
+        }
+
+        private void finish() throws IOException {
+            this.out.write("0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+    }
+
+
+    /**
+     * Stream that reads a body of known length, without consuming anything past it
+     */
+    private static final class FixedLengthInputStream extends InputStream {
+
+        private final InputStream inputStream;
+        private long remaining;
+
+        private FixedLengthInputStream(@NotNull final InputStream inputStream, final long length) {
+            this.inputStream = inputStream;
+            this.remaining = length;
+        }
+
+        @Override public int read() throws IOException {
+            final byte[] buffer = new byte[1];
+            return this.read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xFF;
+        }
+
+        @Override public int read(@NotNull final byte[] bytes, final int offset, final int length)
+            throws IOException {
+            if (this.remaining == 0) {
+                return -1;
+            }
+            final int read = this.inputStream.read(bytes, offset, (int) Math.min(length, this.remaining));
+            if (read == -1) {
+                throw new EOFException("Connection closed before the response body was complete");
+            }
+            this.remaining -= read;
+            return read;
+        }
+
+    }
+
+
+    /**
+     * Stream that decodes a body sent using chunked transfer encoding
+     */
+    private static final class ChunkedInputStream extends InputStream {
+
+        private final InputStream inputStream;
+        private long remaining;
+        private boolean finished;
+
+        private ChunkedInputStream(@NotNull final InputStream inputStream) {
+            this.inputStream = inputStream;
+        }
+
+        @Override public int read() throws IOException {
+            final byte[] buffer = new byte[1];
+            return this.read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xFF;
+        }
+
+        @Override public int read(@NotNull final byte[] bytes, final int offset, final int length)
+            throws IOException {
+            if (this.finished) {
+                return -1;
+            }
+            if (this.remaining == 0) {
+                this.remaining = this.readChunkSize();
+                if (this.remaining == 0) {
+                    // Skip the trailers
+                    String line;
+                    do {
+                        line = readLine(this.inputStream);
+                    } while (line != null && !line.isEmpty());
+                    this.finished = true;
+                    return -1;
+                }
+            }
+            final int read = this.inputStream.read(bytes, offset, (int) Math.min(length, this.remaining));
+            if (read == -1) {
+                throw new EOFException("Connection closed before the response body was complete");
+            }
+            this.remaining -= read;
+            if (this.remaining == 0) {
+                // Every chunk is terminated by a CRLF
+                readLine(this.inputStream);
+            }
+            return read;
+        }
+
+        private long readChunkSize() throws IOException {
+            final String line = readLine(this.inputStream);
+            if (line == null) {
+                throw new EOFException("Connection closed before the response body was complete");
+            }
+            final int extension = line.indexOf(';');
+            try {
+                return Long.parseLong((extension == -1 ? line : line.substring(0, extension)).trim(), 16);
+            } catch (final NumberFormatException e) {
+                throw new IOException("Malformed chunk size: " + line);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Transport that performs the HTTP exchanges of an {@link com.intellectualsites.arkitektonika.ApiClient}
+ *
+ * @see Transports for the built-in transports
+ */
+public interface HttpTransport extends AutoCloseable {
+
+    /**
+     * Send a request. The returned future completes with the response once the
+     * response body has been read, or fails with an {@link java.io.IOException} if
+     * the exchange could not be completed
+     *
+     * @param request  Request to send
+     * @param executor Executor that blocking transports use to perform the exchange.
+     *                 Asynchronous transports may ignore it
+     * @return Future that completes with the response
+     */
+    @NotNull CompletableFuture<TransportResponse> send(@NotNull final TransportRequest request,
+        @NotNull final Executor executor);
+
+    /**
+     * Get a snapshot of the statistics of the connection pool of this transport
+     *
+     * @return Pool statistics, or {@code null} if the transport does not track them
+     */
+    @Nullable default ConnectionPoolStatistics getPoolStatistics() {
+        return null;
+    }
+
+    /**
+     * Release the resources held by the transport
+     */
+    @Override default void close() {
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Transport that only sends as many requests at once as a
+ * {@link ConcurrencyLimiter} permits
+ */
+final class LimitingTransport implements HttpTransport {
+
+    private final HttpTransport delegate;
+    private final ConcurrencyLimiter limiter;
+
+    LimitingTransport(@NotNull final HttpTransport delegate, @NotNull final ConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @NotNull @Override public CompletableFuture<TransportResponse> send(@NotNull final TransportRequest request,
+        @NotNull final Executor executor) {
+        final CompletableFuture<TransportResponse> result = new CompletableFuture<>();
+        try {
+            this.limiter.acquire(() -> {
+                final long start = System.nanoTime();
+                CompletableFuture<TransportResponse> future;
+                try {
+                    future = this.delegate.send(request, executor);
+                } catch (final RuntimeException e) {
+                    future = new CompletableFuture<>();
+                    future.completeExceptionally(e);
+                }
+                future.whenComplete((response, failure) -> {
+                    // The latency ends with the response head, so that large bodies do not count as slow.
+                    // Only overload signals reduce the limit, not failures on the side of the client
+                    final long end = failure == null ? response.getReceivedAt() : System.nanoTime();
+                    this.limiter.release(end - start, failure != null ? Transports.isNetworkFailure(failure) :
+                        response.getStatusCode() >= 500 || response.getStatusCode() == 429);
+                    if (failure != null) {
+                        result.completeExceptionally(failure);
+                    } else {
+                        result.complete(response);
+                    }
+                });
+            });
+        } catch (final RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    @Nullable @Override public ConnectionPoolStatistics getPoolStatistics() {
+        return this.delegate.getPoolStatistics();
+    }
+
+    @Override public void close() {
+        this.delegate.close();
+    }
+
+}
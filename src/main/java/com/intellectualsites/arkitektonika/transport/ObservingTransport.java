@@ -0,0 +1,87 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport that reports the latency of every exchange to an {@link ExchangeListener}
+ */
+final class ObservingTransport implements HttpTransport {
+
+    private final HttpTransport delegate;
+    private final ExchangeListener listener;
+
+    ObservingTransport(@NotNull final HttpTransport delegate, @NotNull final ExchangeListener listener) {
+        this.delegate = delegate;
+        this.listener = listener;
+    }
+
+    @NotNull @Override public CompletableFuture<TransportResponse> send(@NotNull final TransportRequest request,
+        @NotNull final Executor executor) {
+        final long sentAt = System.nanoTime();
+        final AtomicLong startedAt = new AtomicLong(sentAt);
+        final AtomicLong tasks = new AtomicLong();
+        // Blocking transports perform the exchange on the executor, so it starts when the first task runs
+        final Executor observed = command -> executor.execute(() -> {
+            if (tasks.getAndIncrement() == 0) {
+                startedAt.set(System.nanoTime());
+            }
+            command.run();
+        });
+        CompletableFuture<TransportResponse> future;
+        try {
+            future = this.delegate.send(request, observed);
+        } catch (final RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        return future.whenComplete((response, failure) -> {
+            if (response == null) {
+                return;
+            }
+            // Asynchronous transports only use the executor once the response head has been received
+            final long start = startedAt.get() - response.getReceivedAt() < 0 ? startedAt.get() : sentAt;
+            try {
+                this.listener.onResponse(request, response, response.getReceivedAt() - start);
+            } catch (final RuntimeException ignored) {
+                // The listener must not fail the exchange
+            }
+        });
+    }
+
+    @Nullable @Override public ConnectionPoolStatistics getPoolStatistics() {
+        return this.delegate.getPoolStatistics();
+    }
+
+    @Override public void close() {
+        this.delegate.close();
+    }
+
+}
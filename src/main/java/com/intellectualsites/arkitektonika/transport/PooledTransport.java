@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Blocking HTTP/1.1 transport that keeps connections alive in its own
+ * {@link ConnectionPool pool}, so that consecutive requests to the same
+ * server do not pay for a new TCP and TLS handshake. Like the other
+ * transports, it follows redirects of GET and HEAD requests
+ */
+final class PooledTransport implements HttpTransport {
+
+    private static final int MAX_REDIRECTS = 5;
+
+    private final ConnectionPool pool;
+
+    PooledTransport(@NotNull final ConnectionPoolSettings settings) {
+        this.pool = new ConnectionPool(settings);
+    }
+
+    @NotNull @Override public CompletableFuture<TransportResponse> send(@NotNull final TransportRequest request,
+        @NotNull final Executor executor) {
+        return Transports.execute(executor, () -> this.exchange(request, 0));
+    }
+
+    @NotNull private TransportResponse exchange(@NotNull final TransportRequest request, final int redirects)
+        throws IOException {
+        final ConnectionPool.Route route = ConnectionPool.Route.of(request.getUri());
+        // Replaying a POST request may create a second resource, so it is only replayed
+        // if none of it has been sent. A reused connection is checked before that instead
+        final boolean replayable = !"POST".equals(request.getMethod());
+        while (true) {
+            final HttpConnection connection = this.pool.lease(route);
+            final boolean reused = connection.getExchanges() > 0;
+            if (reused && !replayable && connection.isStale()) {
+                this.pool.release(connection, false);
+                continue;
+            }
+            final TransportResponse response;
+            final URI redirect;
+            try {
+                response = connection.exchange(request);
+                redirect = getRedirect(request, response.getStatusCode(), connection.getLocation(), redirects);
+                this.pool.release(connection, connection.isReusable());
+            } catch (final IOException | RuntimeException e) {
+                this.pool.release(connection, false);
+                // The server may have closed the connection while it was idle. In that case nothing
+                // has been received, and the request is retried on another connection. This ends
+                // at the latest once a new connection is opened. A server that does not answer in
+                // time has not closed the connection, so timeouts are not retried
+                if (reused && e instanceof IOException && !(e instanceof SocketTimeoutException) &&
+                    !(e instanceof LocalIOException) && !connection.isResponseStarted() &&
+                    (replayable || !connection.isRequestStarted())) {
+                    continue;
+                }
+                throw e;
+            }
+            return redirect == null ? response : this.exchange(request.withUri(redirect), redirects + 1);
+        }
+    }
+
+    /**
+     * Get the target of a redirect, following the same rules as the other transports. Only
+     * GET and HEAD requests are redirected, since the body of a POST request may not be
+     * replayable, and a secure request is never redirected to a plain URI
+     *
+     * @param request   Sent request
+     * @param code      Status code of the response
+     * @param location  Location header of the response
+     * @param redirects Number of redirects that have already been followed
+     * @return Redirect target, or {@code null} if the response should be returned as it is
+     */
+    @Nullable private static URI getRedirect(@NotNull final TransportRequest request, final int code,
+        @Nullable final String location, final int redirects) {
+        if (location == null || redirects >= MAX_REDIRECTS ||
+            !("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()))) {
+            return null;
+        }
+        if (code != 301 && code != 302 && code != 303 && code != 307 && code != 308) {
+            return null;
+        }
+        final URI target;
+        try {
+            target = request.getUri().resolve(location);
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+        final String scheme = target.getScheme();
+        if ("https".equalsIgnoreCase(scheme) ||
+            ("http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(request.getUri().getScheme()))) {
+            return target;
+        }
+        return null;
+    }
+
+    @NotNull @Override public ConnectionPoolStatistics getPoolStatistics() {
+        return this.pool.getStatistics();
+    }
+
+    @Override public void close() {
+        this.pool.close();
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Body of a {@link TransportRequest}
+ */
+public interface RequestBody {
+
+    /**
+     * Get the value of the Content-Type header
+     *
+     * @return Content type
+     */
+    @NotNull String getContentType();
+
+    /**
+     * Get the exact length of the body
+     *
+     * @return Body length in bytes, or {@code -1} if it is not known in advance
+     */
+    long getContentLength();
+
+    /**
+     * Open a stream that provides the body. A new stream is opened for
+     * every exchange, and closed by the transport once it has been read
+     *
+     * @return Body stream
+     * @throws IOException If the body cannot be opened
+     */
+    @NotNull InputStream open() throws IOException;
+
+    /**
+     * Write the body to the given stream in fixed-size chunks
+     *
+     * @param outputStream Stream to write to
+     * @throws IOException If the body cannot be read or the stream cannot be written to
+     */
+    default void writeTo(@NotNull final OutputStream outputStream) throws IOException {
+        try (final InputStream inputStream = this.open()) {
+            final byte[] buffer = new byte[Transports.BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Open a transfer of the body directly to a blocking channel. Bodies that are backed
+     * by a file can hand it to the channel with {@link java.nio.channels.FileChannel#transferTo},
+     * so that the file is sent by the kernel without being copied through the heap.
+     * Transports only call this when the body has a known length and the connection
+     * exposes a plain socket channel, and fall back to {@link #writeTo(OutputStream)}
+     * if the body does not support it. The transfer is opened before the request head is
+     * sent, so that a source that cannot be opened fails before anything reaches the server
+     *
+     * @return Opened transfer, which is closed by the transport, or {@code null} if the
+     * body cannot be transferred
+     * @throws IOException If the source cannot be opened
+     */
+    @Nullable default Transfer openTransfer() throws IOException {
+        return null;
+    }
+
+
+    /**
+     * Transfer of a {@link RequestBody} to a blocking channel
+     *
+     * @see RequestBody#openTransfer()
+     */
+    interface Transfer extends Closeable {
+
+        /**
+         * Write the body to the channel
+         *
+         * @param channel Channel to write to
+         * @param length  Length of the body that was announced to the server. Exactly this many
+         *                bytes are written, even if the source has changed since
+         * @return Number of bytes written
+         * @throws IOException If the channel cannot be written to, or a {@link LocalIOException}
+         *                     if the source cannot be read or has become shorter than the length
+         */
+        long transferTo(@NotNull WritableByteChannel channel, long length) throws IOException;
+
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Settings that control how failed requests are retried, and whether slow
+ * requests are hedged
+ *
+ * @see RetryPolicy#builder() to create a new policy
+ * @see Transports#retrying(HttpTransport, RetryPolicy) to apply a policy
+ */
+public final class RetryPolicy {
+
+    private final int maxAttempts;
+    private final int[] retryableStatuses;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final double hedgingPercentile;
+
+    private RetryPolicy(final int maxAttempts, @NotNull final int[] retryableStatuses,
+        @NotNull final Duration initialBackoff, @NotNull final Duration maxBackoff, final double hedgingPercentile) {
+        this.maxAttempts = maxAttempts;
+        this.retryableStatuses = retryableStatuses;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.hedgingPercentile = hedgingPercentile;
+    }
+
+    /**
+     * Create a new {@link RetryPolicy} {@link Builder builder}
+     *
+     * @return New builder
+     */
+    @NotNull public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the maximum number of attempts per request, including the first attempt
+     *
+     * @return Maximum number of attempts
+     */
+    public int getMaxAttempts() {
+        return this.maxAttempts;
+    }
+
+    /**
+     * Check whether a response with the given status code is retried
+     *
+     * @param statusCode HTTP status code
+     * @return {@code true} if the request is retried
+     */
+    public boolean isRetryableStatus(final int statusCode) {
+        return Arrays.binarySearch(this.retryableStatuses, statusCode) >= 0;
+    }
+
+    /**
+     * Get the delay before the first retry. The delay doubles with every
+     * following retry
+     *
+     * @return Initial backoff
+     */
+    @NotNull public Duration getInitialBackoff() {
+        return this.initialBackoff;
+    }
+
+    /**
+     * Get the maximum delay between two attempts
+     *
+     * @return Maximum backoff
+     */
+    @NotNull public Duration getMaxBackoff() {
+        return this.maxBackoff;
+    }
+
+    /**
+     * Get the latency percentile after which a hedged request is sent
+     *
+     * @return Hedging percentile, or {@code 0} if requests are not hedged
+     */
+    public double getHedgingPercentile() {
+        return this.hedgingPercentile;
+    }
+
+
+    /**
+     * Builder class for {@link RetryPolicy} instances.
+     *
+     * @see RetryPolicy#builder() to get a new builder instance
+     */
+    public static final class Builder {
+
+        private int maxAttempts = 3;
+        private int[] retryableStatuses = {429, 502, 503, 504};
+        private Duration initialBackoff = Duration.ofMillis(100);
+        private Duration maxBackoff = Duration.ofSeconds(5);
+        private double hedgingPercentile;
+
+        private Builder() {
+        }
+
+        /**
+         * Specify the maximum number of attempts per request, including the
+         * first attempt. Defaults to 3
+         *
+         * @param maxAttempts Maximum number of attempts
+         * @return The builder instance
+         */
+        @NotNull public Builder withMaxAttempts(final int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("The number of attempts must be positive");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Specify the response status codes that are retried. Defaults to
+         * 429, 502, 503 and 504
+         *
+         * @param statusCodes HTTP status codes
+         * @return The builder instance
+         */
+        @NotNull public Builder withRetryableStatuses(@NotNull final int... statusCodes) {
+            final int[] sorted = statusCodes.clone();
+            Arrays.sort(sorted);
+            this.retryableStatuses = sorted;
+            return this;
+        }
+
+        /**
+         * Specify the delay between attempts. The delay starts at the initial backoff
+         * and doubles with every retry, up to the maximum backoff. Every delay is drawn
+         * at random below this bound, so that clients that failed at the same time do not
+         * retry at the same time. Defaults to 100 milliseconds and 5 seconds
+         *
+         * @param initialBackoff Delay bound of the first retry
+         * @param maxBackoff     Maximum delay bound
+         * @return The builder instance
+         */
+        @NotNull public Builder withBackoff(@NotNull final Duration initialBackoff,
+            @NotNull final Duration maxBackoff) {
+            if (initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0) {
+                throw new IllegalArgumentException("Invalid backoff: " + initialBackoff + " to " + maxBackoff);
+            }
+            this.initialBackoff = Objects.requireNonNull(initialBackoff);
+            this.maxBackoff = Objects.requireNonNull(maxBackoff);
+            return this;
+        }
+
+        /**
+         * Hedge requests that buffer their response: when such a request takes longer
+         * than the given percentile of recent latencies, a second identical request is
+         * sent, and the first response is used. Only GET and HEAD requests are hedged.
+         * Disabled by default
+         *
+         * @param percentile Latency percentile, for example {@code 0.95}
+         * @return The builder instance
+         */
+        @NotNull public Builder withHedging(final double percentile) {
+            if (percentile <= 0 || percentile >= 1) {
+                throw new IllegalArgumentException("The percentile must be between 0 and 1");
+            }
+            this.hedgingPercentile = percentile;
+            return this;
+        }
+
+        /**
+         * Create the policy
+         *
+         * @return Created policy
+         */
+        @NotNull public RetryPolicy build() {
+            return new RetryPolicy(this.maxAttempts, this.retryableStatuses, this.initialBackoff,
+                this.maxBackoff, this.hedgingPercentile);
+        }
+
+    }
+
+}
@@ -0,0 +1,304 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiConsumer;
+
+/**
+ * Transport that retries failed requests according to a {@link RetryPolicy},
+ * and optionally hedges slow requests
+ * <p>
+ * A request is only retried if repeating it cannot have an effect that the first
+ * attempt did not already have. GET, HEAD and DELETE requests are retried after
+ * I/O failures and retryable responses. POST requests create a new resource every
+ * time they are processed, so they are only retried if no connection could be
+ * established. Requests that write their response to a sink are not retried once
+ * the sink has received any data, and requests that pass their response to a reader
+ * are neither hedged nor retried once the reader has been called. A
+ * {@link LocalIOException} is never retried, as the next attempt would fail alike
+ */
+final class RetryingTransport implements HttpTransport {
+
+    /**
+     * Number of latency samples that are kept to compute the hedging delay
+     */
+    private static final int SAMPLES = 256;
+
+    /**
+     * Number of latency samples required before requests are hedged
+     */
+    private static final int MIN_SAMPLES = 32;
+
+    private final HttpTransport delegate;
+    private final RetryPolicy policy;
+    private final LatencyTracker getLatencies = new LatencyTracker();
+    private final LatencyTracker headLatencies = new LatencyTracker();
+
+    RetryingTransport(@NotNull final HttpTransport delegate, @NotNull final RetryPolicy policy) {
+        this.delegate = delegate;
+        this.policy = policy;
+    }
+
+    @NotNull @Override public CompletableFuture<TransportResponse> send(@NotNull final TransportRequest request,
+        @NotNull final Executor executor) {
+        final CompletableFuture<TransportResponse> result = new CompletableFuture<>();
+        this.attempt(request, executor, 1, result);
+        return result;
+    }
+
+    private void attempt(@NotNull final TransportRequest request, @NotNull final Executor executor,
+        final int attempt, @NotNull final CompletableFuture<TransportResponse> result) {
+        final CountingChannel sink = request.getSink() == null ? null : new CountingChannel(request.getSink());
+        final TrackingReader reader = request.getReader() == null ? null : new TrackingReader(request.getReader());
+        final CompletableFuture<TransportResponse> future;
+        try {
+            if (sink != null) {
+                future = this.delegate.send(request.withSink(sink), executor);
+            } else if (reader != null) {
+                future = this.delegate.send(request.withReader(reader), executor);
+            } else {
+                future = this.sendHedged(request, executor);
+            }
+        } catch (final RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        future.whenComplete((response, throwable) -> {
+            final Throwable failure = throwable instanceof CompletionException && throwable.getCause() != null ?
+                throwable.getCause() : throwable;
+            final boolean retry;
+            if (attempt >= this.policy.getMaxAttempts() || (sink != null && sink.written > 0) ||
+                (reader != null && reader.called)) {
+                retry = false;
+            } else if (failure != null) {
+                retry = failure instanceof ConnectException || (failure instanceof IOException &&
+                    !(failure instanceof LocalIOException) && isIdempotent(request));
+            } else {
+                retry = this.policy.isRetryableStatus(response.getStatusCode()) && isIdempotent(request);
+            }
+            if (!retry) {
+                if (failure != null) {
+                    result.completeExceptionally(failure);
+                } else {
+                    result.complete(response);
+                }
+                return;
+            }
+            TransportScheduler.schedule(() -> this.attempt(request, executor, attempt + 1, result),
+                this.backoff(attempt));
+        });
+    }
+
+    /**
+     * Get a random delay below the exponentially growing bound of a retry
+     *
+     * @param attempt Number of the failed attempt
+     * @return Delay in nanoseconds
+     */
+    private long backoff(final int attempt) {
+        final long initial = this.policy.getInitialBackoff().toNanos();
+        final long max = this.policy.getMaxBackoff().toNanos();
+        final long bound = (long) Math.min(max, initial * Math.pow(2, attempt - 1));
+        return bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    @NotNull private CompletableFuture<TransportResponse> sendHedged(@NotNull final TransportRequest request,
+        @NotNull final Executor executor) {
+        final LatencyTracker latencies = this.latencies(request);
+        if (latencies == null) {
+            return this.delegate.send(request, executor);
+        }
+        final long delay = latencies.percentile(this.policy.getHedgingPercentile());
+        if (delay < 0) {
+            return this.timed(request, executor, latencies);
+        }
+        final CompletableFuture<TransportResponse> result = new CompletableFuture<>();
+        // Number of requests that have been sent and not completed yet
+        final AtomicInteger outstanding = new AtomicInteger(1);
+        // A retryable response only wins once the other request has failed as well, so
+        // that a fast error does not replace a slow success
+        final BiConsumer<TransportResponse, Throwable> completion = (response, failure) -> {
+            if (failure == null && !this.policy.isRetryableStatus(response.getStatusCode())) {
+                result.complete(response);
+            } else if (outstanding.decrementAndGet() == 0) {
+                if (failure == null) {
+                    result.complete(response);
+                } else {
+                    result.completeExceptionally(failure);
+                }
+            }
+        };
+        this.timed(request, executor, latencies).whenComplete(completion);
+        final ScheduledFuture<?> hedge = TransportScheduler.schedule(() -> {
+            int current;
+            do {
+                current = outstanding.get();
+                if (current == 0 || result.isDone()) {
+                    return;
+                }
+            } while (!outstanding.compareAndSet(current, current + 1));
+            this.timed(request, executor, latencies).whenComplete(completion);
+        }, delay);
+        result.whenComplete((response, failure) -> hedge.cancel(false));
+        return result;
+    }
+
+    @NotNull private CompletableFuture<TransportResponse> timed(@NotNull final TransportRequest request,
+        @NotNull final Executor executor, @NotNull final LatencyTracker latencies) {
+        final long start = System.nanoTime();
+        return this.delegate.send(request, executor).whenComplete((response, failure) -> {
+            if (failure == null) {
+                latencies.record(System.nanoTime() - start);
+            }
+        });
+    }
+
+    @Nullable private LatencyTracker latencies(@NotNull final TransportRequest request) {
+        if (this.policy.getHedgingPercentile() <= 0) {
+            return null;
+        }
+        switch (request.getMethod()) {
+            case "GET":
+                return this.getLatencies;
+            case "HEAD":
+                return this.headLatencies;
+            default:
+                return null;
+        }
+    }
+
+    private static boolean isIdempotent(@NotNull final TransportRequest request) {
+        return !"POST".equals(request.getMethod());
+    }
+
+    @Nullable @Override public ConnectionPoolStatistics getPoolStatistics() {
+        return this.delegate.getPoolStatistics();
+    }
+
+    @Override public void close() {
+        this.delegate.close();
+    }
+
+
+    /**
+     * Ring buffer of the most recent latencies
+     */
+    private static final class LatencyTracker {
+
+        private final AtomicLongArray samples = new AtomicLongArray(SAMPLES);
+        private final AtomicLong count = new AtomicLong();
+
+        private void record(final long nanos) {
+            this.samples.set((int) (this.count.getAndIncrement() % SAMPLES), nanos);
+        }
+
+        /**
+         * Get a percentile of the recorded latencies
+         *
+         * @param percentile Percentile between 0 and 1
+         * @return Latency in nanoseconds, or {@code -1} if too few latencies have been recorded
+         */
+        private long percentile(final double percentile) {
+            final long count = this.count.get();
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            final int size = (int) Math.min(count, SAMPLES);
+            final long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = this.samples.get(i);
+            }
+            Arrays.sort(sorted);
+            return sorted[Math.min(size - 1, (int) (percentile * size))];
+        }
+
+    }
+
+
+    /**
+     * Channel that counts the bytes written to it
+     */
+    private static final class CountingChannel implements WritableByteChannel {
+
+        private final WritableByteChannel channel;
+        private long written;
+
+        private CountingChannel(@NotNull final WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override public int write(@NotNull final ByteBuffer source) throws IOException {
+            final int written = this.channel.write(source);
+            this.written += written;
+            return written;
+        }
+
+        @Override public boolean isOpen() {
+            return this.channel.isOpen();
+        }
+
+        @Override public void close() throws IOException {
+            this.channel.close();
+        }
+
+    }
+
+
+    /**
+     * Reader that records whether it has been called
+     */
+    private static final class TrackingReader implements ResponseReader {
+
+        private final ResponseReader reader;
+        private boolean called;
+
+        private TrackingReader(@NotNull final ResponseReader reader) {
+            this.reader = reader;
+        }
+
+        @Override public void read(@NotNull final InputStream body) throws IOException {
+            this.called = true;
+            this.reader.read(body);
+        }
+
+    }
+
+}
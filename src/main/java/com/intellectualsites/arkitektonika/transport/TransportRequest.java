@@ -0,0 +1,174 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URI;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+/**
+ * Request sent through a {@link HttpTransport}
+ */
+public final class TransportRequest {
+
+    private final String method;
+    private final URI uri;
+    private final RequestBody body;
+    private final WritableByteChannel sink;
+    private final ResponseReader reader;
+
+    private TransportRequest(@NotNull final String method, @NotNull final URI uri, @Nullable final RequestBody body,
+        @Nullable final WritableByteChannel sink, @Nullable final ResponseReader reader) {
+        this.method = method;
+        this.uri = Objects.requireNonNull(uri);
+        this.body = body;
+        this.sink = sink;
+        this.reader = reader;
+    }
+
+    /**
+     * Create a GET request
+     *
+     * @param uri Request URI
+     * @return Created request
+     */
+    @NotNull public static TransportRequest get(@NotNull final URI uri) {
+        return new TransportRequest("GET", uri, null, null, null);
+    }
+
+    /**
+     * Create a HEAD request
+     *
+     * @param uri Request URI
+     * @return Created request
+     */
+    @NotNull public static TransportRequest head(@NotNull final URI uri) {
+        return new TransportRequest("HEAD", uri, null, null, null);
+    }
+
+    /**
+     * Create a DELETE request
+     *
+     * @param uri Request URI
+     * @return Created request
+     */
+    @NotNull public static TransportRequest delete(@NotNull final URI uri) {
+        return new TransportRequest("DELETE", uri, null, null, null);
+    }
+
+    /**
+     * Create a POST request
+     *
+     * @param uri  Request URI
+     * @param body Request body
+     * @return Created request
+     */
+    @NotNull public static TransportRequest post(@NotNull final URI uri, @NotNull final RequestBody body) {
+        return new TransportRequest("POST", uri, Objects.requireNonNull(body), null, null);
+    }
+
+    /**
+     * Create a copy of this request that writes a successful (2xx) response
+     * body to the given channel, rather than buffering it in memory. This
+     * replaces the reader of the request
+     *
+     * @param sink Channel to write the response body to. It will not be closed
+     * @return Created request
+     */
+    @NotNull public TransportRequest withSink(@NotNull final WritableByteChannel sink) {
+        return new TransportRequest(this.method, this.uri, this.body, Objects.requireNonNull(sink), null);
+    }
+
+    /**
+     * Create a copy of this request that passes a successful (2xx) response
+     * body to the given reader as it is received, rather than buffering it in
+     * memory. This replaces the sink of the request
+     *
+     * @param reader Reader of the response body
+     * @return Created request
+     */
+    @NotNull public TransportRequest withReader(@NotNull final ResponseReader reader) {
+        return new TransportRequest(this.method, this.uri, this.body, null, Objects.requireNonNull(reader));
+    }
+
+    /**
+     * Create a copy of this request that is sent to another URI, such as
+     * the target of a redirect
+     *
+     * @param uri Request URI
+     * @return Created request
+     */
+    @NotNull TransportRequest withUri(@NotNull final URI uri) {
+        return new TransportRequest(this.method, uri, this.body, this.sink, this.reader);
+    }
+
+    /**
+     * Get the request method
+     *
+     * @return Request method
+     */
+    @NotNull public String getMethod() {
+        return this.method;
+    }
+
+    /**
+     * Get the request URI
+     *
+     * @return Request URI
+     */
+    @NotNull public URI getUri() {
+        return this.uri;
+    }
+
+    /**
+     * Get the request body
+     *
+     * @return Request body, or {@code null} if the request has no body
+     */
+    @Nullable public RequestBody getBody() {
+        return this.body;
+    }
+
+    /**
+     * Get the channel that a successful response body is written to
+     *
+     * @return Response sink, or {@code null} if the response body should be buffered
+     */
+    @Nullable public WritableByteChannel getSink() {
+        return this.sink;
+    }
+
+    /**
+     * Get the reader that a successful response body is passed to
+     *
+     * @return Response reader, or {@code null} if the response body should be buffered
+     */
+    @Nullable public ResponseReader getReader() {
+        return this.reader;
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Response received through a {@link HttpTransport}
+ */
+public final class TransportResponse {
+
+    private final int statusCode;
+    private final String status;
+    private final byte[] body;
+    private final long transferred;
+    private final long receivedAt;
+
+    public TransportResponse(final int statusCode, @NotNull final String status, @NotNull final byte[] body,
+        final long transferred) {
+        this(statusCode, status, body, transferred, System.nanoTime());
+    }
+
+    public TransportResponse(final int statusCode, @NotNull final String status, @NotNull final byte[] body,
+        final long transferred, final long receivedAt) {
+        this.statusCode = statusCode;
+        this.status = status;
+        this.body = body;
+        this.transferred = transferred;
+        this.receivedAt = receivedAt;
+    }
+
+    /**
+     * Get the response status code
+     *
+     * @return Status code
+     */
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
+    /**
+     * Get the response status message
+     *
+     * @return Status message
+     */
+    @NotNull public String getStatus() {
+        return this.status;
+    }
+
+    /**
+     * Get the buffered response body. This is empty if the
+     * body was written to the sink of the request
+     *
+     * @return Response body
+     */
+    @NotNull public byte[] getBody() {
+        return this.body;
+    }
+
+    /**
+     * Get the number of body bytes that were received
+     *
+     * @return Number of body bytes
+     */
+    public long getTransferred() {
+        return this.transferred;
+    }
+
+    /**
+     * Get the time at which the head of the response was received, before its body was
+     * transferred. Responses that were created without it use the time of their creation
+     *
+     * @return Value of {@link System#nanoTime()} when the response head was received
+     */
+    public long getReceivedAt() {
+        return this.receivedAt;
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+/**
+ * Built-in {@link HttpTransport} implementations
+ */
+public enum TransportType {
+    /**
+     * Transport based on {@link java.net.HttpURLConnection}. Every exchange
+     * occupies a thread of the client executor for its whole round trip
+     */
+    BLOCKING,
+    /**
+     * HTTP/1.1 transport that keeps connections alive in its own pool, which
+     * can be configured through {@link ConnectionPoolSettings}. Every exchange
+     * occupies a thread of the client executor for its whole round trip
+     */
+    POOLED,
+    /**
+     * Transport based on the {@code java.net.http} client. Exchanges are
+     * completed from I/O callbacks and do not occupy executor threads.
+     * Requires Java 11 or newer
+     */
+    ASYNC
+}
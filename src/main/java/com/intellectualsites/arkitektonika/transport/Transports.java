@@ -0,0 +1,422 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Factory methods for the built-in {@link HttpTransport transports}
+ */
+public final class Transports {
+
+    static final int BUFFER_SIZE = 8192;
+
+    private Transports() {
+    }
+
+    /**
+     * Create a new transport of the given type, using the default connection pool settings
+     *
+     * @param type Transport type
+     * @return Created transport
+     * @throws UnsupportedOperationException If the transport is not supported by the running JVM
+     */
+    @NotNull public static HttpTransport create(@NotNull final TransportType type) {
+        return create(type, ConnectionPoolSettings.defaults());
+    }
+
+    /**
+     * Create a new transport of the given type
+     *
+     * @param type     Transport type
+     * @param settings Connection pool settings
+     * @return Created transport
+     * @throws UnsupportedOperationException If the transport is not supported by the running JVM
+     */
+    @NotNull public static HttpTransport create(@NotNull final TransportType type,
+        @NotNull final ConnectionPoolSettings settings) {
+        switch (type) {
+            case BLOCKING:
+                return blocking();
+            case POOLED:
+                return pooled(settings);
+            case ASYNC:
+                return async(settings);
+            default:
+                throw new IllegalArgumentException("Unknown transport type: " + type);
+        }
+    }
+
+    /**
+     * Create a new blocking transport
+     *
+     * @return Created transport
+     */
+    @NotNull public static HttpTransport blocking() {
+        return new UrlConnectionTransport();
+    }
+
+    /**
+     * Create a new transport that keeps connections alive in its own pool
+     *
+     * @param settings Connection pool settings
+     * @return Created transport
+     */
+    @NotNull public static HttpTransport pooled(@NotNull final ConnectionPoolSettings settings) {
+        return new PooledTransport(settings);
+    }
+
+    /**
+     * Create a new asynchronous transport, using the default connection pool settings
+     *
+     * @return Created transport
+     * @throws UnsupportedOperationException If the running JVM is older than Java 11
+     */
+    @NotNull public static HttpTransport async() {
+        return async(ConnectionPoolSettings.defaults());
+    }
+
+    /**
+     * Create a new asynchronous transport
+     *
+     * @param settings Connection pool settings
+     * @return Created transport
+     * @throws UnsupportedOperationException If the running JVM is older than Java 11
+     */
+    @NotNull public static HttpTransport async(@NotNull final ConnectionPoolSettings settings) {
+        return AsyncTransportFactory.create(settings);
+    }
+
+    /**
+     * Wrap a transport, so that failed requests are retried according to the given policy
+     *
+     * @param transport Transport that performs the requests
+     * @param policy    Retry policy
+     * @return Created transport. Closing it closes the wrapped transport
+     */
+    @NotNull public static HttpTransport retrying(@NotNull final HttpTransport transport,
+        @NotNull final RetryPolicy policy) {
+        return new RetryingTransport(transport, policy);
+    }
+
+    /**
+     * Wrap a transport, so that it only sends as many requests at once as the given limiter permits
+     *
+     * @param transport Transport that performs the requests
+     * @param limiter   Concurrency limiter. It may be shared by multiple transports
+     * @return Created transport. Closing it closes the wrapped transport
+     */
+    @NotNull public static HttpTransport limiting(@NotNull final HttpTransport transport,
+        @NotNull final ConcurrencyLimiter limiter) {
+        return new LimitingTransport(transport, limiter);
+    }
+
+    /**
+     * Wrap a transport, so that the latency of every exchange until its response head is reported
+     * to the given listener. Wrap the transport that performs the requests directly, so that the
+     * time waiting for a limiter or between retries is not reported
+     *
+     * @param transport Transport that performs the requests
+     * @param listener  Listener of the exchanges
+     * @return Created transport. Closing it closes the wrapped transport
+     */
+    @NotNull public static HttpTransport observing(@NotNull final HttpTransport transport,
+        @NotNull final ExchangeListener listener) {
+        return new ObservingTransport(transport, listener);
+    }
+
+    /**
+     * Check whether the asynchronous transport is supported by the running JVM
+     *
+     * @return {@code true} if {@link #async()} is supported
+     */
+    public static boolean isAsyncSupported() {
+        return AsyncTransportFactory.isSupported();
+    }
+
+    /**
+     * Check whether an exchange failed because of the network or the server, rather than
+     * because of the client. Failures caused by a {@link LocalIOException}, a cancelled
+     * exchange or a rejected task say nothing about the server, and are not counted
+     *
+     * @param failure Failure of the exchange, or {@code null} if it succeeded
+     * @return {@code true} if the failure was caused by an I/O failure of the exchange
+     */
+    public static boolean isNetworkFailure(@Nullable final Throwable failure) {
+        boolean networkFailure = false;
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof LocalIOException || cause instanceof CancellationException ||
+                cause instanceof RejectedExecutionException) {
+                return false;
+            }
+            networkFailure |= cause instanceof IOException;
+        }
+        return networkFailure;
+    }
+
+    /**
+     * Perform a blocking exchange on the given executor
+     *
+     * @param executor Executor that performs the exchange
+     * @param exchange Blocking exchange
+     * @return Future that completes with the response, or exceptionally if the
+     * exchange fails or the executor rejects it
+     */
+    @NotNull static CompletableFuture<TransportResponse> execute(@NotNull final Executor executor,
+        @NotNull final BlockingExchange exchange) {
+        final CompletableFuture<TransportResponse> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(exchange.perform());
+                } catch (final Throwable throwable) {
+                    future.completeExceptionally(throwable);
+                }
+            });
+        } catch (final RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Copy a stream to a channel in fixed-size chunks
+     *
+     * @param inputStream Stream to read from
+     * @param channel     Channel to write to
+     * @return Number of bytes copied
+     * @throws IOException If the stream cannot be read, or a {@link LocalIOException}
+     *                     if the channel cannot be written to
+     */
+    static long transfer(@NotNull final InputStream inputStream, @NotNull final WritableByteChannel channel)
+        throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        long transferred = 0;
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            byteBuffer.clear().limit(read);
+            try {
+                while (byteBuffer.hasRemaining()) {
+                    transferred += channel.write(byteBuffer);
+                }
+            } catch (final IOException e) {
+                throw new LocalIOException(e);
+            }
+        }
+        return transferred;
+    }
+
+    /**
+     * Write a request body to a stream
+     *
+     * @param body         Request body
+     * @param outputStream Stream to write to
+     * @throws IOException If the stream cannot be written to, or a {@link LocalIOException}
+     *                     if the body cannot be read
+     */
+    static void write(@NotNull final RequestBody body, @NotNull final OutputStream outputStream)
+        throws IOException {
+        final GuardedOutputStream stream = new GuardedOutputStream(outputStream);
+        try {
+            body.writeTo(stream);
+        } catch (final LocalIOException e) {
+            throw e;
+        } catch (final IOException | RuntimeException e) {
+            if (stream.failure == null) {
+                throw new LocalIOException(e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Pass a response body to a reader, and discard the part of the
+     * body that the reader leaves unread
+     *
+     * @param body   Response body
+     * @param reader Reader of the body
+     * @return Number of body bytes that were received
+     * @throws IOException If the body cannot be read, or a {@link LocalIOException} if the reader fails
+     */
+    static long read(@NotNull final InputStream body, @NotNull final ResponseReader reader) throws IOException {
+        final CountingInputStream inputStream = new CountingInputStream(body);
+        try {
+            reader.read(inputStream);
+        } catch (final LocalIOException e) {
+            throw e;
+        } catch (final IOException | RuntimeException e) {
+            if (inputStream.failure == null) {
+                throw new LocalIOException(e);
+            }
+            throw e;
+        }
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        while (inputStream.read(buffer) != -1) {
+            // Discard the rest of the body, so that the connection can be reused
+        }
+        return inputStream.count;
+    }
+
+
+    /**
+     * Exchange that blocks the calling thread until the response has been received
+     */
+    @FunctionalInterface
+    interface BlockingExchange {
+
+        /**
+         * Perform the exchange
+         *
+         * @return Received response
+         * @throws IOException If the exchange fails
+         */
+        @NotNull TransportResponse perform() throws IOException;
+
+    }
+
+
+    /**
+     * Stream that records whether writing to the underlying stream has failed
+     */
+    private static final class GuardedOutputStream extends FilterOutputStream {
+
+        private IOException failure;
+
+        private GuardedOutputStream(@NotNull final OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override public void write(final int b) throws IOException {
+            try {
+                this.out.write(b);
+            } catch (final IOException e) {
+                this.failure = e;
+                throw e;
+            }
+        }
+
+        @Override public void write(@NotNull final byte[] bytes, final int offset, final int length)
+            throws IOException {
+            try {
+                this.out.write(bytes, offset, length);
+            } catch (final IOException e) {
+                this.failure = e;
+                throw e;
+            }
+        }
+
+        @Override public void flush() throws IOException {
+            try {
+                this.out.flush();
+            } catch (final IOException e) {
+                this.failure = e;
+                throw e;
+            }
+        }
+
+        @Override public void close() throws IOException {
+            this.flush();
+        }
+
+    }
+
+
+    /**
+     * Stream that counts the bytes read from it, records whether reading has
+     * failed, and that cannot be closed by the reader
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+        private IOException failure;
+
+        private CountingInputStream(@NotNull final InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override public int read() throws IOException {
+            final int read;
+            try {
+                read = super.read();
+            } catch (final IOException e) {
+                this.failure = e;
+                throw e;
+            }
+            if (read != -1) {
+                this.count++;
+            }
+            return read;
+        }
+
+        @Override public int read(@NotNull final byte[] bytes, final int offset, final int length)
+            throws IOException {
+            final int read;
+            try {
+                read = super.read(bytes, offset, length);
+            } catch (final IOException e) {
+                this.failure = e;
+                throw e;
+            }
+            if (read > 0) {
+                this.count += read;
+            }
+            return read;
+        }
+
+        @Override public long skip(final long length) throws IOException {
+            final long skipped;
+            try {
+                skipped = super.skip(length);
+            } catch (final IOException e) {
+                this.failure = e;
+                throw e;
+            }
+            this.count += skipped;
+            return skipped;
+        }
+
+        @Override public boolean markSupported() {
+            return false;
+        }
+
+        @Override public void close() {
+        }
+
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Blocking transport that performs every exchange on the
+ * supplied executor using {@link HttpURLConnection}
+ */
+final class UrlConnectionTransport implements HttpTransport {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    @NotNull @Override public CompletableFuture<TransportResponse> send(@NotNull final TransportRequest request,
+        @NotNull final Executor executor) {
+        return Transports.execute(executor, () -> this.exchange(request));
+    }
+
+    @NotNull private TransportResponse exchange(@NotNull final TransportRequest request) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) request.getUri().toURL().openConnection();
+        connection.setRequestMethod(request.getMethod());
+        connection.setUseCaches(false);
+        final RequestBody body = request.getBody();
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", body.getContentType());
+            final long length = body.getContentLength();
+            // Stream the body straight to the socket, rather than letting
+            // the connection buffer it in memory
+            if (length >= 0) {
+                connection.setFixedLengthStreamingMode(length);
+            } else {
+                connection.setChunkedStreamingMode(Transports.BUFFER_SIZE);
+            }
+            try (final OutputStream outputStream = connection.getOutputStream()) {
+                Transports.write(body, outputStream);
+            }
+        }
+        final int code = connection.getResponseCode();
+        final long receivedAt = System.nanoTime();
+        final String status = connection.getResponseMessage() == null ? "" : connection.getResponseMessage();
+        final InputStream inputStream = code >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (inputStream == null) {
+            return new TransportResponse(code, status, EMPTY, 0, receivedAt);
+        }
+        try (final InputStream stream = inputStream) {
+            final WritableByteChannel sink = request.getSink();
+            if (sink != null && code / 100 == 2) {
+                return new TransportResponse(code, status, EMPTY, Transports.transfer(stream, sink), receivedAt);
+            }
+            final ResponseReader reader = request.getReader();
+            if (reader != null && code / 100 == 2) {
+                return new TransportResponse(code, status, EMPTY, Transports.read(stream, reader), receivedAt);
+            }
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[Transports.BUFFER_SIZE];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return new TransportResponse(code, status, outputStream.toByteArray(), outputStream.size(), receivedAt);
+        }
+    }
+
+}
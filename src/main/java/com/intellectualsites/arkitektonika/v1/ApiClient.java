@@ -23,41 +23,80 @@
  */
 package com.intellectualsites.arkitektonika.v1;
 
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.intellectualsites.arkitektonika.ApiVersion;
 import com.intellectualsites.arkitektonika.ResourceStatus;
 import com.intellectualsites.arkitektonika.Schematic;
 import com.intellectualsites.arkitektonika.SchematicKeys;
+import com.intellectualsites.arkitektonika.SchematicReader;
 import com.intellectualsites.arkitektonika.exceptions.InvalidFormatException;
 import com.intellectualsites.arkitektonika.exceptions.ResourceRetrievalException;
 import com.intellectualsites.arkitektonika.exceptions.ResourceUploadException;
-import com.intellectualsites.http.ContentType;
-import com.intellectualsites.http.EntityMapper;
-import com.intellectualsites.http.HttpClient;
-import com.intellectualsites.http.HttpResponse;
-import com.intellectualsites.http.external.GsonMapper;
+import com.intellectualsites.arkitektonika.nbt.SchematicFormatException;
+import com.intellectualsites.arkitektonika.nbt.SchematicValidator;
+import com.intellectualsites.arkitektonika.transport.HttpTransport;
+import com.intellectualsites.arkitektonika.transport.LocalIOException;
+import com.intellectualsites.arkitektonika.transport.TransportRequest;
+import com.intellectualsites.arkitektonika.transport.TransportResponse;
+import com.intellectualsites.arkitektonika.transport.Transports;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.util.Objects;
-import java.util.UUID;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
 public final class ApiClient implements com.intellectualsites.arkitektonika.ApiClient {
 
-    private final HttpClient httpClient;
+    private final String url;
+    private final HttpTransport transport;
+    private final Gson gson = new GsonBuilder().create();
+    private final SchematicSerializer.FileSerializer fileSerializer;
+    private final SchematicSerializer.ByteArraySerializer byteArraySerializer;
+    private final SchematicSerializer.ByteBufferSerializer byteBufferSerializer;
+    private final SchematicSerializer.InputStreamSerializer inputStreamSerializer;
 
     public ApiClient(@NotNull final String url) {
-        this.httpClient = HttpClient.newBuilder().withBaseURL(url).withEntityMapper(EntityMapper.newInstance()
-            .registerDeserializer(JsonObject.class, GsonMapper.deserializer(JsonObject.class, new GsonBuilder().create()))
-            .registerSerializer(File.class, new SchematicSerializer())).build();
+        this(url, Transports.blocking());
+    }
+
+    public ApiClient(@NotNull final String url, @NotNull final HttpTransport transport) {
+        this(url, transport, false);
+    }
+
+    /**
+     * Create a new client
+     *
+     * @param url                Base URL of the server
+     * @param transport          Transport used to perform requests
+     * @param validateSchematics Whether schematics are validated while they are uploaded, see
+     *                           {@link SchematicValidator}
+     */
+    public ApiClient(@NotNull final String url, @NotNull final HttpTransport transport,
+        final boolean validateSchematics) {
+        this.url = url;
+        this.transport = transport;
+        this.fileSerializer = new SchematicSerializer.FileSerializer(validateSchematics);
+        this.byteArraySerializer = new SchematicSerializer.ByteArraySerializer(validateSchematics);
+        this.byteBufferSerializer = new SchematicSerializer.ByteBufferSerializer(validateSchematics);
+        this.inputStreamSerializer = new SchematicSerializer.InputStreamSerializer(validateSchematics);
     }
 
     @NotNull @Override public ApiVersion getApiVersion() {
@@ -65,109 +104,215 @@ public final class ApiClient implements com.intellectualsites.arkitektonika.ApiC
     }
 
     @NotNull @Override public CompletableFuture<Boolean> checkCompatibility(@NotNull final ExecutorService service) {
-        return CompletableFuture.supplyAsync(() -> {
-           final HttpResponse response =
-               httpClient.get("/").onStatus(200, ignore -> {})
-                              .onRemaining(r -> {
-                                  throw new ResourceRetrievalException("/", r.getStatusCode(), r.getStatus());
-                              }).execute();
-           final JsonObject object = Objects.requireNonNull(response, "Failed to retrieve response")
-               .getResponseEntity(JsonObject.class);
-           return object.has("version") && object.get("version").getAsString().startsWith("1.");
-        }, service);
+        return this.send("/", ResourceRetrievalException::new, () -> TransportRequest.get(this.uri("/")),
+            service).thenApply(response -> {
+                if (response.getStatusCode() != 200) {
+                    throw new ResourceRetrievalException("/", response.getStatusCode(), response.getStatus());
+                }
+                final JsonObject object = this.parse(response);
+                return object.has("version") && object.get("version").getAsString().startsWith("1.");
+            });
     }
 
     @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final File file,
         @NotNull final ExecutorService service) {
-        return CompletableFuture.supplyAsync(() -> {
-           final HttpResponse response = httpClient.post("/upload").withInput(() -> file)
-               .onStatus(400, httpResponse -> {
-                    throw new InvalidFormatException("/upload", 400, httpResponse.getStatus());
-                })
-               .onStatus(200, httpResponse -> {})
-               .onRemaining(httpResponse -> {
-                   throw new ResourceUploadException("/upload", httpResponse.getStatusCode(), httpResponse.getStatus(), "Other");
-               }).execute();
-           final JsonObject object = Objects.requireNonNull(response, "Failed to get response").getResponseEntity(JsonObject.class);
-           return new SchematicKeys(object.get("download_key").getAsString(), object.get("delete_key").getAsString());
-        }, service);
+        return this.upload(file, this.fileSerializer, service);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final byte[] schematic,
+        @NotNull final ExecutorService service) {
+        return this.upload(schematic, this.byteArraySerializer, service);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final ByteBuffer schematic,
+        @NotNull final ExecutorService service) {
+        return this.upload(schematic, this.byteBufferSerializer, service);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final Supplier<InputStream> schematic,
+        final long length, @NotNull final ExecutorService service) {
+        return this.upload(new InputStreamSource(schematic, length), this.inputStreamSerializer, service);
+    }
+
+    /**
+     * Upload a schematic. The multipart body is streamed straight to the
+     * connection, so that the schematic never has to be copied into memory
+     *
+     * @param input      Schematic source
+     * @param serializer Serializer for the source type
+     * @param service    Executor service used to complete the request
+     * @param <T>        Schematic source type
+     * @return Future that completes with the generated keys
+     */
+    @NotNull private <T> CompletableFuture<SchematicKeys> upload(@NotNull final T input,
+        @NotNull final SchematicSerializer<T> serializer, @NotNull final ExecutorService service) {
+        return this.send("/upload", ApiClient::uploadFailure,
+            () -> TransportRequest.post(this.uri("/upload"), serializer.toRequestBody(input)), service)
+            .thenApply(response -> {
+                if (response.getStatusCode() == 400) {
+                    throw new InvalidFormatException("/upload", 400, response.getStatus());
+                } else if (response.getStatusCode() != 200) {
+                    throw new ResourceUploadException("/upload", response.getStatusCode(), response.getStatus(), "Other");
+                }
+                final JsonObject object = this.parse(response);
+                return new SchematicKeys(object.get("download_key").getAsString(), object.get("delete_key").getAsString());
+            });
     }
 
     @NotNull @Override public CompletableFuture<ResourceStatus> checkStatus(@NotNull final String key,
         @NotNull final ExecutorService service) {
-        return CompletableFuture.supplyAsync(() -> {
-            final HttpResponse response = httpClient.head(String.format("/download/%s", key)).execute();
-            if (response == null) {
-                throw new ResourceRetrievalException(String.format("/download/%s", key), 0, "Could not fetch response");
-            } else if (response.getStatusCode() == 200) {
-                return ResourceStatus.OK;
-            } else if (response.getStatusCode() == 404) {
-                return ResourceStatus.NON_EXISTENT;
-             } else if (response.getStatusCode() == 410) {
-                return ResourceStatus.DELETED;
-            } else {
-                throw new ResourceRetrievalException(String.format("/download/%s", key), response.getStatusCode(), response.getStatus());
-            }
-        }, service);
+        final String resource = String.format("/download/%s", key);
+        return this.send(resource, ResourceRetrievalException::new, () -> TransportRequest.head(this.uri(resource)),
+            service).thenApply(response -> {
+                if (response.getStatusCode() == 200) {
+                    return ResourceStatus.OK;
+                } else if (response.getStatusCode() == 404) {
+                    return ResourceStatus.NON_EXISTENT;
+                } else if (response.getStatusCode() == 410) {
+                    return ResourceStatus.DELETED;
+                } else {
+                    throw new ResourceRetrievalException(resource, response.getStatusCode(), response.getStatus());
+                }
+            });
     }
 
     @Override @NotNull public CompletableFuture<Boolean> delete(@NotNull String key,
         @NotNull final ExecutorService service) {
-        return CompletableFuture.supplyAsync(() -> {
-            final HttpResponse response = httpClient.delete(String.format("/delete/%s", key))
-                .onStatus(200, httpResponse -> {})
-                .onRemaining(httpResponse -> {
-                    throw new ResourceRetrievalException(String.format("/delete/%s", key), httpResponse.getStatusCode(), httpResponse.getStatus());
-                }).execute();
-            if (response == null) {
-                throw new ResourceRetrievalException(String.format("/delete/%s", key), 0, "Could not fetch response");
-            }
-            return true;
-        }, service);
+        final String resource = String.format("/delete/%s", key);
+        return this.send(resource, ResourceRetrievalException::new, () -> TransportRequest.delete(this.uri(resource)),
+            service).thenApply(response -> {
+                if (response.getStatusCode() != 200) {
+                    throw new ResourceRetrievalException(resource, response.getStatusCode(), response.getStatus());
+                }
+                return true;
+            });
     }
 
     @Override @NotNull public CompletableFuture<Schematic> download(@NotNull String key,
         @NotNull final ExecutorService service) {
+        final String resource = String.format("/download/%s", key);
+        return this.send(resource, ResourceRetrievalException::new, () -> TransportRequest.get(this.uri(resource)),
+            service).thenApply(response -> {
+                if (response.getStatusCode() != 200) {
+                    throw new ResourceRetrievalException(resource, response.getStatusCode(), response.getStatus());
+                }
+                return new Schematic(key, response.getBody());
+            });
+    }
+
+    @Override @NotNull public CompletableFuture<Long> download(@NotNull final String key, @NotNull final Path path,
+        @NotNull final ExecutorService service) {
+        final String resource = String.format("/download/%s", key);
         return CompletableFuture.supplyAsync(() -> {
-            final HttpResponse response = httpClient.get(String.format("/download/%s", key))
-                .onStatus(200, httpResponse -> {})
-                .onRemaining(httpResponse -> {
-                    throw new ResourceRetrievalException(String.format("/download/%s", key), httpResponse.getStatusCode(), httpResponse.getStatus());
-                }).execute();
-            if (response == null) {
-                throw new ResourceRetrievalException(String.format("/download/%s", key), 0, "Could not fetch response");
+            try {
+                return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            } catch (final IOException e) {
+                throw new ResourceRetrievalException(resource, new LocalIOException(e));
+            }
+        }, service).thenCompose(channel -> this.download(key, channel, service).whenComplete((transferred, throwable) -> {
+            try {
+                channel.close();
+                if (throwable != null) {
+                    Files.deleteIfExists(path);
+                }
+            } catch (final IOException e) {
+                throw new ResourceRetrievalException(resource, new LocalIOException(e));
             }
-            return new Schematic(key, response.getRawResponse());
-        }, service);
+        }));
     }
 
+    @Override @NotNull public CompletableFuture<Long> download(@NotNull final String key,
+        @NotNull final OutputStream outputStream, @NotNull final ExecutorService service) {
+        return this.download(key, Channels.newChannel(outputStream), service);
+    }
 
-    private static final class SchematicSerializer implements EntityMapper.EntitySerializer<File> {
+    @Override @NotNull public CompletableFuture<Long> download(@NotNull final String key,
+        @NotNull final WritableByteChannel channel, @NotNull final ExecutorService service) {
+        final String resource = String.format("/download/%s", key);
+        return this.send(resource, ResourceRetrievalException::new,
+            () -> TransportRequest.get(this.uri(resource)).withSink(channel), service).thenApply(response -> {
+                if (response.getStatusCode() != 200) {
+                    throw new ResourceRetrievalException(resource, response.getStatusCode(), response.getStatus());
+                }
+                return response.getTransferred();
+            });
+    }
 
-        private final String boundary = UUID.randomUUID().toString();
+    @Override @NotNull public <T> CompletableFuture<T> download(@NotNull final String key,
+        @NotNull final SchematicReader<T> reader, @NotNull final ExecutorService service) {
+        final String resource = String.format("/download/%s", key);
+        final AtomicReference<T> schematic = new AtomicReference<>();
+        return this.send(resource, ResourceRetrievalException::new,
+            () -> TransportRequest.get(this.uri(resource)).withReader(body -> schematic.set(reader.read(body))),
+            service).thenApply(response -> {
+                if (response.getStatusCode() != 200) {
+                    throw new ResourceRetrievalException(resource, response.getStatusCode(), response.getStatus());
+                }
+                return schematic.get();
+            });
+    }
 
-        @Override @NotNull public byte[] serialize(@NotNull final File file) {
-            try (final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-                 final PrintWriter printWriter = new PrintWriter(new OutputStreamWriter(byteArrayOutputStream,
-                     StandardCharsets.UTF_8), true)) {
-                printWriter.append("--").append(this.boundary).append("\r\n");
-                printWriter.append("Content-Disposition: form-data; name=\"schematic\"; filename=\"plot.schem\"\r\n");
-                printWriter.append("Content-Type: application/octet-stream\r\n\r\n").flush();
-                Files.copy(file.toPath(), byteArrayOutputStream);
-                byteArrayOutputStream.flush();
-                printWriter.append("\r\n").flush();
-                printWriter.append("--").append(this.boundary).append("--\r\n").flush();
-                return byteArrayOutputStream.toByteArray();
-            } catch (final Exception e) {
-                e.printStackTrace();
-            }
-            return new byte[0];
+    /**
+     * Send a request through the transport. Transport failures are
+     * wrapped in the exception type of the operation
+     *
+     * @param resource Requested resource
+     * @param failure  Function that wraps a transport failure
+     * @param request  Supplier of the request
+     * @param service  Executor service used to complete the request
+     * @return Future that completes with the response
+     */
+    @NotNull private CompletableFuture<TransportResponse> send(@NotNull final String resource,
+        @NotNull final BiFunction<String, Throwable, RuntimeException> failure,
+        @NotNull final Supplier<TransportRequest> request, @NotNull final ExecutorService service) {
+        final CompletableFuture<TransportResponse> future;
+        try {
+            future = this.transport.send(request.get(), service);
+        } catch (final RuntimeException e) {
+            final CompletableFuture<TransportResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(failure.apply(resource, e));
+            return failed;
         }
+        return future.handle((response, throwable) -> {
+            if (throwable != null) {
+                throw failure.apply(resource, throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause() : throwable);
+            }
+            return response;
+        });
+    }
 
-        @Override public ContentType getContentType() {
-            return ContentType.of(String.format("multipart/form-data; boundary=%s", this.boundary));
+    /**
+     * Wrap an upload failure. Schematics that were rejected by local validation
+     * fail with an {@link InvalidFormatException}, like those rejected by the server
+     *
+     * @param resource Requested resource
+     * @param failure  Transport failure
+     * @return Wrapped failure
+     */
+    @NotNull private static ResourceUploadException uploadFailure(@NotNull final String resource,
+        @NotNull final Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SchematicFormatException) {
+                return new InvalidFormatException(resource, cause);
+            }
         }
+        return new ResourceUploadException(resource, failure);
+    }
+
+    @NotNull private URI uri(@NotNull final String path) {
+        return URI.create(this.url + path);
+    }
 
+    /**
+     * Decode the JSON body of a response
+     *
+     * @param response Response
+     * @return Decoded object
+     */
+    @NotNull JsonObject parse(@NotNull final TransportResponse response) {
+        return this.gson.fromJson(new String(response.getBody(), StandardCharsets.UTF_8), JsonObject.class);
     }
 
 }
@@ -0,0 +1,69 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.v1;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Schematic source that opens a fresh {@link InputStream} for every upload
+ */
+final class InputStreamSource {
+
+    private final Supplier<InputStream> supplier;
+    private final long length;
+
+    InputStreamSource(@NotNull final Supplier<InputStream> supplier, final long length) {
+        this.supplier = Objects.requireNonNull(supplier);
+        this.length = length;
+    }
+
+    /**
+     * Open the stream
+     *
+     * @return Opened stream
+     * @throws IOException If the supplier does not provide a stream
+     */
+    @NotNull InputStream open() throws IOException {
+        final InputStream inputStream = this.supplier.get();
+        if (inputStream == null) {
+            throw new IOException("Input stream supplier returned null");
+        }
+        return inputStream;
+    }
+
+    /**
+     * Get the number of bytes the stream will provide
+     *
+     * @return Stream length, or {@code -1} if unknown
+     */
+    long getLength() {
+        return this.length;
+    }
+
+}
@@ -0,0 +1,377 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.v1;
+
+import com.intellectualsites.arkitektonika.transport.LocalIOException;
+import com.intellectualsites.arkitektonika.transport.RequestBody;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Serializer that wraps a schematic source in a multipart/form-data body. The
+ * body is streamed directly to the connection, and never held in memory as a whole.
+ * If validation is enabled, the schematic is validated while it is streamed
+ *
+ * @param <T> Schematic source type
+ */
+abstract class SchematicSerializer<T> {
+
+    static final int BUFFER_SIZE = 8192;
+
+    private final String boundary = UUID.randomUUID().toString();
+    private final byte[] preamble = ("--" + this.boundary + "\r\n"
+        + "Content-Disposition: form-data; name=\"schematic\"; filename=\"plot.schem\"\r\n"
+        + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+    private final byte[] epilogue = ("\r\n--" + this.boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+    private final String contentType = String.format("multipart/form-data; boundary=%s", this.boundary);
+    private final boolean validate;
+
+    SchematicSerializer(final boolean validate) {
+        this.validate = validate;
+    }
+
+    /**
+     * Create the multipart request body for the given input
+     *
+     * @param input Schematic source
+     * @return Request body
+     */
+    @NotNull final RequestBody toRequestBody(@NotNull final T input) {
+        return new MultipartBody(input);
+    }
+
+    /**
+     * Get the length of the raw schematic
+     *
+     * @param input Schematic source
+     * @return Schematic length, or {@code -1} if it is not known in advance
+     */
+    abstract long getSchematicLength(@NotNull T input);
+
+    /**
+     * Open a stream that provides the raw schematic
+     *
+     * @param input Schematic source
+     * @return Schematic stream
+     * @throws IOException If the source cannot be read
+     */
+    @NotNull abstract InputStream openSchematic(@NotNull T input) throws IOException;
+
+    /**
+     * Write the raw schematic to the given stream in fixed-size chunks
+     *
+     * @param input        Schematic source
+     * @param outputStream Stream to write to
+     * @throws IOException If the source cannot be read or the stream cannot be written to
+     */
+    void writeSchematic(@NotNull final T input, @NotNull final OutputStream outputStream) throws IOException {
+        try (final InputStream inputStream = this.openSchematic(input)) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Open a file channel that provides the raw schematic, so that it can be
+     * transferred to the connection without being copied through the heap
+     *
+     * @param input Schematic source
+     * @return Schematic channel, or {@code null} if the source is not backed by a file
+     * @throws IOException If the source cannot be opened
+     */
+    @Nullable FileChannel openChannel(@NotNull final T input) throws IOException {
+        return null;
+    }
+
+    private static void write(@NotNull final WritableByteChannel channel, @NotNull final byte[] bytes)
+        throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+
+    private final class MultipartBody implements RequestBody {
+
+        private final T input;
+
+        private MultipartBody(@NotNull final T input) {
+            this.input = input;
+        }
+
+        @NotNull @Override public String getContentType() {
+            return contentType;
+        }
+
+        @Override public long getContentLength() {
+            final long length = getSchematicLength(this.input);
+            if (length < 0) {
+                return -1;
+            }
+            return preamble.length + length + epilogue.length;
+        }
+
+        @NotNull @Override public InputStream open() throws IOException {
+            final InputStream schematic = validate ? new ValidatingInputStream(openSchematic(this.input)) :
+                openSchematic(this.input);
+            return new SequenceInputStream(new SequenceInputStream(new ByteArrayInputStream(preamble), schematic),
+                new ByteArrayInputStream(epilogue));
+        }
+
+        @Override public void writeTo(@NotNull final OutputStream outputStream) throws IOException {
+            if (!validate) {
+                outputStream.write(preamble);
+                writeSchematic(this.input, outputStream);
+            } else {
+                try (final InputStream inputStream = new ValidatingInputStream(openSchematic(this.input))) {
+                    final byte[] buffer = new byte[BUFFER_SIZE];
+                    // The first chunk is validated before anything is written, so that data
+                    // with an invalid header is rejected without sending any of the body
+                    int read = inputStream.read(buffer);
+                    outputStream.write(preamble);
+                    while (read != -1) {
+                        outputStream.write(buffer, 0, read);
+                        read = inputStream.read(buffer);
+                    }
+                }
+            }
+            outputStream.write(epilogue);
+            outputStream.flush();
+        }
+
+        @Nullable @Override public Transfer openTransfer() throws IOException {
+            // Validation has to see every byte, which rules out handing the file to the kernel
+            if (validate) {
+                return null;
+            }
+            final FileChannel fileChannel = openChannel(this.input);
+            return fileChannel == null ? null : new FileTransfer(fileChannel);
+        }
+
+    }
+
+
+    /**
+     * Transfer of a multipart body whose schematic is backed by a file
+     */
+    private final class FileTransfer implements RequestBody.Transfer {
+
+        private final FileChannel fileChannel;
+
+        private FileTransfer(@NotNull final FileChannel fileChannel) {
+            this.fileChannel = fileChannel;
+        }
+
+        @Override public long transferTo(@NotNull final WritableByteChannel channel, final long length)
+            throws IOException {
+            // The file may have changed since its length was announced, so the
+            // announced part of it is sent, and nothing that was appended since
+            final long size = length - preamble.length - epilogue.length;
+            write(channel, preamble);
+            long position = 0;
+            while (position < size) {
+                final long transferred;
+                try {
+                    transferred = this.fileChannel.transferTo(position, size - position, channel);
+                } catch (final IOException e) {
+                    throw this.classify(e, position);
+                }
+                if (transferred <= 0 && position >= this.size()) {
+                    throw new LocalIOException("Request body is shorter than its declared length");
+                }
+                position += transferred;
+            }
+            write(channel, epilogue);
+            return length;
+        }
+
+        /**
+         * Classify a failed transfer. The kernel does not tell whether the file or the
+         * socket has failed, so the file is read again. If that fails as well, the
+         * failure is local
+         *
+         * @param failure  Failure of the transfer
+         * @param position Position in the file at which the transfer failed
+         * @return Failure to throw
+         */
+        @NotNull private IOException classify(@NotNull final IOException failure, final long position) {
+            if (failure instanceof LocalIOException) {
+                return failure;
+            }
+            try {
+                this.fileChannel.read(ByteBuffer.allocate(1), position);
+                return failure;
+            } catch (final IOException e) {
+                return new LocalIOException(failure);
+            }
+        }
+
+        private long size() throws LocalIOException {
+            try {
+                return this.fileChannel.size();
+            } catch (final IOException e) {
+                throw new LocalIOException(e);
+            }
+        }
+
+        @Override public void close() throws IOException {
+            this.fileChannel.close();
+        }
+
+    }
+
+
+    static final class FileSerializer extends SchematicSerializer<File> {
+
+        FileSerializer(final boolean validate) {
+            super(validate);
+        }
+
+        @Override long getSchematicLength(@NotNull final File file) {
+            return file.length();
+        }
+
+        @NotNull @Override InputStream openSchematic(@NotNull final File file) throws IOException {
+            return Files.newInputStream(file.toPath());
+        }
+
+        @Override void writeSchematic(@NotNull final File file, @NotNull final OutputStream outputStream)
+            throws IOException {
+            Files.copy(file.toPath(), outputStream);
+        }
+
+        @NotNull @Override FileChannel openChannel(@NotNull final File file) throws IOException {
+            return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+
+    }
+
+
+    static final class ByteArraySerializer extends SchematicSerializer<byte[]> {
+
+        ByteArraySerializer(final boolean validate) {
+            super(validate);
+        }
+
+        @Override long getSchematicLength(@NotNull final byte[] bytes) {
+            return bytes.length;
+        }
+
+        @NotNull @Override InputStream openSchematic(@NotNull final byte[] bytes) {
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override void writeSchematic(@NotNull final byte[] bytes, @NotNull final OutputStream outputStream)
+            throws IOException {
+            outputStream.write(bytes);
+        }
+
+    }
+
+
+    static final class ByteBufferSerializer extends SchematicSerializer<ByteBuffer> {
+
+        ByteBufferSerializer(final boolean validate) {
+            super(validate);
+        }
+
+        @Override long getSchematicLength(@NotNull final ByteBuffer buffer) {
+            return buffer.remaining();
+        }
+
+        @NotNull @Override InputStream openSchematic(@NotNull final ByteBuffer buffer) {
+            // Work on a duplicate, so that the position of the caller's buffer is left untouched
+            final ByteBuffer source = buffer.duplicate();
+            return new InputStream() {
+                @Override public int read() {
+                    return source.hasRemaining() ? source.get() & 0xFF : -1;
+                }
+
+                @Override public int read(@NotNull final byte[] bytes, final int offset, final int length) {
+                    if (length == 0) {
+                        return 0;
+                    }
+                    if (!source.hasRemaining()) {
+                        return -1;
+                    }
+                    final int read = Math.min(length, source.remaining());
+                    source.get(bytes, offset, read);
+                    return read;
+                }
+
+                @Override public int available() {
+                    return source.remaining();
+                }
+            };
+        }
+
+        @Override void writeSchematic(@NotNull final ByteBuffer buffer, @NotNull final OutputStream outputStream)
+            throws IOException {
+            final ByteBuffer source = buffer.duplicate();
+            if (source.hasArray()) {
+                outputStream.write(source.array(), source.arrayOffset() + source.position(), source.remaining());
+                return;
+            }
+            // Read-only and direct buffers do not expose their array
+            super.writeSchematic(buffer, outputStream);
+        }
+
+    }
+
+
+    static final class InputStreamSerializer extends SchematicSerializer<InputStreamSource> {
+
+        InputStreamSerializer(final boolean validate) {
+            super(validate);
+        }
+
+        @Override long getSchematicLength(@NotNull final InputStreamSource source) {
+            return source.getLength();
+        }
+
+        @NotNull @Override InputStream openSchematic(@NotNull final InputStreamSource source) throws IOException {
+            return source.open();
+        }
+
+    }
+
+}
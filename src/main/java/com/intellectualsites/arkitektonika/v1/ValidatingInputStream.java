@@ -0,0 +1,83 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.v1;
+
+import com.intellectualsites.arkitektonika.nbt.NbtScanner;
+import com.intellectualsites.arkitektonika.nbt.SchematicValidator;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream that validates a schematic while it is read. Invalid data fails the read
+ * that delivers it, and truncated data fails the read that reaches the end of the
+ * stream, so that the request body is never completed
+ */
+final class ValidatingInputStream extends FilterInputStream {
+
+    private final NbtScanner scanner = new NbtScanner(new SchematicValidator());
+    private boolean finished;
+
+    ValidatingInputStream(@NotNull final InputStream inputStream) {
+        super(inputStream);
+    }
+
+    @Override public int read() throws IOException {
+        final byte[] single = new byte[1];
+        return this.read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override public int read(@NotNull final byte[] bytes, final int offset, final int length) throws IOException {
+        final int read = super.read(bytes, offset, length);
+        if (read > 0) {
+            this.scanner.update(bytes, offset, read);
+        } else if (read == -1 && !this.finished) {
+            this.finished = true;
+            this.scanner.finish();
+        }
+        return read;
+    }
+
+    @Override public long skip(final long length) throws IOException {
+        final byte[] buffer = new byte[SchematicSerializer.BUFFER_SIZE];
+        long skipped = 0;
+        int read;
+        while (skipped < length && (read = this.read(buffer, 0, (int) Math.min(buffer.length, length - skipped))) != -1) {
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override public boolean markSupported() {
+        return false;
+    }
+
+    @Override public void close() throws IOException {
+        this.scanner.close();
+        super.close();
+    }
+
+}
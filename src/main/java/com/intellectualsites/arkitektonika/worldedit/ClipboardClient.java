@@ -0,0 +1,151 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.worldedit;
+
+import com.intellectualsites.arkitektonika.Arkitektonika;
+import com.intellectualsites.arkitektonika.SchematicKeys;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.io.BuiltInClipboardFormat;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardWriter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transfers WorldEdit {@link Clipboard clipboards} through an {@link Arkitektonika} client.
+ * WorldEdit is not a dependency of the client, and must be provided at runtime
+ */
+public final class ClipboardClient {
+
+    /**
+     * Number of encoded bytes that may be buffered between the encoder and the upload
+     */
+    private static final int PIPE_CAPACITY = 64 * 1024;
+
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    /**
+     * Threads that encode clipboards while they are uploaded, shared by all clipboard clients.
+     * An encoder blocks while the pipe to its upload is full, so it must not run on the executor
+     * of the client, where it could wait for an upload that is queued behind it. An encoder holds
+     * its thread until the upload has read or closed the pipe, so further encoders are queued
+     * while every thread is in use
+     */
+    private static final ThreadPoolExecutor encoders = new ThreadPoolExecutor(
+        Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(), 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), runnable -> {
+            final Thread thread = new Thread(runnable, "Arkitektonika-Clipboard-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    static {
+        encoders.allowCoreThreadTimeOut(true);
+    }
+
+    private final Arkitektonika arkitektonika;
+    private final ClipboardFormat format;
+
+    /**
+     * Create a new clipboard client that uses the Sponge schematic format
+     *
+     * @param arkitektonika Client used to transfer the schematics
+     */
+    public ClipboardClient(@NotNull final Arkitektonika arkitektonika) {
+        this(arkitektonika, BuiltInClipboardFormat.SPONGE_SCHEMATIC);
+    }
+
+    /**
+     * Create a new clipboard client
+     *
+     * @param arkitektonika Client used to transfer the schematics
+     * @param format        Format of the schematics
+     */
+    public ClipboardClient(@NotNull final Arkitektonika arkitektonika, @NotNull final ClipboardFormat format) {
+        this.arkitektonika = Objects.requireNonNull(arkitektonika);
+        this.format = Objects.requireNonNull(format);
+    }
+
+    /**
+     * Attempt to download a schematic from the remote service and read it into a clipboard.
+     * The schematic is decoded on a thread of the client while it is received, so that
+     * neither the compressed nor the decompressed file is held in memory as a whole
+     *
+     * @param key Download key
+     * @return Future that completes with the clipboard
+     */
+    @NotNull public CompletableFuture<Clipboard> download(@NotNull final String key) {
+        return this.arkitektonika.download(key, inputStream -> {
+            try (final ClipboardReader reader = this.format.getReader(inputStream)) {
+                return reader.read();
+            }
+        });
+    }
+
+    /**
+     * Upload a clipboard and return the generated access keys. The clipboard is
+     * encoded on a thread shared by the clipboard clients, and the encoded schematic
+     * is uploaded while it is written, so that encoding, compression and the transfer
+     * overlap. Every attempt to send the upload encodes the clipboard again. The
+     * clipboard must not be modified until the future has completed
+     *
+     * @param clipboard Clipboard to upload
+     * @return Future that completes with the generated keys
+     */
+    @NotNull public CompletableFuture<SchematicKeys> upload(@NotNull final Clipboard clipboard) {
+        Objects.requireNonNull(clipboard);
+        // The stream is opened for every attempt to send the upload
+        return this.arkitektonika.upload(() -> {
+            final ClipboardPipe pipe = new ClipboardPipe(PIPE_CAPACITY);
+            encoders.execute(() -> {
+                try {
+                    try (final ClipboardWriter writer = this.format.getWriter(pipe.getOutputStream())) {
+                        writer.write(clipboard);
+                    }
+                    pipe.complete();
+                } catch (final Throwable throwable) {
+                    pipe.fail(throwable);
+                }
+            });
+            return pipe.getInputStream();
+        });
+    }
+
+    /**
+     * Get the format of the schematics
+     *
+     * @return Clipboard format
+     */
+    @NotNull public ClipboardFormat getFormat() {
+        return this.format;
+    }
+
+}
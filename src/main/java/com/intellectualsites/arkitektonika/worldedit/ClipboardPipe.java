@@ -0,0 +1,220 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.worldedit;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded buffer that connects a thread that produces a schematic to the
+ * thread that uploads it. The producer blocks while the buffer is full, and
+ * the consumer blocks while it is empty
+ * <p>
+ * Closing the {@link #getOutputStream() output stream} does not end the pipe.
+ * The producer has to {@link #complete()} it once the schematic has been written
+ * as a whole, or {@link #fail(Throwable)} it, so that the consumer cannot mistake
+ * a partially written schematic for a complete one
+ */
+final class ClipboardPipe {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = this.lock.newCondition();
+    private final Condition notFull = this.lock.newCondition();
+    private final byte[] buffer;
+    private final InputStream inputStream = new Source();
+    private final OutputStream outputStream = new Sink();
+    private int readIndex;
+    private int size;
+    private boolean completed;
+    private boolean closed;
+    private Throwable failure;
+
+    ClipboardPipe(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive");
+        }
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * Get the stream that the consumer reads the schematic from. Closing it
+     * causes further writes of the producer to fail
+     *
+     * @return Input stream
+     */
+    @NotNull InputStream getInputStream() {
+        return this.inputStream;
+    }
+
+    /**
+     * Get the stream that the producer writes the schematic to
+     *
+     * @return Output stream
+     */
+    @NotNull OutputStream getOutputStream() {
+        return this.outputStream;
+    }
+
+    /**
+     * Signal that the schematic has been written as a whole
+     */
+    void complete() {
+        this.lock.lock();
+        try {
+            this.completed = true;
+            this.notEmpty.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Signal that the schematic could not be written. The next read
+     * of the consumer fails, even if the buffer is not empty
+     *
+     * @param failure Cause of the failure
+     */
+    void fail(@NotNull final Throwable failure) {
+        this.lock.lock();
+        try {
+            if (!this.completed) {
+                this.failure = failure;
+                this.notEmpty.signalAll();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+
+    private final class Source extends InputStream {
+
+        @Override public int read() throws IOException {
+            final byte[] bytes = new byte[1];
+            return this.read(bytes, 0, 1) == -1 ? -1 : bytes[0] & 0xFF;
+        }
+
+        @Override public int read(@NotNull final byte[] bytes, final int offset, final int length)
+            throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new IOException("The pipe has been closed");
+                    }
+                    if (failure != null) {
+                        throw new IOException("Failed to write the schematic", failure);
+                    }
+                    if (size > 0) {
+                        break;
+                    }
+                    if (completed) {
+                        return -1;
+                    }
+                    notEmpty.await();
+                }
+                final int read = Math.min(length, Math.min(size, buffer.length - readIndex));
+                System.arraycopy(buffer, readIndex, bytes, offset, read);
+                readIndex = (readIndex + read) % buffer.length;
+                size -= read;
+                notFull.signalAll();
+                return read;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override public int available() {
+            lock.lock();
+            try {
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override public void close() {
+            lock.lock();
+            try {
+                closed = true;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+    }
+
+
+    private final class Sink extends OutputStream {
+
+        @Override public void write(final int value) throws IOException {
+            this.write(new byte[] {(byte) value}, 0, 1);
+        }
+
+        @Override public void write(@NotNull final byte[] bytes, final int offset, final int length)
+            throws IOException {
+            int position = offset;
+            int remaining = length;
+            lock.lock();
+            try {
+                while (remaining > 0) {
+                    while (size == buffer.length && !closed) {
+                        notFull.await();
+                    }
+                    if (closed) {
+                        throw new IOException("The pipe has been closed");
+                    }
+                    final int writeIndex = (readIndex + size) % buffer.length;
+                    final int written = Math.min(remaining, Math.min(buffer.length - size,
+                        buffer.length - writeIndex));
+                    System.arraycopy(bytes, position, buffer, writeIndex, written);
+                    size += written;
+                    position += written;
+                    remaining -= written;
+                    notEmpty.signalAll();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+    }
+
+}
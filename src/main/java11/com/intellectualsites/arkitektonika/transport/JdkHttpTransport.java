@@ -0,0 +1,259 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+/**
+ * Asynchronous transport based on the {@code java.net.http} client. Requests are
+ * sent and responses are read from I/O callbacks, so that an exchange does not
+ * occupy a thread while it waits for the server. The client keeps connections
+ * alive, and multiplexes requests over a single connection if HTTP/2 is enabled
+ */
+final class JdkHttpTransport implements HttpTransport {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final HttpClient client;
+    private final Duration readTimeout;
+
+    JdkHttpTransport(@NotNull final ConnectionPoolSettings settings) {
+        final HttpClient.Builder builder = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL)
+            .version(settings.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1);
+        if (!settings.getConnectTimeout().isZero()) {
+            builder.connectTimeout(settings.getConnectTimeout());
+        }
+        this.client = builder.build();
+        this.readTimeout = settings.getReadTimeout();
+    }
+
+    @NotNull @Override public CompletableFuture<TransportResponse> send(@NotNull final TransportRequest request,
+        @NotNull final Executor executor) {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(request.getUri());
+        if (!this.readTimeout.isZero()) {
+            // The client has no read timeout, it can only bound the wait for the response head
+            builder.timeout(this.readTimeout);
+        }
+        final RequestBody body = request.getBody();
+        // The publisher does not close the body if the exchange is cancelled, which
+        // would leave the producer of a streamed body blocked forever
+        final List<InputStream> opened = new CopyOnWriteArrayList<>();
+        if (body == null) {
+            builder.method(request.getMethod(), HttpRequest.BodyPublishers.noBody());
+        } else {
+            final HttpRequest.BodyPublisher publisher = HttpRequest.BodyPublishers.ofInputStream(() -> {
+                try {
+                    final InputStream inputStream = new LocalInputStream(body.open());
+                    opened.add(inputStream);
+                    return inputStream;
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(new LocalIOException(e));
+                }
+            });
+            final long length = body.getContentLength();
+            builder.header("Content-Type", body.getContentType()).method(request.getMethod(),
+                length >= 0 ? HttpRequest.BodyPublishers.fromPublisher(publisher, length) : publisher);
+        }
+        final CompletableFuture<TransportResponse> future;
+        final ResponseReader reader = request.getReader();
+        if (reader != null) {
+            // The body handler is called once the response head has been received
+            final long[] receivedAt = new long[1];
+            // The reader blocks while it waits for the body, so it runs on the executor
+            future = this.client.sendAsync(builder.build(), info -> {
+                receivedAt[0] = System.nanoTime();
+                return HttpResponse.BodySubscribers.ofInputStream();
+            }).thenApplyAsync(response -> read(response, reader, receivedAt[0]), executor);
+        } else {
+            final WritableByteChannel sink = request.getSink();
+            future = this.client.sendAsync(builder.build(), info -> {
+                final long receivedAt = System.nanoTime();
+                if (sink != null && info.statusCode() / 100 == 2) {
+                    return new ChannelSubscriber(info.statusCode(), sink, receivedAt);
+                }
+                return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(),
+                    bytes -> new TransportResponse(info.statusCode(), getStatus(info.statusCode()), bytes,
+                        bytes.length, receivedAt));
+            }).thenApply(HttpResponse::body);
+        }
+        if (body == null) {
+            return future;
+        }
+        return future.whenComplete((response, failure) -> {
+            for (final InputStream inputStream : opened) {
+                try {
+                    inputStream.close();
+                } catch (final IOException ignored) {
+                }
+            }
+        });
+    }
+
+    @NotNull private static TransportResponse read(@NotNull final HttpResponse<InputStream> response,
+        @NotNull final ResponseReader reader, final long receivedAt) {
+        final int code = response.statusCode();
+        try (final InputStream body = response.body()) {
+            if (code / 100 == 2) {
+                return new TransportResponse(code, getStatus(code), EMPTY, Transports.read(body, reader), receivedAt);
+            }
+            final byte[] bytes = body.readAllBytes();
+            return new TransportResponse(code, getStatus(code), bytes, bytes.length, receivedAt);
+        } catch (final IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * The {@code java.net.http} client does not expose the reason phrase,
+     * so the standard phrase of the status codes used by Arkitektonika is used
+     *
+     * @param code Status code
+     * @return Status message
+     */
+    @NotNull static String getStatus(final int code) {
+        switch (code) {
+            case 200:
+                return "OK";
+            case 400:
+                return "Bad Request";
+            case 404:
+                return "Not Found";
+            case 410:
+                return "Gone";
+            case 500:
+                return "Internal Server Error";
+            case 502:
+                return "Bad Gateway";
+            case 503:
+                return "Service Unavailable";
+            case 504:
+                return "Gateway Timeout";
+            default:
+                return "HTTP " + code;
+        }
+    }
+
+
+    /**
+     * Body subscriber that writes every received chunk to a channel
+     */
+    private static final class ChannelSubscriber implements HttpResponse.BodySubscriber<TransportResponse> {
+
+        private final CompletableFuture<TransportResponse> result = new CompletableFuture<>();
+        private final int statusCode;
+        private final WritableByteChannel channel;
+        private final long receivedAt;
+        private Flow.Subscription subscription;
+        private long transferred;
+
+        private ChannelSubscriber(final int statusCode, @NotNull final WritableByteChannel channel,
+            final long receivedAt) {
+            this.statusCode = statusCode;
+            this.channel = channel;
+            this.receivedAt = receivedAt;
+        }
+
+        @Override public CompletionStage<TransportResponse> getBody() {
+            return this.result;
+        }
+
+        @Override public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override public void onNext(final List<ByteBuffer> buffers) {
+            try {
+                for (final ByteBuffer buffer : buffers) {
+                    while (buffer.hasRemaining()) {
+                        this.transferred += this.channel.write(buffer);
+                    }
+                }
+            } catch (final IOException e) {
+                this.subscription.cancel();
+                this.result.completeExceptionally(new LocalIOException(e));
+                return;
+            }
+            this.subscription.request(1);
+        }
+
+        @Override public void onError(final Throwable throwable) {
+            this.result.completeExceptionally(throwable);
+        }
+
+        @Override public void onComplete() {
+            this.result.complete(new TransportResponse(this.statusCode, getStatus(this.statusCode), EMPTY,
+                this.transferred, this.receivedAt));
+        }
+
+    }
+
+
+    /**
+     * Stream of a request body, that reports read failures as {@link LocalIOException}
+     */
+    private static final class LocalInputStream extends FilterInputStream {
+
+        private LocalInputStream(@NotNull final InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (final IOException e) {
+                throw new LocalIOException(e);
+            }
+        }
+
+        @Override public int read(@NotNull final byte[] bytes, final int offset, final int length)
+            throws IOException {
+            try {
+                return super.read(bytes, offset, length);
+            } catch (final IOException e) {
+                throw new LocalIOException(e);
+            }
+        }
+
+    }
+
+}
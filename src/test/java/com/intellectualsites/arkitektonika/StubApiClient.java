@@ -0,0 +1,219 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import com.intellectualsites.arkitektonika.exceptions.ResourceRetrievalException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * {@link ApiClient} that keeps schematics in memory, so that client features
+ * can be tested without a server. Every call counts as one request, and runs
+ * on the given executor after the configured latency
+ */
+final class StubApiClient implements ApiClient {
+
+    private final Map<String, byte[]> schematics = new ConcurrentHashMap<>();
+    private final Map<String, String> deletionKeys = new ConcurrentHashMap<>();
+    private final Set<String> deleted = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger keyCounter = new AtomicInteger();
+    private final AtomicInteger requestCounter = new AtomicInteger();
+    private volatile long latency;
+
+    /**
+     * Store a schematic without counting a request
+     *
+     * @param content Schematic content
+     * @return Generated keys
+     */
+    @NotNull SchematicKeys store(@NotNull final byte[] content) {
+        final int id = this.keyCounter.incrementAndGet();
+        final SchematicKeys keys = new SchematicKeys("access-" + id, "deletion-" + id);
+        this.schematics.put(keys.getAccessKey(), content.clone());
+        this.deletionKeys.put(keys.getDeletionKey(), keys.getAccessKey());
+        return keys;
+    }
+
+    int getSchematicCount() {
+        return this.schematics.size();
+    }
+
+    int getRequestCount() {
+        return this.requestCounter.get();
+    }
+
+    void setLatency(final long latency) {
+        this.latency = latency;
+    }
+
+    @NotNull @Override public ApiVersion getApiVersion() {
+        return ApiVersion.V1_0_0;
+    }
+
+    @NotNull @Override public CompletableFuture<Boolean> checkCompatibility(
+        @NotNull final ExecutorService executorService) {
+        return this.call(() -> true, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final File file,
+        @NotNull final ExecutorService executorService) {
+        return this.call(() -> this.store(Files.readAllBytes(file.toPath())), executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final byte[] schematic,
+        @NotNull final ExecutorService executorService) {
+        return this.call(() -> this.store(schematic), executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final ByteBuffer schematic,
+        @NotNull final ExecutorService executorService) {
+        return this.call(() -> {
+            final byte[] content = new byte[schematic.remaining()];
+            schematic.duplicate().get(content);
+            return this.store(content);
+        }, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final Supplier<InputStream> schematic,
+        final long length, @NotNull final ExecutorService executorService) {
+        return this.call(() -> {
+            final ByteArrayOutputStream content = new ByteArrayOutputStream();
+            try (final InputStream inputStream = schematic.get()) {
+                final byte[] buffer = new byte[8192];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    content.write(buffer, 0, read);
+                }
+            }
+            return this.store(content.toByteArray());
+        }, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<ResourceStatus> checkStatus(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return this.call(() -> this.schematics.containsKey(key) ? ResourceStatus.OK :
+            this.deleted.contains(key) ? ResourceStatus.DELETED : ResourceStatus.NON_EXISTENT, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Boolean> delete(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return this.call(() -> {
+            final String accessKey = this.deletionKeys.remove(key);
+            if (accessKey == null) {
+                throw new ResourceRetrievalException("/delete/" + key, 404, "Not Found");
+            }
+            this.schematics.remove(accessKey);
+            this.deleted.add(accessKey);
+            return true;
+        }, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Schematic> download(@NotNull final String key,
+        @NotNull final ExecutorService executorService) {
+        return this.call(() -> new Schematic(key, this.content(key)), executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Long> download(@NotNull final String key, @NotNull final Path path,
+        @NotNull final ExecutorService executorService) {
+        return this.call(() -> {
+            final byte[] content = this.content(key);
+            Files.write(path, content);
+            return (long) content.length;
+        }, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Long> download(@NotNull final String key,
+        @NotNull final OutputStream outputStream, @NotNull final ExecutorService executorService) {
+        return this.call(() -> {
+            final byte[] content = this.content(key);
+            outputStream.write(content);
+            return (long) content.length;
+        }, executorService);
+    }
+
+    @NotNull @Override public CompletableFuture<Long> download(@NotNull final String key,
+        @NotNull final WritableByteChannel channel, @NotNull final ExecutorService executorService) {
+        return this.call(() -> {
+            final ByteBuffer content = ByteBuffer.wrap(this.content(key));
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            return (long) content.capacity();
+        }, executorService);
+    }
+
+    @NotNull @Override public <T> CompletableFuture<T> download(@NotNull final String key,
+        @NotNull final SchematicReader<T> reader, @NotNull final ExecutorService executorService) {
+        return this.call(() -> {
+            try (final InputStream inputStream = new ByteArrayInputStream(this.content(key))) {
+                return reader.read(inputStream);
+            }
+        }, executorService);
+    }
+
+    @NotNull private byte[] content(@NotNull final String key) {
+        final byte[] content = this.schematics.get(key);
+        if (content == null) {
+            throw new ResourceRetrievalException("/download/" + key, this.deleted.contains(key) ? 410 : 404,
+                this.deleted.contains(key) ? "Gone" : "Not Found");
+        }
+        return content;
+    }
+
+    @NotNull private <T> CompletableFuture<T> call(@NotNull final Callable<T> request,
+        @NotNull final ExecutorService executorService) {
+        this.requestCounter.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Thread.sleep(this.latency);
+                return request.call();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            } catch (final Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executorService);
+    }
+
+}
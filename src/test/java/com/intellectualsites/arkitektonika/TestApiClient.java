@@ -0,0 +1,156 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import com.intellectualsites.arkitektonika.exceptions.ResourceUploadException;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestApiClient {
+
+    private static final byte[] CONTENT = {1, 2, 3, 4, 5, 6, 7, 8};
+    private static final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @TempDir Path directory;
+
+    @AfterAll public static void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test public void testDefaultDownloads() throws Exception {
+        final StubApiClient stub = new StubApiClient();
+        final ApiClient client = new MinimalApiClient(stub);
+        final String key = stub.store(CONTENT).getAccessKey();
+        final Path file = this.directory.resolve("download.schem");
+        assertEquals(CONTENT.length, client.download(key, file, executor).get());
+        assertArrayEquals(CONTENT, Files.readAllBytes(file));
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(CONTENT.length, client.download(key, outputStream, executor).get());
+        assertArrayEquals(CONTENT, outputStream.toByteArray());
+        outputStream.reset();
+        assertEquals(CONTENT.length, client.download(key, Channels.newChannel(outputStream), executor).get());
+        assertArrayEquals(CONTENT, outputStream.toByteArray());
+        assertArrayEquals(CONTENT, client.download(key, inputStream -> {
+            final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                decoded.write(buffer, 0, read);
+            }
+            return decoded.toByteArray();
+        }, executor).get());
+        assertEquals(4, stub.getRequestCount());
+
+        // A failed download removes the partially written file
+        assertThrows(ExecutionException.class, () -> client.download("missing", file, executor).get());
+        assertFalse(Files.exists(file));
+    }
+
+    @Test public void testDefaultUploads() throws Exception {
+        final StubApiClient stub = new StubApiClient();
+        final ApiClient client = new MinimalApiClient(stub);
+        final String first = client.upload(CONTENT, executor).get().getAccessKey();
+        final ByteBuffer buffer = ByteBuffer.allocate(CONTENT.length + 2);
+        buffer.put((byte) 0).put(CONTENT).flip().position(1);
+        final String second = client.upload(buffer, executor).get().getAccessKey();
+        // The position of the buffer is left untouched
+        assertEquals(1, buffer.position());
+        final String third = client.upload(() -> new ByteArrayInputStream(CONTENT), -1, executor).get()
+            .getAccessKey();
+        for (final String key : new String[] {first, second, third}) {
+            assertArrayEquals(CONTENT, stub.download(key, executor).get().getContent());
+        }
+
+        // A stream that cannot be read fails the upload before it is sent
+        final ExecutionException exception = assertThrows(ExecutionException.class,
+            () -> client.upload(() -> new InputStream() {
+                @Override public int read() throws IOException {
+                    throw new IOException("Broken stream");
+                }
+            }, -1, executor).get());
+        assertInstanceOf(ResourceUploadException.class, exception.getCause());
+        assertEquals(6, stub.getRequestCount());
+    }
+
+    /**
+     * Client that only implements the abstract methods of {@link ApiClient}
+     */
+    private static final class MinimalApiClient implements ApiClient {
+
+        private final ApiClient delegate;
+
+        private MinimalApiClient(@NotNull final ApiClient delegate) {
+            this.delegate = delegate;
+        }
+
+        @NotNull @Override public ApiVersion getApiVersion() {
+            return this.delegate.getApiVersion();
+        }
+
+        @NotNull @Override public CompletableFuture<Boolean> checkCompatibility(
+            @NotNull final ExecutorService executorService) {
+            return this.delegate.checkCompatibility(executorService);
+        }
+
+        @NotNull @Override public CompletableFuture<SchematicKeys> upload(@NotNull final File file,
+            @NotNull final ExecutorService executorService) {
+            return this.delegate.upload(file, executorService);
+        }
+
+        @NotNull @Override public CompletableFuture<ResourceStatus> checkStatus(@NotNull final String key,
+            @NotNull final ExecutorService executorService) {
+            return this.delegate.checkStatus(key, executorService);
+        }
+
+        @NotNull @Override public CompletableFuture<Boolean> delete(@NotNull final String key,
+            @NotNull final ExecutorService executorService) {
+            return this.delegate.delete(key, executorService);
+        }
+
+        @NotNull @Override public CompletableFuture<Schematic> download(@NotNull final String key,
+            @NotNull final ExecutorService executorService) {
+            return this.delegate.download(key, executorService);
+        }
+
+    }
+
+}
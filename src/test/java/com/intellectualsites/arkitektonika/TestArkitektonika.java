@@ -23,61 +23,647 @@
  */
 package com.intellectualsites.arkitektonika;
 
+import com.intellectualsites.arkitektonika.cache.CacheStatistics;
+import com.intellectualsites.arkitektonika.cache.DownloadCacheSettings;
+import com.intellectualsites.arkitektonika.cache.StatusCacheSettings;
+import com.intellectualsites.arkitektonika.exceptions.CircuitBreakerOpenException;
+import com.intellectualsites.arkitektonika.exceptions.InvalidFormatException;
+import com.intellectualsites.arkitektonika.metrics.HistogramMetricsListener;
+import com.intellectualsites.arkitektonika.metrics.Operation;
+import com.intellectualsites.arkitektonika.metrics.OperationMetrics;
+import com.intellectualsites.arkitektonika.server.MockArkitektonikaServer;
+import com.intellectualsites.arkitektonika.transport.ConcurrencyLimitSettings;
+import com.intellectualsites.arkitektonika.transport.ConnectionPoolSettings;
+import com.intellectualsites.arkitektonika.transport.RetryPolicy;
+import com.intellectualsites.arkitektonika.transport.TransportType;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
 import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileReader;
-import java.util.Properties;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 public class TestArkitektonika {
 
+    private static MockArkitektonikaServer server;
     private static String url;
     private static String uploadKey;
     private static String deletionKey;
 
     @BeforeAll public static void setup() throws Exception {
-        final Properties properties = new Properties();
-        final File propertiesFile = new File( "src/test/resources/test.properties");
-        try (final FileReader fileReader = new FileReader(propertiesFile)) {
-            properties.load(fileReader);
-        }
-        url = properties.getProperty("url");
+        server = MockArkitektonikaServer.builder().build();
+        url = server.getUrl();
+    }
+
+    @AfterAll public static void teardown() {
+        server.close();
     }
 
     @Test public void testConstruction() throws Exception {
-        final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url).build();
-        assertTrue(arkitektonika.isCompatible().get());
+        try (final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url).build()) {
+            assertTrue(arkitektonika.isCompatible().get());
+        }
     }
 
     @Test @Order(1) public void testUpload() throws Exception {
-        final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url).build();
-        final SchematicKeys schematicKeys = arkitektonika.upload(new File("src/test/resources/test.schem")).get();
-        assertNotNull(schematicKeys);
-        assertFalse(schematicKeys.getAccessKey().isEmpty());
-        uploadKey = schematicKeys.getAccessKey();
-        deletionKey = schematicKeys.getDeletionKey();
+        try (final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url).build()) {
+            final SchematicKeys schematicKeys = arkitektonika.upload(new File("src/test/resources/test.schem")).get();
+            assertNotNull(schematicKeys);
+            assertFalse(schematicKeys.getAccessKey().isEmpty());
+            uploadKey = schematicKeys.getAccessKey();
+            deletionKey = schematicKeys.getDeletionKey();
+        }
+    }
+
+    @Test @Order(1) public void testInMemoryUpload() throws Exception {
+        try (final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url).build()) {
+            final byte[] schematic = Files.readAllBytes(new File("src/test/resources/test.schem").toPath());
+            final SchematicKeys schematicKeys = arkitektonika.upload(schematic).get();
+            assertFalse(schematicKeys.getAccessKey().isEmpty());
+            assertTrue(arkitektonika.delete(schematicKeys.getDeletionKey()).get());
+        }
     }
 
     @Test @Order(2) public void testExistence() throws Exception {
-        final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url).build();
-        assertEquals(ResourceStatus.OK, arkitektonika.checkStatus(uploadKey).get());
+        try (final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url).build()) {
+            assertEquals(ResourceStatus.OK, arkitektonika.checkStatus(uploadKey).get());
+        }
     }
 
     @Test @Order(3) public void testDownload() throws Exception {
-        final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url).build();
-        assertTrue(arkitektonika.download(uploadKey).get().getContent().length > 0);
+        try (final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url).build()) {
+            final Schematic schematic = arkitektonika.download(uploadKey).get();
+            assertTrue(schematic.getContent().length > 0);
+            assertEquals(31, schematic.getWidth());
+            assertEquals(1, schematic.getHeight());
+            assertEquals(31, schematic.getLength());
+            assertEquals(2, schematic.getVersion());
+            assertEquals(2230, schematic.getDataVersion());
+            assertEquals(13, schematic.getPalette().size());
+        }
     }
 
-    @Test @Order(4) public void testDeletion() throws Exception {
-        final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url).build();
-        assertTrue(arkitektonika.delete(deletionKey).get());
+    @Test @Order(4) public void testStreamingDownload() throws Exception {
+        try (final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url).build()) {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final long transferred = arkitektonika.download(uploadKey, outputStream).get();
+            assertTrue(transferred > 0);
+            assertEquals(transferred, outputStream.size());
+            // The root tag of a schematic is a compound tag
+            assertEquals(10, arkitektonika.download(uploadKey, inputStream -> new GZIPInputStream(inputStream).read())
+                .get());
+        }
+    }
+
+    @Test @Order(5) public void testDeletion() throws Exception {
+        try (final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url).build()) {
+            assertTrue(arkitektonika.delete(deletionKey).get());
+            assertEquals(ResourceStatus.DELETED, arkitektonika.checkStatus(uploadKey).get());
+        }
+    }
+
+    @Test public void testValidatedUpload() throws Exception {
+        try (final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url).withSchematicValidation()
+            .build()) {
+            final byte[] schematic = Files.readAllBytes(new File("src/test/resources/test.schem").toPath());
+            final SchematicKeys schematicKeys = arkitektonika.upload(schematic).get();
+            assertTrue(arkitektonika.delete(schematicKeys.getDeletionKey()).get());
+            final int stored = server.getSchematicCount();
+            final byte[] truncated = Arrays.copyOf(schematic, schematic.length / 2);
+            final ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> arkitektonika.upload(truncated).get());
+            assertInstanceOf(InvalidFormatException.class, exception.getCause());
+            assertEquals(stored, server.getSchematicCount());
+        }
+    }
+
+    @Test public void testTransferredUpload() throws Exception {
+        try (final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url)
+            .withTransport(TransportType.POOLED).build()) {
+            final File file = new File("src/test/resources/test.schem");
+            for (int i = 0; i < 2; i++) {
+                final SchematicKeys schematicKeys = arkitektonika.upload(file).get();
+                assertArrayEquals(Files.readAllBytes(file.toPath()),
+                    arkitektonika.download(schematicKeys.getAccessKey()).get().getContent());
+                assertTrue(arkitektonika.delete(schematicKeys.getDeletionKey()).get());
+            }
+        }
+    }
+
+    @TestFactory public Stream<DynamicTest> testTransports() {
+        return Arrays.stream(TransportType.values()).map(type -> DynamicTest.dynamicTest(type.name(), () -> {
+            try (final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url).withTransport(type)
+                .build()) {
+                assertTrue(arkitektonika.isCompatible().get());
+                final File file = new File("src/test/resources/test.schem");
+                final SchematicKeys schematicKeys = arkitektonika.upload(file).get();
+                assertEquals(ResourceStatus.OK, arkitektonika.checkStatus(schematicKeys.getAccessKey()).get());
+                assertArrayEquals(Files.readAllBytes(file.toPath()),
+                    arkitektonika.download(schematicKeys.getAccessKey()).get().getContent());
+                final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                assertEquals(file.length(), arkitektonika.download(schematicKeys.getAccessKey(), outputStream).get());
+                assertEquals(file.length(), outputStream.size());
+                assertTrue(arkitektonika.delete(schematicKeys.getDeletionKey()).get());
+                assertEquals(ResourceStatus.DELETED, arkitektonika.checkStatus(schematicKeys.getAccessKey()).get());
+            }
+        }));
+    }
+
+    @TestFactory public Stream<DynamicTest> testRedirects() {
+        return Arrays.stream(TransportType.values()).map(type -> DynamicTest.dynamicTest(type.name(), () -> {
+            // Every request is redirected to the same path on the mock server
+            final HttpServer redirecting =
+                HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            redirecting.createContext("/", exchange -> {
+                exchange.getResponseHeaders().set("Location",
+                    URI.create(url).resolve(exchange.getRequestURI().getRawPath()).toString());
+                exchange.sendResponseHeaders(307, -1);
+                exchange.close();
+            });
+            redirecting.start();
+            try (final Arkitektonika arkitektonika = Arkitektonika.builder()
+                .withUrl("http://127.0.0.1:" + redirecting.getAddress().getPort()).withTransport(type).build()) {
+                final byte[] schematic = Files.readAllBytes(new File("src/test/resources/test.schem").toPath());
+                final String key = server.store(schematic).getAccessKey();
+                assertTrue(arkitektonika.isCompatible().get());
+                assertEquals(ResourceStatus.OK, arkitektonika.checkStatus(key).get());
+                assertArrayEquals(schematic, arkitektonika.download(key).get().getContent());
+            } finally {
+                redirecting.stop(0);
+            }
+        }));
+    }
+
+    @TestFactory public Stream<DynamicTest> testReadTimeout() {
+        // The blocking transport does not use the connection pool settings
+        return Stream.of(TransportType.POOLED, TransportType.ASYNC).map(type -> DynamicTest.dynamicTest(type.name(),
+            () -> {
+                try (final MockArkitektonikaServer delayed = MockArkitektonikaServer.builder()
+                    .withLatency(Duration.ofSeconds(2)).build();
+                     final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(delayed.getUrl())
+                         .withTransport(type).withRetryPolicy(RetryPolicy.builder().withMaxAttempts(1).build())
+                         .withConnectionPool(ConnectionPoolSettings.builder().withReadTimeout(Duration.ofMillis(200))
+                             .build()).build()) {
+                    final long start = System.nanoTime();
+                    assertThrows(ExecutionException.class, () -> arkitektonika.isCompatible().get());
+                    assertTrue(System.nanoTime() - start < Duration.ofSeconds(2).toNanos());
+                }
+            }));
+    }
+
+    @Test public void testRetries() throws Exception {
+        try (final MockArkitektonikaServer failing = MockArkitektonikaServer.builder().withErrorRate(1)
+            .withErrorStatus(503).build();
+             final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(failing.getUrl())
+                 .withRetryPolicy(RetryPolicy.builder().withMaxAttempts(3)
+                     .withBackoff(Duration.ofMillis(1), Duration.ofMillis(10)).build()).build()) {
+            assertThrows(ExecutionException.class, () -> arkitektonika.isCompatible().get());
+            assertEquals(3, failing.getRequestCount());
+            // Uploads are not retried, as the failed attempt may have created a schematic
+            final byte[] schematic = Files.readAllBytes(new File("src/test/resources/test.schem").toPath());
+            assertThrows(ExecutionException.class, () -> arkitektonika.upload(schematic).get());
+            assertEquals(4, failing.getRequestCount());
+        }
+    }
+
+    @Test public void testLocalRejectionsDoNotReduceConcurrencyLimit() throws Exception {
+        try (final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url).withSchematicValidation()
+            .withConcurrencyLimit(ConcurrencyLimitSettings.builder().withLimit(16, 1, 64).build()).build()) {
+            for (int i = 0; i < 10; i++) {
+                final ExecutionException exception = assertThrows(ExecutionException.class,
+                    () -> arkitektonika.upload(new byte[] {1, 2, 3}).get());
+                assertInstanceOf(InvalidFormatException.class, exception.getCause());
+            }
+            assertEquals(16, Objects.requireNonNull(arkitektonika.getConcurrencyLimiter()).getLimit());
+        }
+    }
+
+    @Test public void testInvalidUpload() throws Exception {
+        try (final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url).build()) {
+            final ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> arkitektonika.upload(new byte[] {1, 2, 3}).get());
+            assertInstanceOf(InvalidFormatException.class, exception.getCause());
+            assertEquals(ResourceStatus.NON_EXISTENT, arkitektonika.checkStatus("missing").get());
+        }
+    }
+
+    @Test public void testFailover() throws Exception {
+        try (final MockArkitektonikaServer failing = MockArkitektonikaServer.builder().withErrorRate(1).build();
+             final Arkitektonika arkitektonika = Arkitektonika.builder().withUrls(url, failing.getUrl())
+                 .withLoadBalancing(LoadBalancerSettings.builder().withFailureThreshold(1).build()).build()) {
+            for (int i = 0; i < 10; i++) {
+                assertTrue(arkitektonika.isCompatible().get());
+            }
+            final EndpointStatistics statistics = arkitektonika.getEndpointStatistics().get(1);
+            assertTrue(statistics.isEjected());
+            assertEquals(1, statistics.getFailures());
+        }
+    }
+
+    @Test public void testEndpointLatencyEndsWithResponseHead() throws Exception {
+        try (final MockArkitektonikaServer empty = MockArkitektonikaServer.builder().build();
+             final Arkitektonika arkitektonika = Arkitektonika.builder().withUrls(url, empty.getUrl())
+                 .withLoadBalancing(LoadBalancerSettings.builder().withPolicy(LoadBalancingPolicy.EWMA_LATENCY)
+                     .build()).build()) {
+            final String key = server.store(Files.readAllBytes(new File("src/test/resources/test.schem").toPath()))
+                .getAccessKey();
+            final SchematicReader<Boolean> slowReader = inputStream -> {
+                try {
+                    Thread.sleep(300);
+                } catch (final InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return true;
+            };
+            // Downloads sent to the empty endpoint fail, as it does not store the schematic
+            for (int i = 0; i < 20 && arkitektonika.getEndpointStatistics().get(0).getRequests() < 2; i++) {
+                try {
+                    assertTrue(arkitektonika.download(key, slowReader).get());
+                } catch (final ExecutionException ignored) {
+                }
+            }
+            final EndpointStatistics statistics = arkitektonika.getEndpointStatistics().get(0);
+            assertTrue(statistics.getRequests() > 0);
+            // The time spent reading the body does not count
+            assertTrue(statistics.getLatency().compareTo(Duration.ofMillis(150)) < 0, statistics.toString());
+        }
+    }
+
+    @Test public void testUploadAll(@TempDir final Path directory) throws Exception {
+        final Path invalid = Files.write(directory.resolve("invalid.schem"), new byte[] {1, 2, 3});
+        final File valid = new File("src/test/resources/test.schem");
+        final List<File> files = Arrays.asList(valid, invalid.toFile(), valid, valid);
+        try (final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url).build()) {
+            final List<UploadResult<File>> results = Collections.synchronizedList(new ArrayList<>());
+            arkitektonika.uploadAll(files, 2, results::add).get();
+            assertEquals(4, results.size());
+            for (final UploadResult<File> result : results) {
+                // A failed upload is reported without aborting the batch
+                assertEquals(result.getSource().equals(valid), result.isSuccessful());
+                if (result.isSuccessful()) {
+                    assertNotNull(result.getKeys());
+                    assertTrue(arkitektonika.delete(result.getKeys().getDeletionKey()).get());
+                } else {
+                    assertInstanceOf(InvalidFormatException.class, result.getFailure());
+                }
+            }
+
+            final List<UploadResult<Path>> pathResults = Collections.synchronizedList(new ArrayList<>());
+            arkitektonika.uploadAll(Stream.of(valid.toPath(), invalid), 1, pathResults::add).get();
+            assertEquals(2, pathResults.size());
+            for (final UploadResult<Path> result : pathResults) {
+                assertEquals(result.getSource().equals(valid.toPath()), result.isSuccessful());
+                if (result.isSuccessful()) {
+                    assertTrue(arkitektonika.delete(result.getKeys().getDeletionKey()).get());
+                }
+            }
+
+            // A failing callback fails the batch
+            final ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> arkitektonika.uploadAll(Collections.singletonList(invalid.toFile()), 1, result -> {
+                    throw new IllegalStateException("Callback failed");
+                }).get());
+            assertInstanceOf(IllegalStateException.class, exception.getCause());
+        }
+    }
+
+    @Test public void testCheckStatusAll() throws Exception {
+        try (final MockArkitektonikaServer counting = MockArkitektonikaServer.builder().build();
+             final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(counting.getUrl()).build()) {
+            final String stored = counting.store(Files.readAllBytes(new File("src/test/resources/test.schem")
+                .toPath())).getAccessKey();
+            final StatusResults results = arkitektonika.checkStatusAll(
+                Arrays.asList("missing", stored, "missing", stored, "other"), 2).get();
+            // Every distinct key is checked once, and the result follows the iteration order
+            assertEquals(3, counting.getRequestCount());
+            assertTrue(results.isSuccessful());
+            assertEquals(Arrays.asList("missing", stored, "other"), new ArrayList<>(results.getStatuses().keySet()));
+            assertEquals(ResourceStatus.NON_EXISTENT, results.getStatus("missing"));
+            assertEquals(ResourceStatus.OK, results.getStatus(stored));
+
+            // No more than two requests are in flight, while the server delays its responses
+            counting.setLatency(Duration.ofMillis(300));
+            final CompletableFuture<StatusResults> future = arkitektonika.checkStatusAll(
+                Arrays.asList("a", "b", "c", "d", "e", "f"), 2);
+            Thread.sleep(150);
+            assertEquals(5, counting.getRequestCount());
+            assertEquals(6, future.get().getStatuses().size());
+            assertEquals(9, counting.getRequestCount());
+        }
+    }
+
+    @Test public void testCheckStatusAllFailures() throws Exception {
+        try (final MockArkitektonikaServer failing = MockArkitektonikaServer.builder().withErrorRate(1).build();
+             final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(failing.getUrl())
+                 .withRetryPolicy(RetryPolicy.builder().withMaxAttempts(1).build()).build()) {
+            final String stored = failing.store(Files.readAllBytes(new File("src/test/resources/test.schem")
+                .toPath())).getAccessKey();
+            // A failed status check does not stop the remaining keys from being checked
+            final StatusResults failed = arkitektonika.checkStatusAll(Arrays.asList("a", stored, "b"), 1).get();
+            assertEquals(3, failing.getRequestCount());
+            assertFalse(failed.isSuccessful());
+            assertTrue(failed.getStatuses().isEmpty());
+            assertEquals(Arrays.asList("a", stored, "b"), new ArrayList<>(failed.getFailures().keySet()));
+            assertNull(failed.getStatus(stored));
+
+            failing.setErrorRate(0);
+            final StatusResults recovered = arkitektonika.checkStatusAll(Arrays.asList("a", stored), 1).get();
+            assertTrue(recovered.isSuccessful());
+            assertEquals(ResourceStatus.OK, recovered.getStatus(stored));
+        }
+    }
+
+    @Test public void testDownloadCache(@TempDir final Path directory) throws Exception {
+        try (final MockArkitektonikaServer counting = MockArkitektonikaServer.builder().build();
+             final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(counting.getUrl())
+                 .withDownloadCache(DownloadCacheSettings.builder().withMemoryCapacity(1024 * 1024)
+                     .withDiskCache(directory.resolve("cache"), 1024 * 1024).build()).build()) {
+            final byte[] content = Files.readAllBytes(new File("src/test/resources/test.schem").toPath());
+            final SchematicKeys keys = arkitektonika.upload(content).get();
+            assertArrayEquals(content, arkitektonika.download(keys.getAccessKey()).get().getContent());
+            assertEquals(2, counting.getRequestCount());
+            // Repeated downloads are served from the cache, whatever their target
+            assertArrayEquals(content, arkitektonika.download(keys.getAccessKey()).get().getContent());
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            assertEquals(content.length, arkitektonika.download(keys.getAccessKey(), outputStream).get());
+            assertArrayEquals(content, outputStream.toByteArray());
+            final Path file = directory.resolve("download.schem");
+            assertEquals(content.length, arkitektonika.download(keys.getAccessKey(), file).get());
+            assertArrayEquals(content, Files.readAllBytes(file));
+            assertEquals(2, counting.getRequestCount());
+            final CacheStatistics statistics = arkitektonika.getDownloadCacheStatistics();
+            assertNotNull(statistics);
+            assertEquals(content.length, statistics.getMemorySize());
+            assertEquals(content.length, statistics.getDiskSize());
+
+            // Deleting the schematic removes it from the cache
+            assertTrue(arkitektonika.delete(keys.getDeletionKey()).get());
+            assertEquals(0, arkitektonika.getDownloadCacheStatistics().getDiskSize());
+            assertThrows(ExecutionException.class, () -> arkitektonika.download(keys.getAccessKey()).get());
+
+            // Schematics deleted by other clients are removed once their status is checked
+            final SchematicKeys stored = counting.store(content);
+            assertArrayEquals(content, arkitektonika.download(stored.getAccessKey()).get().getContent());
+            try (final Arkitektonika other = Arkitektonika.builder().withUrl(counting.getUrl()).build()) {
+                assertTrue(other.delete(stored.getDeletionKey()).get());
+            }
+            assertEquals(ResourceStatus.DELETED, arkitektonika.checkStatus(stored.getAccessKey()).get());
+            assertEquals(0, arkitektonika.getDownloadCacheStatistics().getDiskSize());
+            assertThrows(ExecutionException.class, () -> arkitektonika.download(stored.getAccessKey()).get());
+        }
+    }
+
+    @Test public void testUploadDeduplication() throws Exception {
+        try (final MockArkitektonikaServer counting = MockArkitektonikaServer.builder().build();
+             final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(counting.getUrl())
+                 .withUploadDeduplication(16).build()) {
+            final File file = new File("src/test/resources/test.schem");
+            final byte[] content = Files.readAllBytes(file.toPath());
+            final SchematicKeys keys = arkitektonika.upload(content).get();
+            // Repeated uploads of the same content return the earlier keys, whatever their source
+            assertEquals(keys.getAccessKey(), arkitektonika.upload(content.clone()).get().getAccessKey());
+            assertEquals(keys.getAccessKey(), arkitektonika.upload(file).get().getAccessKey());
+            assertEquals(keys.getAccessKey(), arkitektonika.upload(ByteBuffer.wrap(content)).get().getAccessKey());
+            assertEquals(1, counting.getSchematicCount());
+            // Schematics read from a stream cannot be hashed up front
+            final SchematicKeys streamed = arkitektonika.upload(() -> new ByteArrayInputStream(content),
+                content.length).get();
+            assertNotEquals(keys.getAccessKey(), streamed.getAccessKey());
+            assertEquals(2, counting.getSchematicCount());
+
+            // Schematics that have been deleted are uploaded again
+            assertTrue(arkitektonika.delete(keys.getDeletionKey()).get());
+            final SchematicKeys reuploaded = arkitektonika.upload(content).get();
+            assertNotEquals(keys.getAccessKey(), reuploaded.getAccessKey());
+            try (final Arkitektonika other = Arkitektonika.builder().withUrl(counting.getUrl()).build()) {
+                assertTrue(other.delete(reuploaded.getDeletionKey()).get());
+            }
+            assertNotEquals(reuploaded.getAccessKey(), arkitektonika.upload(content).get().getAccessKey());
+            assertEquals(2, counting.getSchematicCount());
+        }
+    }
+
+    @Test public void testRequestCoalescing() throws Exception {
+        try (final MockArkitektonikaServer counting = MockArkitektonikaServer.builder()
+            .withLatency(Duration.ofMillis(200)).build();
+             final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(counting.getUrl())
+                 .withRequestCoalescing().build()) {
+            final byte[] content = Files.readAllBytes(new File("src/test/resources/test.schem").toPath());
+            final String key = counting.store(content).getAccessKey();
+            final List<CompletableFuture<Schematic>> downloads = new ArrayList<>();
+            final List<CompletableFuture<ResourceStatus>> statuses = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                downloads.add(arkitektonika.download(key));
+                statuses.add(arkitektonika.checkStatus(key));
+            }
+            // Cancelling one caller does not affect the others
+            downloads.get(0).cancel(false);
+            for (int i = 1; i < 4; i++) {
+                assertArrayEquals(content, downloads.get(i).get().getContent());
+                assertEquals(ResourceStatus.OK, statuses.get(i).get());
+            }
+            assertEquals(2, counting.getRequestCount());
+            assertEquals(6, arkitektonika.getCoalescedRequestCount());
+
+            // Failures are shared as well, and a completed request is not reused
+            final CompletableFuture<Schematic> first = arkitektonika.download("missing");
+            final CompletableFuture<Schematic> second = arkitektonika.download("missing");
+            assertThrows(ExecutionException.class, first::get);
+            assertThrows(ExecutionException.class, second::get);
+            assertEquals(3, counting.getRequestCount());
+            assertArrayEquals(content, arkitektonika.download(key).get().getContent());
+            assertEquals(4, counting.getRequestCount());
+        }
+    }
+
+    @Test public void testStatusCache() throws Exception {
+        try (final MockArkitektonikaServer counting = MockArkitektonikaServer.builder().build();
+             final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(counting.getUrl())
+                 .withStatusCache(StatusCacheSettings.builder()
+                     .withTimeToLive(ResourceStatus.OK, Duration.ofMillis(200)).build()).build()) {
+            final byte[] content = Files.readAllBytes(new File("src/test/resources/test.schem").toPath());
+            final SchematicKeys keys = arkitektonika.upload(content).get();
+            for (int i = 0; i < 3; i++) {
+                assertEquals(ResourceStatus.OK, arkitektonika.checkStatus(keys.getAccessKey()).get());
+                assertEquals(ResourceStatus.NON_EXISTENT, arkitektonika.checkStatus("missing").get());
+            }
+            assertEquals(3, counting.getRequestCount());
+            // An available schematic is checked again once its status has expired
+            Thread.sleep(250);
+            assertEquals(ResourceStatus.OK, arkitektonika.checkStatus(keys.getAccessKey()).get());
+            assertEquals(ResourceStatus.NON_EXISTENT, arkitektonika.checkStatus("missing").get());
+            assertEquals(4, counting.getRequestCount());
+            // Deleting the schematic through the client removes its cached status
+            assertTrue(arkitektonika.delete(keys.getDeletionKey()).get());
+            assertEquals(ResourceStatus.DELETED, arkitektonika.checkStatus(keys.getAccessKey()).get());
+            assertEquals(ResourceStatus.DELETED, arkitektonika.checkStatus(keys.getAccessKey()).get());
+            assertEquals(6, counting.getRequestCount());
+        }
+    }
+
+    @Test public void testMetrics() throws Exception {
+        final HistogramMetricsListener listener = new HistogramMetricsListener();
+        try (final MockArkitektonikaServer delayed = MockArkitektonikaServer.builder()
+            .withLatency(Duration.ofMillis(50)).build();
+             final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(delayed.getUrl())
+                 .withMetricsListener(listener).build()) {
+            final byte[] content = Files.readAllBytes(new File("src/test/resources/test.schem").toPath());
+            final String key = delayed.store(content).getAccessKey();
+            for (int i = 0; i < 3; i++) {
+                arkitektonika.download(key).get();
+            }
+            assertThrows(ExecutionException.class, () -> arkitektonika.download("missing").get());
+            final OperationMetrics metrics = listener.getMetrics(Operation.DOWNLOAD);
+            assertEquals(3, metrics.getSuccesses());
+            assertEquals(1, metrics.getFailures());
+            assertEquals(Collections.singletonMap(404, 1L), metrics.getFailuresByStatusCode());
+            assertEquals(3L * content.length, metrics.getBytes());
+            assertEquals(0, metrics.getInFlight());
+            // Every latency includes the delay of the server
+            assertEquals(4, listener.getLatencies(Operation.DOWNLOAD).getCount());
+            assertTrue(metrics.getP50().compareTo(Duration.ofMillis(50)) >= 0, "p50 was " + metrics.getP50());
+            assertEquals(0, listener.getMetrics(Operation.UPLOAD).getSuccesses());
+        }
+    }
+
+    @Test public void testCircuitBreaker() throws Exception {
+        try (final MockArkitektonikaServer failing = MockArkitektonikaServer.builder().withErrorRate(1).build();
+             final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(failing.getUrl())
+                 .withCircuitBreaker(CircuitBreakerSettings.builder().withWindow(4, 4).withFailureRateThreshold(0.5)
+                     .withOpenDuration(Duration.ofMillis(100)).build()).build()) {
+            for (int i = 0; i < 4; i++) {
+                assertThrows(ExecutionException.class, () -> arkitektonika.isCompatible().get());
+            }
+            assertEquals(CircuitState.OPEN, arkitektonika.getCircuitState());
+            // Calls are rejected without being sent while the breaker is open
+            final ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> arkitektonika.isCompatible().get());
+            assertInstanceOf(CircuitBreakerOpenException.class, exception.getCause());
+            assertEquals(4, failing.getRequestCount());
+
+            // A failed probe opens the breaker again
+            Thread.sleep(150);
+            assertThrows(ExecutionException.class, () -> arkitektonika.isCompatible().get());
+            awaitCircuitState(arkitektonika, CircuitState.OPEN);
+            assertEquals(5, failing.getRequestCount());
+
+            // A successful probe closes the breaker, and the earlier failures no longer count
+            failing.setErrorRate(0);
+            Thread.sleep(150);
+            assertThrows(ExecutionException.class, () -> arkitektonika.isCompatible().get());
+            awaitCircuitState(arkitektonika, CircuitState.CLOSED);
+            assertTrue(arkitektonika.isCompatible().get());
+            failing.setErrorRate(1);
+            assertThrows(ExecutionException.class, () -> arkitektonika.isCompatible().get());
+            assertEquals(CircuitState.CLOSED, arkitektonika.getCircuitState());
+        }
+    }
+
+    @Test public void testLocalFailuresDoNotOpenCircuitBreaker(@TempDir final Path directory) throws Exception {
+        try (final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url)
+            .withCircuitBreaker(CircuitBreakerSettings.builder().withWindow(4, 4).withFailureRateThreshold(0.5)
+                .build()).build()) {
+            final String key = server.store(Files.readAllBytes(new File("src/test/resources/test.schem").toPath()))
+                .getAccessKey();
+            final WritableByteChannel full = Channels.newChannel(new OutputStream() {
+                @Override public void write(final int b) throws IOException {
+                    throw new IOException("No space left on device");
+                }
+            });
+            for (int i = 0; i < 4; i++) {
+                assertThrows(ExecutionException.class, () -> arkitektonika.download(key, full).get());
+                assertThrows(ExecutionException.class,
+                    () -> arkitektonika.download(key, directory.resolve("missing").resolve(key)).get());
+                assertThrows(ExecutionException.class, () -> arkitektonika.download(key, inputStream -> {
+                    throw new IOException("Corrupt schematic");
+                }).get());
+            }
+            assertEquals(CircuitState.CLOSED, arkitektonika.getCircuitState());
+        }
+    }
+
+    @TestFactory public Stream<DynamicTest> testMissingFilesDoNotOpenCircuitBreaker(@TempDir final Path directory) {
+        return Arrays.stream(TransportType.values()).map(type -> DynamicTest.dynamicTest(type.name(), () -> {
+            try (final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(url).withTransport(type)
+                .withCircuitBreaker(CircuitBreakerSettings.builder().withWindow(4, 2).build()).build()) {
+                final File missing = directory.resolve("missing.schem").toFile();
+                for (int i = 0; i < 4; i++) {
+                    assertThrows(ExecutionException.class, () -> arkitektonika.upload(missing).get());
+                }
+                assertEquals(CircuitState.CLOSED, arkitektonika.getCircuitState());
+            }
+        }));
+    }
+
+    @TestFactory public Stream<DynamicTest> testQueueingIsNotSlow() {
+        return Arrays.stream(TransportType.values()).map(type -> DynamicTest.dynamicTest(type.name(), () -> {
+            try (final MockArkitektonikaServer slow = MockArkitektonikaServer.builder()
+                .withLatency(Duration.ofMillis(40)).build();
+                 final Arkitektonika arkitektonika = Arkitektonika.builder().withUrl(slow.getUrl()).withTransport(type)
+                     .withCircuitBreaker(CircuitBreakerSettings.builder()
+                         .withSlowCallThreshold(Duration.ofMillis(150)).build()).build()) {
+                final String key = slow.store(Files.readAllBytes(new File("src/test/resources/test.schem").toPath()))
+                    .getAccessKey();
+                // The burst waits for the threads of the executor, which makes the calls slower than the threshold
+                final List<CompletableFuture<ResourceStatus>> futures = new ArrayList<>();
+                for (int i = 0; i < 40; i++) {
+                    futures.add(arkitektonika.checkStatus(key));
+                }
+                for (final CompletableFuture<ResourceStatus> future : futures) {
+                    assertEquals(ResourceStatus.OK, future.get());
+                }
+                assertEquals(CircuitState.CLOSED, arkitektonika.getCircuitState());
+
+                // Responses that are slow themselves open the breaker
+                slow.setLatency(Duration.ofMillis(200));
+                for (int i = 0; i < 20 && arkitektonika.getCircuitState() == CircuitState.CLOSED; i++) {
+                    assertEquals(ResourceStatus.OK, arkitektonika.checkStatus(key).get());
+                }
+                assertEquals(CircuitState.OPEN, arkitektonika.getCircuitState());
+            }
+        }));
+    }
+
+    private static void awaitCircuitState(@NotNull final Arkitektonika arkitektonika,
+        @NotNull final CircuitState state) throws InterruptedException {
+        final long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (arkitektonika.getCircuitState() != state && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(state, arkitektonika.getCircuitState());
     }
 
 }
@@ -0,0 +1,121 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import com.intellectualsites.arkitektonika.cache.DownloadCache;
+import com.intellectualsites.arkitektonika.cache.DownloadCacheSettings;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCachingApiClient {
+
+    private static final byte[] CONTENT = {1, 2, 3, 4, 5, 6, 7, 8};
+    private static final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @TempDir Path directory;
+
+    @AfterAll public static void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test public void testDownloadsAreCached() throws Exception {
+        final StubApiClient stub = new StubApiClient();
+        final DownloadCache cache = this.newCache();
+        final ApiClient client = new CachingApiClient(stub, cache);
+        final String key = client.upload(CONTENT, executor).get().getAccessKey();
+        assertArrayEquals(CONTENT, client.download(key, executor).get().getContent());
+        assertEquals(2, stub.getRequestCount());
+        // Repeated downloads are served from the cache, whatever their target
+        assertArrayEquals(CONTENT, client.download(key, executor).get().getContent());
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(CONTENT.length, client.download(key, outputStream, executor).get());
+        assertArrayEquals(CONTENT, outputStream.toByteArray());
+        final Path file = this.directory.resolve("download.schem");
+        assertEquals(CONTENT.length, client.download(key, file, executor).get());
+        assertArrayEquals(CONTENT, Files.readAllBytes(file));
+        assertEquals(2, stub.getRequestCount());
+        assertEquals(CONTENT.length, cache.getStatistics().getMemorySize());
+        assertEquals(CONTENT.length, cache.getStatistics().getDiskSize());
+    }
+
+    @Test public void testStreamingDownloadsFillCache() throws Exception {
+        final StubApiClient stub = new StubApiClient();
+        final ApiClient client = new CachingApiClient(stub, this.newCache());
+        final String streamed = stub.store(CONTENT).getAccessKey();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(CONTENT.length, client.download(streamed, outputStream, executor).get());
+        assertArrayEquals(CONTENT, client.download(streamed, executor).get().getContent());
+        final String written = stub.store(CONTENT).getAccessKey();
+        assertEquals(CONTENT.length, client.download(written, this.directory.resolve("download.schem"), executor)
+            .get());
+        assertArrayEquals(CONTENT, client.download(written, executor).get().getContent());
+        assertEquals(2, stub.getRequestCount());
+    }
+
+    @Test public void testFailedDownloadIsNotCached() throws Exception {
+        final StubApiClient stub = new StubApiClient();
+        final DownloadCache cache = this.newCache();
+        final ApiClient client = new CachingApiClient(stub, cache);
+        assertThrows(ExecutionException.class, () -> client.download("missing", new ByteArrayOutputStream(),
+            executor).get());
+        assertNull(cache.get("missing"));
+        assertEquals(0, cache.getStatistics().getDiskSize());
+    }
+
+    @Test public void testInvalidation() throws Exception {
+        final StubApiClient stub = new StubApiClient();
+        final DownloadCache cache = this.newCache();
+        final ApiClient client = new CachingApiClient(stub, cache);
+        // Deleting a schematic that was uploaded through the client removes it from the cache
+        final SchematicKeys keys = client.upload(CONTENT, executor).get();
+        client.download(keys.getAccessKey(), executor).get();
+        assertTrue(client.delete(keys.getDeletionKey(), executor).get());
+        assertNull(cache.get(keys.getAccessKey()));
+        assertThrows(ExecutionException.class, () -> client.download(keys.getAccessKey(), executor).get());
+
+        // Schematics deleted by other clients are removed once their status is checked
+        final SchematicKeys stored = stub.store(CONTENT);
+        client.download(stored.getAccessKey(), executor).get();
+        assertTrue(stub.delete(stored.getDeletionKey(), executor).get());
+        assertEquals(ResourceStatus.DELETED, client.checkStatus(stored.getAccessKey(), executor).get());
+        assertNull(cache.get(stored.getAccessKey()));
+    }
+
+    @NotNull private DownloadCache newCache() {
+        return new DownloadCache(DownloadCacheSettings.builder().withMemoryCapacity(1024)
+            .withDiskCache(this.directory.resolve("cache"), 1024).build());
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import com.intellectualsites.arkitektonika.metrics.HistogramMetricsListener;
+import com.intellectualsites.arkitektonika.metrics.Operation;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCoalescingApiClient {
+
+    private static final byte[] CONTENT = {1, 2, 3, 4, 5, 6, 7, 8};
+    private static final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterAll public static void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test public void testConcurrentCallsShareRequest() throws Exception {
+        final StubApiClient stub = new StubApiClient();
+        final HistogramMetricsListener listener = new HistogramMetricsListener();
+        final CoalescingApiClient client = new CoalescingApiClient(stub, listener);
+        final String key = stub.store(CONTENT).getAccessKey();
+        stub.setLatency(200);
+        final List<CompletableFuture<Schematic>> downloads = new ArrayList<>();
+        final List<CompletableFuture<ResourceStatus>> statuses = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            downloads.add(client.download(key, executor));
+            statuses.add(client.checkStatus(key, executor));
+        }
+        // Cancelling one caller does not affect the others
+        downloads.get(0).cancel(false);
+        for (int i = 1; i < 4; i++) {
+            assertArrayEquals(CONTENT, downloads.get(i).get().getContent());
+            assertEquals(ResourceStatus.OK, statuses.get(i).get());
+        }
+        assertEquals(2, stub.getRequestCount());
+        assertEquals(6, client.getCoalescedRequests());
+        assertEquals(3, listener.getMetrics(Operation.DOWNLOAD).getCoalesced());
+        assertEquals(3, listener.getMetrics(Operation.CHECK_STATUS).getCoalesced());
+    }
+
+    @Test public void testCompletedRequestIsNotReused() throws Exception {
+        final StubApiClient stub = new StubApiClient();
+        final CoalescingApiClient client = new CoalescingApiClient(stub);
+        final String key = stub.store(CONTENT).getAccessKey();
+        stub.setLatency(100);
+        // Failures are shared as well
+        final CompletableFuture<Schematic> first = client.download("missing", executor);
+        final CompletableFuture<Schematic> second = client.download("missing", executor);
+        assertThrows(ExecutionException.class, first::get);
+        assertThrows(ExecutionException.class, second::get);
+        assertEquals(1, stub.getRequestCount());
+        assertArrayEquals(CONTENT, client.download(key, executor).get().getContent());
+        assertArrayEquals(CONTENT, client.download(key, executor).get().getContent());
+        assertEquals(3, stub.getRequestCount());
+        assertEquals(1, client.getCoalescedRequests());
+    }
+
+    @Test public void testKeysAreNotShared() throws Exception {
+        final StubApiClient stub = new StubApiClient();
+        final CoalescingApiClient client = new CoalescingApiClient(stub);
+        final String first = stub.store(CONTENT).getAccessKey();
+        final String second = stub.store(CONTENT).getAccessKey();
+        stub.setLatency(100);
+        final CompletableFuture<ResourceStatus> firstStatus = client.checkStatus(first, executor);
+        final CompletableFuture<ResourceStatus> secondStatus = client.checkStatus(second, executor);
+        assertEquals(ResourceStatus.OK, firstStatus.get());
+        assertEquals(ResourceStatus.OK, secondStatus.get());
+        assertEquals(2, stub.getRequestCount());
+        assertEquals(0, client.getCoalescedRequests());
+    }
+
+}
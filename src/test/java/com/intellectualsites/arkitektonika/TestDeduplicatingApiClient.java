@@ -0,0 +1,92 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestDeduplicatingApiClient {
+
+    private static final byte[] CONTENT = {1, 2, 3, 4, 5, 6, 7, 8};
+    private static final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterAll public static void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test public void testDeduplication(@TempDir final Path directory) throws Exception {
+        final StubApiClient stub = new StubApiClient();
+        final ApiClient client = new DeduplicatingApiClient(stub, 16);
+        final File file = Files.write(directory.resolve("test.schem"), CONTENT).toFile();
+        final SchematicKeys keys = client.upload(CONTENT, executor).get();
+        // Repeated uploads of the same content return the earlier keys, whatever their source
+        assertEquals(keys.getAccessKey(), client.upload(CONTENT.clone(), executor).get().getAccessKey());
+        assertEquals(keys.getAccessKey(), client.upload(file, executor).get().getAccessKey());
+        assertEquals(keys.getAccessKey(), client.upload(ByteBuffer.wrap(CONTENT), executor).get().getAccessKey());
+        assertEquals(1, stub.getSchematicCount());
+        // Schematics read from a stream cannot be hashed up front
+        final SchematicKeys streamed = client.upload(() -> new ByteArrayInputStream(CONTENT), CONTENT.length,
+            executor).get();
+        assertNotEquals(keys.getAccessKey(), streamed.getAccessKey());
+        assertEquals(2, stub.getSchematicCount());
+        // Different content is uploaded
+        assertNotEquals(keys.getAccessKey(), client.upload(new byte[] {1}, executor).get().getAccessKey());
+        assertEquals(3, stub.getSchematicCount());
+    }
+
+    @Test public void testDeletedSchematicsAreUploadedAgain() throws Exception {
+        final StubApiClient stub = new StubApiClient();
+        final ApiClient client = new DeduplicatingApiClient(stub, 16);
+        final SchematicKeys keys = client.upload(CONTENT, executor).get();
+        assertTrue(client.delete(keys.getDeletionKey(), executor).get());
+        final SchematicKeys reuploaded = client.upload(CONTENT, executor).get();
+        assertNotEquals(keys.getAccessKey(), reuploaded.getAccessKey());
+        // Schematics deleted by other clients are detected by the status check before the reuse
+        assertTrue(stub.delete(reuploaded.getDeletionKey(), executor).get());
+        assertNotEquals(reuploaded.getAccessKey(), client.upload(CONTENT, executor).get().getAccessKey());
+        assertEquals(1, stub.getSchematicCount());
+    }
+
+    @Test public void testCapacity() throws Exception {
+        final StubApiClient stub = new StubApiClient();
+        final ApiClient client = new DeduplicatingApiClient(stub, 1);
+        final SchematicKeys first = client.upload(CONTENT, executor).get();
+        client.upload(new byte[] {1}, executor).get();
+        // Only the most recent upload is remembered
+        assertNotEquals(first.getAccessKey(), client.upload(CONTENT, executor).get().getAccessKey());
+        assertEquals(3, stub.getSchematicCount());
+    }
+
+}
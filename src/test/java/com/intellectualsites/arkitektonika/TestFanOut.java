@@ -0,0 +1,157 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestFanOut {
+
+    @Test public void testParallelismIsBounded() {
+        final List<CompletableFuture<Integer>> pending = new ArrayList<>();
+        final CountingIterator iterator = new CountingIterator(10);
+        final List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        final CompletableFuture<Void> future = new FanOut<Integer, Integer>(iterator, element -> {
+            final CompletableFuture<Integer> result = new CompletableFuture<>();
+            pending.add(result);
+            return result;
+        }, (element, result, failure) -> handled.add(result), 3).start();
+        assertEquals(3, pending.size());
+        // Elements are only pulled once an earlier operation has completed
+        assertEquals(3, iterator.pulled);
+        for (int i = 0; i < 10; i++) {
+            assertFalse(future.isDone());
+            pending.get(i).complete(i);
+            assertEquals(Math.min(10, i + 4), pending.size());
+            assertEquals(pending.size(), iterator.pulled);
+        }
+        assertTrue(future.isDone());
+        assertEquals(10, handled.size());
+    }
+
+    @Test public void testSynchronousOperationsDoNotRecurse() {
+        final AtomicInteger handled = new AtomicInteger();
+        new FanOut<Integer, Integer>(IntStream.range(0, 100_000).iterator(), CompletableFuture::completedFuture,
+            (element, result, failure) -> handled.incrementAndGet(), 4).start().join();
+        assertEquals(100_000, handled.get());
+    }
+
+    @Test public void testFailedOperationsAreHandled() {
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        final IllegalStateException exception = new IllegalStateException("Failed");
+        new FanOut<Integer, Integer>(IntStream.range(0, 4).iterator(), element -> {
+            if (element % 2 == 0) {
+                throw exception;
+            }
+            final CompletableFuture<Integer> result = new CompletableFuture<>();
+            result.completeExceptionally(exception);
+            return result;
+        }, (element, result, failure) -> failures.add(failure), 2).start().join();
+        assertEquals(4, failures.size());
+        // Failures are passed to the handler without the CompletionException wrapper
+        failures.forEach(failure -> assertSame(exception, failure));
+    }
+
+    @Test public void testHandlerFailureStopsFanOut() {
+        final List<CompletableFuture<Integer>> pending = new ArrayList<>();
+        final CountingIterator iterator = new CountingIterator(10);
+        final IllegalStateException exception = new IllegalStateException("Failed");
+        final CompletableFuture<Void> future = new FanOut<Integer, Integer>(iterator, element -> {
+            final CompletableFuture<Integer> result = new CompletableFuture<>();
+            pending.add(result);
+            return result;
+        }, (element, result, failure) -> {
+            if (element == 0) {
+                throw exception;
+            }
+        }, 2).start();
+        pending.get(0).complete(0);
+        // No further elements are pulled, and the future waits for the operation in flight
+        assertEquals(2, iterator.pulled);
+        assertFalse(future.isDone());
+        pending.get(1).complete(1);
+        final ExecutionException failure = assertThrows(ExecutionException.class, future::get);
+        assertSame(exception, failure.getCause());
+        assertEquals(2, pending.size());
+    }
+
+    @Test public void testIteratorFailureFailsFanOut() {
+        final IllegalStateException exception = new IllegalStateException("Failed");
+        final Iterator<Integer> iterator = new Iterator<Integer>() {
+            @Override public boolean hasNext() {
+                return true;
+            }
+
+            @Override public Integer next() {
+                throw exception;
+            }
+        };
+        final CompletableFuture<Void> future = new FanOut<Integer, Integer>(iterator,
+            CompletableFuture::completedFuture, (element, result, failure) -> {
+        }, 2).start();
+        final ExecutionException failure = assertThrows(ExecutionException.class, future::get);
+        assertSame(exception, failure.getCause());
+    }
+
+    @Test public void testInvalidParallelism() {
+        assertThrows(IllegalArgumentException.class, () -> new FanOut<Integer, Integer>(
+            Collections.emptyIterator(), CompletableFuture::completedFuture, (element, result, failure) -> {
+        }, 0));
+    }
+
+
+    /**
+     * Iterator over a range of integers, that counts the elements pulled from it
+     */
+    private static final class CountingIterator implements Iterator<Integer> {
+
+        private final int size;
+        private int pulled;
+
+        private CountingIterator(final int size) {
+            this.size = size;
+        }
+
+        @Override public boolean hasNext() {
+            return this.pulled < this.size;
+        }
+
+        @NotNull @Override public Integer next() {
+            return this.pulled++;
+        }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import com.intellectualsites.arkitektonika.metrics.HistogramMetricsListener;
+import com.intellectualsites.arkitektonika.metrics.Operation;
+import com.intellectualsites.arkitektonika.metrics.OperationMetrics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestMetricsApiClient {
+
+    private static final byte[] CONTENT = {1, 2, 3, 4, 5, 6, 7, 8};
+    private static final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterAll public static void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test public void testOperationsAreReported() throws Exception {
+        final StubApiClient stub = new StubApiClient();
+        final HistogramMetricsListener listener = new HistogramMetricsListener();
+        final ApiClient client = new MetricsApiClient(stub, listener);
+        final String key = stub.store(CONTENT).getAccessKey();
+        stub.setLatency(50);
+        for (int i = 0; i < 3; i++) {
+            client.download(key, executor).get();
+        }
+        assertThrows(ExecutionException.class, () -> client.download("missing", executor).get());
+        final OperationMetrics metrics = listener.getMetrics(Operation.DOWNLOAD);
+        assertEquals(3, metrics.getSuccesses());
+        assertEquals(1, metrics.getFailures());
+        assertEquals(Collections.singletonMap(404, 1L), metrics.getFailuresByStatusCode());
+        assertEquals(3L * CONTENT.length, metrics.getBytes());
+        assertEquals(0, metrics.getInFlight());
+        // Every latency includes the delay of the delegate
+        assertEquals(4, listener.getLatencies(Operation.DOWNLOAD).getCount());
+        assertTrue(metrics.getP50().compareTo(Duration.ofMillis(50)) >= 0, "p50 was " + metrics.getP50());
+        assertEquals(0, listener.getMetrics(Operation.UPLOAD).getSuccesses());
+    }
+
+    @Test public void testUploadBytesAreReported() throws Exception {
+        final HistogramMetricsListener listener = new HistogramMetricsListener();
+        final ApiClient client = new MetricsApiClient(new StubApiClient(), listener);
+        client.upload(CONTENT, executor).get();
+        final OperationMetrics metrics = listener.getMetrics(Operation.UPLOAD);
+        assertEquals(1, metrics.getSuccesses());
+        assertEquals(CONTENT.length, metrics.getBytes());
+    }
+
+}
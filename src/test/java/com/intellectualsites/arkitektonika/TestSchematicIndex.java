@@ -0,0 +1,193 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import com.intellectualsites.arkitektonika.nbt.NbtType;
+import com.intellectualsites.arkitektonika.nbt.NbtWriter;
+import com.intellectualsites.arkitektonika.nbt.SchematicFormatException;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSchematicIndex {
+
+    @Test public void testSpongeV2() {
+        final Schematic schematic = new Schematic("key", NbtWriter.gzip(new NbtWriter().beginCompound("Schematic")
+            .writeInt("Version", 2)
+            .writeInt("DataVersion", 3465)
+            .writeShort("Width", 16)
+            .writeShort("Height", 8)
+            .writeShort("Length", 0xFFFF)
+            .beginCompound("Palette").writeInt("minecraft:air", 0).writeInt("minecraft:stone", 1).endCompound()
+            .writeByteArray("BlockData", new byte[16])
+            .endCompound().toByteArray()));
+        assertEquals(16, schematic.getWidth());
+        assertEquals(8, schematic.getHeight());
+        // Dimensions are unsigned
+        assertEquals(0xFFFF, schematic.getLength());
+        assertEquals(16L * 8 * 0xFFFF, schematic.getVolume());
+        assertEquals(2, schematic.getVersion());
+        assertEquals(3465, schematic.getDataVersion());
+        assertEquals(palette("minecraft:air", 0, "minecraft:stone", 1), schematic.getPalette());
+    }
+
+    @Test public void testSpongeV3() {
+        final Schematic schematic = new Schematic("key", NbtWriter.gzip(new NbtWriter().beginCompound("")
+            .beginCompound("Schematic")
+            .writeInt("Version", 3)
+            .writeInt("DataVersion", 3700)
+            .beginCompound("Metadata").writeShort("Width", 1).writeInt("Version", 1).endCompound()
+            .writeShort("Width", 32)
+            .writeShort("Height", 4)
+            .writeShort("Length", 2)
+            .beginCompound("Biomes")
+            .beginCompound("Palette").writeInt("minecraft:plains", 0).endCompound()
+            .endCompound()
+            .beginCompound("Blocks")
+            .beginCompound("Palette").writeInt("minecraft:air", 0).writeInt("minecraft:dirt", 1).endCompound()
+            .writeByteArray("Data", new byte[256])
+            .beginList("BlockEntities", NbtType.END, 0)
+            .endCompound()
+            .endCompound()
+            .endCompound().toByteArray()));
+        // Fields of the Metadata compound and the biome palette are not part of the schematic metadata
+        assertEquals(32, schematic.getWidth());
+        assertEquals(4, schematic.getHeight());
+        assertEquals(2, schematic.getLength());
+        assertEquals(3, schematic.getVersion());
+        assertEquals(3700, schematic.getDataVersion());
+        assertEquals(palette("minecraft:air", 0, "minecraft:dirt", 1), schematic.getPalette());
+    }
+
+    @Test public void testMcEdit() {
+        final Schematic schematic = new Schematic("key", NbtWriter.gzip(new NbtWriter().beginCompound("Schematic")
+            .writeShort("Height", 2)
+            .writeShort("Length", 3)
+            .writeShort("Width", 4)
+            .writeString("Materials", "Alpha")
+            .writeByteArray("Blocks", new byte[24])
+            .writeByteArray("Data", new byte[24])
+            .beginList("Entities", NbtType.END, 0)
+            .beginList("TileEntities", NbtType.COMPOUND, 1).writeString("id", "Chest").endCompound()
+            .endCompound().toByteArray()));
+        assertEquals(4, schematic.getWidth());
+        assertEquals(2, schematic.getHeight());
+        assertEquals(3, schematic.getLength());
+        assertEquals(24, schematic.getVolume());
+        // MCEdit schematics have neither a version nor a palette
+        assertEquals(-1, schematic.getVersion());
+        assertEquals(-1, schematic.getDataVersion());
+        assertEquals(Collections.emptyMap(), schematic.getPalette());
+    }
+
+    @Test public void testLazyResolution() {
+        // Random block data does not compress, so it spans several chunks of inflated data
+        final byte[] blocks = new byte[256 * 1024];
+        new Random(0).nextBytes(blocks);
+        final SchematicIndex index = new SchematicIndex(NbtWriter.gzip(new NbtWriter().beginCompound("Schematic")
+            .writeInt("Version", 2)
+            .writeShort("Width", 64)
+            .writeShort("Height", 64)
+            .writeShort("Length", 64)
+            .writeByteArray("BlockData", blocks)
+            .beginCompound("Palette").writeInt("minecraft:air", 0).endCompound()
+            .writeByteArray("BiomeData", blocks)
+            .writeInt("DataVersion", 3465)
+            .endCompound().toByteArray()));
+        index.resolve(SchematicIndex.DIMENSIONS);
+        assertEquals(64, index.getWidth());
+        assertEquals(2, index.getVersion());
+        assertEquals(Collections.emptyMap(), index.getPalette());
+        assertEquals(-1, index.getDataVersion());
+        // Fields that have been found already do not scan further
+        index.resolve(SchematicIndex.VERSION);
+        assertEquals(Collections.emptyMap(), index.getPalette());
+        // Scanning resumes where it stopped
+        index.resolve(SchematicIndex.PALETTE);
+        assertEquals(palette("minecraft:air", 0), index.getPalette());
+        assertEquals(-1, index.getDataVersion());
+        index.resolve(SchematicIndex.DATA_VERSION);
+        assertEquals(3465, index.getDataVersion());
+        index.resolve(SchematicIndex.DIMENSIONS | SchematicIndex.PALETTE);
+        assertEquals(64, index.getLength());
+    }
+
+    @Test public void testResolutionAcrossChunkBoundaries() {
+        // Every inflated chunk ends at a different offset of the tags for each size of the padding
+        for (int padding = 0; padding < 64; padding++) {
+            final SchematicIndex index = new SchematicIndex(NbtWriter.gzip(new NbtWriter().beginCompound("")
+                .writeByteArray("Padding", new byte[8192 - 32 + padding])
+                .beginCompound("Schematic")
+                .writeShort("Width", 5)
+                .writeShort("Height", 6)
+                .writeShort("Length", 7)
+                .writeInt("Version", 3)
+                .endCompound()
+                .endCompound().toByteArray(), Deflater.NO_COMPRESSION, null, null, null, false));
+            index.resolve(SchematicIndex.DIMENSIONS);
+            assertEquals(5, index.getWidth());
+            assertEquals(6, index.getHeight());
+            assertEquals(7, index.getLength());
+            index.resolve(SchematicIndex.VERSION);
+            assertEquals(3, index.getVersion());
+        }
+    }
+
+    @Test public void testInvalidSchematic() {
+        final byte[] document = new NbtWriter().beginCompound("Schematic")
+            .writeShort("Width", 16)
+            .writeShort("Height", 8)
+            .writeShort("Length", 4)
+            .endCompound().toByteArray();
+        final byte[] truncated = NbtWriter.gzip(Arrays.copyOf(document, document.length - 1));
+        final SchematicIndex index = new SchematicIndex(truncated);
+        final UncheckedIOException exception = assertThrows(UncheckedIOException.class,
+            () -> index.resolve(SchematicIndex.PALETTE));
+        assertTrue(exception.getCause() instanceof SchematicFormatException);
+        // The failure is remembered
+        assertSame(exception, assertThrows(UncheckedIOException.class, () -> index.resolve(SchematicIndex.VERSION)));
+
+        final Schematic schematic = new Schematic("key", new byte[] {1, 2, 3});
+        assertThrows(UncheckedIOException.class, schematic::getWidth);
+        assertThrows(UncheckedIOException.class, schematic::getPalette);
+    }
+
+    @NotNull private static Map<String, Integer> palette(@NotNull final Object... entries) {
+        final Map<String, Integer> palette = new LinkedHashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            palette.put((String) entries[i], (Integer) entries[i + 1]);
+        }
+        return palette;
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika;
+
+import com.intellectualsites.arkitektonika.cache.StatusCache;
+import com.intellectualsites.arkitektonika.cache.StatusCacheSettings;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestStatusCachingApiClient {
+
+    private static final byte[] CONTENT = {1, 2, 3, 4, 5, 6, 7, 8};
+    private static final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterAll public static void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test public void testStatusesAreCached() throws Exception {
+        final StubApiClient stub = new StubApiClient();
+        final ApiClient client = new StatusCachingApiClient(stub, new StatusCache(StatusCacheSettings.builder()
+            .withTimeToLive(ResourceStatus.OK, Duration.ofMillis(200)).build()));
+        final SchematicKeys keys = client.upload(CONTENT, executor).get();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(ResourceStatus.OK, client.checkStatus(keys.getAccessKey(), executor).get());
+            assertEquals(ResourceStatus.NON_EXISTENT, client.checkStatus("missing", executor).get());
+        }
+        assertEquals(3, stub.getRequestCount());
+        // An available schematic is checked again once its status has expired
+        Thread.sleep(250);
+        assertEquals(ResourceStatus.OK, client.checkStatus(keys.getAccessKey(), executor).get());
+        assertEquals(ResourceStatus.NON_EXISTENT, client.checkStatus("missing", executor).get());
+        assertEquals(4, stub.getRequestCount());
+    }
+
+    @Test public void testDeletionInvalidatesStatus() throws Exception {
+        final StubApiClient stub = new StubApiClient();
+        final ApiClient client = new StatusCachingApiClient(stub, new StatusCache(StatusCacheSettings.defaults()));
+        final SchematicKeys keys = client.upload(CONTENT, executor).get();
+        assertEquals(ResourceStatus.OK, client.checkStatus(keys.getAccessKey(), executor).get());
+        // Deleting the schematic through the client removes its cached status
+        assertTrue(client.delete(keys.getDeletionKey(), executor).get());
+        assertEquals(ResourceStatus.DELETED, client.checkStatus(keys.getAccessKey(), executor).get());
+        assertEquals(ResourceStatus.DELETED, client.checkStatus(keys.getAccessKey(), executor).get());
+        assertEquals(4, stub.getRequestCount());
+    }
+
+    @Test public void testDeletionDuringStatusCheck() throws Exception {
+        final StubApiClient stub = new StubApiClient();
+        final CompletableFuture<ResourceStatus> pending = new CompletableFuture<>();
+        final AtomicBoolean first = new AtomicBoolean(true);
+        // The first status check is held back until the schematic has been deleted
+        final ApiClient client = new StatusCachingApiClient(new ForwardingApiClient(stub) {
+            @NotNull @Override public CompletableFuture<ResourceStatus> checkStatus(@NotNull final String key,
+                @NotNull final ExecutorService executorService) {
+                return first.getAndSet(false) ? pending : super.checkStatus(key, executorService);
+            }
+        }, new StatusCache(StatusCacheSettings.defaults()));
+        final SchematicKeys keys = client.upload(CONTENT, executor).get();
+        final CompletableFuture<ResourceStatus> status = client.checkStatus(keys.getAccessKey(), executor);
+        assertTrue(client.delete(keys.getDeletionKey(), executor).get());
+        pending.complete(ResourceStatus.OK);
+        assertEquals(ResourceStatus.OK, status.get());
+        // The status that was checked before the deletion is not cached
+        assertEquals(ResourceStatus.DELETED, client.checkStatus(keys.getAccessKey(), executor).get());
+    }
+
+}
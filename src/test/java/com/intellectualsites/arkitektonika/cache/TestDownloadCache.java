@@ -0,0 +1,179 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestDownloadCache {
+
+    private static final byte[] CONTENT = {1, 2, 3, 4, 5, 6, 7, 8};
+
+    @TempDir Path directory;
+
+    @NotNull private DownloadCache newCache() {
+        return new DownloadCache(DownloadCacheSettings.builder().withMemoryCapacity(1024)
+            .withDiskCache(this.directory.resolve("cache"), 1024).build());
+    }
+
+    @Test public void testWriterInvalidatedWhileWriting() throws Exception {
+        final DownloadCache cache = this.newCache();
+        try (final DownloadCache.Writer writer = cache.newWriter("key")) {
+            writer.write(ByteBuffer.wrap(CONTENT));
+            // The schematic is deleted while its download is still running
+            cache.invalidate("key");
+            writer.commit();
+        }
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.getStatistics().getMemorySize());
+        assertEquals(0, cache.getStatistics().getDiskSize());
+        try (final Stream<Path> files = Files.list(this.directory.resolve("cache"))) {
+            assertEquals(0, files.count());
+        }
+        // A download that starts after the invalidation is cached again
+        try (final DownloadCache.Writer writer = cache.newWriter("key")) {
+            writer.write(ByteBuffer.wrap(CONTENT));
+            writer.commit();
+        }
+        assertArrayEquals(CONTENT, cache.get("key"));
+    }
+
+    @Test public void testStampedPutInvalidated() throws Exception {
+        final DownloadCache cache = this.newCache();
+        final long stamp = cache.stamp();
+        cache.invalidate("key");
+        cache.put("key", CONTENT, stamp);
+        assertNull(cache.get("key"));
+        final Path file = Files.write(this.directory.resolve("download.schem"), CONTENT);
+        cache.store("key", file, stamp);
+        assertNull(cache.get("key"));
+        // Other keys are not affected by the invalidation
+        cache.put("other", CONTENT, stamp);
+        assertArrayEquals(CONTENT, cache.get("other"));
+        cache.store("key", file, cache.stamp());
+        assertArrayEquals(CONTENT, cache.get("key"));
+    }
+
+    @Test public void testForgottenInvalidationsRejectOldStamps() {
+        final DownloadCache cache = this.newCache();
+        final long stamp = cache.stamp();
+        for (int i = 0; i <= 1024; i++) {
+            cache.invalidate("key" + i);
+        }
+        // The invalidation of the first key is no longer remembered, so old stamps are rejected
+        cache.put("key0", CONTENT, stamp);
+        assertNull(cache.get("key0"));
+        cache.put("key0", CONTENT);
+        assertArrayEquals(CONTENT, cache.get("key0"));
+    }
+
+    @Test public void testMemoryTierEvictsLeastRecentlyUsed() {
+        final DownloadCache cache = new DownloadCache(DownloadCacheSettings.builder().withMemoryCapacity(16).build());
+        cache.put("first", CONTENT);
+        cache.put("second", CONTENT);
+        assertNotNull(cache.get("first"));
+        cache.put("third", CONTENT);
+        assertNull(cache.get("second"));
+        assertNotNull(cache.get("first"));
+        assertNotNull(cache.get("third"));
+        final CacheStatistics statistics = cache.getStatistics();
+        assertEquals(16, statistics.getMemorySize());
+        assertEquals(1, statistics.getEvictions());
+        assertEquals(3, statistics.getMemoryHits());
+        assertEquals(1, statistics.getMisses());
+        // Content larger than the memory tier is not cached
+        cache.put("large", new byte[17]);
+        assertNull(cache.get("large"));
+    }
+
+    @Test public void testDiskTierBacksMemoryTier() throws Exception {
+        final DownloadCache cache = new DownloadCache(DownloadCacheSettings.builder().withMemoryCapacity(8)
+            .withDiskCache(this.directory.resolve("cache"), 1024).build());
+        cache.put("first", CONTENT);
+        cache.put("second", CONTENT);
+        assertNull(cache.getFromMemory("first"));
+        // The file is transferred without promoting the schematic to memory
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(CONTENT.length, cache.transferTo("first", Channels.newChannel(outputStream)));
+        assertArrayEquals(CONTENT, outputStream.toByteArray());
+        assertNull(cache.getFromMemory("first"));
+        // Reading the schematic promotes it
+        assertArrayEquals(CONTENT, cache.get("first"));
+        assertArrayEquals(CONTENT, cache.getFromMemory("first"));
+        final CacheStatistics statistics = cache.getStatistics();
+        assertEquals(2, statistics.getDiskHits());
+        assertEquals(16, statistics.getDiskSize());
+        assertEquals(8, statistics.getMemorySize());
+        assertEquals(-1, cache.transferTo("missing", Channels.newChannel(outputStream)));
+    }
+
+    @Test public void testDiskTierEvictsLeastRecentlyUsed() throws Exception {
+        final DownloadCache cache = new DownloadCache(DownloadCacheSettings.builder().withMemoryCapacity(0)
+            .withDiskCache(this.directory.resolve("cache"), 16).build());
+        cache.put("first", CONTENT);
+        cache.put("second", CONTENT);
+        assertNotNull(cache.get("first"));
+        cache.put("third", CONTENT);
+        assertNull(cache.get("second"));
+        assertNotNull(cache.get("first"));
+        assertNotNull(cache.get("third"));
+        assertEquals(16, cache.getStatistics().getDiskSize());
+        try (final Stream<Path> files = Files.list(this.directory.resolve("cache"))) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test public void testDiskTierIsReloaded() throws Exception {
+        final Path cacheDirectory = this.directory.resolve("cache");
+        this.newCache().put("key", CONTENT);
+        // Left behind by a download that was interrupted
+        final Path temporary = Files.write(cacheDirectory.resolve("interrupted.tmp"), CONTENT);
+        final DownloadCache cache = this.newCache();
+        assertEquals(CONTENT.length, cache.getStatistics().getDiskSize());
+        assertArrayEquals(CONTENT, cache.get("key"));
+        assertFalse(Files.exists(temporary));
+    }
+
+    @Test public void testUncommittedWriterIsDiscarded() throws Exception {
+        final DownloadCache cache = this.newCache();
+        try (final DownloadCache.Writer writer = cache.newWriter("key")) {
+            writer.write(ByteBuffer.wrap(CONTENT));
+        }
+        assertNull(cache.get("key"));
+        try (final Stream<Path> files = Files.list(this.directory.resolve("cache"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+}
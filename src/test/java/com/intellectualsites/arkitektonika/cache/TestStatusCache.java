@@ -0,0 +1,93 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.cache;
+
+import com.intellectualsites.arkitektonika.ResourceStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestStatusCache {
+
+    @Test public void testTimeToLivePerStatus() throws Exception {
+        final StatusCache cache = new StatusCache(StatusCacheSettings.builder()
+            .withTimeToLive(ResourceStatus.OK, Duration.ofMillis(100))
+            .withTimeToLive(ResourceStatus.DELETED, Duration.ofHours(1))
+            .withTimeToLive(ResourceStatus.NON_EXISTENT, Duration.ZERO).build());
+        cache.put("available", ResourceStatus.OK);
+        cache.put("deleted", ResourceStatus.DELETED);
+        cache.put("missing", ResourceStatus.NON_EXISTENT);
+        assertEquals(ResourceStatus.OK, cache.get("available"));
+        assertEquals(ResourceStatus.DELETED, cache.get("deleted"));
+        // A time to live of zero disables caching of the status
+        assertNull(cache.get("missing"));
+        Thread.sleep(150);
+        assertNull(cache.get("available"));
+        assertEquals(ResourceStatus.DELETED, cache.get("deleted"));
+    }
+
+    @Test public void testInvalidate() {
+        final StatusCache cache = new StatusCache(StatusCacheSettings.defaults());
+        cache.put("key", ResourceStatus.OK);
+        cache.invalidate("key");
+        assertNull(cache.get("key"));
+        // A newer status replaces the cached one
+        cache.put("key", ResourceStatus.OK);
+        cache.put("key", ResourceStatus.DELETED);
+        assertEquals(ResourceStatus.DELETED, cache.get("key"));
+    }
+
+    @Test public void testStampedPutInvalidated() {
+        final StatusCache cache = new StatusCache(StatusCacheSettings.defaults());
+        final long stamp = cache.stamp();
+        cache.invalidate("key");
+        cache.put("key", ResourceStatus.OK, stamp);
+        assertNull(cache.get("key"));
+        // Other keys are not affected by the invalidation
+        cache.put("other", ResourceStatus.OK, stamp);
+        assertEquals(ResourceStatus.OK, cache.get("other"));
+        cache.put("key", ResourceStatus.DELETED, cache.stamp());
+        assertEquals(ResourceStatus.DELETED, cache.get("key"));
+    }
+
+    @Test public void testMaximumSize() {
+        final StatusCache cache = new StatusCache(StatusCacheSettings.builder().withMaximumSize(32).build());
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key" + i, ResourceStatus.OK);
+        }
+        int cached = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (cache.get("key" + i) != null) {
+                cached++;
+            }
+        }
+        assertTrue(cached > 0);
+        assertTrue(cached <= 32, "Cached " + cached + " statuses");
+        // The most recently added status is always kept
+        assertEquals(ResourceStatus.OK, cache.get("key999"));
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestLatencyHistogram {
+
+    @Test public void testSmallValuesAreExact() {
+        for (long value = 0; value < 32; value++) {
+            assertEquals(value, single(value));
+        }
+    }
+
+    @Test public void testBucketBoundaries() {
+        // From 32 on, every power of two is split into 16 buckets of equal width
+        assertEquals(33, single(32));
+        assertEquals(33, single(33));
+        assertEquals(35, single(34));
+        assertEquals(63, single(62));
+        assertEquals(67, single(64));
+        assertEquals(1023, single(1000));
+        assertEquals(Long.MAX_VALUE, single(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, single(Long.MAX_VALUE - (1L << 57)));
+    }
+
+    @Test public void testRelativeError() {
+        for (int i = 0; i < 10_000; i++) {
+            final long value = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE >>> ThreadLocalRandom.current()
+                .nextInt(63));
+            final long reported = single(value);
+            assertTrue(reported >= value, value + " reported as " + reported);
+            assertTrue(reported - value <= value / 16, value + " reported as " + reported);
+        }
+    }
+
+    @Test public void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1, histogram.getPercentile(0));
+        // The 500th value falls into the bucket from 496 to 511
+        assertEquals(511, histogram.getPercentile(0.5));
+        assertEquals(991, histogram.getPercentile(0.99));
+        assertEquals(1023, histogram.getPercentile(1));
+    }
+
+    @Test public void testEmptyAndInvalid() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(0.99));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getPercentile(1.5));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getPercentile(-0.1));
+        // Negative values are recorded as zero
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(1));
+    }
+
+    private static long single(final long value) {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(value);
+        return histogram.getPercentile(0.5);
+    }
+
+}
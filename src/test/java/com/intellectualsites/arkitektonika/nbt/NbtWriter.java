@@ -0,0 +1,207 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.nbt;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writer of NBT documents for tests. Named tags are written with the {@code write*} and
+ * {@code begin*} methods. The unnamed elements of lists are written with the {@code *Element}
+ * methods, and compound elements as their tags followed by {@link #endCompound()}
+ */
+public final class NbtWriter {
+
+    public static final int FLAG_HEADER_CRC = 2;
+    public static final int FLAG_EXTRA = 4;
+    public static final int FLAG_NAME = 8;
+    public static final int FLAG_COMMENT = 16;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    @NotNull public NbtWriter beginCompound(@NotNull final String name) {
+        return this.header(NbtType.COMPOUND, name);
+    }
+
+    @NotNull public NbtWriter endCompound() {
+        this.bytes.write(NbtType.END);
+        return this;
+    }
+
+    @NotNull public NbtWriter beginList(@NotNull final String name, final int elementType, final int length) {
+        this.header(NbtType.LIST, name);
+        this.bytes.write(elementType);
+        return this.writeRaw(length, 4);
+    }
+
+    @NotNull public NbtWriter writeByte(@NotNull final String name, final int value) {
+        return this.header(NbtType.BYTE, name).writeRaw(value, 1);
+    }
+
+    @NotNull public NbtWriter writeShort(@NotNull final String name, final int value) {
+        return this.header(NbtType.SHORT, name).writeRaw(value, 2);
+    }
+
+    @NotNull public NbtWriter writeInt(@NotNull final String name, final int value) {
+        return this.header(NbtType.INT, name).writeRaw(value, 4);
+    }
+
+    @NotNull public NbtWriter writeIntElement(final int value) {
+        return this.writeRaw(value, 4);
+    }
+
+    @NotNull public NbtWriter writeLong(@NotNull final String name, final long value) {
+        return this.header(NbtType.LONG, name).writeRaw(value, 8);
+    }
+
+    @NotNull public NbtWriter writeDouble(@NotNull final String name, final double value) {
+        return this.header(NbtType.DOUBLE, name).writeRaw(Double.doubleToRawLongBits(value), 8);
+    }
+
+    @NotNull public NbtWriter writeString(@NotNull final String name, @NotNull final String value) {
+        this.header(NbtType.STRING, name);
+        return this.writeUtf(value);
+    }
+
+    @NotNull public NbtWriter writeByteArray(@NotNull final String name, @NotNull final byte[] value) {
+        this.header(NbtType.BYTE_ARRAY, name).writeRaw(value.length, 4);
+        this.bytes.write(value, 0, value.length);
+        return this;
+    }
+
+    @NotNull public NbtWriter writeIntArray(@NotNull final String name, @NotNull final int[] value) {
+        this.header(NbtType.INT_ARRAY, name).writeRaw(value.length, 4);
+        for (final int element : value) {
+            this.writeRaw(element, 4);
+        }
+        return this;
+    }
+
+    @NotNull public NbtWriter writeLongArray(@NotNull final String name, @NotNull final long[] value) {
+        this.header(NbtType.LONG_ARRAY, name).writeRaw(value.length, 4);
+        for (final long element : value) {
+            this.writeRaw(element, 8);
+        }
+        return this;
+    }
+
+    @NotNull public byte[] toByteArray() {
+        return this.bytes.toByteArray();
+    }
+
+    /**
+     * Compress a document as a gzip member without optional header fields
+     *
+     * @param data Uncompressed document
+     * @return Compressed document
+     */
+    @NotNull public static byte[] gzip(@NotNull final byte[] data) {
+        return gzip(data, Deflater.DEFAULT_COMPRESSION, null, null, null, false);
+    }
+
+    /**
+     * Compress a document as a gzip member
+     *
+     * @param data       Uncompressed document
+     * @param level      Deflate compression level. {@link Deflater#NO_COMPRESSION} keeps every
+     *                   inflated byte at a fixed position of the compressed data
+     * @param extra      Content of the extra field, or {@code null} to omit it
+     * @param name       File name, or {@code null} to omit it
+     * @param comment    Comment, or {@code null} to omit it
+     * @param headerCrc  Whether the header is followed by its checksum
+     * @return Compressed document
+     */
+    @NotNull public static byte[] gzip(@NotNull final byte[] data, final int level, @Nullable final byte[] extra,
+        @Nullable final String name, @Nullable final String comment, final boolean headerCrc) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final int flags = (extra == null ? 0 : FLAG_EXTRA) | (name == null ? 0 : FLAG_NAME) |
+            (comment == null ? 0 : FLAG_COMMENT) | (headerCrc ? FLAG_HEADER_CRC : 0);
+        output.write(new byte[] {0x1F, (byte) 0x8B, 8, (byte) flags, 0, 0, 0, 0, 0, (byte) 0xFF}, 0, 10);
+        if (extra != null) {
+            output.write(extra.length & 0xFF);
+            output.write(extra.length >>> 8);
+            output.write(extra, 0, extra.length);
+        }
+        if (name != null) {
+            final byte[] encoded = name.getBytes(StandardCharsets.ISO_8859_1);
+            output.write(encoded, 0, encoded.length);
+            output.write(0);
+        }
+        if (comment != null) {
+            final byte[] encoded = comment.getBytes(StandardCharsets.ISO_8859_1);
+            output.write(encoded, 0, encoded.length);
+            output.write(0);
+        }
+        if (headerCrc) {
+            final CRC32 crc = new CRC32();
+            crc.update(output.toByteArray());
+            writeLittleEndian(output, crc.getValue(), 2);
+        }
+        final Deflater deflater = new Deflater(level, true);
+        deflater.setInput(data);
+        deflater.finish();
+        final byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            output.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+        writeLittleEndian(output, crc.getValue(), 4);
+        writeLittleEndian(output, data.length, 4);
+        return output.toByteArray();
+    }
+
+    @NotNull private NbtWriter header(final int type, @NotNull final String name) {
+        this.bytes.write(type);
+        return this.writeUtf(name);
+    }
+
+    @NotNull private NbtWriter writeUtf(@NotNull final String value) {
+        final byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        this.writeRaw(encoded.length, 2);
+        this.bytes.write(encoded, 0, encoded.length);
+        return this;
+    }
+
+    @NotNull private NbtWriter writeRaw(final long value, final int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            this.bytes.write((int) (value >>> (i * 8)));
+        }
+        return this;
+    }
+
+    private static void writeLittleEndian(@NotNull final ByteArrayOutputStream output, final long value,
+        final int length) {
+        for (int i = 0; i < length; i++) {
+            output.write((int) (value >>> (i * 8)));
+        }
+    }
+
+}
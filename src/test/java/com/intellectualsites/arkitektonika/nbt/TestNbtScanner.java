@@ -0,0 +1,318 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.nbt;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestNbtScanner {
+
+    @Test public void testScan() throws Exception {
+        final List<String> trace = scan(NbtWriter.gzip(spongeV2()), Integer.MAX_VALUE);
+        assertEquals(Arrays.asList("compound 0 Schematic", "number 1 Version 3 2", "number 1 DataVersion 3 3465",
+            "number 1 Width 2 16", "number 1 Height 2 8", "number 1 Length 2 -1", "compound 1 Palette",
+            "number 2 minecraft:air 3 0", "number 2 minecraft:stone 3 1", "end 1", "array 1 BlockData 7 4096",
+            "list 1 BlockEntities 10 2", "compound 2 null", "string 3 Id 15", "array 3 Pos 11 3", "end 2",
+            "compound 2 null", "end 2", "list 1 Offset 3 3", "number 2 null 3 -4", "number 2 null 3 0",
+            "number 2 null 3 4", "list 1 Entities 0 0", "compound 1 Metadata", "string 2 Name 4",
+            "number 2 Scale 6 " + Double.doubleToRawLongBits(0.5), "array 2 Hashes 12 2", "end 1", "end 0",
+            "visitEnd"), trace);
+    }
+
+    @Test public void testChunkBoundaries() throws Exception {
+        // Without compression every chunk of the gzip member inflates to a chunk of the same
+        // size, so small chunks split every tag header, name and payload of the document
+        final byte[] data = NbtWriter.gzip(spongeV2(), Deflater.NO_COMPRESSION, null, null, null, false);
+        final List<String> expected = scan(data, Integer.MAX_VALUE);
+        for (int chunk = 1; chunk <= 16; chunk++) {
+            assertEquals(expected, scan(data, chunk), "Chunks of " + chunk + " bytes");
+        }
+        assertEquals(expected, scan(NbtWriter.gzip(spongeV2()), 1));
+    }
+
+    @Test public void testGzipHeaderFields() throws Exception {
+        final byte[] document = spongeV2();
+        final List<String> expected = scan(NbtWriter.gzip(document), Integer.MAX_VALUE);
+        final byte[] extra = new byte[300];
+        Arrays.fill(extra, (byte) 0x42);
+        final byte[][] members = {
+            NbtWriter.gzip(document, Deflater.DEFAULT_COMPRESSION, extra, "schematic.schem", "comment", true),
+            NbtWriter.gzip(document, Deflater.DEFAULT_COMPRESSION, new byte[0], null, null, false),
+            NbtWriter.gzip(document, Deflater.DEFAULT_COMPRESSION, null, "schematic.schem", null, false),
+            NbtWriter.gzip(document, Deflater.DEFAULT_COMPRESSION, null, null, "", true)
+        };
+        for (final byte[] member : members) {
+            assertEquals(expected, scan(member, Integer.MAX_VALUE));
+            assertEquals(expected, scan(member, 1));
+        }
+    }
+
+    @Test public void testTruncatedMember() throws Exception {
+        final byte[] document = spongeV2();
+        // Truncate the member in every gzip header field, in the deflate data and in the trailer
+        final byte[][] members = {
+            NbtWriter.gzip(document, Deflater.DEFAULT_COMPRESSION, new byte[] {1, 2, 3}, "name", "comment", true),
+            NbtWriter.gzip(document, Deflater.NO_COMPRESSION, null, null, null, false)
+        };
+        for (final byte[] member : members) {
+            for (int length = 0; length < member.length; length++) {
+                final NbtScanner scanner = new NbtScanner(new NbtVisitor() {
+                });
+                assertEquals(length, scanner.update(member, 0, length));
+                assertFalse(scanner.isComplete());
+                final SchematicFormatException exception = assertThrows(SchematicFormatException.class,
+                    scanner::finish, "Truncated to " + length + " bytes");
+                assertEquals("The data ends unexpectedly", exception.getMessage());
+                scanner.close();
+            }
+        }
+    }
+
+    @Test public void testTruncatedDocument() {
+        // Truncate the document in every state of the scanner, and compress it correctly
+        final byte[] document = spongeV2();
+        for (int length = 1; length < document.length; length++) {
+            final byte[] member = NbtWriter.gzip(Arrays.copyOf(document, length));
+            final SchematicFormatException exception = assertThrows(SchematicFormatException.class,
+                () -> scan(member, Integer.MAX_VALUE), "Truncated to " + length + " bytes");
+            assertEquals("The data ends before the root compound", exception.getMessage());
+        }
+    }
+
+    @Test public void testTrailingData() throws Exception {
+        final byte[] member = NbtWriter.gzip(spongeV2());
+        final byte[] data = Arrays.copyOf(member, member.length + 16);
+        Arrays.fill(data, member.length, data.length, (byte) 0x1F);
+        final NbtScanner scanner = new NbtScanner(new NbtVisitor() {
+        });
+        assertEquals(data.length, scanner.update(data, 0, data.length));
+        assertTrue(scanner.isComplete());
+        assertEquals(spongeV2().length, scanner.getInflatedSize());
+        scanner.finish();
+        scanner.close();
+    }
+
+    @Test public void testInvalidData() {
+        final byte[] member = NbtWriter.gzip(spongeV2());
+        assertInvalid("The data is not gzip compressed", spongeV2());
+        final byte[] method = member.clone();
+        method[2] = 7;
+        assertInvalid("Unsupported gzip compression method 7", method);
+        final byte[] checksum = member.clone();
+        checksum[checksum.length - 8] ^= 1;
+        assertInvalid("The gzip checksum does not match", checksum);
+        final byte[] size = member.clone();
+        size[size.length - 4] ^= 1;
+        assertInvalid("The gzip size does not match", size);
+        final byte[] deflate = member.clone();
+        deflate[10] = (byte) 0xFF;
+        assertInvalid("The deflate data is invalid", deflate);
+
+        assertInvalid("The root tag is not a compound", NbtWriter.gzip(new NbtWriter().writeInt("Width", 16)
+            .toByteArray()));
+        final byte[] type = new NbtWriter().beginCompound("").writeInt("Width", 16).endCompound().toByteArray();
+        type[3] = 13;
+        assertInvalid("Unknown tag type 13", NbtWriter.gzip(type));
+        final byte[] array = new NbtWriter().beginCompound("").writeIntArray("Pos", new int[0]).toByteArray();
+        Arrays.fill(array, array.length - 4, array.length, (byte) 0xFF);
+        assertInvalid("Negative array length -1", NbtWriter.gzip(array));
+        assertInvalid("Invalid list of 2 tags of type 0", NbtWriter.gzip(new NbtWriter().beginCompound("")
+            .beginList("Entities", NbtType.END, 2).endCompound().toByteArray()));
+        assertInvalid("Invalid list of 1 tags of type 13", NbtWriter.gzip(new NbtWriter().beginCompound("")
+            .beginList("Entities", 13, 1).endCompound().toByteArray()));
+        assertInvalid("Unexpected data after the root compound", NbtWriter.gzip(new NbtWriter().beginCompound("")
+            .endCompound().beginCompound("").endCompound().toByteArray()));
+
+        final NbtWriter nested = new NbtWriter().beginCompound("");
+        for (int i = 0; i < 512; i++) {
+            nested.beginCompound("");
+        }
+        assertInvalid("The data is nested more than 512 levels deep", NbtWriter.gzip(nested.toByteArray()));
+    }
+
+    @Test public void testValidator() throws Exception {
+        validate(spongeV2());
+        validate(spongeV3());
+        validate(mcEdit());
+        // Dimensions must be short tags of the root or of a nested Schematic compound
+        assertInvalidSchematic(new NbtWriter().beginCompound("Schematic").writeShort("Width", 16)
+            .writeShort("Height", 8).endCompound().toByteArray());
+        assertInvalidSchematic(new NbtWriter().beginCompound("Schematic").writeInt("Width", 16)
+            .writeInt("Height", 8).writeInt("Length", 4).endCompound().toByteArray());
+        assertInvalidSchematic(new NbtWriter().beginCompound("").beginCompound("Metadata").writeShort("Width", 16)
+            .writeShort("Height", 8).writeShort("Length", 4).endCompound().endCompound().toByteArray());
+        assertInvalidSchematic(new NbtWriter().beginCompound("").beginCompound("Schematic").beginCompound("Blocks")
+            .writeShort("Width", 16).writeShort("Height", 8).writeShort("Length", 4).endCompound().endCompound()
+            .endCompound().toByteArray());
+        // Dimensions of the root and of the nested compound are not combined
+        assertInvalidSchematic(new NbtWriter().beginCompound("").writeShort("Width", 16).beginCompound("Schematic")
+            .writeShort("Height", 8).writeShort("Length", 4).endCompound().endCompound().toByteArray());
+    }
+
+    /**
+     * Sponge schematic version 2, whose fields are part of the root compound
+     */
+    @NotNull static byte[] spongeV2() {
+        return new NbtWriter().beginCompound("Schematic")
+            .writeInt("Version", 2)
+            .writeInt("DataVersion", 3465)
+            .writeShort("Width", 16)
+            .writeShort("Height", 8)
+            .writeShort("Length", 0xFFFF)
+            .beginCompound("Palette").writeInt("minecraft:air", 0).writeInt("minecraft:stone", 1).endCompound()
+            .writeByteArray("BlockData", new byte[4096])
+            .beginList("BlockEntities", NbtType.COMPOUND, 2)
+            .writeString("Id", "minecraft:chest").writeIntArray("Pos", new int[] {1, 2, 3}).endCompound()
+            .endCompound()
+            .beginList("Offset", NbtType.INT, 3).writeIntElement(-4).writeIntElement(0).writeIntElement(4)
+            .beginList("Entities", NbtType.END, 0)
+            .beginCompound("Metadata")
+            .writeString("Name", "test")
+            .writeDouble("Scale", 0.5)
+            .writeLongArray("Hashes", new long[] {Long.MIN_VALUE, Long.MAX_VALUE})
+            .endCompound()
+            .endCompound().toByteArray();
+    }
+
+    /**
+     * Sponge schematic version 3, whose fields are part of a Schematic compound in an unnamed root
+     */
+    @NotNull static byte[] spongeV3() {
+        return new NbtWriter().beginCompound("")
+            .beginCompound("Schematic")
+            .writeInt("Version", 3)
+            .writeInt("DataVersion", 3700)
+            .beginCompound("Metadata").writeString("Name", "test").writeShort("Width", 1).endCompound()
+            .writeShort("Width", 32)
+            .writeShort("Height", 4)
+            .writeShort("Length", 2)
+            .beginCompound("Blocks")
+            .beginCompound("Palette").writeInt("minecraft:air", 0).writeInt("minecraft:dirt", 1).endCompound()
+            .writeByteArray("Data", new byte[256])
+            .beginList("BlockEntities", NbtType.END, 0)
+            .endCompound()
+            .beginCompound("Biomes")
+            .beginCompound("Palette").writeInt("minecraft:plains", 0).endCompound()
+            .writeByteArray("Data", new byte[256])
+            .endCompound()
+            .endCompound()
+            .endCompound().toByteArray();
+    }
+
+    /**
+     * MCEdit schematic, whose blocks are stored as numeric ids without a palette
+     */
+    @NotNull static byte[] mcEdit() {
+        return new NbtWriter().beginCompound("Schematic")
+            .writeShort("Height", 2)
+            .writeShort("Length", 3)
+            .writeShort("Width", 4)
+            .writeString("Materials", "Alpha")
+            .writeByteArray("Blocks", new byte[24])
+            .writeByteArray("Data", new byte[24])
+            .beginList("Entities", NbtType.END, 0)
+            .beginList("TileEntities", NbtType.COMPOUND, 1).writeString("id", "Chest").writeInt("x", 1).endCompound()
+            .endCompound().toByteArray();
+    }
+
+    @NotNull private static List<String> scan(@NotNull final byte[] data, final int chunk)
+        throws SchematicFormatException {
+        final RecordingVisitor visitor = new RecordingVisitor();
+        try (NbtScanner scanner = new NbtScanner(visitor)) {
+            for (int offset = 0; offset < data.length; offset += chunk) {
+                final int length = Math.min(chunk, data.length - offset);
+                assertEquals(length, scanner.update(data, offset, length));
+            }
+            scanner.finish();
+            assertTrue(scanner.isComplete());
+        }
+        return visitor.trace;
+    }
+
+    private static void validate(@NotNull final byte[] document) throws SchematicFormatException {
+        final byte[] data = NbtWriter.gzip(document);
+        try (NbtScanner scanner = new NbtScanner(new SchematicValidator())) {
+            scanner.update(data, 0, data.length);
+            scanner.finish();
+        }
+    }
+
+    private static void assertInvalidSchematic(@NotNull final byte[] document) {
+        final SchematicFormatException exception = assertThrows(SchematicFormatException.class,
+            () -> validate(document));
+        assertEquals("The data is not a schematic, as its Width, Height or Length is missing", exception.getMessage());
+    }
+
+    private static void assertInvalid(@NotNull final String message, @NotNull final byte[] data) {
+        final SchematicFormatException exception = assertThrows(SchematicFormatException.class,
+            () -> scan(data, Integer.MAX_VALUE));
+        assertEquals(message, exception.getMessage());
+    }
+
+    private static final class RecordingVisitor implements NbtVisitor {
+
+        private final List<String> trace = new ArrayList<>();
+
+        @Override public void visitCompound(final int depth, @Nullable final String name) {
+            this.trace.add("compound " + depth + " " + name);
+        }
+
+        @Override public void visitCompoundEnd(final int depth) {
+            this.trace.add("end " + depth);
+        }
+
+        @Override public void visitList(final int depth, @Nullable final String name, final int elementType,
+            final int length) {
+            this.trace.add("list " + depth + " " + name + " " + elementType + " " + length);
+        }
+
+        @Override public void visitNumber(final int depth, @Nullable final String name, final int type,
+            final long value) {
+            this.trace.add("number " + depth + " " + name + " " + type + " " + value);
+        }
+
+        @Override public void visitArray(final int depth, @Nullable final String name, final int type,
+            final int length) {
+            this.trace.add("array " + depth + " " + name + " " + type + " " + length);
+        }
+
+        @Override public void visitString(final int depth, @Nullable final String name, final int length) {
+            this.trace.add("string " + depth + " " + name + " " + length);
+        }
+
+        @Override public void visitEnd() {
+            this.trace.add("visitEnd");
+        }
+
+    }
+
+}
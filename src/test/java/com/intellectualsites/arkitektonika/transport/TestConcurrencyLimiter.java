@@ -0,0 +1,168 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestConcurrencyLimiter {
+
+    private static final long THRESHOLD = Duration.ofMillis(100).toNanos();
+    private static final Runnable NOTHING = () -> {
+    };
+
+    @Test public void testLimitIncreasesWhileUsed() {
+        final ConcurrencyLimiter limiter = limiter(2, 1, 10, 16);
+        // Three rounds of two concurrent requests add one to the limit
+        for (int round = 0; round < 3; round++) {
+            limiter.acquire(NOTHING);
+            limiter.acquire(NOTHING);
+            limiter.release(0, false);
+            limiter.release(0, false);
+        }
+        assertEquals(3, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test public void testLimitDoesNotIncreaseWhileIdle() {
+        final ConcurrencyLimiter limiter = limiter(4, 1, 10, 16);
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire(NOTHING);
+            limiter.release(0, false);
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test public void testLimitDecreases() {
+        final ConcurrencyLimiter limiter = limiter(8, 2, 10, 16);
+        limiter.acquire(NOTHING);
+        limiter.release(0, true);
+        assertEquals(4, limiter.getLimit());
+        // Slow requests count like failed ones
+        limiter.acquire(NOTHING);
+        limiter.release(THRESHOLD + 1, false);
+        assertEquals(2, limiter.getLimit());
+        // The limit does not fall below the minimum
+        limiter.acquire(NOTHING);
+        limiter.release(0, true);
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test public void testQueueHandOff() {
+        final ConcurrencyLimiter limiter = limiter(1, 1, 1, 1);
+        final AtomicInteger started = new AtomicInteger();
+        limiter.acquire(started::incrementAndGet);
+        limiter.acquire(started::incrementAndGet);
+        assertEquals(1, started.get());
+        assertEquals(1, limiter.getInFlight());
+        assertEquals(1, limiter.getQueueDepth());
+        assertThrows(RejectedExecutionException.class, () -> limiter.acquire(started::incrementAndGet));
+        // Releasing the permit hands it to the queued request
+        limiter.release(0, false);
+        assertEquals(2, started.get());
+        assertEquals(1, limiter.getInFlight());
+        assertEquals(0, limiter.getQueueDepth());
+        limiter.release(0, false);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test public void testLatencyEndsWithResponseHead() {
+        final ConcurrencyLimiter limiter = limiter(4, 1, 10, 16);
+        // The head is received right away, but the body takes longer than the threshold
+        final HttpTransport delegate = (request, executor) -> {
+            final TransportResponse response = new TransportResponse(200, "OK", new byte[0], 0, System.nanoTime());
+            try {
+                TimeUnit.NANOSECONDS.sleep(THRESHOLD * 2);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return CompletableFuture.completedFuture(response);
+        };
+        final Executor direct = Runnable::run;
+        try (final HttpTransport transport = Transports.limiting(delegate, limiter)) {
+            assertEquals(200, transport.send(TransportRequest.get(URI.create("http://127.0.0.1/")), direct).join()
+                .getStatusCode());
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test public void testOnlyOverloadDecreasesLimit() {
+        final ConcurrencyLimiter limiter = limiter(8, 1, 10, 16);
+        final Executor direct = Runnable::run;
+        final AtomicInteger attempt = new AtomicInteger();
+        final HttpTransport delegate = (request, executor) -> {
+            final CompletableFuture<TransportResponse> future = new CompletableFuture<>();
+            switch (attempt.getAndIncrement()) {
+                case 0:
+                    future.completeExceptionally(new LocalIOException("Not in GZIP format"));
+                    break;
+                case 1:
+                    future.completeExceptionally(new CancellationException());
+                    break;
+                case 2:
+                    future.complete(new TransportResponse(404, "Not Found", new byte[0], 0));
+                    break;
+                case 3:
+                    future.completeExceptionally(new IOException("Connection reset"));
+                    break;
+                default:
+                    future.complete(new TransportResponse(429, "Too Many Requests", new byte[0], 0));
+                    break;
+            }
+            return future;
+        };
+        try (final HttpTransport transport = Transports.limiting(delegate, limiter)) {
+            final TransportRequest request = TransportRequest.get(URI.create("http://127.0.0.1/"));
+            // Failures on the side of the client and client errors say nothing about the load of the server
+            for (int i = 0; i < 3; i++) {
+                transport.send(request, direct);
+            }
+            assertEquals(8, limiter.getLimit());
+            transport.send(request, direct);
+            assertEquals(4, limiter.getLimit());
+            transport.send(request, direct);
+            assertEquals(2, limiter.getLimit());
+        }
+    }
+
+    @NotNull private static ConcurrencyLimiter limiter(final int initialLimit, final int minLimit, final int maxLimit,
+        final int queueSize) {
+        return new ConcurrencyLimiter(ConcurrencyLimitSettings.builder().withLimit(initialLimit, minLimit, maxLimit)
+            .withQueueSize(queueSize).withLatencyThreshold(Duration.ofNanos(THRESHOLD)).withBackoffRatio(0.5)
+            .build());
+    }
+
+}
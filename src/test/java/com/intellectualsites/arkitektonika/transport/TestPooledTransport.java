@@ -0,0 +1,303 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestPooledTransport {
+
+    private static final Executor DIRECT = Runnable::run;
+
+    @Test public void testUploadIsNotReplayed() throws Exception {
+        final AtomicInteger uploads = new AtomicInteger();
+        // The server answers the first request, then closes the connection after receiving an upload
+        try (final RawServer server = new RawServer((method, path, outputStream) -> {
+            if (!method.equals("POST")) {
+                outputStream.write(RawServer.OK);
+                return true;
+            }
+            uploads.incrementAndGet();
+            return false;
+        }); final HttpTransport transport = Transports.pooled(ConnectionPoolSettings.defaults())) {
+            assertEquals(200, transport.send(TransportRequest.get(server.getUri()), DIRECT).join().getStatusCode());
+            final CompletionException exception = assertThrows(CompletionException.class,
+                () -> transport.send(TransportRequest.post(server.getUri(), body()), DIRECT).join());
+            assertInstanceOf(IOException.class, exception.getCause());
+            assertEquals(1, uploads.get());
+        }
+    }
+
+    @Test public void testStaleConnectionIsReplaced() throws Exception {
+        final AtomicInteger uploads = new AtomicInteger();
+        final Semaphore closed = new Semaphore(0);
+        // The server closes every connection after its first response
+        try (final RawServer server = new RawServer((method, path, outputStream) -> {
+            if (method.equals("POST")) {
+                uploads.incrementAndGet();
+            }
+            outputStream.write(RawServer.OK);
+            outputStream.close();
+            closed.release();
+            return false;
+        }); final HttpTransport transport = Transports.pooled(ConnectionPoolSettings.defaults())) {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(200, transport.send(TransportRequest.get(server.getUri()), DIRECT).join()
+                    .getStatusCode());
+                // The connection is only stale once the server has closed it
+                closed.acquire();
+                assertEquals(200, transport.send(TransportRequest.post(server.getUri(), body()), DIRECT).join()
+                    .getStatusCode());
+                closed.acquire();
+            }
+            assertEquals(3, uploads.get());
+        }
+    }
+
+    @Test public void testReadTimeout() throws Exception {
+        // The server accepts every request, but never answers
+        try (final RawServer server = new RawServer((method, path, outputStream) -> true);
+             final HttpTransport transport = Transports.pooled(ConnectionPoolSettings.builder()
+                 .withReadTimeout(Duration.ofMillis(200)).build())) {
+            final CompletionException exception = assertThrows(CompletionException.class,
+                () -> transport.send(TransportRequest.get(server.getUri()), DIRECT).join());
+            assertInstanceOf(SocketTimeoutException.class, exception.getCause());
+        }
+    }
+
+    @Test public void testLeaseTimeout() throws Exception {
+        final CountDownLatch received = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (final RawServer server = new RawServer((method, path, outputStream) -> {
+            received.countDown();
+            return true;
+        }); final HttpTransport transport = Transports.pooled(ConnectionPoolSettings.builder().withMaxConnections(1)
+            .withReadTimeout(Duration.ofSeconds(5)).withLeaseTimeout(Duration.ofMillis(100)).build())) {
+            final CompletableFuture<TransportResponse> pending =
+                transport.send(TransportRequest.get(server.getUri()), executor);
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+            // The only connection is taken by the request that is never answered
+            final CompletionException exception = assertThrows(CompletionException.class,
+                () -> transport.send(TransportRequest.get(server.getUri()), DIRECT).join());
+            assertInstanceOf(SocketTimeoutException.class, exception.getCause());
+            assertFalse(pending.isDone());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test public void testIpv6Host() throws Exception {
+        final InetAddress loopback = InetAddress.getByName("::1");
+        try (final RawServer server = new RawServer(loopback, (method, path, outputStream) -> {
+            outputStream.write(RawServer.OK);
+            return true;
+        }); final HttpTransport transport = Transports.pooled(ConnectionPoolSettings.defaults())) {
+            final URI uri = URI.create("http://[::1]:" + server.getPort() + "/");
+            assertEquals(200, transport.send(TransportRequest.get(uri), DIRECT).join().getStatusCode());
+            assertEquals("[::1]:" + server.getPort(), server.getHost());
+        }
+    }
+
+    @Test public void testRedirectIsFollowed() throws Exception {
+        final AtomicInteger requests = new AtomicInteger();
+        try (final RawServer server = new RawServer((method, path, outputStream) -> {
+            requests.incrementAndGet();
+            final String location = path.equals("/moved") ? "/" : path.equals("/loop") ? "/loop" : null;
+            outputStream.write((location == null ? "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n" :
+                "HTTP/1.1 302 Found\r\nLocation: " + location + "\r\nContent-Length: 0\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+            return true;
+        }); final HttpTransport transport = Transports.pooled(ConnectionPoolSettings.defaults())) {
+            final URI moved = server.getUri().resolve("/moved");
+            assertEquals(200, transport.send(TransportRequest.get(moved), DIRECT).join().getStatusCode());
+            assertEquals(200, transport.send(TransportRequest.head(moved), DIRECT).join().getStatusCode());
+            // The body of an upload may not be replayable, so uploads are not redirected
+            assertEquals(302, transport.send(TransportRequest.post(moved, body()), DIRECT).join()
+                .getStatusCode());
+            assertEquals(5, requests.getAndSet(0));
+            // A redirect loop ends with the last redirect
+            assertEquals(302, transport.send(TransportRequest.get(server.getUri().resolve("/loop")), DIRECT).join()
+                .getStatusCode());
+            assertEquals(6, requests.get());
+        }
+    }
+
+    @NotNull private static RequestBody body() {
+        final byte[] bytes = "schematic".getBytes(StandardCharsets.UTF_8);
+        return new RequestBody() {
+            @NotNull @Override public String getContentType() {
+                return "application/octet-stream";
+            }
+
+            @Override public long getContentLength() {
+                return bytes.length;
+            }
+
+            @NotNull @Override public InputStream open() {
+                return new ByteArrayInputStream(bytes);
+            }
+        };
+    }
+
+
+    /**
+     * Handler of a request received by a {@link RawServer}
+     */
+    @FunctionalInterface
+    interface Handler {
+
+        /**
+         * Handle a request, after its body has been read
+         *
+         * @param method       Request method
+         * @param path         Request path
+         * @param outputStream Stream to write the response to
+         * @return {@code true} if the connection should be kept alive
+         * @throws IOException If the response cannot be written
+         */
+        boolean handle(@NotNull String method, @NotNull String path, @NotNull OutputStream outputStream)
+            throws IOException;
+
+    }
+
+
+    /**
+     * HTTP/1.1 server on a plain socket, whose connections can be controlled by the test
+     */
+    static final class RawServer implements AutoCloseable {
+
+        static final byte[] OK = "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+        private final ServerSocket serverSocket;
+        private final Handler handler;
+        private volatile String host;
+
+        RawServer(@NotNull final Handler handler) throws IOException {
+            this(InetAddress.getLoopbackAddress(), handler);
+        }
+
+        RawServer(@NotNull final InetAddress address, @NotNull final Handler handler) throws IOException {
+            this.serverSocket = new ServerSocket(0, 50, address);
+            this.handler = handler;
+            final Thread thread = new Thread(this::accept, "Raw-Server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @NotNull URI getUri() {
+            return URI.create("http://127.0.0.1:" + this.getPort() + "/");
+        }
+
+        int getPort() {
+            return this.serverSocket.getLocalPort();
+        }
+
+        /**
+         * Get the Host header of the last request
+         *
+         * @return Host header
+         */
+        @Nullable String getHost() {
+            return this.host;
+        }
+
+        private void accept() {
+            while (!this.serverSocket.isClosed()) {
+                try {
+                    final Socket socket = this.serverSocket.accept();
+                    final Thread thread = new Thread(() -> this.serve(socket), "Raw-Server-Connection");
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (final IOException ignored) {
+                }
+            }
+        }
+
+        private void serve(@NotNull final Socket socket) {
+            try {
+                final InputStream inputStream = socket.getInputStream();
+                final OutputStream outputStream = socket.getOutputStream();
+                String method;
+                while ((method = HttpConnection.readLine(inputStream)) != null) {
+                    long length = 0;
+                    String line;
+                    while ((line = HttpConnection.readLine(inputStream)) != null && !line.isEmpty()) {
+                        final String header = line.toLowerCase(Locale.ROOT);
+                        if (header.startsWith("content-length:")) {
+                            length = Long.parseLong(header.substring("content-length:".length()).trim());
+                        } else if (header.startsWith("host:")) {
+                            this.host = line.substring("host:".length()).trim();
+                        }
+                    }
+                    for (long i = 0; i < length; i++) {
+                        inputStream.read();
+                    }
+                    final String[] requestLine = method.split(" ");
+                    final boolean keepAlive = this.handler.handle(requestLine[0], requestLine[1], outputStream);
+                    outputStream.flush();
+                    if (!keepAlive) {
+                        return;
+                    }
+                }
+            } catch (final IOException ignored) {
+            } finally {
+                try {
+                    socket.close();
+                } catch (final IOException ignored) {
+                }
+            }
+        }
+
+        @Override public void close() throws IOException {
+            this.serverSocket.close();
+        }
+
+    }
+
+}
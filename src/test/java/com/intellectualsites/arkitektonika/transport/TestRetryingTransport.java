@@ -0,0 +1,219 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestRetryingTransport {
+
+    private static final URI URI = java.net.URI.create("http://127.0.0.1/");
+    private static final Executor DIRECT = Runnable::run;
+    private static final RetryPolicy POLICY = RetryPolicy.builder()
+        .withBackoff(Duration.ofMillis(1), Duration.ofMillis(10)).build();
+
+    @Test public void testRetryableStatusIsRetried() {
+        final ScriptedTransport delegate = new ScriptedTransport(() -> response(503, "unavailable"),
+            () -> response(200, "ok"));
+        try (final HttpTransport transport = Transports.retrying(delegate, POLICY)) {
+            final TransportResponse response = transport.send(TransportRequest.get(URI), DIRECT).join();
+            assertEquals(200, response.getStatusCode());
+            assertEquals(2, delegate.requests);
+        }
+    }
+
+    @Test public void testAttemptsAreBounded() {
+        final ScriptedTransport delegate = new ScriptedTransport();
+        delegate.fallback = () -> response(503, "unavailable");
+        try (final HttpTransport transport = Transports.retrying(delegate, POLICY)) {
+            assertEquals(503, transport.send(TransportRequest.get(URI), DIRECT).join().getStatusCode());
+            assertEquals(POLICY.getMaxAttempts(), delegate.requests);
+        }
+    }
+
+    @Test public void testBackoffDelaysRetries() {
+        final ScriptedTransport delegate = new ScriptedTransport();
+        delegate.fallback = () -> response(503, "unavailable");
+        final RetryPolicy policy = RetryPolicy.builder().withMaxAttempts(2)
+            .withBackoff(Duration.ofMillis(200), Duration.ofMillis(200)).build();
+        try (final HttpTransport transport = Transports.retrying(delegate, policy)) {
+            final CompletableFuture<TransportResponse> future = transport.send(TransportRequest.get(URI), DIRECT);
+            // The retry is scheduled after a random delay below the bound, rather than sent right away
+            assertFalse(future.isDone());
+            assertEquals(1, delegate.requests);
+            assertEquals(503, future.join().getStatusCode());
+            assertEquals(2, delegate.requests);
+        }
+    }
+
+    @Test public void testUploadIsNotReplayed() {
+        final ScriptedTransport delegate = new ScriptedTransport(() -> response(503, "unavailable"),
+            () -> failed(new IOException("Connection reset")));
+        try (final HttpTransport transport = Transports.retrying(delegate, POLICY)) {
+            // A retryable status is returned as it is, as the upload may have been processed
+            assertEquals(503, transport.send(post(), DIRECT).join().getStatusCode());
+            assertEquals(1, delegate.requests);
+            // An I/O failure after the connection was established is not retried either
+            final CompletionException exception = assertThrows(CompletionException.class,
+                () -> transport.send(post(), DIRECT).join());
+            assertEquals("Connection reset", exception.getCause().getMessage());
+            assertEquals(2, delegate.requests);
+        }
+    }
+
+    @Test public void testUploadIsRetriedIfNotConnected() {
+        final ScriptedTransport delegate = new ScriptedTransport(() -> failed(new ConnectException("Refused")),
+            () -> response(200, "ok"));
+        try (final HttpTransport transport = Transports.retrying(delegate, POLICY)) {
+            assertEquals(200, transport.send(post(), DIRECT).join().getStatusCode());
+            assertEquals(2, delegate.requests);
+        }
+    }
+
+    @Test public void testHedgedRequestReturnsFasterResponse() {
+        final ScriptedTransport delegate = new ScriptedTransport();
+        delegate.fallback = () -> response(200, "warmup");
+        final RetryPolicy policy = RetryPolicy.builder().withMaxAttempts(1).withHedging(0.5).build();
+        try (final HttpTransport transport = Transports.retrying(delegate, policy)) {
+            warmUp(transport);
+            final CompletableFuture<TransportResponse> slow = new CompletableFuture<>();
+            delegate.script(() -> slow, () -> response(200, "fast"));
+            final TransportResponse response = transport.send(TransportRequest.get(URI), DIRECT).join();
+            assertEquals("fast", body(response));
+            slow.complete(new TransportResponse(200, "OK", new byte[0], 0));
+        }
+    }
+
+    @Test public void testHedgedRetryableStatusDoesNotWin() {
+        final ScriptedTransport delegate = new ScriptedTransport();
+        delegate.fallback = () -> response(200, "warmup");
+        final RetryPolicy policy = RetryPolicy.builder().withMaxAttempts(1).withHedging(0.5).build();
+        try (final HttpTransport transport = Transports.retrying(delegate, policy)) {
+            warmUp(transport);
+            final CompletableFuture<TransportResponse> slow = new CompletableFuture<>();
+            delegate.script(() -> slow, () -> response(503, "unavailable"));
+            final CompletableFuture<TransportResponse> future = transport.send(TransportRequest.get(URI), DIRECT);
+            final long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (delegate.requests < 34 && System.nanoTime() < deadline) {
+                Thread.yield();
+            }
+            assertEquals(34, delegate.requests);
+            // The hedge has failed with a retryable status, and the original request is still running
+            assertFalse(future.isDone());
+            slow.complete(new TransportResponse(200, "OK", "slow".getBytes(StandardCharsets.UTF_8), 4));
+            assertEquals("slow", body(future.join()));
+        }
+    }
+
+    private static void warmUp(@NotNull final HttpTransport transport) {
+        // Requests are only hedged once enough latencies have been recorded
+        for (int i = 0; i < 32; i++) {
+            transport.send(TransportRequest.get(URI), DIRECT).join();
+        }
+    }
+
+    @NotNull private static TransportRequest post() {
+        final byte[] bytes = "schematic".getBytes(StandardCharsets.UTF_8);
+        return TransportRequest.post(URI, new RequestBody() {
+            @NotNull @Override public String getContentType() {
+                return "application/octet-stream";
+            }
+
+            @Override public long getContentLength() {
+                return bytes.length;
+            }
+
+            @NotNull @Override public InputStream open() {
+                return new ByteArrayInputStream(bytes);
+            }
+        });
+    }
+
+    @NotNull private static CompletableFuture<TransportResponse> response(final int code, @NotNull final String body) {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        return CompletableFuture.completedFuture(new TransportResponse(code, "", bytes, bytes.length));
+    }
+
+    @NotNull private static CompletableFuture<TransportResponse> failed(@NotNull final Throwable failure) {
+        final CompletableFuture<TransportResponse> future = new CompletableFuture<>();
+        future.completeExceptionally(failure);
+        return future;
+    }
+
+    @NotNull private static String body(@NotNull final TransportResponse response) {
+        return new String(response.getBody(), StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Transport that answers requests with scripted responses, in order
+     */
+    private static final class ScriptedTransport implements HttpTransport {
+
+        private final Deque<Supplier<CompletableFuture<TransportResponse>>> responses = new ArrayDeque<>();
+        private Supplier<CompletableFuture<TransportResponse>> fallback;
+        private volatile int requests;
+
+        @SafeVarargs
+        private ScriptedTransport(@NotNull final Supplier<CompletableFuture<TransportResponse>>... responses) {
+            this.script(responses);
+        }
+
+        @SafeVarargs
+        private final synchronized void script(
+            @NotNull final Supplier<CompletableFuture<TransportResponse>>... responses) {
+            for (final Supplier<CompletableFuture<TransportResponse>> response : responses) {
+                this.responses.add(response);
+            }
+        }
+
+        @NotNull @Override public synchronized CompletableFuture<TransportResponse> send(
+            @NotNull final TransportRequest request, @NotNull final Executor executor) {
+            this.requests++;
+            final Supplier<CompletableFuture<TransportResponse>> response = this.responses.poll();
+            return response != null ? response.get() : this.fallback.get();
+        }
+
+        @Override public void close() {
+        }
+
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.v1;
+
+import com.intellectualsites.arkitektonika.transport.LocalIOException;
+import com.intellectualsites.arkitektonika.transport.RequestBody;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSchematicSerializer {
+
+    private static final byte[] SCHEMATIC = "schematic".getBytes(StandardCharsets.UTF_8);
+
+    @Test public void testTransfer(@TempDir final Path directory) throws Exception {
+        final File file = Files.write(directory.resolve("plot.schem"), SCHEMATIC).toFile();
+        final RequestBody body = new SchematicSerializer.FileSerializer(false).toRequestBody(file);
+        final long length = body.getContentLength();
+        final ByteArrayOutputStream transferred = new ByteArrayOutputStream();
+        assertEquals(length, transfer(body, transferred, length));
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        body.writeTo(written);
+        assertArrayEquals(written.toByteArray(), transferred.toByteArray());
+        // Validated and in-memory bodies are not transferred
+        assertNull(new SchematicSerializer.FileSerializer(true).toRequestBody(file).openTransfer());
+        assertNull(new SchematicSerializer.ByteArraySerializer(false).toRequestBody(SCHEMATIC).openTransfer());
+    }
+
+    @Test public void testTransferOfGrownFile(@TempDir final Path directory) throws Exception {
+        final File file = Files.write(directory.resolve("plot.schem"), SCHEMATIC).toFile();
+        final RequestBody body = new SchematicSerializer.FileSerializer(false).toRequestBody(file);
+        final long length = body.getContentLength();
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        body.writeTo(expected);
+        // Data appended after the length was announced is not sent
+        Files.write(file.toPath(), SCHEMATIC, StandardOpenOption.APPEND);
+        final ByteArrayOutputStream transferred = new ByteArrayOutputStream();
+        assertEquals(length, transfer(body, transferred, length));
+        assertArrayEquals(expected.toByteArray(), transferred.toByteArray());
+    }
+
+    @Test public void testTransferOfTruncatedFile(@TempDir final Path directory) throws Exception {
+        final File file = Files.write(directory.resolve("plot.schem"), SCHEMATIC).toFile();
+        final RequestBody body = new SchematicSerializer.FileSerializer(false).toRequestBody(file);
+        final long length = body.getContentLength();
+        Files.write(file.toPath(), new byte[] {1, 2, 3});
+        final LocalIOException exception = assertThrows(LocalIOException.class,
+            () -> transfer(body, new ByteArrayOutputStream(), length));
+        assertEquals("Request body is shorter than its declared length", exception.getMessage());
+    }
+
+    @Test public void testTransferOfMissingFile(@TempDir final Path directory) {
+        final File file = directory.resolve("missing.schem").toFile();
+        final RequestBody body = new SchematicSerializer.FileSerializer(false).toRequestBody(file);
+        assertThrows(NoSuchFileException.class, body::openTransfer);
+    }
+
+    private static long transfer(@NotNull final RequestBody body, @NotNull final OutputStream outputStream,
+        final long length) throws IOException {
+        try (final RequestBody.Transfer transfer = Objects.requireNonNull(body.openTransfer())) {
+            return transfer.transferTo(Channels.newChannel(outputStream), length);
+        }
+    }
+
+}
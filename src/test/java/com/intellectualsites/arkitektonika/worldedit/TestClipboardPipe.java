@@ -0,0 +1,170 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.worldedit;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestClipboardPipe {
+
+    @Test public void testWrapAround() throws Exception {
+        final ClipboardPipe pipe = new ClipboardPipe(8);
+        final OutputStream outputStream = pipe.getOutputStream();
+        final InputStream inputStream = pipe.getInputStream();
+        outputStream.write(new byte[] {0, 1, 2, 3, 4, 5});
+        assertArrayEquals(new byte[] {0, 1, 2, 3}, read(inputStream, 4));
+        // The write wraps around the end of the buffer and fills it
+        outputStream.write(new byte[] {6, 7, 8, 9, 10, 11});
+        assertEquals(8, inputStream.available());
+        assertArrayEquals(new byte[] {4, 5, 6, 7, 8, 9, 10, 11}, read(inputStream, 8));
+        assertEquals(0, inputStream.available());
+    }
+
+    @Test public void testTransfer() throws Exception {
+        final ClipboardPipe pipe = new ClipboardPipe(7);
+        final byte[] data = new byte[100_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        // Chunks that do not divide the capacity wrap around at every offset of the buffer
+        final CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+            try {
+                for (int offset = 0; offset < data.length; offset += 5) {
+                    pipe.getOutputStream().write(data, offset, Math.min(5, data.length - offset));
+                }
+                pipe.complete();
+            } catch (final IOException e) {
+                pipe.fail(e);
+            }
+        });
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[3];
+        int read;
+        while ((read = pipe.getInputStream().read(buffer)) != -1) {
+            received.write(buffer, 0, read);
+        }
+        producer.get(10, TimeUnit.SECONDS);
+        assertArrayEquals(data, received.toByteArray());
+    }
+
+    @Test public void testComplete() throws Exception {
+        final ClipboardPipe pipe = new ClipboardPipe(8);
+        final InputStream inputStream = pipe.getInputStream();
+        pipe.getOutputStream().write(0xFF);
+        assertEquals(0xFF, inputStream.read());
+        // The consumer waits for more data until the pipe is completed
+        final CompletableFuture<Integer> next = CompletableFuture.supplyAsync(() -> {
+            try {
+                return inputStream.read();
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertThrows(TimeoutException.class, () -> next.get(100, TimeUnit.MILLISECONDS));
+        pipe.getOutputStream().write(new byte[] {1, 2});
+        pipe.complete();
+        assertEquals(1, next.get(10, TimeUnit.SECONDS));
+        // Buffered data is drained before the end of the pipe is reported
+        assertEquals(2, inputStream.read());
+        assertEquals(-1, inputStream.read());
+        assertEquals(-1, inputStream.read(new byte[4], 0, 4));
+        // A failure after the completion is ignored
+        pipe.fail(new IllegalStateException());
+        assertEquals(-1, inputStream.read());
+    }
+
+    @Test public void testFailBeforeDrain() throws Exception {
+        final ClipboardPipe pipe = new ClipboardPipe(8);
+        pipe.getOutputStream().write(new byte[] {1, 2, 3, 4});
+        final IllegalStateException failure = new IllegalStateException("Encoding failed");
+        pipe.fail(failure);
+        // A partially written schematic is never passed on, even if it is buffered
+        final IOException exception = assertThrows(IOException.class, () -> pipe.getInputStream().read());
+        assertSame(failure, exception.getCause());
+        assertThrows(IOException.class, () -> pipe.getInputStream().read(new byte[4], 0, 4));
+    }
+
+    @Test public void testFailUnblocksConsumer() throws Exception {
+        final ClipboardPipe pipe = new ClipboardPipe(8);
+        final CompletableFuture<Integer> read = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pipe.getInputStream().read();
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertThrows(TimeoutException.class, () -> read.get(100, TimeUnit.MILLISECONDS));
+        pipe.fail(new IllegalStateException());
+        final ExecutionException exception = assertThrows(ExecutionException.class,
+            () -> read.get(10, TimeUnit.SECONDS));
+        assertTrue(exception.getCause().getCause() instanceof IOException);
+    }
+
+    @Test public void testCloseUnblocksProducer() throws Exception {
+        final ClipboardPipe pipe = new ClipboardPipe(4);
+        final CompletableFuture<Void> write = CompletableFuture.runAsync(() -> {
+            try {
+                pipe.getOutputStream().write(new byte[8]);
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        // The producer blocks once the buffer is full
+        assertThrows(TimeoutException.class, () -> write.get(100, TimeUnit.MILLISECONDS));
+        assertEquals(4, pipe.getInputStream().available());
+        pipe.getInputStream().close();
+        final ExecutionException exception = assertThrows(ExecutionException.class,
+            () -> write.get(10, TimeUnit.SECONDS));
+        assertEquals("The pipe has been closed", exception.getCause().getCause().getMessage());
+        assertThrows(IOException.class, () -> pipe.getOutputStream().write(1));
+        assertThrows(IOException.class, () -> pipe.getInputStream().read());
+    }
+
+    @Test public void testInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new ClipboardPipe(0));
+    }
+
+    @NotNull private static byte[] read(@NotNull final InputStream inputStream, final int length) throws IOException {
+        final byte[] bytes = new byte[length];
+        int position = 0;
+        while (position < length) {
+            final int read = inputStream.read(bytes, position, length - position);
+            assertNotEquals(-1, read);
+            position += read;
+        }
+        return bytes;
+    }
+
+}
@@ -0,0 +1,398 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.loadtest;
+
+import com.intellectualsites.arkitektonika.Arkitektonika;
+import com.intellectualsites.arkitektonika.SchematicKeys;
+import com.intellectualsites.arkitektonika.exceptions.ResourceRetrievalException;
+import com.intellectualsites.arkitektonika.exceptions.ResourceUploadException;
+import com.intellectualsites.arkitektonika.metrics.LatencyHistogram;
+import com.intellectualsites.arkitektonika.metrics.Operation;
+import com.intellectualsites.arkitektonika.server.MockArkitektonikaServer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Closed-loop load generator that drives an {@link Arkitektonika} client with a mix
+ * of uploads, downloads, status checks and deletions, and reports throughput,
+ * latency percentiles, error rates and the CPU and allocation rate of the process.
+ * Run it with {@code ./gradlew loadTest --args="--duration 30s --concurrency 32"}
+ *
+ * @see LoadTestSettings#USAGE for the command line options
+ */
+public final class LoadTest {
+
+    private static final int KEY_POOL_SIZE = 4096;
+    private static final int SEED_SCHEMATICS = 64;
+    private static final Operation[] OPERATIONS = {Operation.UPLOAD, Operation.DOWNLOAD, Operation.CHECK_STATUS,
+        Operation.DELETE};
+
+    private final LoadTestSettings settings;
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, Map<String, LongAdder>> failures = new EnumMap<>(Operation.class);
+    private final LongAdder uploadedBytes = new LongAdder();
+    private final LongAdder downloadedBytes = new LongAdder();
+    private final AtomicReferenceArray<SchematicKeys> keys = new AtomicReferenceArray<>(KEY_POOL_SIZE);
+    private final AtomicLong storedKeys = new AtomicLong();
+    private final Operation[] mix;
+    private final byte[][] schematics;
+    private volatile long measurementStart = Long.MAX_VALUE;
+    private volatile long measurementEnd = Long.MAX_VALUE;
+    private volatile boolean stopped;
+
+    public LoadTest(@NotNull final LoadTestSettings settings) {
+        this.settings = settings;
+        for (final Operation operation : OPERATIONS) {
+            this.latencies.put(operation, new LatencyHistogram());
+            this.failures.put(operation, new ConcurrentHashMap<>());
+        }
+        // Weights are expanded into arrays, so that a uniformly random index picks an entry by weight
+        final List<Operation> mix = new ArrayList<>();
+        settings.getMix().forEach((operation, weight) -> mix.addAll(Collections.nCopies(weight, operation)));
+        this.mix = mix.toArray(new Operation[0]);
+        final List<byte[]> schematics = new ArrayList<>();
+        settings.getSizes().forEach((size, weight) -> {
+            final byte[] schematic = createSchematic(size);
+            for (int i = 0; i < weight; i++) {
+                schematics.add(schematic);
+            }
+        });
+        this.schematics = schematics.toArray(new byte[0][]);
+    }
+
+    public static void main(@NotNull final String[] args) throws Exception {
+        final LoadTestSettings settings;
+        try {
+            if (Arrays.asList(args).contains("--help")) {
+                System.out.println(LoadTestSettings.USAGE);
+                return;
+            }
+            settings = LoadTestSettings.parse(args);
+        } catch (final IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadTestSettings.USAGE);
+            System.exit(2);
+            return;
+        }
+        new LoadTest(settings).run(System.out);
+    }
+
+    /**
+     * Create an incompressible schematic of roughly the given size, which is valid
+     * enough to be accepted by the server
+     *
+     * @param size Size in bytes
+     * @return Gzip compressed schematic
+     */
+    @NotNull private static byte[] createSchematic(final int size) {
+        final byte[] data = new byte[size];
+        ThreadLocalRandom.current().nextBytes(data);
+        data[0] = 10;
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(size + 64);
+        try (final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(data);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Run the load test and print the report
+     *
+     * @param out Stream the report is printed to
+     * @throws Exception If the client could not be set up
+     */
+    public void run(@NotNull final PrintStream out) throws Exception {
+        final MockArkitektonikaServer server = this.settings.getUrl() != null ? null :
+            MockArkitektonikaServer.builder().withLatency(this.settings.getLatency())
+                .withErrorRate(this.settings.getErrorRate()).withBandwidth(this.settings.getBandwidth()).build();
+        final String url = server == null ? this.settings.getUrl() : server.getUrl();
+        final Arkitektonika.Builder builder = Arkitektonika.builder().withUrl(url);
+        if (this.settings.getTransportType() != null) {
+            builder.withTransport(this.settings.getTransportType());
+        }
+        try (final Arkitektonika arkitektonika = builder.build()) {
+            // Seed the key pool, tolerating the failures that the server may be configured to inject
+            for (int i = 0; i < SEED_SCHEMATICS * 4 && this.storedKeys.get() < SEED_SCHEMATICS; i++) {
+                try {
+                    this.store(arkitektonika.upload(this.schematics[i % this.schematics.length]).get());
+                } catch (final ExecutionException ignored) {
+                }
+            }
+            if (this.storedKeys.get() == 0) {
+                throw new IllegalStateException("None of the initial schematics could be uploaded to " + url);
+            }
+            final List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < this.settings.getConcurrency(); i++) {
+                final Thread thread = new Thread(() -> this.drive(arkitektonika), "LoadTest-" + i);
+                thread.setDaemon(true);
+                thread.start();
+                threads.add(thread);
+            }
+            TimeUnit.NANOSECONDS.sleep(this.settings.getWarmup().toNanos());
+            final ResourceUsage before = ResourceUsage.capture();
+            this.measurementStart = System.nanoTime();
+            TimeUnit.NANOSECONDS.sleep(this.settings.getDuration().toNanos());
+            this.measurementEnd = System.nanoTime();
+            final ResourceUsage after = ResourceUsage.capture();
+            this.stopped = true;
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+            this.report(out, url, server, after.since(before), this.measurementEnd - this.measurementStart);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private void drive(@NotNull final Arkitektonika arkitektonika) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (!this.stopped) {
+            Operation operation = this.mix[random.nextInt(this.mix.length)];
+            final int slot = random.nextInt((int) Math.min(KEY_POOL_SIZE, this.storedKeys.get()));
+            final SchematicKeys keys;
+            if (operation == Operation.DELETE) {
+                keys = this.keys.getAndSet(slot, null);
+            } else if (operation != Operation.UPLOAD) {
+                keys = this.keys.get(slot);
+            } else {
+                keys = null;
+            }
+            // Without an available schematic the operation is replaced by an upload, which refills the pool
+            if (keys == null) {
+                operation = Operation.UPLOAD;
+            }
+            final long start = System.nanoTime();
+            String failure = null;
+            try {
+                this.perform(arkitektonika, operation, keys);
+            } catch (final ExecutionException e) {
+                failure = describe(e.getCause());
+            } catch (final InterruptedException e) {
+                return;
+            }
+            final long end = System.nanoTime();
+            if (start >= this.measurementStart && end <= this.measurementEnd) {
+                this.latencies.get(operation).record(end - start);
+                if (failure != null) {
+                    this.failures.get(operation).computeIfAbsent(failure, ignored -> new LongAdder()).increment();
+                }
+            }
+        }
+    }
+
+    private void perform(@NotNull final Arkitektonika arkitektonika, @NotNull final Operation operation,
+        @Nullable final SchematicKeys keys) throws ExecutionException, InterruptedException {
+        switch (operation) {
+            case UPLOAD:
+                final byte[] schematic = this.schematics[ThreadLocalRandom.current().nextInt(this.schematics.length)];
+                this.store(arkitektonika.upload(schematic).get());
+                this.count(this.uploadedBytes, schematic.length);
+                break;
+            case DOWNLOAD:
+                this.count(this.downloadedBytes, arkitektonika.download(keys.getAccessKey()).get().getContent().length);
+                break;
+            case CHECK_STATUS:
+                arkitektonika.checkStatus(keys.getAccessKey()).get();
+                break;
+            case DELETE:
+                arkitektonika.delete(keys.getDeletionKey()).get();
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported operation " + operation);
+        }
+    }
+
+    private void store(@NotNull final SchematicKeys keys) {
+        this.keys.set((int) (this.storedKeys.getAndIncrement() % KEY_POOL_SIZE), keys);
+    }
+
+    private void count(@NotNull final LongAdder adder, final long bytes) {
+        final long now = System.nanoTime();
+        if (now >= this.measurementStart && now <= this.measurementEnd) {
+            adder.add(bytes);
+        }
+    }
+
+    @NotNull private static String describe(@NotNull final Throwable throwable) {
+        final int statusCode;
+        if (throwable instanceof ResourceRetrievalException) {
+            statusCode = ((ResourceRetrievalException) throwable).getStatusCode();
+        } else if (throwable instanceof ResourceUploadException) {
+            statusCode = ((ResourceUploadException) throwable).getStatusCode();
+        } else {
+            statusCode = -1;
+        }
+        if (statusCode != -1) {
+            return Integer.toString(statusCode);
+        }
+        final Throwable cause = throwable.getCause() != null ? throwable.getCause() : throwable;
+        return cause.getClass().getSimpleName();
+    }
+
+    private void report(@NotNull final PrintStream out, @NotNull final String url,
+        @Nullable final MockArkitektonikaServer server, @NotNull final ResourceUsage usage, final long elapsed) {
+        final double seconds = elapsed / 1e9;
+        out.printf(Locale.ROOT, "Target      %s%s%n", url, server == null ? "" : String.format(Locale.ROOT,
+            " (mock server, latency %d ms, error rate %.3f, bandwidth %s)", this.settings.getLatency().toMillis(),
+            this.settings.getErrorRate(), this.settings.getBandwidth() == 0 ? "unlimited" :
+                formatBytes(this.settings.getBandwidth()) + "/s"));
+        out.printf(Locale.ROOT, "Client      transport %s, concurrency %d%n", this.settings.getTransportType() == null ?
+            "default" : this.settings.getTransportType(), this.settings.getConcurrency());
+        out.printf(Locale.ROOT, "Measured    %.1f s after %d s warmup%n%n", seconds,
+            this.settings.getWarmup().getSeconds());
+        out.printf(Locale.ROOT, "%-14s %10s %10s %10s %10s %10s %8s%n", "Operation", "ops/s", "p50", "p90", "p99",
+            "p99.9", "errors");
+        long operations = 0;
+        long failed = 0;
+        final Map<String, Long> failuresByType = new TreeMap<>();
+        for (final Operation operation : OPERATIONS) {
+            final LatencyHistogram histogram = this.latencies.get(operation);
+            final long count = histogram.getCount();
+            if (count == 0) {
+                continue;
+            }
+            long failures = 0;
+            for (final Map.Entry<String, LongAdder> entry : this.failures.get(operation).entrySet()) {
+                failures += entry.getValue().sum();
+                failuresByType.put(operation + " " + entry.getKey(), entry.getValue().sum());
+            }
+            operations += count;
+            failed += failures;
+            out.printf(Locale.ROOT, "%-14s %10.1f %10s %10s %10s %10s %7.2f%%%n", operation, count / seconds,
+                formatNanos(histogram.getPercentile(0.5)), formatNanos(histogram.getPercentile(0.9)),
+                formatNanos(histogram.getPercentile(0.99)), formatNanos(histogram.getPercentile(0.999)),
+                100.0 * failures / count);
+        }
+        out.printf(Locale.ROOT, "%-14s %10.1f %54.2f%%%n%n", "TOTAL", operations / seconds,
+            operations == 0 ? 0 : 100.0 * failed / operations);
+        out.printf(Locale.ROOT, "Transfer    upload %s/s, download %s/s%n",
+            formatBytes((long) (this.uploadedBytes.sum() / seconds)),
+            formatBytes((long) (this.downloadedBytes.sum() / seconds)));
+        if (!failuresByType.isEmpty()) {
+            final StringBuilder failures = new StringBuilder();
+            failuresByType.forEach((type, count) -> failures.append(failures.length() == 0 ? "" : ", ")
+                .append(type).append(" x ").append(count));
+            out.printf(Locale.ROOT, "Errors      %s%n", failures);
+        }
+        final int processors = Runtime.getRuntime().availableProcessors();
+        out.printf(Locale.ROOT, "CPU         %.1f%% of %d cores, %s per operation%n",
+            100.0 * usage.cpuTime / elapsed / processors, processors,
+            formatNanos(operations == 0 ? 0 : usage.cpuTime / operations));
+        out.printf(Locale.ROOT, "Allocation  %s/s, %s per operation%n",
+            formatBytes((long) (usage.allocatedBytes / seconds)),
+            formatBytes(operations == 0 ? 0 : usage.allocatedBytes / operations));
+        if (server != null) {
+            out.println("CPU and allocation include the mock server, which runs in the same process");
+        }
+    }
+
+    @NotNull private static String formatNanos(final long nanos) {
+        if (nanos < 1_000_000) {
+            return String.format(Locale.ROOT, "%.1f us", nanos / 1e3);
+        } else if (nanos < 1_000_000_000) {
+            return String.format(Locale.ROOT, "%.1f ms", nanos / 1e6);
+        }
+        return String.format(Locale.ROOT, "%.2f s", nanos / 1e9);
+    }
+
+    @NotNull private static String formatBytes(final long bytes) {
+        if (bytes < 1 << 10) {
+            return bytes + " B";
+        } else if (bytes < 1 << 20) {
+            return String.format(Locale.ROOT, "%.1f KiB", bytes / 1024.0);
+        }
+        return String.format(Locale.ROOT, "%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+
+
+    /**
+     * CPU time and allocated bytes of the process. Allocations of threads that
+     * terminate during the measurement are not accounted for
+     */
+    private static final class ResourceUsage {
+
+        private final long cpuTime;
+        private final long allocatedBytes;
+        private final Map<Long, Long> allocatedByThread;
+
+        private ResourceUsage(final long cpuTime, final long allocatedBytes,
+            @NotNull final Map<Long, Long> allocatedByThread) {
+            this.cpuTime = cpuTime;
+            this.allocatedBytes = allocatedBytes;
+            this.allocatedByThread = allocatedByThread;
+        }
+
+        @NotNull private static ResourceUsage capture() {
+            final long cpuTime = ((com.sun.management.OperatingSystemMXBean) ManagementFactory
+                .getOperatingSystemMXBean()).getProcessCpuTime();
+            final com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            final long[] threadIds = threadBean.getAllThreadIds();
+            final long[] allocated = threadBean.getThreadAllocatedBytes(threadIds);
+            final Map<Long, Long> allocatedByThread = new HashMap<>();
+            for (int i = 0; i < threadIds.length; i++) {
+                if (allocated[i] >= 0) {
+                    allocatedByThread.put(threadIds[i], allocated[i]);
+                }
+            }
+            return new ResourceUsage(cpuTime, 0, allocatedByThread);
+        }
+
+        @NotNull private ResourceUsage since(@NotNull final ResourceUsage before) {
+            long allocatedBytes = 0;
+            for (final Map.Entry<Long, Long> entry : this.allocatedByThread.entrySet()) {
+                allocatedBytes += entry.getValue() - before.allocatedByThread.getOrDefault(entry.getKey(), 0L);
+            }
+            return new ResourceUsage(this.cpuTime - before.cpuTime, allocatedBytes, this.allocatedByThread);
+        }
+
+    }
+
+}
@@ -0,0 +1,471 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.loadtest;
+
+import com.intellectualsites.arkitektonika.metrics.Operation;
+import com.intellectualsites.arkitektonika.transport.TransportType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Settings of a {@link LoadTest}
+ *
+ * @see LoadTestSettings#builder() to create new settings
+ * @see LoadTestSettings#parse(String[]) to parse command line arguments
+ */
+public final class LoadTestSettings {
+
+    static final String USAGE = String.join(System.lineSeparator(),
+        "Options:",
+        "  --url <url>             Server to test. Starts a local mock server if omitted",
+        "  --transport <type>      BLOCKING, POOLED or ASYNC",
+        "  --concurrency <n>       Number of concurrent operations (default 16)",
+        "  --duration <time>       Measured duration, for example 30s or 2m (default 30s)",
+        "  --warmup <time>         Unmeasured warmup before the measurement (default 5s)",
+        "  --mix <weights>         Operation mix (default upload=1,download=6,status=2,delete=1)",
+        "  --sizes <weights>       Schematic size distribution (default 4k=60,64k=30,1m=10)",
+        "  --latency <time>        Latency injected by the mock server (default 0ms)",
+        "  --error-rate <rate>     Fraction of mock server requests that fail (default 0)",
+        "  --bandwidth <bytes>     Bandwidth of the mock server per second, for example 10m (default unlimited)");
+
+    private final String url;
+    private final TransportType transportType;
+    private final int concurrency;
+    private final Duration duration;
+    private final Duration warmup;
+    private final Map<Operation, Integer> mix;
+    private final Map<Integer, Integer> sizes;
+    private final Duration latency;
+    private final double errorRate;
+    private final long bandwidth;
+
+    private LoadTestSettings(@NotNull final Builder builder) {
+        this.url = builder.url;
+        this.transportType = builder.transportType;
+        this.concurrency = builder.concurrency;
+        this.duration = builder.duration;
+        this.warmup = builder.warmup;
+        this.mix = Collections.unmodifiableMap(new EnumMap<>(builder.mix));
+        this.sizes = Collections.unmodifiableMap(new LinkedHashMap<>(builder.sizes));
+        this.latency = builder.latency;
+        this.errorRate = builder.errorRate;
+        this.bandwidth = builder.bandwidth;
+    }
+
+    /**
+     * Create a new {@link LoadTestSettings} {@link Builder builder}
+     *
+     * @return New builder
+     */
+    @NotNull public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Parse settings from command line arguments
+     *
+     * @param arguments Command line arguments
+     * @return Parsed settings
+     * @throws IllegalArgumentException If an argument is unknown or invalid
+     * @see #USAGE for the supported options
+     */
+    @NotNull public static LoadTestSettings parse(@NotNull final String[] arguments) {
+        final Builder builder = builder();
+        for (int i = 0; i < arguments.length; i += 2) {
+            final String option = arguments[i];
+            if (i + 1 >= arguments.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            final String value = arguments[i + 1];
+            switch (option) {
+                case "--url":
+                    builder.withUrl(value);
+                    break;
+                case "--transport":
+                    builder.withTransport(TransportType.valueOf(value.toUpperCase(Locale.ROOT)));
+                    break;
+                case "--concurrency":
+                    builder.withConcurrency(Integer.parseInt(value));
+                    break;
+                case "--duration":
+                    builder.withDuration(parseDuration(value));
+                    break;
+                case "--warmup":
+                    builder.withWarmup(parseDuration(value));
+                    break;
+                case "--mix":
+                    builder.mix.clear();
+                    parseWeights(value).forEach((name, weight) -> builder.withWeight(parseOperation(name), weight));
+                    break;
+                case "--sizes":
+                    builder.sizes.clear();
+                    parseWeights(value).forEach((size, weight) -> builder.withSize((int) parseBytes(size), weight));
+                    break;
+                case "--latency":
+                    builder.withLatency(parseDuration(value));
+                    break;
+                case "--error-rate":
+                    builder.withErrorRate(Double.parseDouble(value));
+                    break;
+                case "--bandwidth":
+                    builder.withBandwidth(parseBytes(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        return builder.build();
+    }
+
+    @NotNull private static Map<String, Integer> parseWeights(@NotNull final String value) {
+        final Map<String, Integer> weights = new LinkedHashMap<>();
+        for (final String entry : value.split(",")) {
+            final int separator = entry.indexOf('=');
+            if (separator == -1) {
+                throw new IllegalArgumentException("Expected <name>=<weight>, got " + entry);
+            }
+            weights.put(entry.substring(0, separator).trim(), Integer.parseInt(entry.substring(separator + 1).trim()));
+        }
+        return weights;
+    }
+
+    @NotNull private static Operation parseOperation(@NotNull final String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "upload":
+                return Operation.UPLOAD;
+            case "download":
+                return Operation.DOWNLOAD;
+            case "status":
+                return Operation.CHECK_STATUS;
+            case "delete":
+                return Operation.DELETE;
+            default:
+                throw new IllegalArgumentException("Unknown operation " + name);
+        }
+    }
+
+    @NotNull private static Duration parseDuration(@NotNull final String value) {
+        final String lower = value.toLowerCase(Locale.ROOT);
+        if (lower.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(lower.substring(0, lower.length() - 2)));
+        } else if (lower.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(lower.substring(0, lower.length() - 1)));
+        } else if (lower.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(lower.substring(0, lower.length() - 1)));
+        }
+        throw new IllegalArgumentException("Expected a duration such as 500ms, 30s or 2m, got " + value);
+    }
+
+    private static long parseBytes(@NotNull final String value) {
+        final String lower = value.toLowerCase(Locale.ROOT);
+        final char unit = lower.charAt(lower.length() - 1);
+        final String number = Character.isDigit(unit) ? lower : lower.substring(0, lower.length() - 1);
+        switch (unit) {
+            case 'k':
+                return Long.parseLong(number) << 10;
+            case 'm':
+                return Long.parseLong(number) << 20;
+            case 'g':
+                return Long.parseLong(number) << 30;
+            default:
+                return Long.parseLong(number);
+        }
+    }
+
+    /**
+     * Get the URL of the server to test
+     *
+     * @return Server URL, or {@code null} if a local mock server is started
+     */
+    @Nullable public String getUrl() {
+        return this.url;
+    }
+
+    /**
+     * Get the transport of the client
+     *
+     * @return Transport type, or {@code null} for the default transport
+     */
+    @Nullable public TransportType getTransportType() {
+        return this.transportType;
+    }
+
+    /**
+     * Get the number of concurrent operations
+     *
+     * @return Concurrency
+     */
+    public int getConcurrency() {
+        return this.concurrency;
+    }
+
+    /**
+     * Get the measured duration
+     *
+     * @return Duration
+     */
+    @NotNull public Duration getDuration() {
+        return this.duration;
+    }
+
+    /**
+     * Get the unmeasured warmup that precedes the measurement
+     *
+     * @return Warmup
+     */
+    @NotNull public Duration getWarmup() {
+        return this.warmup;
+    }
+
+    /**
+     * Get the relative weights of the operations
+     *
+     * @return Operation weights
+     */
+    @NotNull public Map<Operation, Integer> getMix() {
+        return this.mix;
+    }
+
+    /**
+     * Get the relative weights of the uploaded schematic sizes
+     *
+     * @return Weights by size in bytes
+     */
+    @NotNull public Map<Integer, Integer> getSizes() {
+        return this.sizes;
+    }
+
+    /**
+     * Get the latency injected by the mock server
+     *
+     * @return Latency
+     */
+    @NotNull public Duration getLatency() {
+        return this.latency;
+    }
+
+    /**
+     * Get the fraction of mock server requests that fail
+     *
+     * @return Error rate
+     */
+    public double getErrorRate() {
+        return this.errorRate;
+    }
+
+    /**
+     * Get the bandwidth of the mock server
+     *
+     * @return Bandwidth in bytes per second, or 0 if unlimited
+     */
+    public long getBandwidth() {
+        return this.bandwidth;
+    }
+
+
+    /**
+     * Builder class for {@link LoadTestSettings} instances.
+     *
+     * @see LoadTestSettings#builder() to get a new builder instance
+     */
+    public static final class Builder {
+
+        private final Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        private final Map<Integer, Integer> sizes = new LinkedHashMap<>();
+        private String url;
+        private TransportType transportType;
+        private int concurrency = 16;
+        private Duration duration = Duration.ofSeconds(30);
+        private Duration warmup = Duration.ofSeconds(5);
+        private Duration latency = Duration.ZERO;
+        private double errorRate = 0;
+        private long bandwidth = 0;
+
+        private Builder() {
+            this.mix.put(Operation.UPLOAD, 1);
+            this.mix.put(Operation.DOWNLOAD, 6);
+            this.mix.put(Operation.CHECK_STATUS, 2);
+            this.mix.put(Operation.DELETE, 1);
+            this.sizes.put(4 << 10, 60);
+            this.sizes.put(64 << 10, 30);
+            this.sizes.put(1 << 20, 10);
+        }
+
+        /**
+         * Specify the URL of the server to test. Defaults to a local mock server
+         *
+         * @param url Server URL
+         * @return The builder instance
+         */
+        @NotNull public Builder withUrl(@NotNull final String url) {
+            this.url = url;
+            return this;
+        }
+
+        /**
+         * Specify the transport of the client. Defaults to the client's default transport
+         *
+         * @param transportType Transport type
+         * @return The builder instance
+         */
+        @NotNull public Builder withTransport(@NotNull final TransportType transportType) {
+            this.transportType = transportType;
+            return this;
+        }
+
+        /**
+         * Specify the number of concurrent operations. Defaults to 16
+         *
+         * @param concurrency Concurrency
+         * @return The builder instance
+         */
+        @NotNull public Builder withConcurrency(final int concurrency) {
+            if (concurrency <= 0) {
+                throw new IllegalArgumentException("The concurrency must be positive");
+            }
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * Specify the measured duration. Defaults to 30 seconds
+         *
+         * @param duration Duration
+         * @return The builder instance
+         */
+        @NotNull public Builder withDuration(@NotNull final Duration duration) {
+            if (duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("The duration must be positive");
+            }
+            this.duration = duration;
+            return this;
+        }
+
+        /**
+         * Specify the unmeasured warmup. Defaults to 5 seconds
+         *
+         * @param warmup Warmup
+         * @return The builder instance
+         */
+        @NotNull public Builder withWarmup(@NotNull final Duration warmup) {
+            if (warmup.isNegative()) {
+                throw new IllegalArgumentException("The warmup must not be negative");
+            }
+            this.warmup = warmup;
+            return this;
+        }
+
+        /**
+         * Specify the relative weight of an operation. Defaults to 1 upload, 6 downloads,
+         * 2 status checks and 1 deletion
+         *
+         * @param operation Operation, other than {@link Operation#CHECK_COMPATIBILITY}
+         * @param weight    Relative weight, or 0 to not perform the operation
+         * @return The builder instance
+         */
+        @NotNull public Builder withWeight(@NotNull final Operation operation, final int weight) {
+            if (operation == Operation.CHECK_COMPATIBILITY) {
+                throw new IllegalArgumentException("Compatibility checks are not part of the mix");
+            }
+            if (weight < 0) {
+                throw new IllegalArgumentException("The weight must not be negative");
+            }
+            this.mix.put(operation, weight);
+            return this;
+        }
+
+        /**
+         * Specify the relative weight of an uploaded schematic size. Defaults to 60% 4 KiB,
+         * 30% 64 KiB and 10% 1 MiB
+         *
+         * @param size   Size in bytes
+         * @param weight Relative weight
+         * @return The builder instance
+         */
+        @NotNull public Builder withSize(final int size, final int weight) {
+            if (size <= 0 || weight <= 0) {
+                throw new IllegalArgumentException("The size and weight must be positive");
+            }
+            this.sizes.put(size, weight);
+            return this;
+        }
+
+        /**
+         * Specify the latency injected by the mock server. Defaults to none
+         *
+         * @param latency Latency
+         * @return The builder instance
+         */
+        @NotNull public Builder withLatency(@NotNull final Duration latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * Specify the fraction of mock server requests that fail. Defaults to 0
+         *
+         * @param errorRate Error rate between 0 and 1
+         * @return The builder instance
+         */
+        @NotNull public Builder withErrorRate(final double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * Specify the bandwidth of the mock server. Defaults to unlimited
+         *
+         * @param bytesPerSecond Bandwidth in bytes per second, or 0 for unlimited
+         * @return The builder instance
+         */
+        @NotNull public Builder withBandwidth(final long bytesPerSecond) {
+            this.bandwidth = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Create the settings
+         *
+         * @return Created settings
+         */
+        @NotNull public LoadTestSettings build() {
+            if (this.mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+                throw new IllegalArgumentException("At least one operation must have a positive weight");
+            }
+            if (this.sizes.isEmpty()) {
+                throw new IllegalArgumentException("At least one schematic size is required");
+            }
+            return new LoadTestSettings(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,449 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 IntellectualSites
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.intellectualsites.arkitektonika.server;
+
+import com.intellectualsites.arkitektonika.SchematicKeys;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * In-process stand-in for an Arkitektonika server, which keeps uploaded schematics
+ * in memory. It implements the v1 routes with the status codes of the real server
+ * and can inject latency, failures and bandwidth limits, so that the client can be
+ * tested and load tested without network access
+ *
+ * @see MockArkitektonikaServer#builder() to start a new server
+ */
+public final class MockArkitektonikaServer implements AutoCloseable {
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Map<String, byte[]> schematics = new ConcurrentHashMap<>();
+    private final Map<String, String> deletionKeys = new ConcurrentHashMap<>();
+    private final Set<String> deleted = ConcurrentHashMap.newKeySet();
+    private final AtomicLong requests = new AtomicLong();
+    private final ExecutorService executor;
+    private final HttpServer server;
+    private final Throttle throttle;
+    private final int errorStatus;
+    private volatile Duration latency;
+    private volatile double errorRate;
+
+    private MockArkitektonikaServer(@NotNull final Builder builder) throws IOException {
+        this.latency = builder.latency;
+        this.errorRate = builder.errorRate;
+        this.errorStatus = builder.errorStatus;
+        this.throttle = builder.bandwidth > 0 ? new Throttle(builder.bandwidth) : null;
+        final AtomicInteger threadId = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "MockArkitektonika-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port), 256);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * Create a new {@link MockArkitektonikaServer} {@link Builder builder}
+     *
+     * @return New builder
+     */
+    @NotNull public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the base URL of the server
+     *
+     * @return Base URL
+     */
+    @NotNull public String getUrl() {
+        final InetSocketAddress address = this.server.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort();
+    }
+
+    /**
+     * Store a schematic without going through the HTTP API
+     *
+     * @param schematic Schematic content
+     * @return Generated keys
+     */
+    @NotNull public SchematicKeys store(@NotNull final byte[] schematic) {
+        final String accessKey = UUID.randomUUID().toString().replace("-", "");
+        final String deletionKey = UUID.randomUUID().toString().replace("-", "");
+        this.schematics.put(accessKey, schematic);
+        this.deletionKeys.put(deletionKey, accessKey);
+        return new SchematicKeys(accessKey, deletionKey);
+    }
+
+    /**
+     * Get the number of schematics that are currently stored
+     *
+     * @return Number of schematics
+     */
+    public int getSchematicCount() {
+        return this.schematics.size();
+    }
+
+    /**
+     * Get the number of requests that have been received
+     *
+     * @return Number of requests
+     */
+    public long getRequestCount() {
+        return this.requests.get();
+    }
+
+    /**
+     * Change the latency that is added before every response
+     *
+     * @param latency Latency
+     */
+    public void setLatency(@NotNull final Duration latency) {
+        this.latency = Builder.checkLatency(latency);
+    }
+
+    /**
+     * Change the fraction of requests that fail with the error status
+     *
+     * @param errorRate Error rate between 0 and 1
+     */
+    public void setErrorRate(final double errorRate) {
+        this.errorRate = Builder.checkErrorRate(errorRate);
+    }
+
+    private void handle(@NotNull final HttpExchange exchange) throws IOException {
+        this.requests.incrementAndGet();
+        try (final InputStream inputStream = exchange.getRequestBody()) {
+            final String method = exchange.getRequestMethod();
+            final String path = exchange.getRequestURI().getPath();
+            // The body is consumed first, so that throttling and failures apply to the upload as well
+            final byte[] body = this.read(inputStream);
+            final long latency = this.latency.toNanos();
+            if (latency > 0) {
+                TimeUnit.NANOSECONDS.sleep(latency);
+            }
+            if (this.errorRate > 0 && ThreadLocalRandom.current().nextDouble() < this.errorRate) {
+                this.respond(exchange, this.errorStatus, EMPTY);
+            } else if (path.equals("/") && method.equals("GET")) {
+                this.respond(exchange, 200, "{\"version\":\"1.0.0\"}".getBytes(StandardCharsets.UTF_8));
+            } else if (path.equals("/upload") && method.equals("POST")) {
+                this.upload(exchange, body);
+            } else if (path.startsWith("/download/") && (method.equals("GET") || method.equals("HEAD"))) {
+                final String key = path.substring("/download/".length());
+                final byte[] schematic = this.schematics.get(key);
+                if (schematic != null) {
+                    this.respond(exchange, 200, schematic);
+                } else {
+                    this.respond(exchange, this.deleted.contains(key) ? 410 : 404, EMPTY);
+                }
+            } else if (path.startsWith("/delete/") && method.equals("DELETE")) {
+                final String accessKey = this.deletionKeys.get(path.substring("/delete/".length()));
+                if (accessKey == null) {
+                    this.respond(exchange, 404, EMPTY);
+                } else if (this.schematics.remove(accessKey) == null) {
+                    this.respond(exchange, 410, EMPTY);
+                } else {
+                    this.deleted.add(accessKey);
+                    this.respond(exchange, 200, EMPTY);
+                }
+            } else {
+                this.respond(exchange, 404, EMPTY);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void upload(@NotNull final HttpExchange exchange, @NotNull final byte[] body) throws IOException,
+        InterruptedException {
+        final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        final byte[] schematic = contentType == null ? null : extractPart(body, contentType);
+        if (schematic == null || !isSchematic(schematic)) {
+            this.respond(exchange, 400, EMPTY);
+            return;
+        }
+        final SchematicKeys keys = this.store(schematic);
+        this.respond(exchange, 200, String.format("{\"download_key\":\"%s\",\"delete_key\":\"%s\"}",
+            keys.getAccessKey(), keys.getDeletionKey()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void respond(@NotNull final HttpExchange exchange, final int status, @NotNull final byte[] body)
+        throws IOException, InterruptedException {
+        // The response body must not be closed in addition to the exchange when there is none, as
+        // completing the exchange twice hands the connection to two readers at once
+        if (body.length == 0 || exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (final OutputStream outputStream = exchange.getResponseBody()) {
+            for (int offset = 0; offset < body.length; offset += CHUNK_SIZE) {
+                final int length = Math.min(CHUNK_SIZE, body.length - offset);
+                if (this.throttle != null) {
+                    this.throttle.acquire(length);
+                }
+                outputStream.write(body, offset, length);
+            }
+        }
+    }
+
+    @NotNull private byte[] read(@NotNull final InputStream inputStream) throws IOException, InterruptedException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[CHUNK_SIZE];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            if (this.throttle != null) {
+                this.throttle.acquire(read);
+            }
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Extract the content of the first part of a multipart/form-data body
+     *
+     * @param body        Request body
+     * @param contentType Content type header
+     * @return Part content, or {@code null} if the body is not valid multipart data
+     */
+    @Nullable private static byte[] extractPart(@NotNull final byte[] body, @NotNull final String contentType) {
+        final int boundaryIndex = contentType.indexOf("boundary=");
+        if (!contentType.startsWith("multipart/form-data") || boundaryIndex == -1) {
+            return null;
+        }
+        final byte[] delimiter = ("\r\n--" + contentType.substring(boundaryIndex + "boundary=".length()))
+            .getBytes(StandardCharsets.US_ASCII);
+        final int start = indexOf(body, "\r\n\r\n".getBytes(StandardCharsets.US_ASCII), 0);
+        if (start == -1) {
+            return null;
+        }
+        final int end = indexOf(body, delimiter, start + 4);
+        if (end == -1) {
+            return null;
+        }
+        final byte[] part = new byte[end - start - 4];
+        System.arraycopy(body, start + 4, part, 0, part.length);
+        return part;
+    }
+
+    private static int indexOf(@NotNull final byte[] data, @NotNull final byte[] pattern, final int from) {
+        outer:
+        for (int i = from; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Check that the schematic is gzip compressed NBT data with a root compound tag,
+     * which is what the real server rejects with 400 otherwise
+     *
+     * @param schematic Schematic content
+     * @return {@code true} if the schematic looks valid
+     */
+    private static boolean isSchematic(@NotNull final byte[] schematic) {
+        try (final InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(schematic))) {
+            return inputStream.read() == 10;
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    @Override public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+
+    /**
+     * Limits the combined upload and download bandwidth of the server
+     */
+    private static final class Throttle {
+
+        private static final long MIN_SLEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+        private final double nanosPerByte;
+        private long next = System.nanoTime();
+
+        private Throttle(final long bytesPerSecond) {
+            this.nanosPerByte = TimeUnit.SECONDS.toNanos(1) / (double) bytesPerSecond;
+        }
+
+        private void acquire(final int bytes) throws InterruptedException {
+            final long wait;
+            synchronized (this) {
+                final long now = System.nanoTime();
+                this.next = Math.max(this.next, now) + (long) (bytes * this.nanosPerByte);
+                wait = this.next - now;
+            }
+            // Short sleeps overshoot, so small reads are only delayed once they add up
+            if (wait >= MIN_SLEEP_NANOS) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+
+    }
+
+
+    /**
+     * Builder class for {@link MockArkitektonikaServer} instances.
+     *
+     * @see MockArkitektonikaServer#builder() to get a new builder instance
+     */
+    public static final class Builder {
+
+        private int port = 0;
+        private Duration latency = Duration.ZERO;
+        private double errorRate = 0;
+        private int errorStatus = 503;
+        private long bandwidth = 0;
+
+        private Builder() {
+        }
+
+        @NotNull private static Duration checkLatency(@NotNull final Duration latency) {
+            if (latency.isNegative()) {
+                throw new IllegalArgumentException("The latency must not be negative");
+            }
+            return latency;
+        }
+
+        private static double checkErrorRate(final double errorRate) {
+            if (errorRate < 0 || errorRate > 1) {
+                throw new IllegalArgumentException("The error rate must be between 0 and 1");
+            }
+            return errorRate;
+        }
+
+        /**
+         * Specify the port to listen on. Defaults to an ephemeral port
+         *
+         * @param port Port
+         * @return The builder instance
+         */
+        @NotNull public Builder withPort(final int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Specify the latency that is added before every response. Defaults to none
+         *
+         * @param latency Latency
+         * @return The builder instance
+         */
+        @NotNull public Builder withLatency(@NotNull final Duration latency) {
+            this.latency = checkLatency(latency);
+            return this;
+        }
+
+        /**
+         * Specify the fraction of requests that fail with the error status. Defaults to 0
+         *
+         * @param errorRate Error rate between 0 and 1
+         * @return The builder instance
+         */
+        @NotNull public Builder withErrorRate(final double errorRate) {
+            this.errorRate = checkErrorRate(errorRate);
+            return this;
+        }
+
+        /**
+         * Specify the status code of injected failures. Defaults to 503
+         *
+         * @param errorStatus Status code
+         * @return The builder instance
+         */
+        @NotNull public Builder withErrorStatus(final int errorStatus) {
+            if (errorStatus < 400 || errorStatus > 599) {
+                throw new IllegalArgumentException("The error status must be a 4xx or 5xx status code");
+            }
+            this.errorStatus = errorStatus;
+            return this;
+        }
+
+        /**
+         * Specify the bandwidth that is shared by all request and response bodies.
+         * Defaults to unlimited
+         *
+         * @param bytesPerSecond Bandwidth in bytes per second, or 0 for unlimited
+         * @return The builder instance
+         */
+        @NotNull public Builder withBandwidth(final long bytesPerSecond) {
+            if (bytesPerSecond < 0) {
+                throw new IllegalArgumentException("The bandwidth must not be negative");
+            }
+            this.bandwidth = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Start the server
+         *
+         * @return Started server
+         * @throws IOException If the server could not be bound
+         */
+        @NotNull public MockArkitektonikaServer build() throws IOException {
+            return new MockArkitektonikaServer(this);
+        }
+
+    }
+
+}